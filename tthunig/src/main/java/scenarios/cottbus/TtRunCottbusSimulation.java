@@ -110,6 +110,7 @@ import signals.downstreamSensor.DownstreamPlanbasedSignalController;
 import signals.gershenson.GershensonConfig;
 import signals.gershenson.GershensonSignalController;
 import signals.laemmerFlex.FullyAdaptiveLaemmerSignalController;
+import signals.parallelUpdate.ParallelSignalUpdateModule;
 import utils.ModifyNetwork;
 import utils.ModifyPopulation;
 import utils.OutputUtils;
@@ -237,6 +238,8 @@ public class TtRunCottbusSimulation {
 	
 	private static final boolean USE_OPDYTS = false;
 	private static final boolean VIS = false;
+	/* update the adaptive signal controllers of all systems concurrently (with the number of qsim threads) */
+	private static final boolean PARALLEL_SIGNAL_UPDATE = false;
 	
 	// choose a sigma for the randomized router
 	// (higher sigma cause more randomness. use 0.0 for no randomness.)
@@ -1391,6 +1394,9 @@ public class TtRunCottbusSimulation {
 				bind(GershensonConfig.class).toInstance(gershensonConfig);
 			}
 		});
+		if (PARALLEL_SIGNAL_UPDATE) {
+			controler.addOverridingModule(new ParallelSignalUpdateModule());
+		}
 		
 		if (PRICING_TYPE.toString().startsWith("CP_")){
 			// add tolling
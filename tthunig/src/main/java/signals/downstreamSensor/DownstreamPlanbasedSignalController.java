@@ -36,6 +36,8 @@ import org.matsim.contrib.signals.sensor.DownstreamSensor;
 
 import com.google.inject.Inject;
 
+import signals.parallelUpdate.ParallelSignalControllerUpdate;
+
 /**
  * @author tthunig
  *
@@ -48,10 +50,14 @@ public final class DownstreamPlanbasedSignalController implements SignalControll
 
 	public final static class DownstreamFactory implements SignalControllerFactory {
 		@Inject private DownstreamSensor downstreamSensor;
+		@Inject(optional = true) private ParallelSignalControllerUpdate parallelUpdate;
 
 		@Override
 		public SignalController createSignalSystemController(SignalSystem signalSystem) {
 			SignalController controller = new DownstreamPlanbasedSignalController(downstreamSensor);
+			if (parallelUpdate != null) {
+				return parallelUpdate.wrap(controller, signalSystem);
+			}
 			controller.setSignalSystem(signalSystem);
 			return controller;
 		}
@@ -19,9 +19,11 @@
  * *********************************************************************** */
 package signals.gershenson;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 //import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -46,6 +48,8 @@ import org.matsim.lanes.LanesToLinkAssignment;
 
 import com.google.inject.Inject;
 
+import signals.parallelUpdate.ParallelSignalControllerUpdate;
+
 
 /**
  * Implement Gershenson-Controller as outlined in "Self-Organizing Traffic Lights at
@@ -74,10 +78,14 @@ public class GershensonSignalController implements SignalController {
 		@Inject private LinkSensorManager sensorManager;
 		@Inject private Scenario scenario;
 		@Inject private GershensonConfig gershensonConfig;
+		@Inject(optional = true) private ParallelSignalControllerUpdate parallelUpdate;
 	
 		@Override
 		public SignalController createSignalSystemController(SignalSystem signalSystem) {
 			SignalController controller = new GershensonSignalController(scenario, sensorManager, gershensonConfig);
+			if (parallelUpdate != null) {
+				return parallelUpdate.wrap(controller, signalSystem);
+			}
 			controller.setSignalSystem(signalSystem);
 			return controller;
 		}
@@ -194,16 +202,48 @@ public class GershensonSignalController implements SignalController {
 	
 	private Map<Id<SignalGroup>, SignalGroupMetadata> signalGroupIdMetadataMap;	
 	
-	private Map<Id<SignalGroup>, Integer> approachingVehiclesGroupMap = new HashMap<Id<SignalGroup>, Integer>();
-	private Map<Id<SignalGroup>, Map<Id<Link>, Boolean> > jammedOutLinkMap = new HashMap<Id<SignalGroup>, Map<Id<Link>, Boolean>>();	
-	private Map<Id<SignalGroup>, Double> counter = new HashMap<Id<SignalGroup>, Double>();	
-	private Map<Id<SignalGroup>, Boolean> jammedSignalGroup = new HashMap<Id<SignalGroup>,Boolean>();
-	private SignalGroup activeSignalGroup;
 	private Map<Id<Signal>, Integer>  maximalNumberOfAgentsInDistanceMap = new HashMap<Id<Signal>, Integer>();
 	private double threshold;
 	private double timeactivegroup = 0;
 	private boolean thereAreVehiclesApproaching;
 	
+	/*
+	 * Compiled representation of the signal system, built in simulationInitialized from the metadata above. Signal groups, signals,
+	 * monitored in-links/in-lanes ('items') and out-links have dense indices; the signals of a group, the items of a signal and the 
+	 * out-links of a group are stored as ranges [first[i], first[i+1]) in flat arrays. 
+	 */
+	static final int NO_GROUP = -1;
+	
+	private SignalGroup[] groups;
+	private int[] firstSignalOfGroup;
+	private int[] maximalNumberOfAgentsOfSignal;
+	private int[] firstItemOfSignal;
+	private Id<Link>[] linkOfItem;
+	/** null if the link sensor is used */
+	private Id<Lane>[] laneOfItem;
+	/** the monitored distance, or the length of the link/lane if it is shorter */
+	private double[] monitoredDistanceOfItem;
+	private boolean[] lengthExceptionOfItem;
+	/** false if the platoon sensor of a length exception was registered at distance zero, i.e. rule 3 can not be applied */
+	private boolean[] rule3FeasibleOfItem;
+	private int[] firstOutLinkOfGroup;
+	private int[] outLinksOfGroup;
+	private Id<Link>[] outLinkIds;
+	/** the next link, if the out-link is too short to be monitored alone; null otherwise */
+	private Id<Link>[] nextLinkOfOutLink;
+	/** true if the out-link is too short and has no unique next link; it is never considered jammed then */
+	private boolean[] unmonitoredOutLink;
+	private double[] storageCapOfOutLink;
+	
+	// state per group (by group index) and per out-link
+	private int[] approachingVehicles;
+	private double[] counter;
+	private boolean[] jammedGroup;
+	private boolean[] jammedOutLink;
+	private int numberOfJammedGroups;
+	private int numberOfGroupsWithoutApproachingVehicles;
+	private int activeGroup = NO_GROUP;
+	
 	
 	private GershensonSignalController(Scenario scenario, LinkSensorManager sensorManager, GershensonConfig gershensonConfig) {
 		this.scenario = scenario;
@@ -400,32 +440,33 @@ public class GershensonSignalController implements SignalController {
 	 * 			1. if not: -> everything was red -> schedule Onset for Signalgroup
 	 * 			2. if yes: -> another group was active -> schedule drop for the old group and Onset for the new group								
 	*/
-	private void switchlight(SignalGroup group, double timeSeconds) {
-		if (group.getState() == null) {
-			counter.put(group.getId(), 0.);
-			activeSignalGroup = null;
-			this.system.scheduleDropping(timeSeconds, group.getId());
+	private void switchlight(int group, double timeSeconds) {
+		SignalGroupState state = groups[group].getState();
+		if (state == null) {
+			counter[group] = 0.;
+			activeGroup = NO_GROUP;
+			this.system.scheduleDropping(timeSeconds, groups[group].getId());
 			timeactivegroup = 0.;
 		} else {
-			if (group.equals(activeSignalGroup) || group.getState().equals(SignalGroupState.GREEN)){
-				counter.put(group.getId(), 0.);
-				this.system.scheduleDropping(timeSeconds, group.getId());
-				activeSignalGroup = null;
+			if (group == activeGroup || state.equals(SignalGroupState.GREEN)){
+				counter[group] = 0.;
+				this.system.scheduleDropping(timeSeconds, groups[group].getId());
+				activeGroup = NO_GROUP;
 				timeactivegroup = 0.;
 			} else {
-				if (activeSignalGroup==null) {
-					this.system.scheduleOnset(timeSeconds + gershensonConfig.getInterGreenTime(), group.getId());
-					activeSignalGroup = group;
+				if (activeGroup == NO_GROUP) {
+					this.system.scheduleOnset(timeSeconds + gershensonConfig.getInterGreenTime(), groups[group].getId());
+					activeGroup = group;
 					timeactivegroup = -gershensonConfig.getInterGreenTime();
-					counter.put(group.getId(), 0.);
+					counter[group] = 0.;
 				} else {
-					this.system.scheduleDropping(timeSeconds, activeSignalGroup.getId());
-					counter.put(activeSignalGroup.getId(), 0.);
+					this.system.scheduleDropping(timeSeconds, groups[activeGroup].getId());
+					counter[activeGroup] = 0.;
 					
-					this.system.scheduleOnset(timeSeconds + gershensonConfig.getInterGreenTime(), group.getId());
-					activeSignalGroup = group;
+					this.system.scheduleOnset(timeSeconds + gershensonConfig.getInterGreenTime(), groups[group].getId());
+					activeGroup = group;
 					timeactivegroup = -gershensonConfig.getInterGreenTime();
-					counter.put(group.getId(), 0.);
+					counter[group] = 0.;
 				}
 			}
 		}
@@ -439,7 +480,7 @@ public class GershensonSignalController implements SignalController {
 		for(SignalGroup group : this.system.getSignalGroups().values()) {
 			system.scheduleDropping(now, group.getId());
 		}
-		activeSignalGroup = null;
+		activeGroup = NO_GROUP;
 	}
 		
 	/**
@@ -485,190 +526,276 @@ public class GershensonSignalController implements SignalController {
 	
 	
 //	This tests rule 3: Only a few agents are left to pass -> don't switch
-	private Boolean rule3Tester(SignalGroup signalGroup, double time) {
-		Boolean VehInR = false;
-		for (Signal signal : signalGroup.getSignals().values()) {
-			if(VehInR) return VehInR;
-			LanesToLinkAssignment lanes4link = scenario.getLanes().getLanesToLinkAssignments().get(signal.getLinkId());
- 
-			if (signal.getLaneIds()==null||signal.getLaneIds().isEmpty()||lanes4link.getLanes().size()<=1.){
-				if(!VehInR) {
-//					There are Link-Sensor-Exceptions ie. a lane was to short for the suggested monitored distances by Gershenson
-					if (signalGroupIdMetadataMap.get(signalGroup.getId()).getInLinkLengthExceptions().containsKey(signal.getLinkId())){
-						double lengthOfLink = signalGroupIdMetadataMap.get(signalGroup.getId()).getInLinkLengthExceptions().get(signal.getLinkId());
-//						If this is not the case the Platoon-Sensor was registered at distance zero so Rule 3 is not feasable here
-						if(lengthOfLink>=gershensonConfig.getMonitoredPlatoonTail()+gershensonConfig.getLengthOfPlatoonTails()*this.scenario.getConfig().jdeqSim().getCarSize()){
-							int numberVehiclesInShortDistance = sensorManager.getNumberOfCarsInDistance(signal.getLinkId(), gershensonConfig.getMonitoredPlatoonTail(), time);
-//							If there are only a few cars left to pass don't switch
-//								(The difference of the sensor must be zero i.e behind that monitored distance are no other cars anymore)
-							if(numberVehiclesInShortDistance <= gershensonConfig.getLengthOfPlatoonTails() && 
-									numberVehiclesInShortDistance > 0 &&
-									numberVehiclesInShortDistance - sensorManager.getNumberOfCarsInDistance(signal.getLinkId(), lengthOfLink, time) == 0
-									) {
-								VehInR = true;
-								break;
-							}
-						}
-//				No LinkSensor-Exceptions:	
-					} else {
-						int numberVehiclesInShortDistance = sensorManager.getNumberOfCarsInDistance(signal.getLinkId(), gershensonConfig.getMonitoredPlatoonTail(), time);
-						if(numberVehiclesInShortDistance < gershensonConfig.getLengthOfPlatoonTails() && 
-								numberVehiclesInShortDistance > 0 &&
-								numberVehiclesInShortDistance - sensorManager.getNumberOfCarsInDistance(signal.getLinkId(), gershensonConfig.getMonitoredDistance(), time) == 0
-								) {
-							VehInR = true;
-							break;
-						}
-					}
-				}
-			} else {
-				if(!VehInR) {
-					for(Id<Lane> laneId : signal.getLaneIds()){
-						//There are Link-Sensor-Exceptions ie. a lane was to short for the suggested monitored distances by Gershenson
-						if(signalGroupIdMetadataMap.get(signalGroup.getId()).getInLanesLengthExceptions().containsKey(laneId)){
-							double lengthOfLane = signalGroupIdMetadataMap.get(signalGroup.getId()).getInLanesLengthExceptions().get(laneId);
-//							If this is not the case the Platoon-Sensor was registered at distance zero so Rule 3 is not feasable here
-							if(lengthOfLane>=gershensonConfig.getMonitoredPlatoonTail()+gershensonConfig.getLengthOfPlatoonTails()*this.scenario.getConfig().jdeqSim().getCarSize()){
-								int numberVehiclesInShortDistance = sensorManager.getNumberOfCarsInDistanceOnLane(signal.getLinkId(), laneId,gershensonConfig.getMonitoredPlatoonTail(), time);
-//								If there are only a few cars left to pass don't switch
-//								(The difference of the sensor must be zero i.e behind that monitored distance are no other cars anymore)
-								if(numberVehiclesInShortDistance <= gershensonConfig.getLengthOfPlatoonTails() && 
-										numberVehiclesInShortDistance > 0 &&
-										numberVehiclesInShortDistance - sensorManager.getNumberOfCarsInDistanceOnLane(signal.getLinkId(), laneId, lengthOfLane , time) == 0
-								){
-									VehInR = true;
-									break;
-								}
-							}
-							
-						//No LinkSensor-Exceptions:	
-						}else{
-							int numberVehiclesInShortDistance = sensorManager.getNumberOfCarsInDistanceOnLane(signal.getLinkId(), laneId,gershensonConfig.getMonitoredPlatoonTail(), time);
-							if(numberVehiclesInShortDistance < gershensonConfig.getLengthOfPlatoonTails() && 
-									numberVehiclesInShortDistance > 0 &&
-									numberVehiclesInShortDistance - sensorManager.getNumberOfCarsInDistanceOnLane(signal.getLinkId(), laneId,  gershensonConfig.getMonitoredDistance(), time) == 0
-							){
-								VehInR = true;
-								break;
-							}
-						}
-					}
+	private boolean rule3Tester(int group, double time) {
+		for (int signal = firstSignalOfGroup[group]; signal < firstSignalOfGroup[group + 1]; signal++) {
+			for (int item = firstItemOfSignal[signal]; item < firstItemOfSignal[signal + 1]; item++) {
+//				If the Platoon-Sensor was registered at distance zero Rule 3 is not feasable here
+				if (!rule3FeasibleOfItem[item]) continue;
+				int numberVehiclesInShortDistance = getNumberOfCarsInDistance(item, gershensonConfig.getMonitoredPlatoonTail(), time);
+//				If there are only a few cars left to pass don't switch
+//					(The difference of the sensor must be zero i.e behind that monitored distance are no other cars anymore)
+//				There are Link-Sensor-Exceptions ie. a lane was to short for the suggested monitored distances by Gershenson
+				if (isPlatoonTail(numberVehiclesInShortDistance, getNumberOfCarsInDistance(item, monitoredDistanceOfItem[item], time),
+						lengthExceptionOfItem[item], gershensonConfig.getLengthOfPlatoonTails())) {
+					return true;
 				}
 			}
 		}
-		return VehInR;
+		return false;
+	}
+	
+	/**
+	 * @param vehiclesInShortDistance vehicles within the monitored platoon tail
+	 * @param vehiclesInMonitoredDistance vehicles within the monitored distance (or the length of the link/lane for length exceptions)
+	 * @param lengthException whether the link/lane is shorter than the monitored distance; then a platoon tail may have the full length
+	 * @return true if there are vehicles, all of them are within the platoon tail and there are less than (or, for length exceptions,
+	 * at most) lengthOfPlatoonTails of them
+	 */
+	static boolean isPlatoonTail(int vehiclesInShortDistance, int vehiclesInMonitoredDistance, boolean lengthException, int lengthOfPlatoonTails) {
+		boolean fewVehicles = lengthException ? vehiclesInShortDistance <= lengthOfPlatoonTails : vehiclesInShortDistance < lengthOfPlatoonTails;
+		return fewVehicles && vehiclesInShortDistance > 0 && vehiclesInShortDistance - vehiclesInMonitoredDistance == 0;
+	}
+	
+	private int getNumberOfCarsInDistance(int item, double distance, double time) {
+		if (laneOfItem[item] == null) {
+			return sensorManager.getNumberOfCarsInDistance(linkOfItem[item], distance, time);
+		} else {
+			return sensorManager.getNumberOfCarsInDistanceOnLane(linkOfItem[item], laneOfItem[item], distance, time);
+		}
 	}
 	
 	/**
 	 * Method that will be called to monitor the current traffic situation in each simulation timestep
 	 */
 	private void updateMonitoredTraffic(double now){
-		jammedSignalGroup.clear();
-		jammedOutLinkMap.clear();
-		approachingVehiclesGroupMap.clear();
-//----------------------------------------------------------------------------------
-		for (SignalGroup group : this.system.getSignalGroups().values()){
-//------------------------------- Fills approachingVehiclesGroupMap, monitor approaching cars for a signal group
-			if (!approachingVehiclesGroupMap.containsKey(group.getId())) {
-				approachingVehiclesGroupMap.put(group.getId(), new Integer(0));
-			}
-			int carsapproaching = 0;
-			for (Signal signal : group.getSignals().values()) {
-				LanesToLinkAssignment lanes4link = scenario.getLanes().getLanesToLinkAssignments().get(signal.getLinkId());
-
-				int agents = 0;
-				if (signal.getLaneIds()==null||signal.getLaneIds().isEmpty()||lanes4link.getLanes().size()<=1.){
-//			There are Link Exceptions
-					if(signalGroupIdMetadataMap.get(group.getId()).getInLinkLengthExceptions().containsKey(signal.getLinkId())){
-						agents = this.sensorManager.getNumberOfCarsInDistance(signal.getLinkId(), signalGroupIdMetadataMap.get(group.getId()).getInLinkLengthExceptions().get(signal.getLinkId()), now); 
-//			There are no Link-Exceptions	
-					} else {
-						agents = this.sensorManager.getNumberOfCarsInDistance(signal.getLinkId(),gershensonConfig.getMonitoredDistance(), now); 
+//-------------------------------Fills jammedOutLink (is using the idea of droeder); every out-link once, even if it belongs to several groups
+		for (int outLink = 0; outLink < outLinkIds.length; outLink++) {
+			boolean jammed = false;
+			if (unmonitoredOutLink[outLink]) {
+				// the out-link is too short and there is no unique next link
+			} else if (nextLinkOfOutLink[outLink] == null) {
+				if (this.sensorManager.getNumberOfCarsOnLink(outLinkIds[outLink]) > (storageCapOfOutLink[outLink] * gershensonConfig.getStorageCapacityOutlinkJam())){
+					jammed = true;
+				}
+			} else {
+				if (storageCapOfOutLink[outLink] > 0){
+					int carsOnBothLinks = this.sensorManager.getNumberOfCarsOnLink(outLinkIds[outLink]) + this.sensorManager.getNumberOfCarsOnLink(nextLinkOfOutLink[outLink]);
+					if (carsOnBothLinks > (storageCapOfOutLink[outLink] * gershensonConfig.getStorageCapacityOutlinkJam())){
+						jammed = true;
 					}
-						
 				} else {
-					for (Id<Lane> laneId : signal.getLaneIds()){
-//						There are Lane-Exceptions	
-						if(signalGroupIdMetadataMap.get(group.getId()).getInLanesLengthExceptions().containsKey(laneId)){
-							agents += this.sensorManager.getNumberOfCarsInDistanceOnLane(signal.getLinkId(), laneId ,signalGroupIdMetadataMap.get(group.getId()).getInLanesLengthExceptions().get(laneId), now);
-//						Normal Case - No Length of Lane Exception
-						} else {
-							agents += this.sensorManager.getNumberOfCarsInDistanceOnLane(signal.getLinkId(), laneId ,gershensonConfig.getMonitoredDistance(), now);
-						}
-						
+					if (this.sensorManager.getNumberOfCarsOnLink(outLinkIds[outLink]) >= 1){
+						jammed = true;
 					}
 				}
-//				Since Matsim is stucking agents on top of each other, just add the maximal possible numer of agents
-				if(maximalNumberOfAgentsInDistanceMap.get(signal.getId()) < agents){
-					carsapproaching += maximalNumberOfAgentsInDistanceMap.get(signal.getId());
-				} else {
-					carsapproaching += agents;
+			}
+			jammedOutLink[outLink] = jammed;
+		}
+		
+		numberOfJammedGroups = 0;
+		numberOfGroupsWithoutApproachingVehicles = 0;
+		for (int group = 0; group < groups.length; group++){
+//------------------------------- Fills approachingVehicles, monitor approaching cars for a signal group
+			int carsapproaching = 0;
+			for (int signal = firstSignalOfGroup[group]; signal < firstSignalOfGroup[group + 1]; signal++) {
+				int agents = 0;
+				for (int item = firstItemOfSignal[signal]; item < firstItemOfSignal[signal + 1]; item++) {
+					agents += getNumberOfCarsInDistance(item, monitoredDistanceOfItem[item], now);
 				}
+//				Since Matsim is stucking agents on top of each other, just add the maximal possible numer of agents
+				carsapproaching += Math.min(agents, maximalNumberOfAgentsOfSignal[signal]);
 			}
-			approachingVehiclesGroupMap.put(group.getId(), carsapproaching);
+			approachingVehicles[group] = carsapproaching;
+			if (carsapproaching == 0) numberOfGroupsWithoutApproachingVehicles++;
 
 //-------------------------------Fills counter
-		if (approachingVehiclesGroupMap.containsKey(group.getId())){
-			if (!counter.containsKey(group.getId())){
-				counter.put(group.getId(), 0.);
-			}			
-			if (group.getState() != null ||activeSignalGroup!=null){
-				if (group.getState().equals((SignalGroupState.RED))){
-					counter.put(group.getId(), counter.get(group.getId()) + new Double(approachingVehiclesGroupMap.get(group.getId())));
+			if (groups[group].getState() != null || activeGroup != NO_GROUP){
+				if (groups[group].getState().equals((SignalGroupState.RED))){
+					counter[group] += carsapproaching;
 				} 
 			}
-		}
 
-////-------------------------------Fills jammedOutLinkMap (is using the idea of droeder)
-			SignalGroupMetadata metadata = signalGroupIdMetadataMap.get(group.getId());
-			if (!jammedOutLinkMap.containsKey(group.getId())) {
-				jammedOutLinkMap.put(group.getId(), new HashMap<Id<Link>,Boolean>());
+//-------------------------------Fills jammedGroup
+			boolean jammed = false;
+			for (int i = firstOutLinkOfGroup[group]; i < firstOutLinkOfGroup[group + 1]; i++) {
+				if (jammedOutLink[outLinksOfGroup[i]]) {
+					jammed = true;
+					break;
+				}
 			}
-
-			for (Link link : metadata.getOutLinks()) {
-								
-				boolean jammed = false;
-				if(!metadata.getOutLinkExceptionNextLink().containsKey(link)){
-					double storageCap = ((link.getLength()- gershensonConfig.getMinmumDistanceBehindIntersection()) * link.getNumberOfLanes()) / (this.scenario.getConfig().jdeqSim().getCarSize() * this.scenario.getConfig().qsim().getStorageCapFactor());
-					
-					if (this.sensorManager.getNumberOfCarsOnLink(link.getId()) > (storageCap * gershensonConfig.getStorageCapacityOutlinkJam())){
-						jammed = true;
-					}	
+			jammedGroup[group] = jammed;
+			if (jammed) numberOfJammedGroups++;
+		}
+//---------------------------Set Boolean thereAreVehiclesApproaching
+		thereAreVehiclesApproaching = numberOfGroupsWithoutApproachingVehicles < groups.length;
+	}
+	
+	/**
+	 * Builds the compiled representation (dense indices and state arrays) of the signal system from the metadata and the registered
+	 * sensors, such that an update step does not need any map lookups.
+	 */
+	@SuppressWarnings("unchecked")
+	private void compileStateTables() {
+		final double carSize = this.scenario.getConfig().jdeqSim().getCarSize();
+		final double storageCapFactor = this.scenario.getConfig().qsim().getStorageCapFactor();
+		
+		List<SignalGroup> groupList = new ArrayList<>(this.system.getSignalGroups().values());
+		int numberOfSignals = 0;
+		for (SignalGroup group : groupList) {
+			numberOfSignals += group.getSignals().size();
+		}
+		this.groups = groupList.toArray(new SignalGroup[groupList.size()]);
+		this.firstSignalOfGroup = new int[groups.length + 1];
+		this.maximalNumberOfAgentsOfSignal = new int[numberOfSignals];
+		this.firstItemOfSignal = new int[numberOfSignals + 1];
+		this.firstOutLinkOfGroup = new int[groups.length + 1];
+		
+		List<Id<Link>> itemLinks = new ArrayList<>();
+		List<Id<Lane>> itemLanes = new ArrayList<>();
+		List<Double> itemDistances = new ArrayList<>();
+		List<Boolean> itemExceptions = new ArrayList<>();
+		List<Link> outLinks = new ArrayList<>();
+		Map<Link, Integer> indexOfOutLink = new HashMap<>();
+		List<Integer> outLinksOfGroupList = new ArrayList<>();
+		
+		int signalIndex = 0;
+		for (int group = 0; group < groups.length; group++) {
+			SignalGroupMetadata metadata = this.signalGroupIdMetadataMap.get(groups[group].getId());
+			firstSignalOfGroup[group] = signalIndex;
+			for (Signal signal : groups[group].getSignals().values()) {
+				maximalNumberOfAgentsOfSignal[signalIndex] = maximalNumberOfAgentsInDistanceMap.get(signal.getId());
+				firstItemOfSignal[signalIndex] = itemLinks.size();
+				LanesToLinkAssignment lanes4link = scenario.getLanes().getLanesToLinkAssignments().get(signal.getLinkId());
+				if (signal.getLaneIds()==null||signal.getLaneIds().isEmpty()||lanes4link.getLanes().size()<=1.){
+					itemLinks.add(signal.getLinkId());
+					itemLanes.add(null);
+					Double lengthOfLink = metadata.getInLinkLengthExceptions().get(signal.getLinkId());
+					itemDistances.add(lengthOfLink != null ? lengthOfLink : gershensonConfig.getMonitoredDistance());
+					itemExceptions.add(lengthOfLink != null);
 				} else {
-					if (metadata.getOutLinkExceptionNextLink().get(link)!=null){
-						Link nextLink = metadata.getOutLinkExceptionNextLink().get(link);
-						int carsOnBothLinks = this.sensorManager.getNumberOfCarsOnLink(link.getId()) + this.sensorManager.getNumberOfCarsOnLink(nextLink.getId());
-						double length = link.getLength()+ nextLink.getLength();
-						double storageCap = ((length- gershensonConfig.getMinmumDistanceBehindIntersection())) / (this.scenario.getConfig().jdeqSim().getCarSize() * this.scenario.getConfig().qsim().getStorageCapFactor());
-						
-						if (storageCap>0){
-							if (carsOnBothLinks > (storageCap * gershensonConfig.getStorageCapacityOutlinkJam())){
-								jammed = true;
-							}						
-						} else {
-							if (this.sensorManager.getNumberOfCarsOnLink(link.getId()) >= 1){
-								jammed = true;
-							}
-						}	
+					for (Id<Lane> laneId : signal.getLaneIds()) {
+						itemLinks.add(signal.getLinkId());
+						itemLanes.add(laneId);
+						Double lengthOfLane = metadata.getInLanesLengthExceptions().get(laneId);
+						itemDistances.add(lengthOfLane != null ? lengthOfLane : gershensonConfig.getMonitoredDistance());
+						itemExceptions.add(lengthOfLane != null);
 					}
 				}
-				jammedOutLinkMap.get(group.getId()).put(link.getId(), jammed);
+				signalIndex++;
 			}
-//-------------------------------Fills jammedSignalGroup
-			boolean jammedGroup = false;
-			if (jammedOutLinkMap.get(group.getId()) != null){
-				if(jammedOutLinkMap.get(group.getId()).containsValue(true)) jammedGroup = true;
+			firstOutLinkOfGroup[group] = outLinksOfGroupList.size();
+			for (Link outLink : metadata.getOutLinks()) {
+				Integer outLinkIndex = indexOfOutLink.get(outLink);
+				if (outLinkIndex == null) {
+					outLinkIndex = outLinks.size();
+					indexOfOutLink.put(outLink, outLinkIndex);
+					outLinks.add(outLink);
+				}
+				outLinksOfGroupList.add(outLinkIndex);
 			}
-			jammedSignalGroup.put(group.getId(), jammedGroup);		
 		}
-//---------------------------Set Boolean thereAreVehiclesApproaching
-		Boolean approach = false;
-		for (Id<SignalGroup> signalGroupId : approachingVehiclesGroupMap.keySet()) {
-			if(!approach && approachingVehiclesGroupMap.get(signalGroupId).compareTo(0)!=0) {
-				approach = true;
+		firstSignalOfGroup[groups.length] = signalIndex;
+		firstItemOfSignal[numberOfSignals] = itemLinks.size();
+		firstOutLinkOfGroup[groups.length] = outLinksOfGroupList.size();
+		
+		int numberOfItems = itemLinks.size();
+		this.linkOfItem = itemLinks.toArray(new Id[numberOfItems]);
+		this.laneOfItem = itemLanes.toArray(new Id[numberOfItems]);
+		this.monitoredDistanceOfItem = new double[numberOfItems];
+		this.lengthExceptionOfItem = new boolean[numberOfItems];
+		this.rule3FeasibleOfItem = new boolean[numberOfItems];
+		for (int item = 0; item < numberOfItems; item++) {
+			monitoredDistanceOfItem[item] = itemDistances.get(item);
+			lengthExceptionOfItem[item] = itemExceptions.get(item);
+			rule3FeasibleOfItem[item] = !lengthExceptionOfItem[item] || monitoredDistanceOfItem[item] >= 
+					gershensonConfig.getMonitoredPlatoonTail() + gershensonConfig.getLengthOfPlatoonTails() * carSize;
+		}
+		
+		this.outLinksOfGroup = new int[outLinksOfGroupList.size()];
+		for (int i = 0; i < outLinksOfGroup.length; i++) {
+			outLinksOfGroup[i] = outLinksOfGroupList.get(i);
+		}
+		this.outLinkIds = new Id[outLinks.size()];
+		this.nextLinkOfOutLink = new Id[outLinks.size()];
+		this.unmonitoredOutLink = new boolean[outLinks.size()];
+		this.storageCapOfOutLink = new double[outLinks.size()];
+		for (int outLink = 0; outLink < outLinks.size(); outLink++) {
+			Link link = outLinks.get(outLink);
+			outLinkIds[outLink] = link.getId();
+			// the exceptions are the same in all metadata, since they only depend on the link
+			SignalGroupMetadata metadata = null;
+			for (SignalGroupMetadata m : this.signalGroupIdMetadataMap.values()) {
+				if (m.getOutLinks().contains(link)) {
+					metadata = m;
+					break;
+				}
+			}
+			if (!metadata.getOutLinkExceptionNextLink().containsKey(link)) {
+				storageCapOfOutLink[outLink] = ((link.getLength()- gershensonConfig.getMinmumDistanceBehindIntersection()) * link.getNumberOfLanes()) / (carSize * storageCapFactor);
+			} else if (metadata.getOutLinkExceptionNextLink().get(link) != null) {
+				Link nextLink = metadata.getOutLinkExceptionNextLink().get(link);
+				nextLinkOfOutLink[outLink] = nextLink.getId();
+				storageCapOfOutLink[outLink] = ((link.getLength() + nextLink.getLength() - gershensonConfig.getMinmumDistanceBehindIntersection())) / (carSize * storageCapFactor);
+			} else {
+				unmonitoredOutLink[outLink] = true;
+			}
+		}
+		
+		this.approachingVehicles = new int[groups.length];
+		this.counter = new double[groups.length];
+		this.jammedGroup = new boolean[groups.length];
+		this.jammedOutLink = new boolean[outLinks.size()];
+		this.activeGroup = NO_GROUP;
+	}
+	
+	/**
+	 * @return the index of the group with the highest counter among the groups that are not jammed (the first one, if several have the
+	 * highest counter)
+	 */
+	static int findNonJammedGroupWithHighestCounter(double[] counter, boolean[] jammedGroup) {
+		int changerGroup = NO_GROUP;
+		for (int group = 0; group < counter.length; group++) {
+			if (!jammedGroup[group] && (changerGroup == NO_GROUP || counter[group] > counter[changerGroup])) {
+				changerGroup = group;
+			}
+		}
+		return changerGroup;
+	}
+	
+	/**
+	 * Rule 4: starts with the first group (even if it is the active one) and takes a group with a higher counter, which is not active.
+	 * 
+	 * @return the index of the group to switch, NO_GROUP if there are no groups
+	 */
+	static int findRule4Group(double[] counter, int activeGroup) {
+		int changerGroup = NO_GROUP;
+		for (int group = 0; group < counter.length; group++) {
+			if (changerGroup == NO_GROUP){
+				changerGroup = group;
+			} else {
+				if (counter[group] > counter[changerGroup] && group != activeGroup){
+					changerGroup = group;
+				}
 			}
 		}
-		thereAreVehiclesApproaching = approach;
+		return changerGroup;
+	}
+	
+	/**
+	 * Rule 1: the group with the highest counter above the threshold, that is not active (the first one, if several have the highest counter).
+	 * 
+	 * @return the index of the group to switch, NO_GROUP if no other group has reached the threshold
+	 */
+	static int findRule1Group(double[] counter, int activeGroup, double threshold) {
+		int changerGroup = NO_GROUP;
+		for (int group = 0; group < counter.length; group++) {										
+			if (group != activeGroup && counter[group] > threshold) {
+				if (changerGroup == NO_GROUP || counter[group] > counter[changerGroup]){
+					changerGroup = group;
+				}
+			}
+		}
+		return changerGroup;
 	}
 	
 	/**
@@ -682,6 +809,7 @@ public class GershensonSignalController implements SignalController {
 		registerAndInitializeSensorManager();
 		
 		if (gershensonConfig.getSignalSystemDependendThreshold()) setThresholdfromCycleTime();
+		compileStateTables();
 	}
 	
 	
@@ -693,9 +821,9 @@ public class GershensonSignalController implements SignalController {
 		
 //		Only run through the ruleset if there is no active Signalgroup (i.e. all are RED) or if the activeSignal-Group is Green
 //		 -> If the active Signalgroup is Red it should be due to the intergreen time				
-		if( activeSignalGroup ==null|| activeSignalGroup.getState().equals(SignalGroupState.GREEN)) {
+		if( activeGroup == NO_GROUP || groups[activeGroup].getState().equals(SignalGroupState.GREEN)) {
 //			add one second to the timecounter of the active group
-			if(activeSignalGroup!=null) timeactivegroup++; 
+			if(activeGroup != NO_GROUP) timeactivegroup++; 
 //			 Get the current traffic situation which is needed before going through the rule set	
 			updateMonitoredTraffic(timeSeconds);
 
@@ -706,70 +834,32 @@ public class GershensonSignalController implements SignalController {
 //		no Cars approaching the SignalSystem.
 //			-> turn all signals to RED	
 			
-			if (!jammedSignalGroup.containsValue(false)  || (!thereAreVehiclesApproaching)) {
-					if (activeSignalGroup != null) switchlight(activeSignalGroup,timeSeconds);
+			if (numberOfJammedGroups == groups.length || (!thereAreVehiclesApproaching)) {
+					if (activeGroup != NO_GROUP) switchlight(activeGroup,timeSeconds);
 			} else {
 //		Rule 5
 //		At least one Outlink is jammed - from all groups, which are not jammed turn the one with the highest counter to GREEN
 //		the others to RED
 //		The switchlightCounter ensures that the activeSignalGroup is set to null if necessary
-				if (jammedSignalGroup.containsValue(true) && activeSignalGroup !=null) {
-					SignalGroup changerGroup = null;
-					for (SignalGroup group : this.system.getSignalGroups().values()) {
-						if (!jammedSignalGroup.get(group.getId())){
-							if (changerGroup==null){
-								changerGroup = group;
-							} else {
-								if (counter.get(group.getId())> counter.get(changerGroup.getId())){
-									changerGroup = group;
-								}
-							}
-						}
-					}
-					if (!changerGroup.equals(activeSignalGroup)) switchlight(changerGroup,timeSeconds);
+				if (numberOfJammedGroups > 0 && activeGroup != NO_GROUP) {
+					int changerGroup = findNonJammedGroupWithHighestCounter(counter, jammedGroup);
+					if (changerGroup != activeGroup) switchlight(changerGroup,timeSeconds);
 				} else {
 //		Complement to Rule 6
 //		All Signals are RED, but there is no jam on Outlinks anymore. Restore a single Green for the Group with the highest count
-					if (activeSignalGroup==null) {
-						if (jammedSignalGroup.containsValue(false)){
-							SignalGroup changerGroup = null;
-							for (SignalGroup group : this.system.getSignalGroups().values()) {
-								if (!jammedSignalGroup.get(group.getId())){
-									if (changerGroup==null){
-										changerGroup = group;
-									} else {
-										if (counter.get(group.getId())> counter.get(changerGroup.getId())){
-											changerGroup = group;
-										}
-									}
-								}
-							}
-							switchlight(changerGroup,timeSeconds);
-						}				
+					if (activeGroup == NO_GROUP) {
+						// not all groups are jammed here (see rule 6)
+						switchlight(findNonJammedGroupWithHighestCounter(counter, jammedGroup),timeSeconds);
 					} else {
 //		Rule 4
 //		One Group has GREEN but no cars approaching and another group has RED and Cars approaching (switch them)
-						if(approachingVehiclesGroupMap.containsValue(0) && thereAreVehiclesApproaching && activeSignalGroup!=null && approachingVehiclesGroupMap.get(activeSignalGroup.getId())==0) {		
-							if(approachingVehiclesGroupMap.get(activeSignalGroup.getId())==0){
-								SignalGroup changerGroup = null;
-								for (SignalGroup group : this.system.getSignalGroups().values()) {
-									if (changerGroup==null && !activeSignalGroup.equals(changerGroup)){
-										changerGroup = group;
-									} else {
-										if (counter.get(group.getId())> counter.get(changerGroup.getId()) && !group.equals(activeSignalGroup) ){
-											changerGroup = group;
-										}
-									}																	
-								}
-								if (!(changerGroup==null)) switchlight(changerGroup,timeSeconds);	
-							}	
+						if(numberOfGroupsWithoutApproachingVehicles > 0 && thereAreVehiclesApproaching && approachingVehicles[activeGroup]==0) {		
+							int changerGroup = findRule4Group(counter, activeGroup);
+							if (changerGroup != NO_GROUP) switchlight(changerGroup,timeSeconds);	
 						} else {
 //		Rule 3
 //		A signal should switch from GREEN to RED (according to Rule 1 and 2), but there are just a few cars left to pass: Don't switch
-							boolean hasfewerThanMVehiclesInR= false;
-							if (rule3Tester(activeSignalGroup, timeSeconds) ){
-								hasfewerThanMVehiclesInR = true;
-							}
+							boolean hasfewerThanMVehiclesInR = rule3Tester(activeGroup, timeSeconds);
 //		Rule 2
 //		A signal should switch from GREEN to RED (according to Rule 1), but internal time of the Group hasn't reached
 //		the minimal green time yet - Dont't switch
@@ -779,19 +869,8 @@ public class GershensonSignalController implements SignalController {
 
 //		Rule 1	- if the the threshold is reached switch that signalgroup to GREEN							
 								if (minimumGreenTimereached) {
-									SignalGroup changerGroup = null;
-									for (SignalGroup group : this.system.getSignalGroups().values()) {										
-										if (!group.equals(activeSignalGroup) && counter.get(group.getId())>this.threshold) {
-											if (changerGroup==null){
-												changerGroup = group;
-											} else {
-												if (counter.get(group.getId())> counter.get(changerGroup.getId())){
-													changerGroup = group;
-												}
-											}
-										}
-									}
-									if (changerGroup!=null){
+									int changerGroup = findRule1Group(counter, activeGroup, this.threshold);
+									if (changerGroup != NO_GROUP){
 										switchlight(changerGroup,timeSeconds);
 									}
 								}			
@@ -20,12 +20,13 @@
 package signals.laemmerFlex;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.matsim.api.core.v01.Id;
@@ -51,6 +52,8 @@ import org.matsim.lanes.Lanes;
 
 import com.google.inject.Inject;
 
+import signals.parallelUpdate.ParallelSignalControllerUpdate;
+
 
 /**
  * @author tthunig, pschade based on LaemmerSignalController by nkuehnel
@@ -64,6 +67,7 @@ public final class FullyAdaptiveLaemmerSignalController extends AbstractSignalCo
 
 	Request activeRequest = null;
 	LinkSensorManager sensorManager;
+	final LaemmerSensorIndex sensorIndex;
 
 	DownstreamSensor downstreamSensor;
 
@@ -78,6 +82,12 @@ public final class FullyAdaptiveLaemmerSignalController extends AbstractSignalCo
 
 	private ArrayList<SignalPhase> signalPhases;
 	private List<LaemmerApproach> laemmerApproaches = new LinkedList<>();
+	
+	/* approaches and their current loads by approach index, such that a decision does not allocate */
+	private LaemmerApproach[] approaches;
+	private double[] approachLoads;
+	private boolean[] approachInRegulationPhase;
+	private LaemmerIdleTimeCalculator tIdleCalculator;
 	private Queue<LaemmerApproach> approachesForStabilization = new LinkedList<>();
 
 	private LaemmerPhase regulationPhase;
@@ -96,17 +106,29 @@ public final class FullyAdaptiveLaemmerSignalController extends AbstractSignalCo
 		@Inject private LinkSensorManager sensorManager;
 		@Inject private DownstreamSensor downstreamSensor;
 		@Inject private Scenario scenario;
+		@Inject(optional = true) private ParallelSignalControllerUpdate parallelUpdate;
+		private LaemmerSensorIndex sensorIndex;
 
 		@Override
 		public SignalController createSignalSystemController(SignalSystem signalSystem) {
-			SignalController controller = new FullyAdaptiveLaemmerSignalController(scenario, sensorManager, downstreamSensor);
+			if (sensorIndex == null || sensorIndex.getSensorManager() != sensorManager) {
+				sensorIndex = new LaemmerSensorIndex(sensorManager, ConfigUtils.addOrGetModule(scenario.getConfig(), LaemmerConfigGroup.class),
+						scenario.getNetwork().getLinks().size());
+			}
+			sensorIndex.controllerCreated();
+			SignalController controller = new FullyAdaptiveLaemmerSignalController(scenario, sensorManager, sensorIndex, downstreamSensor);
+			if (parallelUpdate != null) {
+				return parallelUpdate.wrap(controller, signalSystem);
+			}
 			controller.setSignalSystem(signalSystem);
 			return controller;
 		}
 	}
 
-	private FullyAdaptiveLaemmerSignalController(Scenario scenario, LinkSensorManager sensorManager, DownstreamSensor downstreamSensor) {
+	private FullyAdaptiveLaemmerSignalController(Scenario scenario, LinkSensorManager sensorManager, LaemmerSensorIndex sensorIndex,
+			DownstreamSensor downstreamSensor) {
 		this.sensorManager = sensorManager;
+		this.sensorIndex = sensorIndex;
 		this.network = scenario.getNetwork();
 		this.lanes = scenario.getLanes();
 		this.config = scenario.getConfig();
@@ -116,8 +138,8 @@ public final class FullyAdaptiveLaemmerSignalController extends AbstractSignalCo
 		try {
 			switch (laemmerConfig.getStabilizationStrategy()) {
 			case HEURISTIC:
+				// the signal combination tool is set in simulationInitialized, when it is created
 				this.stabilisator = new StabStratHeuristic(this, network, lanes);
-				((StabStratHeuristic) stabilisator).setSignalCombinationTool(this.signalCombinationConflicts);
 				break;
 			case USE_MAX_LANECOUNT:
 				this.stabilisator = new StabStratMaxLaneCount(this, network, lanes);
@@ -159,44 +181,74 @@ public final class FullyAdaptiveLaemmerSignalController extends AbstractSignalCo
 				}
 			}
 		}
+		this.approaches = laemmerApproaches.toArray(new LaemmerApproach[laemmerApproaches.size()]);
+		this.approachLoads = new double[approaches.length];
+		this.approachInRegulationPhase = new boolean[approaches.length];
+		int[] signalIndexOfApproach = new int[approaches.length];
+		Map<Id<Signal>, Integer> indexOfSignal = new HashMap<>();
+		for (int i = 0; i < approaches.length; i++) {
+			Integer signalIndex = indexOfSignal.get(approaches[i].getSignal().getId());
+			if (signalIndex == null) {
+				signalIndex = indexOfSignal.size();
+				indexOfSignal.put(approaches[i].getSignal().getId(), signalIndex);
+			}
+			signalIndexOfApproach[i] = signalIndex;
+		}
+		this.tIdleCalculator = new LaemmerIdleTimeCalculator(signalIndexOfApproach, indexOfSignal.size(),
+				laemmerConfig.isDetermineMaxLoadForTIdleGroupedBySignals(), this.estNumOfPhases, laemmerConfig.getDesiredCycleTime(),
+				laemmerConfig.getIntergreenTime(), laemmerConfig.getMinGreenTime());
 		//sum the maximum n lanes for systems outflow maximum
 		maximumSystemsOutflowSum = maximumLaneOutflows.stream().sorted(Comparator.comparingDouble(Double::doubleValue).reversed()).limit(this.estNumOfPhases).collect(Collectors.summingDouble(Double::doubleValue));
 		// create all possible signal combinations based on conflict data
 		this.signalCombinationConflicts = new SignalCombinationBasedOnConflicts(signalsData, system, network, lanes);
-		this.signalPhases = signalCombinationConflicts.createSignalCombinations();
+		if (stabilisator instanceof StabStratHeuristic) {
+			((StabStratHeuristic) stabilisator).setSignalCombinationTool(this.signalCombinationConflicts);
+		}
 
 		if (laemmerConfig.isRemoveSubPhases()) {
-			this.signalPhases = LaemmerUtils.removeRedundantSubPhases(this.signalPhases);
-			if(debug)
+			// only the maximal phases are needed, which can be created directly
+			this.signalPhases = signalCombinationConflicts.createMaximalSignalCombinations();
+			if(debug) {
 				System.out.println("after remove subphases: " + this.signalPhases.size());
+				// regression check against the enumeration of all phases
+				List<Set<Id<SignalGroup>>> maximalPhases = new ArrayList<>();
+				for (SignalPhase phase : this.signalPhases)
+					maximalPhases.add(phase.getGreenSignalGroups());
+				List<Set<Id<SignalGroup>>> enumeratedPhases = new ArrayList<>();
+				for (SignalPhase phase : LaemmerUtils.removeRedundantSubPhases(signalCombinationConflicts.createSignalCombinations()))
+					enumeratedPhases.add(phase.getGreenSignalGroups());
+				if (!maximalPhases.equals(enumeratedPhases))
+					throw new RuntimeException("Maximal phases " + maximalPhases + " of signal system " + system.getId()
+							+ " differ from the enumerated phases " + enumeratedPhases);
+			}
+		} else {
+			this.signalPhases = signalCombinationConflicts.createSignalCombinations();
 		}
 
 		for (SignalPhase signalPhase : signalPhases) {
 			LaemmerPhase laemmerPhase = new LaemmerPhase(this, signalPhase);
 			laemmerPhases.add(laemmerPhase);
 		}
+		this.sensorIndex.controllerInitialized();
 	}
 
+	/**
+	 * Registers sensors on the links and lanes of this system's signals only; they are the only ones the approaches and phases read.
+	 * Links read by several controllers are registered once, see {@link LaemmerSensorIndex}.
+	 */
 	private void initializeSensoring() {
 		for (SignalGroup group : this.system.getSignalGroups().values()) {
 			for (Signal signal : group.getSignals().values()) {
 				if (signal.getLaneIds() != null && !(signal.getLaneIds().isEmpty())) {
 					for (Id<Lane> laneId : signal.getLaneIds()) {
-						this.sensorManager.registerNumberOfCarsOnLaneInDistanceMonitoring(signal.getLinkId(), laneId, 0.);
-						this.sensorManager.registerAverageNumberOfCarsPerSecondMonitoringOnLane(signal.getLinkId(), laneId, this.laemmerConfig.getLookBackTime(), this.laemmerConfig.getTimeBucketSize());
+						this.sensorIndex.registerLane(signal.getLinkId(), laneId);
 					}
 				}
 				//always register link in case only one lane is specified (-> no LaneEnter/Leave-Events?), xy
-				//moved this to next for-loop, unsure, if this is still needed, pschade Nov'17 
-				this.sensorManager.registerNumberOfCarsInDistanceMonitoring(signal.getLinkId(), 0.);
-				this.sensorManager.registerAverageNumberOfCarsPerSecondMonitoring(signal.getLinkId(), this.laemmerConfig.getLookBackTime(), this.laemmerConfig.getTimeBucketSize());
+				this.sensorIndex.registerLink(signal.getLinkId());
 			}
 		}
-		//moved here from above, pschade Nov'17
-		for (Link link : this.network.getLinks().values()) {
-			this.sensorManager.registerNumberOfCarsInDistanceMonitoring(link.getId(), 0.);
-			this.sensorManager.registerAverageNumberOfCarsPerSecondMonitoring(link.getId(), this.laemmerConfig.getLookBackTime(), this.laemmerConfig.getTimeBucketSize());
-		}
+		// registering all links of the network here (as before) is not necessary: only signal links are read.
 		if (laemmerConfig.isCheckDownstream()){
 			downstreamSensor.registerDownstreamSensors(system);
 		}
@@ -245,49 +297,16 @@ public final class FullyAdaptiveLaemmerSignalController extends AbstractSignalCo
 	 * @param now
 	 */
 	private void calculateTidle(double now) {
-		tIdle = laemmerConfig.getDesiredCycleTime();
-		//representive Lane for current selection
-		LaemmerApproach representiveLane = laemmerApproaches.parallelStream()
-				.filter(ll -> regulationPhase.getPhase().getGreenSignalGroups().contains(ll.getSignalGroup().getId()))
-				.max(Comparator.comparingDouble(LaemmerApproach::getDeterminingLoad).reversed())
-				.get();
-		tIdle -= Math.max(representiveLane.getDeterminingLoad() * laemmerConfig.getDesiredCycleTime() + laemmerConfig.getIntergreenTime(), laemmerConfig.getMinGreenTime());
-		//get all laemmerLanes and keep only the lanes which are not in the current phase
-		if (laemmerConfig.isDetermineMaxLoadForTIdleGroupedBySignals()) {
-			//implementation of grouping by values adapted from https://marcin-chwedczuk.github.io/grouping-using-java-8-streams
-			Collection<Double> maxLoadFromLaneForEachSignal = laemmerApproaches.parallelStream()
-					//filter by phases whos signalgroups are in current regulation phase
-					.filter(ll->!regulationPhase.getPhase().getGreenSignalGroups().contains(ll.getSignalGroup().getId()))
-					//grouping by signal and keeps the maximum determined load for each signal
-					.collect(Collectors.groupingBy(LaemmerApproach::getSignal,
-							Collectors.mapping(LaemmerApproach::getDeterminingLoad,
-									//collect the max values and unbox Doubles from Optional
-									Collectors.collectingAndThen(Collectors.maxBy(Double::compare), Optional::get))))
-					.values();
-			tIdle -= maxLoadFromLaneForEachSignal.parallelStream()
-					//sort the loads desc and keep only numOfPhases-1 values
-					.sorted(Comparator.reverseOrder())
-					.limit(this.estNumOfPhases-1)
-					//sum the parts of tIdle
-					.collect(Collectors.summingDouble(determinigLoad->
-					Math.max(determinigLoad * laemmerConfig.getDesiredCycleTime()+laemmerConfig.getIntergreenTime(),laemmerConfig.getMinGreenTime())
-							))
-					.doubleValue();
+		SignalPhase phase = regulationPhase.getPhase();
+		boolean phaseContainsApproach = false;
+		for (int i = 0; i < approaches.length; i++) {
+			approachInRegulationPhase[i] = phase.containsGreenSignalGroup(approaches[i].getSignalGroup().getId());
+			phaseContainsApproach |= approachInRegulationPhase[i];
 		}
-		else {
-			tIdle -= laemmerApproaches.parallelStream()
-					//filter by phases whos signalgroups are in current regulation phase
-					.filter(ll->!regulationPhase.getPhase().getGreenSignalGroups().contains(ll.getSignalGroup().getId()))
-					//sort by determining load and keep only the upper half of the list of lammerlanes
-					.sorted(Comparator.comparingDouble(LaemmerApproach::getDeterminingLoad).reversed())
-					.limit(this.estNumOfPhases-1)
-					//sum the parts of tIdle
-					.collect(Collectors.summingDouble(ll->
-					Math.max(ll.getDeterminingLoad() * laemmerConfig.getDesiredCycleTime()+laemmerConfig.getIntergreenTime(),laemmerConfig.getMinGreenTime())
-							))
-					.doubleValue();
+		if (!phaseContainsApproach) {
+			throw new RuntimeException("Regulation phase " + phase.getId() + " of signal system " + system.getId() + " does not contain any approach.");
 		}
-		tIdle = Math.max(0, tIdle);
+		tIdle = tIdleCalculator.calculateTidle(approachLoads, approachInRegulationPhase);
 	}
 
 	/**
@@ -368,9 +387,10 @@ public final class FullyAdaptiveLaemmerSignalController extends AbstractSignalCo
 		}
 
 		if(laemmerConfig.getActiveRegime().equals(Regime.COMBINED) || laemmerConfig.getActiveRegime().equals(Regime.STABILIZING)) {
-			for (LaemmerApproach l : laemmerApproaches) {
-				l.calcLoadAndArrivalrate(now);
-				l.updateStabilization(now);
+			for (int i = 0; i < approaches.length; i++) {
+				approaches[i].calcLoadAndArrivalrate(now);
+				approachLoads[i] = approaches[i].getDeterminingLoad();
+				approaches[i].updateStabilization(now);
 			}
 		}
 	}
@@ -408,8 +428,8 @@ public final class FullyAdaptiveLaemmerSignalController extends AbstractSignalCo
 					// links
 					boolean isAllDownstramLinksEmpty = true;
 					if (laemmerConfig.isCheckDownstream()) {
-						for (Id<SignalGroup> sg : phase.phase.getGreenSignalGroups()) {
-							isAllDownstramLinksEmpty &= downstreamSensor.allDownstreamLinksEmpty(system.getId(), sg);
+						for (int g = 0; g < phase.phase.getNumberOfGreenSignalGroups(); g++) {
+							isAllDownstramLinksEmpty &= downstreamSensor.allDownstreamLinksEmpty(system.getId(), phase.phase.getGreenSignalGroup(g).getId());
 						}
 					}
 					if (isAllDownstramLinksEmpty) {
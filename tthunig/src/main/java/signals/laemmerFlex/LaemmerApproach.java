@@ -38,7 +38,7 @@ class LaemmerApproach {
 			this.maximumOutflow = physicalLane.getCapacityVehiclesPerHour() * this.fullyAdaptiveLaemmerSignalController.config.qsim().getFlowCapFactor() / 3600;
 		else
 			this.maximumOutflow = this.link.getCapacity() * this.fullyAdaptiveLaemmerSignalController.config.qsim().getFlowCapFactor() / 3600;
-		this.fullyAdaptiveLaemmerSignalController.sensorManager.registerAverageNumberOfCarsPerSecondMonitoring(signal.getLinkId(), this.fullyAdaptiveLaemmerSignalController.getLaemmerConfig().getLookBackTime(), this.fullyAdaptiveLaemmerSignalController.getLaemmerConfig().getTimeBucketSize());
+		this.fullyAdaptiveLaemmerSignalController.sensorIndex.registerLink(signal.getLinkId());
 	}
 	
     public LaemmerApproach(Link link, SignalGroup signalGroup, Signal signal,
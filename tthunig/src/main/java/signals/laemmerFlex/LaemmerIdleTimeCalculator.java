@@ -0,0 +1,106 @@
+package signals.laemmerFlex;
+
+import java.util.Arrays;
+
+/**
+ * Computes tIdle of the stabilizing regime of the {@link FullyAdaptiveLaemmerSignalController} on primitive arrays by approach index,
+ * such that a decision does not allocate: the desired cycle time minus the green time of the approach with the lowest load in the
+ * regulation phase and minus the green times of the estimated number of phases - 1 highest loads of the other approaches (or, if
+ * grouped by signals, of the highest load of every other signal).
+ */
+final class LaemmerIdleTimeCalculator {
+
+	private final int[] signalIndexOfApproach;
+	private final boolean groupedBySignals;
+	private final int numberOfPhases;
+	private final double desiredCycleTime;
+	private final double intergreenTime;
+	private final double minGreenTime;
+
+	// scratch arrays
+	private final double[] maxLoadOfSignal;
+	private final boolean[] signalHasLoad;
+	private final double[] candidateLoads;
+
+	/**
+	 * @param signalIndexOfApproach index of the signal of every approach, in 0..numberOfSignals-1
+	 * @param numberOfPhases the estimated number of phases of the signal system
+	 */
+	LaemmerIdleTimeCalculator(int[] signalIndexOfApproach, int numberOfSignals, boolean groupedBySignals, int numberOfPhases,
+			double desiredCycleTime, double intergreenTime, double minGreenTime) {
+		this.signalIndexOfApproach = signalIndexOfApproach.clone();
+		this.groupedBySignals = groupedBySignals;
+		this.numberOfPhases = numberOfPhases;
+		this.desiredCycleTime = desiredCycleTime;
+		this.intergreenTime = intergreenTime;
+		this.minGreenTime = minGreenTime;
+		this.maxLoadOfSignal = new double[numberOfSignals];
+		this.signalHasLoad = new boolean[numberOfSignals];
+		this.candidateLoads = new double[signalIndexOfApproach.length];
+	}
+
+	/**
+	 * @param approachLoads determining load of every approach
+	 * @param approachInPhase whether the approach belongs to the regulation phase; at least one approach must
+	 */
+	double calculateTidle(double[] approachLoads, boolean[] approachInPhase) {
+		double tIdle = desiredCycleTime;
+		//representive Lane for current selection. note: this is the lane with the lowest load in the phase, as the former stream 
+		//implementation (max with reversed comparator) selected it
+		double representiveLoad = Double.NaN;
+		//get all laemmerLanes and keep only the lanes which are not in the current phase
+		int numberOfCandidates = 0;
+		if (groupedBySignals) {
+			//keep the maximum determined load for each signal
+			Arrays.fill(signalHasLoad, false);
+			for (int i = 0; i < approachLoads.length; i++) {
+				if (approachInPhase[i]) {
+					representiveLoad = Double.isNaN(representiveLoad) ? approachLoads[i] : Math.min(representiveLoad, approachLoads[i]);
+				} else {
+					int signalIndex = signalIndexOfApproach[i];
+					if (!signalHasLoad[signalIndex] || approachLoads[i] > maxLoadOfSignal[signalIndex]) {
+						maxLoadOfSignal[signalIndex] = approachLoads[i];
+						signalHasLoad[signalIndex] = true;
+					}
+				}
+			}
+			for (int signalIndex = 0; signalIndex < maxLoadOfSignal.length; signalIndex++) {
+				if (signalHasLoad[signalIndex]) {
+					candidateLoads[numberOfCandidates++] = maxLoadOfSignal[signalIndex];
+				}
+			}
+		} else {
+			for (int i = 0; i < approachLoads.length; i++) {
+				if (approachInPhase[i]) {
+					representiveLoad = Double.isNaN(representiveLoad) ? approachLoads[i] : Math.min(representiveLoad, approachLoads[i]);
+				} else {
+					candidateLoads[numberOfCandidates++] = approachLoads[i];
+				}
+			}
+		}
+		if (Double.isNaN(representiveLoad)) {
+			throw new IllegalArgumentException("The regulation phase does not contain any approach.");
+		}
+		tIdle -= greenTime(representiveLoad);
+		//partial selection sort: sum the parts of tIdle of the numOfPhases-1 highest loads, in descending order
+		int numberOfSummands = Math.min(Math.max(numberOfPhases - 1, 0), numberOfCandidates);
+		for (int j = 0; j < numberOfSummands; j++) {
+			int maxIndex = j;
+			for (int k = j + 1; k < numberOfCandidates; k++) {
+				if (candidateLoads[k] > candidateLoads[maxIndex]) {
+					maxIndex = k;
+				}
+			}
+			double determiningLoad = candidateLoads[maxIndex];
+			candidateLoads[maxIndex] = candidateLoads[j];
+			candidateLoads[j] = determiningLoad;
+			tIdle -= greenTime(determiningLoad);
+		}
+		return Math.max(0, tIdle);
+	}
+
+	private double greenTime(double determiningLoad) {
+		return Math.max(determiningLoad * desiredCycleTime + intergreenTime, minGreenTime);
+	}
+
+}
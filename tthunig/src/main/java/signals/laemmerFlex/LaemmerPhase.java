@@ -49,8 +49,8 @@ class LaemmerPhase {
 			double waitingTimeSum = 0;
 			double remainingInBetweenTime = Math.max(this.fullyAdaptiveLaemmerSignalController.activeRequest.onsetTime - now, 0);
 			for (double i = remainingInBetweenTime; i < this.fullyAdaptiveLaemmerSignalController.laemmerConfig.getIntergreenTime(); i++) {
-				for (Id<SignalGroup> signalGroup : phase.getGreenSignalGroups()) {
-					for (Signal signal : fullyAdaptiveLaemmerSignalController.getSystem().getSignalGroups().get(signalGroup).getSignals().values()) {
+				for (int g = 0; g < phase.getNumberOfGreenSignalGroups(); g++) {
+					for (Signal signal : phase.getGreenSignalGroup(g).getSignals().values()) {
 						if (signal.getLaneIds() != null && !signal.getLaneIds().isEmpty()) {
 							for (Id<Lane> laneId : signal.getLaneIds()) {
 								waitingTimeSum += this.fullyAdaptiveLaemmerSignalController
@@ -64,8 +64,8 @@ class LaemmerPhase {
 				}
 			}
 			double n = 0;
-			for (Id<SignalGroup> signalGroup : phase.getGreenSignalGroups()) {
-				for (Signal signal : fullyAdaptiveLaemmerSignalController.getSystem().getSignalGroups().get(signalGroup).getSignals().values()) {
+			for (int g = 0; g < phase.getNumberOfGreenSignalGroups(); g++) {
+				for (Signal signal : phase.getGreenSignalGroup(g).getSignals().values()) {
 					if (signal.getLaneIds() != null && !signal.getLaneIds().isEmpty()) {
 						for (Id<Lane> laneId : signal.getLaneIds()) {
 							n += this.fullyAdaptiveLaemmerSignalController.getNumberOfExpectedVehiclesOnLane(
@@ -91,8 +91,8 @@ class LaemmerPhase {
 			for (double i = remainingInBetweenTime; i <= this.fullyAdaptiveLaemmerSignalController.laemmerConfig.getIntergreenTime(); i++) {
 				double nExpected = 0;
 				double reqGreenTime = remainingMinG;
-				for (Id<SignalGroup> signalGroup : phase.getGreenSignalGroups()) {
-					for (Signal signal : fullyAdaptiveLaemmerSignalController.getSystem().getSignalGroups().get(signalGroup).getSignals().values()) {
+				for (int g = 0; g < phase.getNumberOfGreenSignalGroups(); g++) {
+					for (Signal signal : phase.getGreenSignalGroup(g).getSignals().values()) {
 						if (signal.getLaneIds() != null && !signal.getLaneIds().isEmpty()) {
 							for (Id<Lane> laneId : signal.getLaneIds()) {
 								double nTemp = this.fullyAdaptiveLaemmerSignalController.getNumberOfExpectedVehiclesOnLane(
@@ -131,8 +131,8 @@ class LaemmerPhase {
 		} else {
 			double nExpected = 0;
 			double reqGreenTime = this.fullyAdaptiveLaemmerSignalController.laemmerConfig.getMinGreenTime();
-			for (Id<SignalGroup> signalGroup : phase.getGreenSignalGroups()) {
-				for (Signal signal : fullyAdaptiveLaemmerSignalController.getSystem().getSignalGroups().get(signalGroup).getSignals().values()) {
+			for (int g = 0; g < phase.getNumberOfGreenSignalGroups(); g++) {
+				for (Signal signal : phase.getGreenSignalGroup(g).getSignals().values()) {
 					if (signal.getLaneIds() != null && !signal.getLaneIds().isEmpty()) {
 						for (Id<Lane> laneId : signal.getLaneIds()) {
 							double nTemp = this.fullyAdaptiveLaemmerSignalController.getNumberOfExpectedVehiclesOnLane(
@@ -0,0 +1,114 @@
+package signals.laemmerFlex;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.signals.controller.laemmerFix.LaemmerConfigGroup;
+import org.matsim.contrib.signals.sensor.LinkSensorManager;
+import org.matsim.lanes.Lane;
+
+/**
+ * Sensor registrations of all {@link FullyAdaptiveLaemmerSignalController}s created by one factory. Every link and lane is registered
+ * at the {@link LinkSensorManager} only once, even if several controllers (e.g. of neighboring intersections) read it. A controller only
+ * registers the links and lanes of its own signals; the downstream links are monitored by the DownstreamSensor.
+ * <p>
+ * The controllers are created for all signal systems first and initialized afterwards. When the last created controller is initialized,
+ * the number of saved registrations is logged and the index starts over, since the controllers (and sensors) of the next iteration are
+ * new.
+ */
+final class LaemmerSensorIndex {
+
+	private static final Logger log = Logger.getLogger(LaemmerSensorIndex.class);
+
+	private final LinkSensorManager sensorManager;
+	private final LaemmerConfigGroup laemmerConfig;
+	private final int numberOfNetworkLinks;
+
+	private final BitSet registeredLinks = new BitSet();
+	private final Map<Id<Link>, Set<Id<Lane>>> registeredLanes = new HashMap<>();
+
+	private int controllersCreated = 0;
+	private int controllersInitialized = 0;
+	private int requestedRegistrations = 0;
+	private int performedRegistrations = 0;
+
+	LaemmerSensorIndex(LinkSensorManager sensorManager, LaemmerConfigGroup laemmerConfig, int numberOfNetworkLinks) {
+		this.sensorManager = sensorManager;
+		this.laemmerConfig = laemmerConfig;
+		this.numberOfNetworkLinks = numberOfNetworkLinks;
+	}
+
+	LinkSensorManager getSensorManager() {
+		return sensorManager;
+	}
+
+	void controllerCreated() {
+		if (controllersInitialized > 0) {
+			// a controller of a new iteration, although not all controllers of the last one were initialized
+			startOver();
+		}
+		controllersCreated++;
+	}
+
+	/**
+	 * registers the number of cars on the link and the average arrival rate, if not done before
+	 */
+	void registerLink(Id<Link> linkId) {
+		requestedRegistrations += 2;
+		if (registeredLinks.get(linkId.index())) {
+			return;
+		}
+		registeredLinks.set(linkId.index());
+		sensorManager.registerNumberOfCarsInDistanceMonitoring(linkId, 0.);
+		sensorManager.registerAverageNumberOfCarsPerSecondMonitoring(linkId, laemmerConfig.getLookBackTime(), laemmerConfig.getTimeBucketSize());
+		performedRegistrations += 2;
+	}
+
+	/**
+	 * registers the number of cars on the lane and the average arrival rate, if not done before
+	 */
+	void registerLane(Id<Link> linkId, Id<Lane> laneId) {
+		requestedRegistrations += 2;
+		if (!registeredLanes.computeIfAbsent(linkId, k -> new HashSet<>()).add(laneId)) {
+			return;
+		}
+		sensorManager.registerNumberOfCarsOnLaneInDistanceMonitoring(linkId, laneId, 0.);
+		sensorManager.registerAverageNumberOfCarsPerSecondMonitoringOnLane(linkId, laneId, laemmerConfig.getLookBackTime(), laemmerConfig.getTimeBucketSize());
+		performedRegistrations += 2;
+	}
+
+	/**
+	 * Logs the statistics and starts over if this was the last controller created.
+	 */
+	void controllerInitialized() {
+		controllersInitialized++;
+		if (controllersInitialized < controllersCreated) {
+			return;
+		}
+		final int monitoredLinks = registeredLinks.cardinality();
+		// before, every controller registered all links of the network (two sensors each) in addition to its own links and lanes
+		final long previousRegistrations = requestedRegistrations + 2L * controllersCreated * numberOfNetworkLinks;
+		log.info(controllersCreated + " controllers: " + performedRegistrations + " sensor registrations instead of " + previousRegistrations
+				+ " (" + (requestedRegistrations - performedRegistrations) + " duplicates among the controllers' own links and lanes); "
+				+ monitoredLinks + " of " + numberOfNetworkLinks + " links are monitored, i.e. link events on "
+				+ (numberOfNetworkLinks - monitoredLinks) + " links no longer update a sensor, and events on the monitored links update "
+				+ "one sensor instead of one per controller.");
+		startOver();
+	}
+
+	private void startOver() {
+		registeredLinks.clear();
+		registeredLanes.clear();
+		controllersCreated = 0;
+		controllersInitialized = 0;
+		requestedRegistrations = 0;
+		performedRegistrations = 0;
+	}
+
+}
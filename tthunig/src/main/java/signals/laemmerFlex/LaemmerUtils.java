@@ -14,6 +14,10 @@ import org.matsim.contrib.signals.model.SignalSystem;
 
 class LaemmerUtils {
 	
+	/**
+	 * Removes all phases that are contained in another phase. Quadratic in the number of phases; use
+	 * {@link SignalCombinationBasedOnConflicts#createMaximalSignalCombinations()} to create the maximal phases directly.
+	 */
 	public static ArrayList<SignalPhase> removeRedundantSubPhases(ArrayList<SignalPhase> signalPhases) {
 		ArrayList<SignalPhase> phasesToRemove = new ArrayList<>();
 		for (SignalPhase signalPhase : signalPhases) {
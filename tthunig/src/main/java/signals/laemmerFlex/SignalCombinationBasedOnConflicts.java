@@ -22,6 +22,8 @@ package signals.laemmerFlex;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -30,6 +32,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -49,18 +52,49 @@ import org.matsim.lanes.Lane;
 import org.matsim.lanes.Lanes;
 
 /**
+ * Creates signal phases, i.e. combinations of signal groups that may show green together, from the conflict data of a signal system.
+ * <p>
+ * The conflicts between the signal groups are computed once per signal system (from the conflicting directions of their signals) and
+ * stored as a bit set conflict matrix. The matrix and the maximal conflict-free phases only depend on the input data; they are cached
+ * per {@link SignalsData} and signal system, so that they are not recomputed in every iteration.
+ * 
  * @author tthunig based on code by Pierre Schade for his master thesis at VSP 2017
  */
 class SignalCombinationBasedOnConflicts {
 	
 	private static final Logger log = Logger.getLogger(SignalCombinationBasedOnConflicts.class);
 	
+	private static final Map<SignalsData, Map<Id<SignalSystem>, GroupConflicts>> conflictsPerSignalsData = Collections
+			.synchronizedMap(new WeakHashMap<>());
+	
 	private SignalSystemData systemData;
 	private SignalSystem system;
 	private IntersectionDirections intersectionDirections;
 
 	private Map<Id<Signal>, Set<Tuple<Id<Link>, Id<Link>>>> setOfLinkTuplesPerSignal = new HashMap<>();
 	private Map<Id<SignalGroup>, Set<Direction>> setOfDirectionsPerGroup = new HashMap<>();
+	
+	private final GroupConflicts groupConflicts;
+
+	/**
+	 * Conflict matrix of the signal groups of one signal system. Groups are referenced by their position in {@link #groupIds}, such that
+	 * it does not refer to the signal model of a specific iteration.
+	 */
+	private static final class GroupConflicts {
+		private final List<Id<SignalGroup>> groupIds;
+		private final Map<Id<SignalGroup>, Integer> indexOfGroup = new HashMap<>();
+		private final BitSet[] conflictsOfGroup;
+		private int[][] maximalPhases;
+		
+		GroupConflicts(List<Id<SignalGroup>> groupIds) {
+			this.groupIds = groupIds;
+			this.conflictsOfGroup = new BitSet[groupIds.size()];
+			for (int i = 0; i < groupIds.size(); i++) {
+				indexOfGroup.put(groupIds.get(i), i);
+				conflictsOfGroup[i] = new BitSet(groupIds.size());
+			}
+		}
+	}
 
 	public SignalCombinationBasedOnConflicts(SignalsData signalsData, SignalSystem system, Network network, Lanes lanes) {
 		this.systemData = signalsData.getSignalSystemsData().getSignalSystemData().get(system.getId());
@@ -72,6 +106,19 @@ class SignalCombinationBasedOnConflicts {
 		}
 		this.intersectionDirections = signalsData.getConflictingDirectionsData().getConflictsPerSignalSystem()
 				.get(system.getId());
+		
+		Map<Id<SignalSystem>, GroupConflicts> conflictsPerSystem = conflictsPerSignalsData.computeIfAbsent(signalsData,
+				k -> Collections.synchronizedMap(new HashMap<>()));
+		GroupConflicts cachedConflicts = conflictsPerSystem.get(system.getId());
+		if (cachedConflicts != null && cachedConflicts.indexOfGroup.keySet().equals(system.getSignalGroups().keySet())) {
+			this.groupConflicts = cachedConflicts;
+		} else {
+			this.groupConflicts = createGroupConflicts(signalsData, network, lanes);
+			conflictsPerSystem.put(system.getId(), this.groupConflicts);
+		}
+	}
+	
+	private GroupConflicts createGroupConflicts(SignalsData signalsData, Network network, Lanes lanes) {
 
 		// remember relation of signals to directions
 		for (SignalData signal : this.systemData.getSignalData().values()) {
@@ -120,6 +167,18 @@ class SignalCombinationBasedOnConflicts {
 			log.info("Group " + group.getId() + " corresponds to " + setOfDirectionsPerGroup.get(group.getId()).size()
 					+ " directions.");
 		}
+		
+		// fill the (symmetric) conflict matrix
+		GroupConflicts conflicts = new GroupConflicts(new ArrayList<>(system.getSignalGroups().keySet()));
+		for (int i = 0; i < conflicts.groupIds.size(); i++) {
+			for (int j = i + 1; j < conflicts.groupIds.size(); j++) {
+				if (!isConflictFreeCombinationOfDirections(conflicts.groupIds.get(i), conflicts.groupIds.get(j))) {
+					conflicts.conflictsOfGroup[i].set(j);
+					conflicts.conflictsOfGroup[j].set(i);
+				}
+			}
+		}
+		return conflicts;
 	}
 	
 	private ArrayList<ArrayList<SignalGroup>> createAllValidSignalGroupCombinations() {
@@ -190,7 +249,127 @@ class SignalCombinationBasedOnConflicts {
 		return validPhases;
 	}
 	
+	/**
+	 * Creates only the maximal conflict-free phases, i.e. the result of {@link #createSignalCombinations()} after
+	 * {@link LaemmerUtils#removeRedundantSubPhases(ArrayList)}, in the same order, but without enumerating all sub phases. The maximal
+	 * phases are the maximal cliques of the graph of non-conflicting signal groups; they are found by a Bron-Kerbosch search with pivoting.
+	 */
+	public ArrayList<SignalPhase> createMaximalSignalCombinations() {
+		int[][] maximalPhases;
+		synchronized (groupConflicts) {
+			if (groupConflicts.maximalPhases == null) {
+				groupConflicts.maximalPhases = createMaximalConflictFreeGroupCombinations(groupConflicts.conflictsOfGroup);
+				log.info("Signal system " + system.getId() + " has " + groupConflicts.maximalPhases.length
+						+ " maximal conflict-free phases of " + groupConflicts.groupIds.size() + " signal groups.");
+			}
+			maximalPhases = groupConflicts.maximalPhases;
+		}
+		ArrayList<SignalPhase> validPhases = new ArrayList<>();
+		for (int[] groupIndices : maximalPhases) {
+			SignalPhase newPhase = new SignalPhase();
+			for (int groupIndex : groupIndices) {
+				newPhase.addGreenSignalGroup(system.getSignalGroups().get(groupConflicts.groupIds.get(groupIndex)));
+			}
+			validPhases.add(newPhase);
+		}
+		return validPhases;
+	}
+	
+	/**
+	 * @param conflictsOfGroup symmetric conflict matrix of the groups 0..n-1
+	 * @return the maximal conflict-free combinations as ascending arrays of group indices, in the order in which
+	 *         createAllValidSignalGroupCombinations would have created them
+	 */
+	static int[][] createMaximalConflictFreeGroupCombinations(BitSet[] conflictsOfGroup) {
+		int numberOfGroups = conflictsOfGroup.length;
+		if (numberOfGroups == 0) {
+			return new int[0][];
+		}
+		BitSet[] compatibleGroups = new BitSet[numberOfGroups];
+		for (int i = 0; i < numberOfGroups; i++) {
+			compatibleGroups[i] = new BitSet(numberOfGroups);
+			compatibleGroups[i].set(0, numberOfGroups);
+			compatibleGroups[i].andNot(conflictsOfGroup[i]);
+			compatibleGroups[i].clear(i);
+		}
+		List<int[]> maximalCombinations = new ArrayList<>();
+		BitSet candidates = new BitSet(numberOfGroups);
+		candidates.set(0, numberOfGroups);
+		bronKerbosch(new BitSet(numberOfGroups), candidates, new BitSet(numberOfGroups), compatibleGroups, maximalCombinations);
+		
+		// use the order in which createAllValidSignalGroupCombinations would have created them
+		maximalCombinations.sort(SignalCombinationBasedOnConflicts::compareInCreationOrder);
+		return maximalCombinations.toArray(new int[maximalCombinations.size()][]);
+	}
+	
+	/**
+	 * @param clique current clique of compatible groups
+	 * @param candidates groups that may extend the clique
+	 * @param excluded groups that may extend the clique, but whose cliques were already reported
+	 */
+	private static void bronKerbosch(BitSet clique, BitSet candidates, BitSet excluded, BitSet[] compatibleGroups, List<int[]> maximalCombinations) {
+		if (candidates.isEmpty()) {
+			if (excluded.isEmpty()) {
+				maximalCombinations.add(clique.stream().toArray());
+			}
+			return;
+		}
+		// choose the pivot with the most compatible candidates; its compatible candidates need not be branched on
+		int pivot = -1;
+		int maxCompatibleCandidates = -1;
+		BitSet candidatesOrExcluded = (BitSet) candidates.clone();
+		candidatesOrExcluded.or(excluded);
+		for (int u = candidatesOrExcluded.nextSetBit(0); u >= 0; u = candidatesOrExcluded.nextSetBit(u + 1)) {
+			BitSet compatibleCandidates = (BitSet) candidates.clone();
+			compatibleCandidates.and(compatibleGroups[u]);
+			if (compatibleCandidates.cardinality() > maxCompatibleCandidates) {
+				maxCompatibleCandidates = compatibleCandidates.cardinality();
+				pivot = u;
+			}
+		}
+		BitSet branchGroups = (BitSet) candidates.clone();
+		branchGroups.andNot(compatibleGroups[pivot]);
+		for (int v = branchGroups.nextSetBit(0); v >= 0; v = branchGroups.nextSetBit(v + 1)) {
+			BitSet newCandidates = (BitSet) candidates.clone();
+			newCandidates.and(compatibleGroups[v]);
+			BitSet newExcluded = (BitSet) excluded.clone();
+			newExcluded.and(compatibleGroups[v]);
+			clique.set(v);
+			bronKerbosch(clique, newCandidates, newExcluded, compatibleGroups, maximalCombinations);
+			clique.clear(v);
+			candidates.clear(v);
+			excluded.set(v);
+		}
+	}
+	
+	/**
+	 * Compares two ascending arrays of group indices by their position in the result of createAllValidSignalGroupCombinations: single
+	 * groups come first, by index; larger combinations are ordered by their highest index and then like the combination without it.
+	 */
+	private static int compareInCreationOrder(int[] first, int[] second) {
+		int i = first.length - 1;
+		int j = second.length - 1;
+		while (i > 0 && j > 0) {
+			if (first[i] != second[j]) {
+				return Integer.compare(first[i], second[j]);
+			}
+			i--;
+			j--;
+		}
+		if (i == 0 && j == 0) {
+			return Integer.compare(first[0], second[0]);
+		}
+		// the shorter remainder is a single group, which was created before every larger combination
+		return i == 0 ? -1 : 1;
+	}
+	
 	public boolean isConflictFreeCombination(Id<SignalGroup> firstSg, Id<SignalGroup> secondSg) {
+		Integer firstIndex = groupConflicts.indexOfGroup.get(firstSg);
+		Integer secondIndex = groupConflicts.indexOfGroup.get(secondSg);
+		return !groupConflicts.conflictsOfGroup[firstIndex].get(secondIndex);
+	}
+	
+	private boolean isConflictFreeCombinationOfDirections(Id<SignalGroup> firstSg, Id<SignalGroup> secondSg) {
 		for (Direction greenDirection : setOfDirectionsPerGroup.get(firstSg)) {
 			for (Direction directionToSwitchGreen : setOfDirectionsPerGroup.get(secondSg)) {
 				if (greenDirection.getConflictingDirections().contains(directionToSwitchGreen.getId())
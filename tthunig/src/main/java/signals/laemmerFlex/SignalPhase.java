@@ -7,6 +7,7 @@ import org.matsim.contrib.signals.model.SignalGroup;
 import org.matsim.core.mobsim.qsim.interfaces.SignalGroupState;
 import org.matsim.lanes.Lane;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -16,7 +17,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 class SignalPhase {
-	private List<SignalGroup> signalGroups = new LinkedList<>();
+	private List<SignalGroup> signalGroups = new ArrayList<>();
 //	private Map<Id<SignalGroup>, List<Id<Lane>>> greenSignalsToLanes = new LinkedHashMap<>();
 	private Map<Id<Link>, List<Id<Lane>>> lanesToLinks = new LinkedHashMap<>();
 //	private SortedSet<Id<Lane>> lanes = new TreeSet<Id<Lane>>();
@@ -42,7 +43,7 @@ class SignalPhase {
 	}
 	
 	public void addGreenSignalGroup(SignalGroup signalGroup) {
-		if (!this.getGreenSignalGroups().contains(signalGroup.getId())) {
+		if (!this.containsGreenSignalGroup(signalGroup.getId())) {
 				signalGroups.add(signalGroup);
 			for (Signal signal : signalGroup.getSignals().values()) {
 				if (signal.getLaneIds() == null || signal.getLaneIds().isEmpty()) {
@@ -70,6 +71,26 @@ class SignalPhase {
 		return sgs;
 	}
 	
+	/**
+	 * @return the number of green signal groups; together with {@link #getGreenSignalGroup(int)}, the groups can be iterated without
+	 * creating a set as {@link #getGreenSignalGroups()} does
+	 */
+	public int getNumberOfGreenSignalGroups() {
+		return signalGroups.size();
+	}
+	
+	public SignalGroup getGreenSignalGroup(int i) {
+		return signalGroups.get(i);
+	}
+	
+	public boolean containsGreenSignalGroup(Id<SignalGroup> signalGroupId) {
+		for (int i = 0; i < signalGroups.size(); i++) {
+			if (signalGroups.get(i).getId().equals(signalGroupId))
+				return true;
+		}
+		return false;
+	}
+	
 	public Map<Id<Link>, List<Id<Lane>>> getGreenLanesToLinks(){
 		return lanesToLinks;
 	}
@@ -0,0 +1,155 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BufferingSignalSystem
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package signals.parallelUpdate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.signals.controller.SignalController;
+import org.matsim.contrib.signals.model.Signal;
+import org.matsim.contrib.signals.model.SignalGroup;
+import org.matsim.contrib.signals.model.SignalSystem;
+import org.matsim.contrib.signals.model.SignalSystemsManager;
+
+/**
+ * The view of a signal system that a {@link ConcurrentSignalController} gives to the controller it wraps. While buffering, i.e. while
+ * the controller is updated by a worker thread, scheduled onsets and droppings are remembered instead of being passed on to the signal
+ * system; {@link #passOnScheduledStateChanges()} passes them on later, in the order in which they were scheduled. All other methods are
+ * delegated to the signal system.
+ */
+final class BufferingSignalSystem implements SignalSystem {
+
+	private static final class ScheduledStateChange {
+		final double timeSeconds;
+		final Id<SignalGroup> signalGroupId;
+		final boolean onset;
+
+		ScheduledStateChange(double timeSeconds, Id<SignalGroup> signalGroupId, boolean onset) {
+			this.timeSeconds = timeSeconds;
+			this.signalGroupId = signalGroupId;
+			this.onset = onset;
+		}
+	}
+
+	private final SignalSystem delegate;
+
+	private boolean buffering = false;
+	private final List<ScheduledStateChange> scheduledStateChanges = new ArrayList<>();
+
+	BufferingSignalSystem(SignalSystem delegate) {
+		this.delegate = delegate;
+	}
+
+	void setBuffering(boolean buffering) {
+		this.buffering = buffering;
+	}
+
+	void passOnScheduledStateChanges() {
+		for (ScheduledStateChange change : scheduledStateChanges) {
+			if (change.onset) {
+				delegate.scheduleOnset(change.timeSeconds, change.signalGroupId);
+			} else {
+				delegate.scheduleDropping(change.timeSeconds, change.signalGroupId);
+			}
+		}
+		scheduledStateChanges.clear();
+	}
+
+	@Override
+	public void scheduleOnset(double timeSeconds, Id<SignalGroup> signalGroupId) {
+		if (buffering) {
+			scheduledStateChanges.add(new ScheduledStateChange(timeSeconds, signalGroupId, true));
+		} else {
+			delegate.scheduleOnset(timeSeconds, signalGroupId);
+		}
+	}
+
+	@Override
+	public void scheduleDropping(double timeSeconds, Id<SignalGroup> signalGroupId) {
+		if (buffering) {
+			scheduledStateChanges.add(new ScheduledStateChange(timeSeconds, signalGroupId, false));
+		} else {
+			delegate.scheduleDropping(timeSeconds, signalGroupId);
+		}
+	}
+
+	@Override
+	public Id<SignalSystem> getId() {
+		return delegate.getId();
+	}
+
+	@Override
+	public SignalSystemsManager getSignalSystemsManager() {
+		return delegate.getSignalSystemsManager();
+	}
+
+	@Override
+	public void setSignalSystemsManager(SignalSystemsManager signalManager) {
+		delegate.setSignalSystemsManager(signalManager);
+	}
+
+	@Override
+	public void updateState(double timeSeconds) {
+		delegate.updateState(timeSeconds);
+	}
+
+	@Override
+	public void setSignalSystemController(SignalController controller) {
+		delegate.setSignalSystemController(controller);
+	}
+
+	@Override
+	public SignalController getSignalController() {
+		return delegate.getSignalController();
+	}
+
+	@Override
+	public void addSignal(Signal signal) {
+		delegate.addSignal(signal);
+	}
+
+	@Override
+	public Map<Id<Signal>, Signal> getSignals() {
+		return delegate.getSignals();
+	}
+
+	@Override
+	public void addSignalGroup(SignalGroup group) {
+		delegate.addSignalGroup(group);
+	}
+
+	@Override
+	public Map<Id<SignalGroup>, SignalGroup> getSignalGroups() {
+		return delegate.getSignalGroups();
+	}
+
+	@Override
+	public void simulationInitialized(double simStartTimeSeconds) {
+		delegate.simulationInitialized(simStartTimeSeconds);
+	}
+
+	@Override
+	public void switchOff(double timeSeconds) {
+		delegate.switchOff(timeSeconds);
+	}
+
+}
@@ -0,0 +1,123 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ConcurrentSignalController
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package signals.parallelUpdate;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.signals.controller.SignalController;
+import org.matsim.contrib.signals.model.SignalPlan;
+import org.matsim.contrib.signals.model.SignalSystem;
+
+/**
+ * Wraps a signal controller for the {@link ParallelSignalControllerUpdate}. The wrapped controller sees its signal system through a
+ * {@link BufferingSignalSystem} that, while the controller is updated by a worker thread, does not pass scheduled onsets and droppings on
+ * to the signal system but remembers them. They are passed on when the signals engine asks this controller for its update, i.e. on the
+ * mobsim thread and in the order of the signal systems, as in a sequential update.
+ */
+final class ConcurrentSignalController implements SignalController {
+
+	private final SignalController delegate;
+	private final ParallelSignalControllerUpdate parallelUpdate;
+	private SignalSystem system;
+	private BufferingSignalSystem bufferingSystem;
+
+	private long totalUpdateNanos = 0;
+	private long maxUpdateNanos = 0;
+	private int numberOfUpdates = 0;
+
+	ConcurrentSignalController(SignalController delegate, ParallelSignalControllerUpdate parallelUpdate) {
+		this.delegate = delegate;
+		this.parallelUpdate = parallelUpdate;
+	}
+
+	@Override
+	public void setSignalSystem(SignalSystem signalSystem) {
+		this.system = signalSystem;
+		this.bufferingSystem = new BufferingSignalSystem(signalSystem);
+		this.delegate.setSignalSystem(this.bufferingSystem);
+	}
+
+	@Override
+	public void addPlan(SignalPlan plan) {
+		this.delegate.addPlan(plan);
+	}
+
+	@Override
+	public void simulationInitialized(double simStartTimeSeconds) {
+		this.delegate.simulationInitialized(simStartTimeSeconds);
+	}
+
+	/**
+	 * Called by the signals engine: makes sure that all controllers are updated for this time step and passes on the state changes the
+	 * wrapped controller scheduled.
+	 */
+	@Override
+	public void updateState(double timeSeconds) {
+		this.parallelUpdate.updateAllControllers(timeSeconds);
+		this.bufferingSystem.passOnScheduledStateChanges();
+	}
+
+	/**
+	 * Called by a worker thread of the {@link ParallelSignalControllerUpdate}.
+	 */
+	void computeState(double timeSeconds) {
+		long start = System.nanoTime();
+		this.bufferingSystem.setBuffering(true);
+		try {
+			this.delegate.updateState(timeSeconds);
+		} finally {
+			this.bufferingSystem.setBuffering(false);
+		}
+		long nanos = System.nanoTime() - start;
+		totalUpdateNanos += nanos;
+		maxUpdateNanos = Math.max(maxUpdateNanos, nanos);
+		numberOfUpdates++;
+	}
+
+	void resetTimes() {
+		totalUpdateNanos = 0;
+		maxUpdateNanos = 0;
+		numberOfUpdates = 0;
+	}
+
+	SignalSystem getSignalSystem() {
+		return system;
+	}
+
+	Id<SignalSystem> getSignalSystemId() {
+		return system.getId();
+	}
+
+	Class<? extends SignalController> getControllerClass() {
+		return delegate.getClass();
+	}
+
+	long getTotalUpdateNanos() {
+		return totalUpdateNanos;
+	}
+
+	long getMaxUpdateNanos() {
+		return maxUpdateNanos;
+	}
+
+	int getNumberOfUpdates() {
+		return numberOfUpdates;
+	}
+
+}
@@ -0,0 +1,230 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelSignalControllerUpdate
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package signals.parallelUpdate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.signals.controller.SignalController;
+import org.matsim.contrib.signals.model.Signal;
+import org.matsim.contrib.signals.model.SignalSystem;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+
+/**
+ * Updates the signal controllers of all signal systems concurrently. Controllers that are created by a factory while this is bound
+ * (see {@link ParallelSignalUpdateModule}) are wrapped by {@link #wrap(SignalController, SignalSystem)}. When the signals engine asks
+ * the first of them for its update in a time step, all controllers are updated in a worker pool. The onsets and droppings they
+ * schedule are passed on to the signal systems afterwards, when the engine asks each controller, i.e. on the mobsim thread and in the
+ * same order as in a sequential update.
+ * <p>
+ * Sensors are not thread-safe: the link sensors update their counts lazily when they are read (e.g. the number of cars in a distance
+ * or the average arrival rate). The controllers read such values only for the links of their own signals, but several signal systems
+ * may have signals on the same link. Therefore the controllers are grouped by these links: controllers whose signal systems share a
+ * signalized link are updated one after the other in the same task, in the order in which they were created, so that no sensor is read
+ * by two threads at the same time. Other sensor values (e.g. the number of cars on downstream links) are plain counts that are only
+ * written by event handlers, which do not run during the stage since the mobsim thread waits for it. Controllers must only change the
+ * states of their own signal groups.
+ * <p>
+ * At the end of each mobsim the update times per controller type and of the slowest signal systems are logged.
+ */
+public final class ParallelSignalControllerUpdate implements MobsimBeforeCleanupListener {
+
+	private static final Logger log = Logger.getLogger(ParallelSignalControllerUpdate.class);
+
+	private static final int NUMBER_OF_LOGGED_SYSTEMS = 10;
+
+	private final int numberOfThreads;
+
+	private final List<ConcurrentSignalController> controllers = new ArrayList<>();
+	/**
+	 * update tasks, one per group of controllers with shared signalized links; null if not yet created for the current controllers
+	 */
+	private List<Callable<Void>> tasks = null;
+	private ExecutorService pool;
+
+	private double timeOfLastUpdate = Double.NaN;
+	private boolean mobsimFinished = false;
+
+	private long totalStageNanos = 0;
+	private int numberOfStages = 0;
+
+	/**
+	 * @param numberOfThreads number of worker threads, at least 1
+	 */
+	public ParallelSignalControllerUpdate(int numberOfThreads) {
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+	}
+
+	/**
+	 * Wraps the controller and sets its signal system, see
+	 * {@link org.matsim.contrib.signals.controller.SignalController#setSignalSystem(SignalSystem)}.
+	 * 
+	 * @return the controller to be returned by the factory
+	 */
+	public SignalController wrap(SignalController controller, SignalSystem signalSystem) {
+		if (mobsimFinished) {
+			// controllers of a new iteration
+			controllers.clear();
+			mobsimFinished = false;
+		}
+		ConcurrentSignalController concurrentController = new ConcurrentSignalController(controller, this);
+		concurrentController.setSignalSystem(signalSystem);
+		controllers.add(concurrentController);
+		tasks = null;
+		return concurrentController;
+	}
+
+	/**
+	 * Groups the controllers whose signal systems share a signalized link (union-find over the controller indices) and creates one task
+	 * per group that updates its controllers in the order of creation.
+	 */
+	private List<Callable<Void>> createTasks() {
+		int[] parent = new int[controllers.size()];
+		Map<Id<Link>, Integer> controllerOfLink = new HashMap<>();
+		for (int c = 0; c < controllers.size(); c++) {
+			parent[c] = c;
+			for (Signal signal : controllers.get(c).getSignalSystem().getSignals().values()) {
+				Integer other = controllerOfLink.putIfAbsent(signal.getLinkId(), c);
+				if (other != null) {
+					// union; the smaller index becomes the root, so that the roots keep the order of creation
+					int root = findRoot(parent, c);
+					int otherRoot = findRoot(parent, other);
+					parent[Math.max(root, otherRoot)] = Math.min(root, otherRoot);
+				}
+			}
+		}
+		Map<Integer, List<ConcurrentSignalController>> controllersPerRoot = new LinkedHashMap<>();
+		for (int c = 0; c < controllers.size(); c++) {
+			controllersPerRoot.computeIfAbsent(findRoot(parent, c), k -> new ArrayList<>()).add(controllers.get(c));
+		}
+		List<Callable<Void>> newTasks = new ArrayList<>(controllersPerRoot.size());
+		for (List<ConcurrentSignalController> group : controllersPerRoot.values()) {
+			newTasks.add(() -> {
+				for (ConcurrentSignalController controller : group) {
+					controller.computeState(timeOfLastUpdate);
+				}
+				return null;
+			});
+		}
+		if (newTasks.size() < controllers.size()) {
+			log.info(controllers.size() + " signal controllers are updated in " + newTasks.size()
+					+ " tasks, since some signal systems share signalized links.");
+		}
+		return newTasks;
+	}
+
+	private static int findRoot(int[] parent, int c) {
+		while (parent[c] != c) {
+			parent[c] = parent[parent[c]];
+			c = parent[c];
+		}
+		return c;
+	}
+
+	/**
+	 * Updates all controllers, if not yet done for this time step. This is the barrier of the parallel stage: it returns when all
+	 * controllers are updated.
+	 */
+	void updateAllControllers(double timeSeconds) {
+		if (timeSeconds == timeOfLastUpdate) {
+			return;
+		}
+		timeOfLastUpdate = timeSeconds;
+		if (tasks == null) {
+			tasks = createTasks();
+		}
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(numberOfThreads, runnable -> {
+				Thread thread = new Thread(runnable, "SignalControllerUpdate");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		long start = System.nanoTime();
+		try {
+			for (Future<Void> future : pool.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+		totalStageNanos += System.nanoTime() - start;
+		numberOfStages++;
+	}
+
+	@Override
+	public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e) {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		logUpdateTimes();
+		for (ConcurrentSignalController controller : controllers) {
+			controller.resetTimes();
+		}
+		totalStageNanos = 0;
+		numberOfStages = 0;
+		timeOfLastUpdate = Double.NaN;
+		mobsimFinished = true;
+	}
+
+	private void logUpdateTimes() {
+		if (numberOfStages == 0) {
+			return;
+		}
+		long sumOfControllerNanos = 0;
+		Map<String, long[]> nanosAndUpdatesPerType = new LinkedHashMap<>();
+		for (ConcurrentSignalController controller : controllers) {
+			sumOfControllerNanos += controller.getTotalUpdateNanos();
+			long[] nanosAndUpdates = nanosAndUpdatesPerType.computeIfAbsent(controller.getControllerClass().getSimpleName(), k -> new long[3]);
+			nanosAndUpdates[0] += controller.getTotalUpdateNanos();
+			nanosAndUpdates[1] += controller.getNumberOfUpdates();
+			nanosAndUpdates[2]++;
+		}
+		log.info(controllers.size() + " signal controllers were updated in " + numberOfStages + " time steps on " + numberOfThreads
+				+ " threads. Average step time: " + (totalStageNanos / numberOfStages / 1000) + " us; sum of controller update times: "
+				+ (sumOfControllerNanos / 1000000) + " ms; wall-clock time: " + (totalStageNanos / 1000000) + " ms.");
+		for (Map.Entry<String, long[]> e : nanosAndUpdatesPerType.entrySet()) {
+			long[] nanosAndUpdates = e.getValue();
+			log.info(e.getKey() + " (" + nanosAndUpdates[2] + " systems): " + (nanosAndUpdates[0] / 1000000) + " ms, "
+					+ (nanosAndUpdates[1] == 0 ? 0 : nanosAndUpdates[0] / nanosAndUpdates[1] / 1000) + " us per update.");
+		}
+		List<ConcurrentSignalController> slowestControllers = new ArrayList<>(controllers);
+		slowestControllers.sort(Comparator.comparingLong(ConcurrentSignalController::getTotalUpdateNanos).reversed());
+		for (ConcurrentSignalController controller : slowestControllers.subList(0, Math.min(NUMBER_OF_LOGGED_SYSTEMS, slowestControllers.size()))) {
+			log.info("Signal system " + controller.getSignalSystemId() + " (" + controller.getControllerClass().getSimpleName() + "): "
+					+ (controller.getTotalUpdateNanos() / 1000000) + " ms, max " + (controller.getMaxUpdateNanos() / 1000) + " us per update.");
+		}
+	}
+
+}
@@ -0,0 +1,37 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelSignalUpdateModule
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package signals.parallelUpdate;
+
+import org.matsim.core.controler.AbstractModule;
+
+/**
+ * Switches on the concurrent update of the laemmerFlex, Gershenson and downstream signal controllers, see
+ * {@link ParallelSignalControllerUpdate}. Uses the number of threads of the qsim config group.
+ */
+public final class ParallelSignalUpdateModule extends AbstractModule {
+
+	@Override
+	public void install() {
+		ParallelSignalControllerUpdate parallelUpdate = new ParallelSignalControllerUpdate(getConfig().qsim().getNumberOfThreads());
+		bind(ParallelSignalControllerUpdate.class).toInstance(parallelUpdate);
+		addMobsimListenerBinding().toInstance(parallelUpdate);
+	}
+
+}
@@ -0,0 +1,185 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * GershensonSignalControllerTest.java
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2026 by the members listed in the COPYING, *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+package signals.gershenson;
+
+import static signals.gershenson.GershensonSignalController.NO_GROUP;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the group selection of the rules and the platoon tail check of rule 3 of the {@link GershensonSignalController} and compares
+ * them with the former implementation, which iterated over maps from signal group ids to counters and jam flags.
+ */
+public class GershensonSignalControllerTest {
+
+	@Test
+	public void testNonJammedGroupWithHighestCounter() {
+		Assert.assertEquals(2, GershensonSignalController.findNonJammedGroupWithHighestCounter(new double[] { 5., 3., 4. }, new boolean[] { true, false, false }));
+		// ties are broken by group order
+		Assert.assertEquals(0, GershensonSignalController.findNonJammedGroupWithHighestCounter(new double[] { 2., 2. }, new boolean[] { false, false }));
+		Assert.assertEquals(NO_GROUP, GershensonSignalController.findNonJammedGroupWithHighestCounter(new double[] { 2., 2. }, new boolean[] { true, true }));
+	}
+
+	@Test
+	public void testRule4Group() {
+		Assert.assertEquals(2, GershensonSignalController.findRule4Group(new double[] { 1., 0., 3. }, 0));
+		// the active group is never taken as a group with a higher counter ...
+		Assert.assertEquals(0, GershensonSignalController.findRule4Group(new double[] { 3., 5., 1. }, 1));
+		// ... but the first group is the start, even if it is active
+		Assert.assertEquals(0, GershensonSignalController.findRule4Group(new double[] { 4., 1., 3. }, 0));
+		Assert.assertEquals(NO_GROUP, GershensonSignalController.findRule4Group(new double[0], NO_GROUP));
+	}
+
+	@Test
+	public void testRule1Group() {
+		Assert.assertEquals(2, GershensonSignalController.findRule1Group(new double[] { 9., 5., 7. }, 0, 6.));
+		Assert.assertEquals(NO_GROUP, GershensonSignalController.findRule1Group(new double[] { 9., 5., 6. }, 0, 6.));
+		// ties are broken by group order
+		Assert.assertEquals(1, GershensonSignalController.findRule1Group(new double[] { 0., 7., 7. }, NO_GROUP, 6.));
+	}
+
+	@Test
+	public void testPlatoonTail() {
+		// normal case: less than lengthOfPlatoonTails vehicles
+		Assert.assertTrue(GershensonSignalController.isPlatoonTail(1, 1, false, 2));
+		Assert.assertFalse(GershensonSignalController.isPlatoonTail(2, 2, false, 2));
+		// length exception: at most lengthOfPlatoonTails vehicles
+		Assert.assertTrue(GershensonSignalController.isPlatoonTail(2, 2, true, 2));
+		Assert.assertFalse(GershensonSignalController.isPlatoonTail(3, 3, true, 2));
+		// no vehicles, or further vehicles behind the platoon tail
+		Assert.assertFalse(GershensonSignalController.isPlatoonTail(0, 0, false, 2));
+		Assert.assertFalse(GershensonSignalController.isPlatoonTail(1, 3, false, 2));
+	}
+
+	@Test
+	public void testSameGroupsAsFormerImplementation() {
+		Random random = new Random(4711);
+		for (int run = 0; run < 10000; run++) {
+			int numberOfGroups = 1 + random.nextInt(5);
+			double[] counter = new double[numberOfGroups];
+			boolean[] jammedGroup = new boolean[numberOfGroups];
+			Map<String, Double> counterMap = new LinkedHashMap<>();
+			Map<String, Boolean> jammedMap = new LinkedHashMap<>();
+			for (int group = 0; group < numberOfGroups; group++) {
+				// few different values to get ties
+				counter[group] = random.nextInt(4);
+				jammedGroup[group] = random.nextInt(3) == 0;
+				counterMap.put("group" + group, counter[group]);
+				jammedMap.put("group" + group, jammedGroup[group]);
+			}
+			int activeGroup = random.nextInt(numberOfGroups + 1) - 1;
+			String activeGroupId = activeGroup == NO_GROUP ? null : "group" + activeGroup;
+			double threshold = random.nextInt(4);
+
+			Assert.assertEquals(formerNonJammedGroupWithHighestCounter(counterMap, jammedMap),
+					idOf(GershensonSignalController.findNonJammedGroupWithHighestCounter(counter, jammedGroup)));
+			if (activeGroupId != null) {
+				Assert.assertEquals(formerRule4Group(counterMap, activeGroupId), idOf(GershensonSignalController.findRule4Group(counter, activeGroup)));
+			}
+			Assert.assertEquals(formerRule1Group(counterMap, activeGroupId, threshold),
+					idOf(GershensonSignalController.findRule1Group(counter, activeGroup, threshold)));
+		}
+	}
+
+	@Test
+	public void testSamePlatoonTailAsFormerImplementation() {
+		for (int lengthOfPlatoonTails = 0; lengthOfPlatoonTails < 4; lengthOfPlatoonTails++) {
+			for (int inShortDistance = 0; inShortDistance < 6; inShortDistance++) {
+				for (int inMonitoredDistance = inShortDistance; inMonitoredDistance < 8; inMonitoredDistance++) {
+					for (boolean lengthException : new boolean[] { false, true }) {
+						Assert.assertEquals(formerPlatoonTail(inShortDistance, inMonitoredDistance, lengthException, lengthOfPlatoonTails),
+								GershensonSignalController.isPlatoonTail(inShortDistance, inMonitoredDistance, lengthException, lengthOfPlatoonTails));
+					}
+				}
+			}
+		}
+	}
+
+	private static String idOf(int group) {
+		return group == NO_GROUP ? null : "group" + group;
+	}
+
+	/* the former implementations, i.e. the loops of updateState and rule3Tester with group ids instead of SignalGroups */
+
+	private static String formerNonJammedGroupWithHighestCounter(Map<String, Double> counter, Map<String, Boolean> jammedSignalGroup) {
+		String changerGroup = null;
+		for (String group : counter.keySet()) {
+			if (!jammedSignalGroup.get(group)) {
+				if (changerGroup == null) {
+					changerGroup = group;
+				} else {
+					if (counter.get(group) > counter.get(changerGroup)) {
+						changerGroup = group;
+					}
+				}
+			}
+		}
+		return changerGroup;
+	}
+
+	private static String formerRule4Group(Map<String, Double> counter, String activeSignalGroup) {
+		String changerGroup = null;
+		for (String group : counter.keySet()) {
+			if (changerGroup == null && !activeSignalGroup.equals(changerGroup)) {
+				changerGroup = group;
+			} else {
+				if (counter.get(group) > counter.get(changerGroup) && !group.equals(activeSignalGroup)) {
+					changerGroup = group;
+				}
+			}
+		}
+		return changerGroup;
+	}
+
+	private static String formerRule1Group(Map<String, Double> counter, String activeSignalGroup, double threshold) {
+		String changerGroup = null;
+		for (String group : counter.keySet()) {
+			if (!group.equals(activeSignalGroup) && counter.get(group) > threshold) {
+				if (changerGroup == null) {
+					changerGroup = group;
+				} else {
+					if (counter.get(group) > counter.get(changerGroup)) {
+						changerGroup = group;
+					}
+				}
+			}
+		}
+		return changerGroup;
+	}
+
+	private static boolean formerPlatoonTail(int numberVehiclesInShortDistance, int numberVehiclesInMonitoredDistance, boolean lengthException,
+			int lengthOfPlatoonTails) {
+		if (lengthException) {
+			return numberVehiclesInShortDistance <= lengthOfPlatoonTails && numberVehiclesInShortDistance > 0
+					&& numberVehiclesInShortDistance - numberVehiclesInMonitoredDistance == 0;
+		} else {
+			return numberVehiclesInShortDistance < lengthOfPlatoonTails && numberVehiclesInShortDistance > 0
+					&& numberVehiclesInShortDistance - numberVehiclesInMonitoredDistance == 0;
+		}
+	}
+
+}
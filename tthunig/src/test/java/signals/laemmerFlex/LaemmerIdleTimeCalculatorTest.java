@@ -0,0 +1,153 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * LaemmerIdleTimeCalculatorTest.java
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2026 by the members listed in the COPYING, *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+package signals.laemmerFlex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares tIdle of the {@link LaemmerIdleTimeCalculator} with the former stream implementation of
+ * FullyAdaptiveLaemmerSignalController.calculateTidle.
+ */
+public class LaemmerIdleTimeCalculatorTest {
+
+	private static final double DESIRED_CYCLE_TIME = 90.;
+	private static final double INTERGREEN_TIME = 5.;
+	private static final double MIN_GREEN_TIME = 5.;
+
+	@Test
+	public void testSingleApproachPerPhase() {
+		// approaches 0 and 1 at signal 0 and 1; approach 0 in the regulation phase
+		LaemmerIdleTimeCalculator calculator = new LaemmerIdleTimeCalculator(new int[] { 0, 1 }, 2, false, 2, DESIRED_CYCLE_TIME,
+				INTERGREEN_TIME, MIN_GREEN_TIME);
+		double tIdle = calculator.calculateTidle(new double[] { 0.2, 0.3 }, new boolean[] { true, false });
+		Assert.assertEquals(90. - (0.2 * 90. + 5.) - (0.3 * 90. + 5.), tIdle, 1e-9);
+		// min green time, and never negative:
+		Assert.assertEquals(90. - 5. - (0.1 * 90. + 5.), calculator.calculateTidle(new double[] { 0., 0.1 }, new boolean[] { true, false }), 1e-9);
+		Assert.assertEquals(0., calculator.calculateTidle(new double[] { 0.6, 0.6 }, new boolean[] { true, false }), 0.);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPhaseWithoutApproach() {
+		LaemmerIdleTimeCalculator calculator = new LaemmerIdleTimeCalculator(new int[] { 0, 1 }, 2, false, 2, DESIRED_CYCLE_TIME,
+				INTERGREEN_TIME, MIN_GREEN_TIME);
+		calculator.calculateTidle(new double[] { 0.2, 0.3 }, new boolean[] { false, false });
+	}
+
+	@Test
+	public void testRandomLoadsAsStreams() {
+		Random random = new Random(4711);
+		for (int run = 0; run < 1000; run++) {
+			final int numberOfSignals = 1 + random.nextInt(8);
+			final int numberOfApproaches = numberOfSignals + random.nextInt(2 * numberOfSignals);
+			final int numberOfPhases = 1 + random.nextInt(5);
+			int[] signalIndexOfApproach = new int[numberOfApproaches];
+			double[] loads = new double[numberOfApproaches];
+			boolean[] inPhase = new boolean[numberOfApproaches];
+			for (int i = 0; i < numberOfApproaches; i++) {
+				// every signal has at least one approach
+				signalIndexOfApproach[i] = i < numberOfSignals ? i : random.nextInt(numberOfSignals);
+				// some equal loads, as they occur for empty lanes
+				loads[i] = random.nextInt(4) == 0 ? 0. : random.nextDouble() * 0.5;
+				inPhase[i] = random.nextInt(3) == 0;
+			}
+			inPhase[random.nextInt(numberOfApproaches)] = true;
+			for (boolean groupedBySignals : new boolean[] { false, true }) {
+				LaemmerIdleTimeCalculator calculator = new LaemmerIdleTimeCalculator(signalIndexOfApproach, numberOfSignals,
+						groupedBySignals, numberOfPhases, DESIRED_CYCLE_TIME, INTERGREEN_TIME, MIN_GREEN_TIME);
+				double expected = calculateTidleWithStreams(signalIndexOfApproach, loads, inPhase, groupedBySignals, numberOfPhases);
+				// twice, since the calculator reuses its scratch arrays:
+				Assert.assertEquals("run " + run, expected, calculator.calculateTidle(loads, inPhase), 1e-9);
+				Assert.assertEquals("run " + run, expected, calculator.calculateTidle(loads, inPhase), 1e-9);
+			}
+		}
+	}
+
+	private static final class Approach {
+		final int signal;
+		final double load;
+		final boolean inPhase;
+
+		Approach(int signal, double load, boolean inPhase) {
+			this.signal = signal;
+			this.load = load;
+			this.inPhase = inPhase;
+		}
+
+		double getDeterminingLoad() {
+			return load;
+		}
+
+		int getSignal() {
+			return signal;
+		}
+	}
+
+	/**
+	 * The former implementation, on plain approaches.
+	 */
+	private static double calculateTidleWithStreams(int[] signalIndexOfApproach, double[] loads, boolean[] inPhase,
+			boolean groupedBySignals, int numberOfPhases) {
+		List<Approach> laemmerApproaches = new ArrayList<>();
+		for (int i = 0; i < loads.length; i++) {
+			laemmerApproaches.add(new Approach(signalIndexOfApproach[i], loads[i], inPhase[i]));
+		}
+		double tIdle = DESIRED_CYCLE_TIME;
+		Approach representiveLane = laemmerApproaches.stream()
+				.filter(ll -> ll.inPhase)
+				.max(Comparator.comparingDouble(Approach::getDeterminingLoad).reversed())
+				.get();
+		tIdle -= Math.max(representiveLane.getDeterminingLoad() * DESIRED_CYCLE_TIME + INTERGREEN_TIME, MIN_GREEN_TIME);
+		if (groupedBySignals) {
+			Collection<Double> maxLoadFromLaneForEachSignal = laemmerApproaches.stream()
+					.filter(ll -> !ll.inPhase)
+					.collect(Collectors.groupingBy(Approach::getSignal,
+							Collectors.mapping(Approach::getDeterminingLoad,
+									Collectors.collectingAndThen(Collectors.maxBy(Double::compare), Optional::get))))
+					.values();
+			tIdle -= maxLoadFromLaneForEachSignal.stream()
+					.sorted(Comparator.reverseOrder())
+					.limit(numberOfPhases - 1)
+					.collect(Collectors.summingDouble(determiningLoad ->
+					Math.max(determiningLoad * DESIRED_CYCLE_TIME + INTERGREEN_TIME, MIN_GREEN_TIME)))
+					.doubleValue();
+		} else {
+			tIdle -= laemmerApproaches.stream()
+					.filter(ll -> !ll.inPhase)
+					.sorted(Comparator.comparingDouble(Approach::getDeterminingLoad).reversed())
+					.limit(numberOfPhases - 1)
+					.collect(Collectors.summingDouble(ll ->
+					Math.max(ll.getDeterminingLoad() * DESIRED_CYCLE_TIME + INTERGREEN_TIME, MIN_GREEN_TIME)))
+					.doubleValue();
+		}
+		return Math.max(0, tIdle);
+	}
+
+}
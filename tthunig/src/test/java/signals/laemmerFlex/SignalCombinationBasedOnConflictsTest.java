@@ -0,0 +1,156 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * SignalCombinationBasedOnConflictsTest.java
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2026 by the members listed in the COPYING, *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+package signals.laemmerFlex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the maximal conflict-free phases of the Bron-Kerbosch search with the ones of the former enumeration of all conflict-free
+ * combinations followed by the removal of all sub phases, including their order.
+ */
+public class SignalCombinationBasedOnConflictsTest {
+
+	@Test
+	public void testNoGroups() {
+		Assert.assertEquals(0, SignalCombinationBasedOnConflicts.createMaximalConflictFreeGroupCombinations(new BitSet[0]).length);
+	}
+
+	@Test
+	public void testNoConflicts() {
+		int[][] phases = SignalCombinationBasedOnConflicts.createMaximalConflictFreeGroupCombinations(createConflicts(4));
+		Assert.assertArrayEquals(new int[][] { { 0, 1, 2, 3 } }, phases);
+	}
+
+	@Test
+	public void testAllConflicting() {
+		BitSet[] conflicts = createConflicts(3);
+		addConflict(conflicts, 0, 1);
+		addConflict(conflicts, 0, 2);
+		addConflict(conflicts, 1, 2);
+		int[][] phases = SignalCombinationBasedOnConflicts.createMaximalConflictFreeGroupCombinations(conflicts);
+		Assert.assertArrayEquals(new int[][] { { 0 }, { 1 }, { 2 } }, phases);
+	}
+
+	@Test
+	public void testCrossing() {
+		// groups 0 and 2 (north-south) and 1 and 3 (east-west) may show green together
+		BitSet[] conflicts = createConflicts(4);
+		addConflict(conflicts, 0, 1);
+		addConflict(conflicts, 0, 3);
+		addConflict(conflicts, 2, 1);
+		addConflict(conflicts, 2, 3);
+		int[][] phases = SignalCombinationBasedOnConflicts.createMaximalConflictFreeGroupCombinations(conflicts);
+		Assert.assertArrayEquals(new int[][] { { 0, 2 }, { 1, 3 } }, phases);
+	}
+
+	@Test
+	public void testRandomConflictsAsEnumeration() {
+		Random random = new Random(4711);
+		for (int numberOfGroups = 1; numberOfGroups <= 12; numberOfGroups++) {
+			for (double conflictProbability : new double[] { 0.1, 0.3, 0.5, 0.7, 0.9 }) {
+				BitSet[] conflicts = createConflicts(numberOfGroups);
+				for (int i = 0; i < numberOfGroups; i++) {
+					for (int j = i + 1; j < numberOfGroups; j++) {
+						if (random.nextDouble() < conflictProbability) {
+							addConflict(conflicts, i, j);
+						}
+					}
+				}
+				int[][] expected = enumerateMaximalCombinations(conflicts);
+				int[][] phases = SignalCombinationBasedOnConflicts.createMaximalConflictFreeGroupCombinations(conflicts);
+				Assert.assertArrayEquals("groups=" + numberOfGroups + "; conflicts=" + Arrays.toString(conflicts), expected, phases);
+			}
+		}
+	}
+
+	private static BitSet[] createConflicts(int numberOfGroups) {
+		BitSet[] conflicts = new BitSet[numberOfGroups];
+		for (int i = 0; i < numberOfGroups; i++) {
+			conflicts[i] = new BitSet(numberOfGroups);
+		}
+		return conflicts;
+	}
+
+	private static void addConflict(BitSet[] conflicts, int i, int j) {
+		conflicts[i].set(j);
+		conflicts[j].set(i);
+	}
+
+	/**
+	 * The former way on group indices: createAllValidSignalGroupCombinations, then LaemmerUtils.removeRedundantSubPhases.
+	 */
+	private static int[][] enumerateMaximalCombinations(BitSet[] conflicts) {
+		final int numberOfGroups = conflicts.length;
+		List<int[]> combinations = new ArrayList<>();
+		for (int idx = 0; idx < numberOfGroups; idx++) {
+			combinations.add(new int[] { idx });
+		}
+		for (int newIdx = 1; newIdx < numberOfGroups; newIdx++) {
+			List<int[]> newCombinations = new ArrayList<>();
+			knownCombinationsLoop: for (int[] known : combinations) {
+				if (newIdx <= known[known.length - 1]) {
+					continue;
+				}
+				for (int knownIdx : known) {
+					if (conflicts[newIdx].get(knownIdx)) {
+						continue knownCombinationsLoop;
+					}
+				}
+				int[] newCombination = Arrays.copyOf(known, known.length + 1);
+				newCombination[known.length] = newIdx;
+				newCombinations.add(newCombination);
+			}
+			combinations.addAll(newCombinations);
+		}
+		List<int[]> maximal = new ArrayList<>();
+		for (int[] combination : combinations) {
+			boolean isSubCombination = false;
+			for (int[] other : combinations) {
+				if (other != combination && containsAll(other, combination)) {
+					isSubCombination = true;
+					break;
+				}
+			}
+			if (!isSubCombination) {
+				maximal.add(combination);
+			}
+		}
+		return maximal.toArray(new int[maximal.size()][]);
+	}
+
+	private static boolean containsAll(int[] combination, int[] other) {
+		for (int idx : other) {
+			if (Arrays.binarySearch(combination, idx) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
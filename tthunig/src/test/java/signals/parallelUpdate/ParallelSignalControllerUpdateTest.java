@@ -0,0 +1,274 @@
+/*
+ *  *********************************************************************** *
+ *  * project: org.matsim.*
+ *  * ParallelSignalControllerUpdateTest.java
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  * copyright       : (C) 2026 by the members listed in the COPYING, *
+ *  *                   LICENSE and WARRANTY file.                            *
+ *  * email           : info at matsim dot org                                *
+ *  *                                                                         *
+ *  * *********************************************************************** *
+ *  *                                                                         *
+ *  *   This program is free software; you can redistribute it and/or modify  *
+ *  *   it under the terms of the GNU General Public License as published by  *
+ *  *   the Free Software Foundation; either version 2 of the License, or     *
+ *  *   (at your option) any later version.                                   *
+ *  *   See also COPYING, LICENSE and WARRANTY file                           *
+ *  *                                                                         *
+ *  * ***********************************************************************
+ */
+package signals.parallelUpdate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.contrib.signals.SignalSystemsConfigGroup;
+import org.matsim.contrib.signals.builder.Signals;
+import org.matsim.contrib.signals.data.SignalsData;
+import org.matsim.contrib.signals.data.SignalsDataLoader;
+import org.matsim.contrib.signals.data.signalcontrol.v20.SignalControlData;
+import org.matsim.contrib.signals.data.signalgroups.v20.SignalGroupData;
+import org.matsim.contrib.signals.data.signalgroups.v20.SignalGroupsData;
+import org.matsim.contrib.signals.data.signalsystems.v20.SignalData;
+import org.matsim.contrib.signals.data.signalsystems.v20.SignalSystemControllerData;
+import org.matsim.contrib.signals.data.signalsystems.v20.SignalSystemData;
+import org.matsim.contrib.signals.data.signalsystems.v20.SignalSystemsData;
+import org.matsim.contrib.signals.events.SignalGroupStateChangedEvent;
+import org.matsim.contrib.signals.events.SignalGroupStateChangedEventHandler;
+import org.matsim.contrib.signals.model.Signal;
+import org.matsim.contrib.signals.model.SignalGroup;
+import org.matsim.contrib.signals.model.SignalSystem;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup.ActivityParams;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+import signals.gershenson.GershensonConfig;
+import signals.gershenson.GershensonSignalController;
+
+/**
+ * Runs a corridor with three Gershenson controlled crossings once with the sequential update of the signals engine and once with the
+ * concurrent update of {@link ParallelSignalControllerUpdate}, and checks that the signal group state changes are the same.
+ */
+public class ParallelSignalControllerUpdateTest {
+
+	private static final int NUMBER_OF_CROSSINGS = 3;
+
+	@Rule
+	public MatsimTestUtils testUtils = new MatsimTestUtils();
+
+	@Test
+	public void testSameSignalStatesAsSequentialUpdate() {
+		List<String> sequentialStates = runScenario(0);
+		List<String> concurrentStates = runScenario(4);
+
+		Assert.assertFalse("signal groups should switch", sequentialStates.isEmpty());
+		Assert.assertEquals("concurrent update should produce the same signal states as the sequential one", sequentialStates, concurrentStates);
+	}
+
+	@Test
+	public void testSameSignalStatesForOneAndSeveralThreads() {
+		List<String> statesOneThread = runScenario(1);
+		List<String> statesSeveralThreads = runScenario(NUMBER_OF_CROSSINGS);
+
+		Assert.assertFalse("signal groups should switch", statesOneThread.isEmpty());
+		Assert.assertEquals("signal states should not depend on the number of threads", statesOneThread, statesSeveralThreads);
+	}
+
+	/**
+	 * @param numberOfThreads number of threads of the concurrent update; 0 for the sequential update of the signals engine
+	 * @return the signal group state changes in the order of the events
+	 */
+	private List<String> runScenario(int numberOfThreads) {
+		Config config = defineConfig(numberOfThreads);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		scenario.addScenarioElement(SignalsData.ELEMENT_NAME, new SignalsDataLoader(config).loadSignalsData());
+		createNetwork(scenario.getNetwork());
+		createPopulation(scenario.getPopulation());
+		createSignals(scenario);
+
+		Controler controler = new Controler(scenario);
+		Signals.Configurator configurator = new Signals.Configurator(controler);
+		configurator.addSignalControllerFactory(GershensonSignalController.IDENTIFIER, GershensonSignalController.GershensonFactory.class);
+
+		List<String> signalStates = new ArrayList<>();
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				bind(GershensonConfig.class).toInstance(new GershensonConfig());
+				if (numberOfThreads > 0) {
+					// bind the update directly instead of using the module, so that the qsim itself stays single-threaded
+					ParallelSignalControllerUpdate parallelUpdate = new ParallelSignalControllerUpdate(numberOfThreads);
+					bind(ParallelSignalControllerUpdate.class).toInstance(parallelUpdate);
+					addMobsimListenerBinding().toInstance(parallelUpdate);
+				}
+				addEventHandlerBinding().toInstance(new SignalGroupStateChangedEventHandler() {
+					@Override
+					public void reset(int iteration) {
+						signalStates.clear();
+					}
+
+					@Override
+					public void handleEvent(SignalGroupStateChangedEvent event) {
+						signalStates.add(event.getTime() + " " + event.getSignalSystemId() + " " + event.getSignalGroupId() + " " + event.getNewState());
+					}
+				});
+			}
+		});
+		controler.run();
+		return signalStates;
+	}
+
+	private Config defineConfig(int numberOfThreads) {
+		Config config = ConfigUtils.createConfig();
+		config.controler().setOutputDirectory(testUtils.getOutputDirectory() + "threads" + numberOfThreads + "/");
+		config.controler().setOverwriteFileSetting(OverwriteFileSetting.deleteDirectoryIfExists);
+		config.controler().setLastIteration(0);
+		config.controler().setCreateGraphs(false);
+		config.vspExperimental().setWritingOutputEvents(false);
+		config.planCalcScore().setWriteExperiencedPlans(false);
+
+		SignalSystemsConfigGroup signalConfigGroup = ConfigUtils.addOrGetModule(config, SignalSystemsConfigGroup.GROUP_NAME, SignalSystemsConfigGroup.class);
+		signalConfigGroup.setUseSignalSystems(true);
+
+		config.qsim().setUsingFastCapacityUpdate(false);
+		config.qsim().setStuckTime(3600);
+		config.qsim().setRemoveStuckVehicles(false);
+		config.qsim().setStartTime(0);
+		config.qsim().setEndTime(2 * 3600);
+
+		ActivityParams dummyAct = new ActivityParams("dummy");
+		dummyAct.setTypicalDuration(12 * 3600);
+		config.planCalcScore().addActivityParams(dummyAct);
+		return config;
+	}
+
+	/**
+	 * creates a west-east corridor with NUMBER_OF_CROSSINGS crossings (nodes c1, c2, ...). Each crossing has a northern and a southern
+	 * arm; all links exist in both directions.
+	 */
+	private static void createNetwork(Network net) {
+		NetworkFactory fac = net.getFactory();
+		Node westEnd = addNode(net, "w", -1000, 0);
+		Node previous = westEnd;
+		for (int c = 1; c <= NUMBER_OF_CROSSINGS; c++) {
+			Node crossing = addNode(net, "c" + c, (c - 1) * 1000, 0);
+			Node north = addNode(net, "n" + c, (c - 1) * 1000, 1000);
+			Node south = addNode(net, "s" + c, (c - 1) * 1000, -1000);
+			addLinks(net, fac, previous, crossing);
+			addLinks(net, fac, north, crossing);
+			addLinks(net, fac, south, crossing);
+			previous = crossing;
+		}
+		Node eastEnd = addNode(net, "e", NUMBER_OF_CROSSINGS * 1000, 0);
+		addLinks(net, fac, previous, eastEnd);
+	}
+
+	private static Node addNode(Network net, String id, double x, double y) {
+		Node node = net.getFactory().createNode(Id.createNodeId(id), new Coord(x, y));
+		net.addNode(node);
+		return node;
+	}
+
+	private static void addLinks(Network net, NetworkFactory fac, Node a, Node b) {
+		for (Node[] fromTo : new Node[][] { { a, b }, { b, a } }) {
+			Link link = fac.createLink(Id.createLinkId(fromTo[0].getId() + "_" + fromTo[1].getId()), fromTo[0], fromTo[1]);
+			link.setLength(1000);
+			link.setFreespeed(10);
+			link.setCapacity(3600);
+			net.addLink(link);
+		}
+	}
+
+	/**
+	 * creates one stream through the corridor in each direction and one north-south stream at every crossing
+	 */
+	private static void createPopulation(Population population) {
+		List<String[]> odRelations = new ArrayList<>();
+		odRelations.add(new String[] { "w_c1", "c" + NUMBER_OF_CROSSINGS + "_e" });
+		odRelations.add(new String[] { "e_c" + NUMBER_OF_CROSSINGS, "c1_w" });
+		for (int c = 1; c <= NUMBER_OF_CROSSINGS; c++) {
+			odRelations.add(new String[] { "n" + c + "_c" + c, "c" + c + "_s" + c });
+		}
+		for (int odIndex = 0; odIndex < odRelations.size(); odIndex++) {
+			String[] od = odRelations.get(odIndex);
+			// different demand per stream so that the crossings switch differently
+			int noPersons = 600 + 150 * (odIndex % 3);
+			for (int i = 0; i < noPersons; i++) {
+				Person person = population.getFactory().createPerson(Id.createPersonId(od[0] + "-" + od[1] + "-" + i));
+				population.addPerson(person);
+
+				Plan plan = population.getFactory().createPlan();
+				person.addPlan(plan);
+
+				Activity startAct = population.getFactory().createActivityFromLinkId("dummy", Id.createLinkId(od[0]));
+				startAct.setEndTime(i * 3600. / noPersons);
+				plan.addActivity(startAct);
+
+				plan.addLeg(population.getFactory().createLeg(TransportMode.car));
+
+				Activity drainAct = population.getFactory().createActivityFromLinkId("dummy", Id.createLinkId(od[1]));
+				plan.addActivity(drainAct);
+			}
+		}
+	}
+
+	/**
+	 * creates one Gershenson controlled signal system per crossing with one signal per incoming link, one signal group for the west-east
+	 * and one for the north-south direction
+	 */
+	private static void createSignals(Scenario scenario) {
+		SignalsData signalsData = (SignalsData) scenario.getScenarioElement(SignalsData.ELEMENT_NAME);
+		SignalSystemsData signalSystems = signalsData.getSignalSystemsData();
+		SignalGroupsData signalGroups = signalsData.getSignalGroupsData();
+		SignalControlData signalControl = signalsData.getSignalControlData();
+
+		for (int c = 1; c <= NUMBER_OF_CROSSINGS; c++) {
+			Id<SignalSystem> systemId = Id.create("SignalSystem" + c, SignalSystem.class);
+			SignalSystemData signalSystem = signalSystems.getFactory().createSignalSystemData(systemId);
+			signalSystems.addSignalSystemData(signalSystem);
+
+			SignalGroupData westEastGroup = signalGroups.getFactory().createSignalGroupData(systemId, Id.create("WestEast", SignalGroup.class));
+			SignalGroupData northSouthGroup = signalGroups.getFactory().createSignalGroupData(systemId, Id.create("NorthSouth", SignalGroup.class));
+			for (Id<Link> inLinkId : scenario.getNetwork().getNodes().get(Id.createNodeId("c" + c)).getInLinks().keySet()) {
+				Id<Signal> signalId = Id.create("Signal" + inLinkId, Signal.class);
+				SignalData signal = signalSystems.getFactory().createSignalData(signalId);
+				signal.setLinkId(inLinkId);
+				signalSystem.addSignalData(signal);
+				if (inLinkId.toString().startsWith("n") || inLinkId.toString().startsWith("s")) {
+					northSouthGroup.addSignalId(signalId);
+				} else {
+					westEastGroup.addSignalId(signalId);
+				}
+			}
+			signalGroups.addSignalGroupData(westEastGroup);
+			signalGroups.addSignalGroupData(northSouthGroup);
+
+			SignalSystemControllerData signalSystemControl = signalControl.getFactory().createSignalSystemControllerData(systemId);
+			signalSystemControl.setControllerIdentifier(GershensonSignalController.IDENTIFIER);
+			signalControl.addSignalSystemControllerData(signalSystemControl);
+		}
+	}
+
+}
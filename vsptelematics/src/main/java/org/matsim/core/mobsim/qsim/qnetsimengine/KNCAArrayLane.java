@@ -0,0 +1,219 @@
+/* *********************************************************************** *
+ * project: org.matsim.*												   *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
+import org.matsim.lanes.Lane;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo.AgentState;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfoFactory;
+
+import playground.vsptelematics.common.NagelSchreckenbergRing;
+
+/**
+ * Cellular automaton lane with the same (periodic) dynamics as the lane in {@link KNCALink}, but with the state kept in primitive arrays.
+ * The cells (vehicle index and speed per cell) are updated by {@link NagelSchreckenbergRing}; <tt>vehicles[index]</tt> is the side table
+ * from vehicle index to {@link QVehicle}.
+ * <p>
+ * The gap to the vehicle ahead is obtained in a single backward sweep, so a time step is O(cells) instead of O(cells*vmax).  Movement writes
+ * into a second pair of arrays which are then swapped, so vehicles wrapping around the end of the ring cannot collide with vehicles that have
+ * not moved yet.
+ */
+final class KNCAArrayLane implements QLaneI {
+	static final double CELL_LENGTH = 7.5 ;
+
+	private final int maxV = 5 ;
+	private final double pDawdle = 0.1 ;
+
+	private final Link link;
+	private final SplittableRandom random ;
+	private final int len ;
+
+	private final NagelSchreckenbergRing cells ;
+
+	private final QVehicle[] vehicles ;
+	private final Map<Id<Vehicle>,QVehicle> vehiclesById = new HashMap<>() ;
+
+	private final AgentSnapshotInfoFactory snapshotInfoFactory ;
+	private final VisData visData = new VisData(){
+		@Override public Collection<AgentSnapshotInfo> addAgentSnapshotInfo( Collection<AgentSnapshotInfo> positions, double now) {
+			for ( int ii=0 ; ii<len ; ii++ ) {
+				if ( cells.isOccupied( ii ) ) {
+					Id<Person> personId = vehicles[cells.getVehicle( ii )].getDriver().getId() ;
+					AgentSnapshotInfo info = snapshotInfoFactory.createAgentSnapshotInfo(personId, link, ii*CELL_LENGTH, 0) ;
+					info.setAgentState( AgentState.PERSON_DRIVING_CAR ) ;
+					info.setColorValueBetweenZeroAndOne(0.5);
+					positions.add(info) ;
+				}
+			}
+			return positions ;
+		}
+	} ;
+
+	/**
+	 * @param snapshotInfoFactory may be <tt>null</tt> if the lane is never visualized (e.g. in benchmarks)
+	 * @param random stream used only by this lane, see {@link KNCALink#createLinkRandom}
+	 */
+	KNCAArrayLane( Link link, double density, AgentSnapshotInfoFactory snapshotInfoFactory, SplittableRandom random ) {
+		this.link = link ;
+		this.random = random ;
+		this.snapshotInfoFactory = snapshotInfoFactory ;
+		this.len = Math.max( 1, (int) (link.getLength()/CELL_LENGTH) ) ;
+
+		this.cells = new NagelSchreckenbergRing( len, maxV, pDawdle, true, true ) ;
+
+		// same placement as in KNCALink, but vehicle ids are prefixed by the link id so that they are unique network-wide:
+		List<QVehicle> tmp = new ArrayList<>() ;
+		double sum = 0 ;
+		for ( int ii=0 ; ii<len ; ii++ ) {
+			sum += density ;
+			if ( sum > 1 ) {
+				sum-- ;
+				Id<Vehicle> vehId = Id.createVehicleId( link.getId() + "_" + ii ) ;
+				Id<Person> driverId = Id.createPersonId( link.getId() + "_" + ii ) ;
+				QVehicle qVehicle = KNCALink.createDummyVehicle( vehId, driverId ) ;
+				cells.place( ii, tmp.size(), maxV ) ;
+				tmp.add( qVehicle ) ;
+				vehiclesById.put( vehId, qVehicle ) ;
+			}
+		}
+		this.vehicles = tmp.toArray( new QVehicle[0] ) ;
+	}
+
+	int getNumberOfCells() {
+		return len ;
+	}
+
+	/**
+	 * Hash over occupancy and speeds; used to check that runs with different thread counts produce identical trajectories.
+	 */
+	long stateChecksum() {
+		return cells.stateChecksum() ;
+	}
+
+	@Override public boolean doSimStep() {
+		cells.step( random ) ;
+		return true ;
+	}
+
+	@Override public Id<Lane> getId() {
+		return Id.create("1", Lane.class ) ;
+	}
+
+	@Override public void addFromWait(QVehicle veh) {
+	}
+
+	@Override public boolean isAcceptingFromWait(QVehicle veh) {
+		return false ;
+	}
+
+	@Override public boolean isActive() {
+		return true ;
+	}
+
+	@Override public double getSimulatedFlowCapacityPerTimeStep() {
+		return 0.5 ;
+	}
+
+	@Override
+	public void recalcTimeVariantAttributes() {
+		throw new RuntimeException("not implemented") ;
+	}
+
+	@Override public QVehicle getVehicle(Id<Vehicle> vehicleId) {
+		return vehiclesById.get( vehicleId ) ;
+	}
+
+	@Override public double getStorageCapacity() {
+		return len ;
+	}
+
+	@Override public VisData getVisData() {
+		return visData ;
+	}
+
+	@Override public void addTransitSlightlyUpstreamOfStop(QVehicle veh) {
+		throw new RuntimeException("not implemented") ;
+	}
+
+	@Override
+	public void changeUnscaledFlowCapacityPerSecond(double val) {
+		throw new RuntimeException("not implemented");
+	}
+
+	@Override
+	public void changeEffectiveNumberOfLanes(double val) {
+		throw new RuntimeException("not implemented");
+	}
+
+	@Override public void clearVehicles() {
+		cells.clear();
+		Arrays.fill( vehicles, null );
+		vehiclesById.clear();
+	}
+
+	@Override public Collection<MobsimVehicle> getAllVehicles() {
+		return Collections.unmodifiableCollection( vehiclesById.values() ) ;
+	}
+
+	@Override public void addFromUpstream(QVehicle veh) {
+	}
+
+	@Override public boolean isNotOfferingVehicle() {
+		return true ;
+	}
+
+	@Override public QVehicle popFirstVehicle() {
+		return null ;
+	}
+
+	@Override public QVehicle getFirstVehicle() {
+		return null ;
+	}
+
+	@Override
+	public double getLastMovementTimeOfFirstVehicle() {
+		return 0. ;
+	}
+
+	@Override public boolean isAcceptingFromUpstream() {
+		return false ;
+	}
+
+	@Override public double getLoadIndicator() {
+		return 0.5 ;
+	}
+
+	@Override
+	public void initBeforeSimStep() {
+	}
+}
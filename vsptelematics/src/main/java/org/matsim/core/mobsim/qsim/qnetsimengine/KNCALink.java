@@ -25,6 +25,7 @@ import static org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngineI.NetsimInt
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.SplittableRandom;
 
 import javax.inject.Inject;
 
@@ -47,8 +48,8 @@ import org.matsim.core.config.groups.QSimConfigGroup.EndtimeInterpretation;
 import org.matsim.core.config.groups.QSimConfigGroup.StarttimeInterpretation;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.MatsimServices;
 import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
-import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
@@ -79,6 +80,31 @@ public class KNCALink {
 	
 	private static int LEN = (int) (10000/7.5) ;
 
+	enum LaneType { objectArray, primitiveArray }
+	/**
+	 * {@link LaneType#objectArray} is the original {@link CAVehicle}[] lane; {@link LaneType#primitiveArray} is {@link KNCAArrayLane}.
+	 */
+	static LaneType laneType = LaneType.primitiveArray ;
+
+	/**
+	 * Each CA lane draws its random numbers from its own stream, seeded from the global seed, the link id and the iteration.  The
+	 * trajectories thus do not depend on how the links are distributed over the threads of the QNetsimEngine, and a run with N threads
+	 * is bit-identical to a run with one thread.
+	 */
+	static SplittableRandom createLinkRandom( long globalSeed, Id<Link> linkId, int iteration ) {
+		long seed = mix64( globalSeed ) ;
+		seed = mix64( seed ^ linkId.toString().hashCode() ) ;
+		seed = mix64( seed ^ iteration ) ;
+		return new SplittableRandom( seed ) ;
+	}
+
+	private static long mix64( long z ) {
+		// finalizer of SplitMix64
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L ;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL ;
+		return z ^ (z >>> 31) ;
+	}
+
 	static class CAVehicle {
 		QVehicle qVehicle ;
 		int spd ;
@@ -89,8 +115,126 @@ public class KNCALink {
 		}
 	}
 
+	/**
+	 * Creates a vehicle with a minimal driver that only ever stays on the ring.  The driver does not have a plan; the CA lanes never
+	 * hand it over to a node.
+	 */
+	static QVehicle createDummyVehicle( Id<Vehicle> vehId, Id<Person> driverId ) {
+		Vehicle veh = new Vehicle(){
+			@Override public Id<Vehicle> getId() {
+				return vehId ;
+			}
+			@Override public VehicleType getType() {
+				return VehicleUtils.getDefaultVehicleType() ;
+			}
+		} ;
+		QVehicle qVehicle = new QVehicleImpl(veh) ;
+		qVehicle.setDriver( new MobsimDriverAgent(){
+			@Override public Id<Person> getId() {
+				return driverId ;
+			}
+			@Override
+			public Id<Link> getCurrentLinkId() { 
+				throw new RuntimeException("not implemented") ;
+			}
+
+			@Override
+			public Id<Link> getDestinationLinkId() {
+				// TODO Auto-generated method stub
+				throw new RuntimeException("not implemented") ;
+			}
+
+			@Override
+			public String getMode() {
+				// TODO Auto-generated method stub
+				throw new RuntimeException("not implemented") ;
+			}
+
+			@Override
+			public void setVehicle(MobsimVehicle veh) {
+				// TODO Auto-generated method stub
+				throw new RuntimeException("not implemented") ;
+			}
+
+			@Override
+			public MobsimVehicle getVehicle() {
+				// TODO Auto-generated method stub
+				throw new RuntimeException("not implemented") ;
+			}
+
+			@Override
+			public Id<Vehicle> getPlannedVehicleId() {
+				// TODO Auto-generated method stub
+				throw new RuntimeException("not implemented") ;
+			}
+
+			@Override
+			public Id<Link> chooseNextLinkId() {
+				throw new RuntimeException("not implemented") ;
+			}
+
+			@Override
+			public void notifyMoveOverNode(Id<Link> newLinkId) {
+			}
+
+			@Override
+			public boolean isWantingToArriveOnCurrentLink() {
+				return false ;
+			}
+			@Override
+			public State getState() {
+				return State.LEG ;
+			}
+			@Override
+			public double getActivityEndTime() {
+				// TODO Auto-generated method stub
+				throw new RuntimeException("not implemented") ;
+			}
+			@Override
+			public void endActivityAndComputeNextState(double now) {
+				// TODO Auto-generated method stub
+				throw new RuntimeException("not implemented") ;
+			}
+			@Override
+			public void endLegAndComputeNextState(double now) {
+				// TODO Auto-generated method stub
+				throw new RuntimeException("not implemented") ;
+			}
+			@Override
+			public void setStateToAbort(double now) {
+				// TODO Auto-generated method stub
+				throw new RuntimeException("not implemented") ;
+			}
+			@Override
+			public OptionalTime getExpectedTravelTime() {
+				// TODO Auto-generated method stub
+				throw new RuntimeException("not implemented") ;
+			}
+			@Override
+			public Double getExpectedTravelDistance() {
+				// TODO Auto-generated method stub
+				throw new RuntimeException("not implemented") ;
+			}
+			@Override
+			public void notifyArrivalOnLinkByNonNetworkMode(Id<Link> linkId) {
+				// TODO Auto-generated method stub
+				throw new RuntimeException("not implemented") ;
+			}
+			@Override
+			public Facility getCurrentFacility() {
+				// TODO Auto-generated method stub
+				throw new RuntimeException("not implemented") ;
+			}
+			@Override
+			public Facility getDestinationFacility() {
+				// TODO Auto-generated method stub
+				throw new RuntimeException("not implemented") ;
+			}} );
+		return qVehicle ;
+	}
+
 	static class MyQNetworkFactory implements QNetworkFactory {
-		private final class QLaneIExtension implements QLaneI {
+		final class QLaneIExtension implements QLaneI {
 			private final class VisDataImplementation implements VisData {
 				@Override public Collection<AgentSnapshotInfo> addAgentSnapshotInfo( Collection<AgentSnapshotInfo> positions, double now) {
 					for ( int ii=MAXV ; ii<MAXV+LEN ; ii++ ) {
@@ -110,10 +254,12 @@ public class KNCALink {
 			private CAVehicle[] array = new CAVehicle[MAXV + LEN + MAXV] ;
 			private Link link;
 			private VisData visData = new VisDataImplementation() ;
+			private final SplittableRandom random ;
 
 			QLaneIExtension(Link link) {
 				log.warn("here10");
 				this.link = link ;
+				this.random = createLinkRandom( randomSeed, link.getId(), iteration ) ;
 				double sum = 0 ;
 				double dens = 0.13 ;
 				for ( int ii=MAXV ; ii<MAXV+LEN ; ii++ ) {
@@ -124,116 +270,7 @@ public class KNCALink {
 						Id<Person> driverId = Id.createPersonId( ii ) ;
 						CAVehicle caVeh = new CAVehicle() ;
 						caVeh.spd = MAXV ;
-						Vehicle veh = new Vehicle(){
-							@Override public Id<Vehicle> getId() {
-								return vehId ;
-							}
-							@Override public VehicleType getType() {
-								return VehicleUtils.getDefaultVehicleType() ;
-							}
-						} ;
-						caVeh.qVehicle = new QVehicleImpl(veh) ;
-						caVeh.qVehicle.setDriver( new MobsimDriverAgent(){
-							@Override public Id<Person> getId() {
-								return driverId ;
-							}
-							@Override
-							public Id<Link> getCurrentLinkId() { 
-								throw new RuntimeException("not implemented") ;
-							}
-
-							@Override
-							public Id<Link> getDestinationLinkId() {
-								// TODO Auto-generated method stub
-								throw new RuntimeException("not implemented") ;
-							}
-
-							@Override
-							public String getMode() {
-								// TODO Auto-generated method stub
-								throw new RuntimeException("not implemented") ;
-							}
-
-							@Override
-							public void setVehicle(MobsimVehicle veh) {
-								// TODO Auto-generated method stub
-								throw new RuntimeException("not implemented") ;
-							}
-
-							@Override
-							public MobsimVehicle getVehicle() {
-								// TODO Auto-generated method stub
-								throw new RuntimeException("not implemented") ;
-							}
-
-							@Override
-							public Id<Vehicle> getPlannedVehicleId() {
-								// TODO Auto-generated method stub
-								throw new RuntimeException("not implemented") ;
-							}
-
-							@Override
-							public Id<Link> chooseNextLinkId() {
-								throw new RuntimeException("not implemented") ;
-							}
-
-							@Override
-							public void notifyMoveOverNode(Id<Link> newLinkId) {
-							}
-
-							@Override
-							public boolean isWantingToArriveOnCurrentLink() {
-								return false ;
-							}
-							@Override
-							public State getState() {
-								return State.LEG ;
-							}
-							@Override
-							public double getActivityEndTime() {
-								// TODO Auto-generated method stub
-								throw new RuntimeException("not implemented") ;
-							}
-							@Override
-							public void endActivityAndComputeNextState(double now) {
-								// TODO Auto-generated method stub
-								throw new RuntimeException("not implemented") ;
-							}
-							@Override
-							public void endLegAndComputeNextState(double now) {
-								// TODO Auto-generated method stub
-								throw new RuntimeException("not implemented") ;
-							}
-							@Override
-							public void setStateToAbort(double now) {
-								// TODO Auto-generated method stub
-								throw new RuntimeException("not implemented") ;
-							}
-							@Override
-							public OptionalTime getExpectedTravelTime() {
-								// TODO Auto-generated method stub
-								throw new RuntimeException("not implemented") ;
-							}
-							@Override
-							public Double getExpectedTravelDistance() {
-								// TODO Auto-generated method stub
-								throw new RuntimeException("not implemented") ;
-							}
-							@Override
-							public void notifyArrivalOnLinkByNonNetworkMode(Id<Link> linkId) {
-								// TODO Auto-generated method stub
-								throw new RuntimeException("not implemented") ;
-							}
-							@Override
-							public Facility getCurrentFacility() {
-								// TODO Auto-generated method stub
-								throw new RuntimeException("not implemented") ;
-							}
-							@Override
-							public Facility getDestinationFacility() {
-								// TODO Auto-generated method stub
-								throw new RuntimeException("not implemented") ;
-							}} );
+						caVeh.qVehicle = createDummyVehicle( vehId, driverId ) ;
 						array[ii] = caVeh ;
 					}
 				}
@@ -332,12 +369,12 @@ public class KNCALink {
 						}
 						
 						if ( array[ii].spd==0 ) {
-							if ( spdTmp >=1 && MatsimRandom.getRandom().nextDouble() < 0.1 ) {
+							if ( spdTmp >=1 && random.nextDouble() < 0.1 ) {
 								array[ii].spd ++ ;
 							}
 						} else {
 							array[ii].spd = spdTmp ;
-							if ( array[ii].spd >= 1 && MatsimRandom.getRandom().nextDouble() < 0.1 ) {
+							if ( array[ii].spd >= 1 && random.nextDouble() < 0.1 ) {
 								array[ii].spd -- ;
 							}
 						}
@@ -433,10 +470,13 @@ public class KNCALink {
 		@Inject private Scenario scenario ; // yyyyyy I would like to get rid of this. kai, mar'16
 		@Inject private Network network ;
 		@Inject private QSimConfigGroup qsimConfig ;
+		@Inject private MatsimServices services ;
 
 		private NetsimEngineContext context;
 		private NetsimInternalInterface netsimEngine;
 		private AgentSnapshotInfoFactory snapshotInfoFactory;
+		private long randomSeed ;
+		private int iteration ;
 
 		@Override
 		public void initializeFactory( AgentCounter agentCounter, MobsimTimer mobsimTimer, NetsimInternalInterface netsimEngine1 ) {
@@ -454,6 +494,10 @@ public class KNCALink {
 			this.context = new NetsimEngineContext(events, effectiveCellSize, agentCounter, snapshotBuilder, qsimConfig, mobsimTimer, linkWidthCalculator ) ;
 
 			this.netsimEngine = netsimEngine1 ;
+
+			this.randomSeed = scenario.getConfig().global().getRandomSeed() ;
+			Integer it = services.getIterationNumber() ;
+			this.iteration = it==null ? 0 : it ;
 		}
 		@Override
 		public QNodeI createNetsimNode( Node node ) {
@@ -467,8 +511,15 @@ public class KNCALink {
 			QLinkImpl.Builder linkBuilder = new QLinkImpl.Builder(context, netsimEngine) ;
 			linkBuilder.setLaneFactory( new LaneFactory(){
 				@Override public QLaneI createLane(AbstractQLink qLinkImpl) {
-					QLaneI lane = new QLaneIExtension(qLinkImpl.getLink()) ;
-					return lane ;
+					switch ( laneType ) {
+						case objectArray:
+							return new QLaneIExtension(qLinkImpl.getLink()) ;
+						case primitiveArray:
+							Link link = qLinkImpl.getLink() ;
+							return new KNCAArrayLane( link, 0.13, snapshotInfoFactory, createLinkRandom( randomSeed, link.getId(), iteration ) ) ;
+						default:
+							throw new IllegalStateException( "Unexpected value: " + laneType );
+					}
 				}
 			});
 
@@ -478,9 +529,11 @@ public class KNCALink {
 
 
 	/**
-	 * @param args
+	 * @param args optional: number of QSim threads, number of (parallel) ring links
 	 */
 	public static void main(String[] args) {
+		final int nThreads = args.length > 0 ? Integer.parseInt( args[0] ) : 1 ;
+		final int nLinks = args.length > 1 ? Integer.parseInt( args[1] ) : 1 ;
 
 		Config config = ConfigUtils.createConfig() ;
 
@@ -496,7 +549,7 @@ public class KNCALink {
 		config.qsim().setEndTime(10.*3600.) ;
 		config.qsim().setSimEndtimeInterpretation( EndtimeInterpretation.onlyUseEndtime );
 		
-		config.qsim().setNumberOfThreads(1);
+		config.qsim().setNumberOfThreads(nThreads);
 		
 		config.qsim().setSnapshotPeriod(1);
 		
@@ -518,6 +571,12 @@ public class KNCALink {
 		Link link = nf.createLink(Id.createLinkId("1-2"), node1, node2) ;
 		link.setLength( LEN*7.5 );
 		net.addLink( link ) ;
+		for ( int ll=1 ; ll<nLinks ; ll++ ) {
+			// additional rings, so that there is something to distribute over the threads:
+			Link parallelLink = nf.createLink(Id.createLinkId("1-2_" + ll), node1, node2) ;
+			parallelLink.setLength( LEN*7.5 );
+			net.addLink( parallelLink ) ;
+		}
 //		Link link2 = nf.createLink(Id.createLinkId("1-3"), node1, node3) ;
 //		link.setLength( LEN*7.5 );
 //		net.addLink( link2 ) ;
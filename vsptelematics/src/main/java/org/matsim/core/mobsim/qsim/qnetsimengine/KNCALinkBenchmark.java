@@ -0,0 +1,142 @@
+/* *********************************************************************** *
+ * project: org.matsim.*												   *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+/**
+ * Timed harness that steps the original {@link KNCALink} lane and {@link KNCAArrayLane} on the same ring and reports cell updates per second.
+ * In a second part, many {@link KNCAArrayLane}s are stepped by 1, 2, 4, ... threads, each thread owning a contiguous block of lanes; it
+ * reports the throughput per thread count and checks that the final state is the same for all thread counts.
+ * <p>
+ * Usage: <tt>KNCALinkBenchmark [nSteps] [nRepetitions] [nLanes]</tt>
+ */
+final class KNCALinkBenchmark {
+	private static final Logger log = Logger.getLogger( KNCALinkBenchmark.class ) ;
+
+	private KNCALinkBenchmark() {} // do not instantiate
+
+	public static void main( String[] args ) {
+		final int nSteps = args.length > 0 ? Integer.parseInt( args[0] ) : 100000 ;
+		final int nRepetitions = args.length > 1 ? Integer.parseInt( args[1] ) : 5 ;
+		final int nLanes = args.length > 2 ? Integer.parseInt( args[2] ) : 256 ;
+
+		final int nCells = (int) (10000/7.5) ; // same as KNCALink.LEN
+		Network net = NetworkUtils.createNetwork() ;
+		NetworkFactory nf = net.getFactory() ;
+		Node node1 = nf.createNode( Id.createNodeId( 1 ), new Coord( 0., 0. ) ) ;
+		Node node2 = nf.createNode( Id.createNodeId( 2 ), new Coord( nCells*KNCAArrayLane.CELL_LENGTH, 0. ) ) ;
+		net.addNode( node1 );
+		net.addNode( node2 );
+		Link link = nf.createLink( Id.createLinkId( "1-2" ), node1, node2 ) ;
+		link.setLength( nCells*KNCAArrayLane.CELL_LENGTH );
+		net.addLink( link );
+
+		for ( int rep=0 ; rep<nRepetitions ; rep++ ) {
+			// first repetition is warm-up
+			QLaneI objectLane = new KNCALink.MyQNetworkFactory().new QLaneIExtension( link ) ;
+			double objectRate = cellUpdatesPerSecond( objectLane, nCells, nSteps ) ;
+
+			QLaneI arrayLane = new KNCAArrayLane( link, 0.13, null, KNCALink.createLinkRandom( 4711, link.getId(), 0 ) ) ;
+			double arrayRate = cellUpdatesPerSecond( arrayLane, nCells, nSteps ) ;
+
+			log.info( "rep=" + rep + ( rep==0 ? " (warm-up)" : "" ) + "; cells=" + nCells + "; steps=" + nSteps
+					+ "; objectArray: " + String.format( "%.3e", objectRate ) + " cell updates/s"
+					+ "; primitiveArray: " + String.format( "%.3e", arrayRate ) + " cell updates/s"
+					+ "; speedup=" + String.format( "%.2f", arrayRate/objectRate ) ) ;
+		}
+
+		final int nParallelSteps = Math.max( 1, nSteps/10 ) ;
+		Long referenceChecksum = null ;
+		for ( int nThreads=1 ; nThreads<=Runtime.getRuntime().availableProcessors() ; nThreads*=2 ) {
+			List<KNCAArrayLane> lanes = new ArrayList<>() ;
+			for ( int ll=0 ; ll<nLanes ; ll++ ) {
+				Link laneLink = nf.createLink( Id.createLinkId( "1-2_" + ll ), node1, node2 ) ;
+				laneLink.setLength( nCells*KNCAArrayLane.CELL_LENGTH );
+				lanes.add( new KNCAArrayLane( laneLink, 0.13, null, KNCALink.createLinkRandom( 4711, laneLink.getId(), 0 ) ) ) ;
+			}
+			long start = System.nanoTime() ;
+			stepInParallel( lanes, nThreads, nParallelSteps ) ;
+			long duration = System.nanoTime() - start ;
+
+			long checksum = 17 ;
+			for ( KNCAArrayLane lane : lanes ) {
+				checksum = 31*checksum + lane.stateChecksum() ;
+			}
+			if ( referenceChecksum==null ) {
+				referenceChecksum = checksum ;
+			}
+			log.info( "threads=" + nThreads + "; lanes=" + nLanes + "; steps=" + nParallelSteps + "; "
+					+ String.format( "%.3e", (double) nCells * nLanes * nParallelSteps / ( duration * 1.e-9 ) ) + " cell updates/s"
+					+ "; identical to 1 thread: " + ( checksum==referenceChecksum ) ) ;
+		}
+	}
+
+	private static void stepInParallel( List<KNCAArrayLane> lanes, int nThreads, int nSteps ) {
+		ExecutorService pool = Executors.newFixedThreadPool( nThreads ) ;
+		try {
+			List<Callable<Void>> tasks = new ArrayList<>() ;
+			final int blockSize = (lanes.size() + nThreads - 1) / nThreads ;
+			for ( int tt=0 ; tt<nThreads ; tt++ ) {
+				final List<KNCAArrayLane> block = lanes.subList( Math.min( tt*blockSize, lanes.size() ), Math.min( (tt+1)*blockSize, lanes.size() ) ) ;
+				tasks.add( () -> {
+					for ( KNCAArrayLane lane : block ) {
+						lane.doSimStep() ;
+					}
+					return null ;
+				} ) ;
+			}
+			for ( int step=0 ; step<nSteps ; step++ ) {
+				// invokeAll returns when all blocks are done, i.e. it is the barrier between time steps:
+				for ( Future<Void> future : pool.invokeAll( tasks ) ) {
+					future.get() ;
+				}
+			}
+		} catch ( InterruptedException | ExecutionException e ) {
+			throw new RuntimeException( e ) ;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static double cellUpdatesPerSecond( QLaneI lane, int nCells, int nSteps ) {
+		long start = System.nanoTime() ;
+		for ( int step=0 ; step<nSteps ; step++ ) {
+			lane.doSimStep() ;
+		}
+		long duration = System.nanoTime() - start ;
+		return (double) nCells * nSteps / ( duration * 1.e-9 ) ;
+	}
+
+}
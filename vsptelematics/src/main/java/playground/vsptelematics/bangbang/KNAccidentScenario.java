@@ -189,6 +189,11 @@ public class KNAccidentScenario {
 
 				this.bind( MyIterationCounter.class ).in(Singleton.class) ;
 
+				// vehicles on the links where the within-day listeners look for agents to replan:
+				final MonitoredLinksVehicleIndex vehicleIndex = new MonitoredLinksVehicleIndex( scenario.getNetwork(), replanningLinkIds ) ;
+				this.bind( MonitoredLinksVehicleIndex.class ).toInstance( vehicleIndex ) ;
+				this.addEventHandlerBinding().toInstance( vehicleIndex ) ;
+
 				// These are the possible strategies.  Only some of the above bindings are needed for each of them.
 				switch( runType ) {
 					case base:
@@ -248,7 +253,7 @@ public class KNAccidentScenario {
 
 	}
 
-	private static void scheduleAccident(final Scenario scenario) {
+	static void scheduleAccident(final Scenario scenario) {
 		List<NetworkChangeEvent> events = new ArrayList<>() ;
 		{
 			NetworkChangeEvent event = new NetworkChangeEvent(8*3600.) ;
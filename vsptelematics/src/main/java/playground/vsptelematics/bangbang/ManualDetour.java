@@ -50,6 +50,7 @@ import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
 import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.facilities.Facility;
+import org.matsim.withinday.mobsim.MobsimDataProvider;
 import org.matsim.vehicles.Vehicle;
 
 import com.google.inject.Inject;
@@ -92,9 +93,16 @@ public class ManualDetour implements MobsimBeforeSimStepListener {
 		}
 	}
 
+	private final MonitoredLinksVehicleIndex vehicleIndex ;
+	private final MobsimDataProvider mobsimData ;
+	private final List<MobsimAgent> agentsToReplan = new ArrayList<>() ;
+
 	@Inject
-	ManualDetour(Scenario scenario, LeastCostPathCalculatorFactory pathAlgoFactory ) {
+	ManualDetour(Scenario scenario, LeastCostPathCalculatorFactory pathAlgoFactory, MonitoredLinksVehicleIndex vehicleIndex,
+			MobsimDataProvider mobsimData ) {
 		this.scenario = scenario ;
+		this.vehicleIndex = vehicleIndex ;
+		this.mobsimData = mobsimData ;
 
 		alternativeLinks = computeAlternativeRouteLinkIds(pathAlgoFactory) ;
 
@@ -140,7 +148,8 @@ public class ManualDetour implements MobsimBeforeSimStepListener {
 		if ( 8.*3600 + 50*60 + duration < now  ) return ;
 		
 		double replanningProba = 1. ;
-		Collection<MobsimAgent> agentsToReplan = WithinDayReRouteMobsimListener.getAgentsToReplan( (Netsim) event.getQueueSimulation(), replanningProba);
+		Collection<MobsimAgent> agentsToReplan = WithinDayReRouteMobsimListener.getAgentsToReplan( (Netsim) event.getQueueSimulation(), replanningProba,
+				vehicleIndex, mobsimData, this.agentsToReplan );
 
 		for (MobsimAgent ma : agentsToReplan) {
 			doReplanning(ma);
@@ -0,0 +1,170 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MonitoredLinksVehicleIndex.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package playground.vsptelematics.bangbang;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Keeps, for every monitored link, the set of vehicles currently on it.  The sets are updated incrementally from the link enter/leave and
+ * enters/leaves traffic events, so that the within-day listeners can find their replanning candidates in time proportional to the number
+ * of candidates, instead of going through all vehicles on all monitored links at every decision time step.
+ * <p>
+ * Links and vehicles are addressed by {@link Id#index()}; every set is a dense array with swap-remove, so add and remove are O(1).  The
+ * order within a set is therefore the order of arrival, permuted by the removals, and not the queue order of the link in the mobsim.
+ * A vehicle is counted from its {@link VehicleEntersTrafficEvent} on, so vehicles that are still in the waiting list of a link are not
+ * on it.
+ */
+final class MonitoredLinksVehicleIndex implements LinkEnterEventHandler, LinkLeaveEventHandler, VehicleEntersTrafficEventHandler,
+VehicleLeavesTrafficEventHandler {
+
+	private static final int NO_SLOT = -1 ;
+
+	/**
+	 * slot of every link (by link index); the slot is the position of the link in the list of monitored links
+	 */
+	private final int[] slotOfLink ;
+	private final int nSlots ;
+
+	private final Id<Vehicle>[][] vehiclesInSlot ;
+	private final int[] nVehiclesInSlot ;
+
+	private int[] slotOfVehicle = new int[0] ;
+	private int[] posOfVehicle = new int[0] ;
+
+	MonitoredLinksVehicleIndex( Network network, Collection<Id<Link>> monitoredLinkIds ) {
+		int maxLinkIndex = -1 ;
+		for ( Link link : network.getLinks().values() ) {
+			maxLinkIndex = Math.max( maxLinkIndex, link.getId().index() ) ;
+		}
+		this.slotOfLink = new int[maxLinkIndex+1] ;
+		Arrays.fill( slotOfLink, NO_SLOT );
+
+		int slot = 0 ;
+		for ( Id<Link> linkId : monitoredLinkIds ) {
+			if ( !network.getLinks().containsKey( linkId ) ) {
+				throw new IllegalArgumentException( "monitored link " + linkId + " is not in the network" ) ;
+			}
+			slotOfLink[linkId.index()] = slot++ ;
+		}
+		this.nSlots = slot ;
+
+		@SuppressWarnings("unchecked")
+		Id<Vehicle>[][] tmp = new Id[nSlots][16] ;
+		this.vehiclesInSlot = tmp ;
+		this.nVehiclesInSlot = new int[nSlots] ;
+	}
+
+	int getNumberOfMonitoredLinks() {
+		return nSlots ;
+	}
+
+	int getNumberOfVehiclesOnLink( int slot ) {
+		return nVehiclesInSlot[slot] ;
+	}
+
+	Id<Vehicle> getVehicleOnLink( int slot, int ii ) {
+		return vehiclesInSlot[slot][ii] ;
+	}
+
+	@Override
+	public void handleEvent( LinkEnterEvent event ) {
+		add( event.getVehicleId(), event.getLinkId() ) ;
+	}
+
+	@Override
+	public void handleEvent( LinkLeaveEvent event ) {
+		remove( event.getVehicleId() ) ;
+	}
+
+	@Override
+	public void handleEvent( VehicleEntersTrafficEvent event ) {
+		// (there is no link enter event for the departure link)
+		add( event.getVehicleId(), event.getLinkId() ) ;
+	}
+
+	@Override
+	public void handleEvent( VehicleLeavesTrafficEvent event ) {
+		remove( event.getVehicleId() ) ;
+	}
+
+	@Override
+	public void reset( int iteration ) {
+		Arrays.fill( nVehiclesInSlot, 0 );
+		Arrays.fill( slotOfVehicle, NO_SLOT );
+	}
+
+	private void add( Id<Vehicle> vehicleId, Id<Link> linkId ) {
+		final int linkIdx = linkId.index() ;
+		if ( linkIdx >= slotOfLink.length || slotOfLink[linkIdx]==NO_SLOT ) {
+			return ;
+		}
+		final int slot = slotOfLink[linkIdx] ;
+		final int vehIdx = vehicleId.index() ;
+		if ( vehIdx >= slotOfVehicle.length ) {
+			final int oldLength = slotOfVehicle.length ;
+			final int newLength = Math.max( vehIdx+1, 2*oldLength ) ;
+			slotOfVehicle = Arrays.copyOf( slotOfVehicle, newLength ) ;
+			posOfVehicle = Arrays.copyOf( posOfVehicle, newLength ) ;
+			Arrays.fill( slotOfVehicle, oldLength, newLength, NO_SLOT );
+		}
+		if ( slotOfVehicle[vehIdx]!=NO_SLOT ) {
+			remove( vehicleId ) ; // should not happen with consistent events, but do not leave stale entries behind
+		}
+		final int pos = nVehiclesInSlot[slot]++ ;
+		if ( pos==vehiclesInSlot[slot].length ) {
+			vehiclesInSlot[slot] = Arrays.copyOf( vehiclesInSlot[slot], 2*pos ) ;
+		}
+		vehiclesInSlot[slot][pos] = vehicleId ;
+		slotOfVehicle[vehIdx] = slot ;
+		posOfVehicle[vehIdx] = pos ;
+	}
+
+	private void remove( Id<Vehicle> vehicleId ) {
+		final int vehIdx = vehicleId.index() ;
+		if ( vehIdx >= slotOfVehicle.length || slotOfVehicle[vehIdx]==NO_SLOT ) {
+			return ;
+		}
+		final int slot = slotOfVehicle[vehIdx] ;
+		final int pos = posOfVehicle[vehIdx] ;
+		final int last = --nVehiclesInSlot[slot] ;
+		// swap-remove: move the last vehicle of the slot into the hole:
+		final Id<Vehicle> lastVehicleId = vehiclesInSlot[slot][last] ;
+		vehiclesInSlot[slot][pos] = lastVehicleId ;
+		posOfVehicle[lastVehicleId.index()] = pos ;
+		vehiclesInSlot[slot][last] = null ;
+		slotOfVehicle[vehIdx] = NO_SLOT ;
+	}
+
+}
@@ -3,6 +3,10 @@
  */
 package playground.vsptelematics.bangbang;
 
+import java.util.Arrays;
+import java.util.Set;
+
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.*;
 import org.matsim.api.core.v01.events.handler.*;
@@ -10,107 +14,220 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
 import org.matsim.core.router.util.TravelTime;
-import org.matsim.core.trafficmonitoring.TravelTimeCalculator;
 import org.matsim.vehicles.Vehicle;
 
 /**
+ * Travel times of the previous iteration (day-to-day learning): the link travel times of the current iteration are collected from the
+ * events, and {@link #getLinkTravelTime} answers from the ones of the previous iteration.  Without data, the free speed travel time is
+ * returned.
+ * <p>
+ * Both generations are flat <tt>float[linkIndex*nBins + bin]</tt> arrays; during the iteration <tt>current</tt> holds the sums of the
+ * travel times (and <tt>counts</tt> the number of vehicles), at {@link #reset(int)} it is converted in place into averages and swapped
+ * with <tt>previous</tt>.  This replaces two full {@link org.matsim.core.trafficmonitoring.TravelTimeCalculator}s.
+ * <p>
+ * With <tt>smoothing</tt> &lt; 1, the travel times are not taken from the previous iteration alone but exponentially smoothed over the
+ * iterations: <tt>previous = smoothing * average + (1-smoothing) * previous</tt> wherever both are known.
+ * <p>
+ * As in the {@link org.matsim.core.trafficmonitoring.TravelTimeCalculator}, the travel times are consolidated at the reset: a bin
+ * (with or without data) never answers less than the travel time of the bin before minus the bin size, so that congestion is carried
+ * forward into the following bins instead of dropping back to the free speed.  With <tt>filterModes</tt>, only vehicles that entered
+ * traffic with one of the <tt>analyzedModes</tt> of the travel time calculator config are counted.
+ * 
  * @author kainagel
  *
  */
 final class MyTravelTime implements TravelTime, LinkEnterEventHandler, LinkLeaveEventHandler, 
 VehicleEntersTrafficEventHandler, VehicleLeavesTrafficEventHandler, VehicleArrivesAtFacilityEventHandler, 
 VehicleAbortsEventHandler {
-	
-	TravelTimeCalculator current ;
-	TravelTimeCalculator previous = null ;
+
+	private static final int NOT_ON_LINK = -1 ;
+
+	private final double binSize ;
+	private final int nBins ;
+	private final double smoothing ;
+	private final Set<String> analyzedModes ;
+	private final Link[] links ;
+
+	private float[] current ;
+	private float[] previous ;
+	private final int[] counts ;
+
+	// per vehicle index:
+	private int[] enterLinkIndex = new int[0] ;
+	private double[] enterTime = new double[0] ;
+	private boolean[] ignored = new boolean[0] ;
 	
 	MyTravelTime(Scenario scenario) {
-		current = new TravelTimeCalculator(scenario.getNetwork(), scenario.getConfig().travelTimeCalculator() ) ;
-		previous = new TravelTimeCalculator(scenario.getNetwork(), scenario.getConfig().travelTimeCalculator() ) ;
+		this( scenario, 1. ) ;
 	}
 
-
 	/**
-	 * @return
-	 * @see java.lang.Object#toString()
+	 * @param smoothing weight of the newest iteration; 1 means that only the previous iteration is used
 	 */
+	MyTravelTime(Scenario scenario, double smoothing) {
+		if ( smoothing <= 0. || smoothing > 1. ) {
+			throw new IllegalArgumentException( "smoothing must be in (0,1]; got " + smoothing ) ;
+		}
+		TravelTimeCalculatorConfigGroup ttcConfig = scenario.getConfig().travelTimeCalculator() ;
+		this.binSize = ttcConfig.getTraveltimeBinSize() ;
+		this.nBins = (int) ( ttcConfig.getMaxTime() / this.binSize ) + 1 ;
+		this.smoothing = smoothing ;
+		this.analyzedModes = ttcConfig.isFilterModes() ? ttcConfig.getAnalyzedModes() : null ;
+		int maxLinkIndex = -1 ;
+		for ( Link link : scenario.getNetwork().getLinks().values() ) {
+			maxLinkIndex = Math.max( maxLinkIndex, link.getId().index() ) ;
+		}
+		this.links = new Link[maxLinkIndex + 1] ;
+		for ( Link link : scenario.getNetwork().getLinks().values() ) {
+			this.links[link.getId().index()] = link ;
+		}
+		final int size = ( maxLinkIndex + 1 ) * nBins ;
+		this.current = new float[size] ;
+		this.previous = new float[size] ;
+		this.counts = new int[size] ;
+		Arrays.fill( previous, Float.NaN );
+	}
+
+	private int getBin( double time ) {
+		// (times after maxTime go into the last bin, as in the TravelTimeCalculator)
+		return Math.min( (int) ( time / binSize ), nBins - 1 ) ;
+	}
+
 	@Override
 	public String toString() {
-		return current.toString();
+		return "MyTravelTime[binSize=" + binSize + ", nBins=" + nBins + ", smoothing=" + smoothing + "]" ;
 	}
 
-	/**
-	 * @param e
-	 * @see org.matsim.core.trafficmonitoring.TravelTimeCalculator#handleEvent(org.matsim.api.core.v01.events.LinkEnterEvent)
-	 */
 	@Override
 	public void handleEvent(LinkEnterEvent e) {
-		current.handleEvent(e);
+		final int vehicleIndex = e.getVehicleId().index() ;
+		ensureVehicleCapacity( vehicleIndex ) ;
+		if ( ignored[vehicleIndex] ) {
+			return ;
+		}
+		enterLinkIndex[vehicleIndex] = e.getLinkId().index() ;
+		enterTime[vehicleIndex] = e.getTime() ;
+	}
+
+	private void ensureVehicleCapacity( int vehicleIndex ) {
+		if ( vehicleIndex >= enterLinkIndex.length ) {
+			final int oldLength = enterLinkIndex.length ;
+			final int newLength = Math.max( vehicleIndex+1, 2*oldLength ) ;
+			enterLinkIndex = Arrays.copyOf( enterLinkIndex, newLength ) ;
+			enterTime = Arrays.copyOf( enterTime, newLength ) ;
+			ignored = Arrays.copyOf( ignored, newLength ) ;
+			Arrays.fill( enterLinkIndex, oldLength, newLength, NOT_ON_LINK );
+		}
 	}
 
-	/**
-	 * @param e
-	 * @see org.matsim.core.trafficmonitoring.TravelTimeCalculator#handleEvent(org.matsim.api.core.v01.events.LinkLeaveEvent)
-	 */
 	@Override
 	public void handleEvent(LinkLeaveEvent e) {
-		current.handleEvent(e);
+		final int vehicleIndex = e.getVehicleId().index() ;
+		if ( vehicleIndex >= enterLinkIndex.length ) {
+			return ; // departed on this link; not counted
+		}
+		final int linkIndex = enterLinkIndex[vehicleIndex] ;
+		if ( linkIndex == e.getLinkId().index() && linkIndex * nBins < current.length ) {
+			final int idx = linkIndex * nBins + getBin( enterTime[vehicleIndex] ) ;
+			current[idx] += (float) ( e.getTime() - enterTime[vehicleIndex] ) ;
+			counts[idx]++ ;
+		}
+		enterLinkIndex[vehicleIndex] = NOT_ON_LINK ;
 	}
 
-	/**
-	 * @param event
-	 * @see org.matsim.core.trafficmonitoring.TravelTimeCalculator#handleEvent(org.matsim.api.core.v01.events.VehicleEntersTrafficEvent)
-	 */
 	@Override
 	public void handleEvent(VehicleEntersTrafficEvent event) {
-		current.handleEvent(event);
+		// (the departure link is not counted, since the vehicle did not traverse it completely)
+		forget( event.getVehicleId() ) ;
+		if ( analyzedModes != null ) {
+			final int vehicleIndex = event.getVehicleId().index() ;
+			ensureVehicleCapacity( vehicleIndex ) ;
+			ignored[vehicleIndex] = !analyzedModes.contains( event.getNetworkMode() ) ;
+		}
 	}
 
-	/**
-	 * @param event
-	 * @see org.matsim.core.trafficmonitoring.TravelTimeCalculator#handleEvent(org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent)
-	 */
 	@Override
 	public void handleEvent(VehicleLeavesTrafficEvent event) {
-		current.handleEvent(event);
+		forget( event.getVehicleId() ) ;
 	}
 
-	/**
-	 * @param event
-	 * @see org.matsim.core.trafficmonitoring.TravelTimeCalculator#handleEvent(org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent)
-	 */
 	@Override
 	public void handleEvent(VehicleArrivesAtFacilityEvent event) {
-		current.handleEvent(event);
+		// nothing to do; the vehicle stays on the link
 	}
 
-	/**
-	 * @param event
-	 * @see org.matsim.core.trafficmonitoring.TravelTimeCalculator#handleEvent(org.matsim.api.core.v01.events.VehicleAbortsEvent)
-	 */
 	@Override
 	public void handleEvent(VehicleAbortsEvent event) {
-		current.handleEvent(event);
+		forget( event.getVehicleId() ) ;
+	}
+
+	private void forget( Id<Vehicle> vehicleId ) {
+		final int vehicleIndex = vehicleId.index() ;
+		if ( vehicleIndex < enterLinkIndex.length ) {
+			enterLinkIndex[vehicleIndex] = NOT_ON_LINK ;
+		}
 	}
 
-	/**
-	 * @param iteration
-	 * @see org.matsim.core.trafficmonitoring.TravelTimeCalculator#reset(int)
-	 */
 	@Override
 	public void reset(int iteration) {
+		// sums -> averages, merged into the previous generation:
+		for ( int ii=0 ; ii<current.length ; ii++ ) {
+			final float average = counts[ii] > 0 ? current[ii] / counts[ii] : Float.NaN ;
+			if ( smoothing < 1. && !Float.isNaN( previous[ii] ) ) {
+				current[ii] = Float.isNaN( average ) ? previous[ii] : (float) ( smoothing * average + ( 1. - smoothing ) * previous[ii] ) ;
+			} else {
+				current[ii] = average ;
+			}
+		}
 		// Ringtausch:
-		TravelTimeCalculator tmp = previous ;
+		float[] tmp = previous ;
 		previous = current ;
 		current = tmp ;
+		consolidate() ;
 
-		current.reset(iteration) ;
+		Arrays.fill( current, 0.f );
+		Arrays.fill( counts, 0 );
+		Arrays.fill( enterLinkIndex, NOT_ON_LINK );
+		Arrays.fill( ignored, false );
+	}
+
+	/**
+	 * Same rule as in the consolidation of the {@link org.matsim.core.trafficmonitoring.TravelTimeCalculator}: bins are raised to the
+	 * travel time of the bin before minus the bin size.  Bins that are not raised keep their value (NaN = free speed).
+	 */
+	private void consolidate() {
+		for ( int linkIndex=0 ; linkIndex<links.length ; linkIndex++ ) {
+			final Link link = links[linkIndex] ;
+			if ( link == null ) {
+				continue ;
+			}
+			final int offset = linkIndex * nBins ;
+			double prevTtime = Float.isNaN( previous[offset] ) ? link.getLength() / link.getFreespeed( 0. ) : previous[offset] ;
+			for ( int bin=1 ; bin<nBins ; bin++ ) {
+				final float value = previous[offset + bin] ;
+				double ttime = Float.isNaN( value ) ? link.getLength() / link.getFreespeed( bin * binSize ) : value ;
+				final double minTtime = prevTtime - binSize ;
+				if ( ttime < minTtime ) {
+					ttime = minTtime ;
+					previous[offset + bin] = (float) ttime ;
+				}
+				prevTtime = ttime ;
+			}
+		}
 	}
 
 	@Override 
 	public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
-		return previous.getLinkTravelTimes().getLinkTravelTime(link, time, person, vehicle);
+		final int idx = link.getId().index() * nBins + getBin( time ) ;
+		if ( idx < previous.length ) {
+			final float ttime = previous[idx] ;
+			if ( !Float.isNaN( ttime ) ) {
+				return ttime ;
+			}
+		}
+		return link.getLength() / link.getFreespeed( time ) ;
 	}
 
 }
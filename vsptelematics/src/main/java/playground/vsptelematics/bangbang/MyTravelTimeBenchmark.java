@@ -0,0 +1,173 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MyTravelTimeBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package playground.vsptelematics.bangbang;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.TravelTimeCalculator;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Timed harness comparing {@link MyTravelTime} with the {@link TravelTimeCalculator} it replaced: cost per link enter/leave event pair,
+ * and cost per {@link MyTravelTime#getLinkTravelTime} query on the travel times of the previous iteration.  Both get the same events
+ * on a synthetic grid network; the largest difference between the answers is reported as a sanity check.
+ * <p>
+ * Usage: <tt>MyTravelTimeBenchmark [gridSize] [nTraversals] [nQueries] [nRepetitions]</tt>
+ */
+final class MyTravelTimeBenchmark {
+	private static final Logger log = Logger.getLogger( MyTravelTimeBenchmark.class ) ;
+
+	private MyTravelTimeBenchmark() {} // do not instantiate
+
+	public static void main( String[] args ) {
+		final int gridSize = args.length > 0 ? Integer.parseInt( args[0] ) : 100 ;
+		final int nTraversals = args.length > 1 ? Integer.parseInt( args[1] ) : 2000000 ;
+		final int nQueries = args.length > 2 ? Integer.parseInt( args[2] ) : 2000000 ;
+		final int nRepetitions = args.length > 3 ? Integer.parseInt( args[3] ) : 5 ;
+
+		Scenario scenario = ScenarioUtils.createScenario( ConfigUtils.createConfig() ) ;
+		createGrid( scenario.getNetwork(), gridSize ) ;
+		final Link[] links = scenario.getNetwork().getLinks().values().toArray( new Link[0] ) ;
+		final List<LinkEnterEvent> enterEvents = new ArrayList<>() ;
+		final List<LinkLeaveEvent> leaveEvents = new ArrayList<>() ;
+		createEvents( links, nTraversals, enterEvents, leaveEvents ) ;
+		log.info( "links=" + links.length + "; traversals=" + nTraversals + "; bin size="
+				+ scenario.getConfig().travelTimeCalculator().getTraveltimeBinSize() ) ;
+
+		for ( int rep=0 ; rep<nRepetitions ; rep++ ) {
+			// first repetition is warm-up
+			MyTravelTime myTravelTime = new MyTravelTime( scenario ) ;
+			myTravelTime.reset( 0 );
+			long start = System.nanoTime() ;
+			for ( int ii=0 ; ii<nTraversals ; ii++ ) {
+				myTravelTime.handleEvent( enterEvents.get( ii ) );
+				myTravelTime.handleEvent( leaveEvents.get( ii ) );
+			}
+			long myEventDuration = System.nanoTime() - start ;
+			myTravelTime.reset( 1 ); // now the collected travel times are the "previous" ones
+
+			TravelTimeCalculator calculator = new TravelTimeCalculator( scenario.getNetwork(), scenario.getConfig().travelTimeCalculator() ) ;
+			calculator.reset( 0 );
+			start = System.nanoTime() ;
+			for ( int ii=0 ; ii<nTraversals ; ii++ ) {
+				calculator.handleEvent( enterEvents.get( ii ) );
+				calculator.handleEvent( leaveEvents.get( ii ) );
+			}
+			long calculatorEventDuration = System.nanoTime() - start ;
+
+			SplittableRandom random = new SplittableRandom( 42 ) ;
+			double sum = 0. ;
+			start = System.nanoTime() ;
+			for ( int ii=0 ; ii<nQueries ; ii++ ) {
+				sum += myTravelTime.getLinkTravelTime( links[random.nextInt( links.length )], random.nextDouble( 24*3600. ), null, null ) ;
+			}
+			long myQueryDuration = System.nanoTime() - start ;
+
+			random = new SplittableRandom( 42 ) ;
+			double calculatorSum = 0. ;
+			start = System.nanoTime() ;
+			for ( int ii=0 ; ii<nQueries ; ii++ ) {
+				calculatorSum += calculator.getLinkTravelTimes().getLinkTravelTime( links[random.nextInt( links.length )],
+						random.nextDouble( 24*3600. ), null, null ) ;
+			}
+			long calculatorQueryDuration = System.nanoTime() - start ;
+
+			double maxDiff = 0. ;
+			random = new SplittableRandom( 4711 ) ;
+			for ( int ii=0 ; ii<10000 ; ii++ ) {
+				Link link = links[random.nextInt( links.length )] ;
+				double time = random.nextDouble( 24*3600. ) ;
+				maxDiff = Math.max( maxDiff, Math.abs( myTravelTime.getLinkTravelTime( link, time, null, null )
+						- calculator.getLinkTravelTimes().getLinkTravelTime( link, time, null, null ) ) ) ;
+			}
+
+			log.info( "rep=" + rep + ( rep==0 ? " (warm-up)" : "" )
+					+ String.format( "; events: MyTravelTime %.1f ns/traversal, TravelTimeCalculator %.1f ns/traversal",
+							(double) myEventDuration / nTraversals, (double) calculatorEventDuration / nTraversals )
+					+ String.format( "; queries: MyTravelTime %.1f ns, TravelTimeCalculator %.1f ns",
+							(double) myQueryDuration / nQueries, (double) calculatorQueryDuration / nQueries )
+					+ String.format( "; max difference: %.3f sec (checksums %.1f/%.1f)", maxDiff, sum, calculatorSum ) ) ;
+		}
+	}
+
+	private static void createGrid( Network network, int gridSize ) {
+		NetworkFactory nf = network.getFactory() ;
+		Node[][] nodes = new Node[gridSize][gridSize] ;
+		for ( int xx=0 ; xx<gridSize ; xx++ ) {
+			for ( int yy=0 ; yy<gridSize ; yy++ ) {
+				nodes[xx][yy] = nf.createNode( Id.createNodeId( xx + "_" + yy ), new Coord( 500.*xx, 500.*yy ) ) ;
+				network.addNode( nodes[xx][yy] );
+			}
+		}
+		for ( int xx=0 ; xx<gridSize ; xx++ ) {
+			for ( int yy=0 ; yy<gridSize ; yy++ ) {
+				if ( xx+1 < gridSize ) {
+					addLink( network, nodes[xx][yy], nodes[xx+1][yy] ) ;
+					addLink( network, nodes[xx+1][yy], nodes[xx][yy] ) ;
+				}
+				if ( yy+1 < gridSize ) {
+					addLink( network, nodes[xx][yy], nodes[xx][yy+1] ) ;
+					addLink( network, nodes[xx][yy+1], nodes[xx][yy] ) ;
+				}
+			}
+		}
+	}
+
+	private static void addLink( Network network, Node from, Node to ) {
+		Link link = network.getFactory().createLink( Id.createLinkId( from.getId() + "-" + to.getId() ), from, to ) ;
+		link.setLength( 500. );
+		link.setFreespeed( 50./3.6 );
+		link.setCapacity( 1800. );
+		link.setNumberOfLanes( 1. );
+		network.addLink( link );
+	}
+
+	/**
+	 * One traversal per entry, each by its own vehicle, with a travel time between free speed and three times free speed.
+	 */
+	private static void createEvents( Link[] links, int nTraversals, List<LinkEnterEvent> enterEvents, List<LinkLeaveEvent> leaveEvents ) {
+		SplittableRandom random = new SplittableRandom( 4711 ) ;
+		for ( int ii=0 ; ii<nTraversals ; ii++ ) {
+			Link link = links[random.nextInt( links.length )] ;
+			Id<Vehicle> vehicleId = Id.createVehicleId( ii ) ;
+			double enterTime = Math.floor( random.nextDouble( 24*3600. ) ) ;
+			double freeSpeedTime = link.getLength() / link.getFreespeed() ;
+			double leaveTime = enterTime + Math.floor( freeSpeedTime * ( 1. + 2.*random.nextDouble() ) ) ;
+			enterEvents.add( new LinkEnterEvent( enterTime, vehicleId, link.getId() ) ) ;
+			leaveEvents.add( new LinkLeaveEvent( leaveTime, vehicleId, link.getId() ) ) ;
+		}
+	}
+
+}
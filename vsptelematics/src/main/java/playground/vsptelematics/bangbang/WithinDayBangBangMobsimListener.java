@@ -21,9 +21,10 @@
 package playground.vsptelematics.bangbang;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -33,6 +34,7 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
+import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
@@ -51,10 +53,20 @@ import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.facilities.Facility;
 import org.matsim.vehicles.Vehicle;
+import org.matsim.withinday.mobsim.MobsimDataProvider;
 
 import com.google.inject.Inject;
 
+import playground.vsptelematics.common.TelematicsConfigGroup;
+
 /**
+ * Bang-bang control: at every detour site, agents on a decision link are sent onto the route (original or detour) that is currently
+ * fastest according to the injected {@link TravelTime}.
+ * <p>
+ * The routes of every site are resolved to {@link Link} arrays once, at construction.  Their travel times are re-evaluated on every time
+ * step on which there is anybody to replan at all, or at most once per
+ * {@link TelematicsConfigGroup#getBangBangReevaluationInterval() re-evaluation interval} if one is configured.
+ *
  * @author nagel
  *
  */
@@ -64,14 +76,76 @@ class WithinDayBangBangMobsimListener implements MobsimBeforeSimStepListener {
 
 	private final Scenario scenario;
 
-	private List<Id<Link>> alternativeLinks;
+	private final Id<Link> returnId = Id.createLinkId("4706699_26662459_26662476");
+
+	private final TravelTime travelTime;
+	private final double reevaluationInterval ;
+
+	private final List<DetourSite> sites = new ArrayList<>() ;
+	private final Map<Id<Link>,DetourSite> siteByDecisionLink = new HashMap<>() ;
+
+	private final MonitoredLinksVehicleIndex vehicleIndex ;
+	private final MobsimDataProvider mobsimData ;
+	private final List<MobsimAgent> agentsToReplan = new ArrayList<>() ;
+
+	/**
+	 * Routes from the decision links of one site to its return link.  <tt>routes[0]</tt> is the original route, the others are detours.
+	 */
+	static final class DetourSite {
+		final Id<Link> returnId ;
+		final Link[][] routes ;
+		final List<List<Id<Link>>> routeLinkIds = new ArrayList<>() ;
+		final double[] ttimes ;
+		private double lastEvaluationTime = Double.NEGATIVE_INFINITY ;
+		private int fastestRoute = 0 ;
+
+		DetourSite( Id<Link> returnId, List<List<Id<Link>>> routeLinkIds, Map<Id<Link>,? extends Link> links ) {
+			if ( routeLinkIds.size() < 2 ) {
+				throw new IllegalArgumentException( "need the original route and at least one detour; got " + routeLinkIds.size() + " routes" ) ;
+			}
+			this.returnId = returnId ;
+			this.routes = new Link[routeLinkIds.size()][] ;
+			for ( int rr=0 ; rr<routes.length ; rr++ ) {
+				List<Id<Link>> ids = routeLinkIds.get(rr) ;
+				this.routeLinkIds.add( new ArrayList<>( ids ) ) ;
+				routes[rr] = new Link[ids.size()] ;
+				for ( int ll=0 ; ll<ids.size() ; ll++ ) {
+					routes[rr][ll] = links.get( ids.get(ll) ) ;
+					if ( routes[rr][ll]==null ) {
+						throw new IllegalArgumentException( "link " + ids.get(ll) + " is not in the network" ) ;
+					}
+				}
+			}
+			this.ttimes = new double[routes.length] ;
+		}
 
-	private Id<Link> returnId = Id.createLinkId("4706699_26662459_26662476");
+		/**
+		 * @return true if the travel times were re-evaluated, i.e. if at least <tt>reevaluationInterval</tt> has passed since the last
+		 * re-evaluation (or the time went back, i.e. a new mobsim started)
+		 */
+		boolean updateTtimes( TravelTime travelTime, double now, double reevaluationInterval ) {
+			if ( now >= lastEvaluationTime && now < lastEvaluationTime + reevaluationInterval ) {
+				return false ;
+			}
+			lastEvaluationTime = now ;
+			for ( int rr=0 ; rr<routes.length ; rr++ ) {
+				double sum = 0. ;
+				for ( Link link : routes[rr] ) {
+					sum += travelTime.getLinkTravelTime( link, now, null, null ) ;
+				}
+				ttimes[rr] = sum ;
+				if ( ttimes[rr] < ttimes[fastestRoute] || rr==0 ) {
+					fastestRoute = rr ;
+				}
+			}
+			return true ;
+		}
 
-	private List<Id<Link>> originalLinks;
+		int getFastestRoute() {
+			return fastestRoute ;
+		}
+	}
 
-	private TravelTime travelTime;
-	
 	private class AvoidAccidentTravelTimeAndDisutility implements TravelTime, TravelDisutility {
 		FreespeedTravelTimeAndDisutility delegate = new FreespeedTravelTimeAndDisutility(-1.0, 0.0, 0.0);
 		@Override public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
@@ -94,16 +168,38 @@ class WithinDayBangBangMobsimListener implements MobsimBeforeSimStepListener {
 	}
 
 	@Inject
-	WithinDayBangBangMobsimListener(Scenario scenario, LeastCostPathCalculatorFactory pathAlgoFactory, TravelTime travelTime ) {
+	WithinDayBangBangMobsimListener(Scenario scenario, LeastCostPathCalculatorFactory pathAlgoFactory, TravelTime travelTime,
+			MonitoredLinksVehicleIndex vehicleIndex, MobsimDataProvider mobsimData ) {
 		this.scenario = scenario ;
+		this.vehicleIndex = vehicleIndex ;
+		this.mobsimData = mobsimData ;
 		this.travelTime = travelTime ;
+		this.reevaluationInterval = ConfigUtils.addOrGetModule( scenario.getConfig(), TelematicsConfigGroup.GROUPNAME,
+				TelematicsConfigGroup.class ).getBangBangReevaluationInterval() ;
 
-		AvoidAccidentTravelTimeAndDisutility fff = new AvoidAccidentTravelTimeAndDisutility() ;
-		alternativeLinks = computeRouteLinkIds(pathAlgoFactory, fff, fff) ;
-		
 		FreespeedTravelTimeAndDisutility abc = new FreespeedTravelTimeAndDisutility(-1.0, 0.0, 0.0) ;
-		originalLinks = computeRouteLinkIds( pathAlgoFactory, abc, abc ) ;
-				
+		List<Id<Link>> originalLinks = computeRouteLinkIds( pathAlgoFactory, abc, abc ) ;
+
+		AvoidAccidentTravelTimeAndDisutility fff = new AvoidAccidentTravelTimeAndDisutility() ;
+		List<Id<Link>> alternativeLinks = computeRouteLinkIds(pathAlgoFactory, fff, fff) ;
+
+		List<List<Id<Link>>> routes = new ArrayList<>() ;
+		routes.add( originalLinks ) ;
+		routes.add( alternativeLinks ) ;
+		addDetourSite( KNAccidentScenario.replanningLinkIds, returnId, routes ) ;
+	}
+
+	/**
+	 * @param routes the original route first, then the detours; all from the decision links to (excluding) <tt>returnId</tt>
+	 */
+	void addDetourSite( Collection<Id<Link>> decisionLinkIds, Id<Link> returnId, List<List<Id<Link>>> routes ) {
+		DetourSite site = new DetourSite( returnId, routes, scenario.getNetwork().getLinks() ) ;
+		sites.add( site ) ;
+		for ( Id<Link> linkId : decisionLinkIds ) {
+			if ( siteByDecisionLink.put( linkId, site ) != null ) {
+				throw new IllegalArgumentException( "link " + linkId + " is a decision link of more than one detour site" ) ;
+			}
+		}
 	}
 
 	private List<Id<Link>> computeRouteLinkIds(LeastCostPathCalculatorFactory pathAlgoFactory, TravelTime tt,
@@ -129,30 +225,30 @@ class WithinDayBangBangMobsimListener implements MobsimBeforeSimStepListener {
 
 	@Override
 	public void notifyMobsimBeforeSimStep(@SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent event) {
-		double now = event.getSimulationTime() ;
-		
 		double replanningProba = 1. ;
-		Collection<MobsimAgent> agentsToReplan = WithinDayReRouteMobsimListener.getAgentsToReplan( (Netsim) event.getQueueSimulation(), replanningProba);
-		
-		double ttimeThroughAccident = calcTtime(now, this.originalLinks) ;
-		double ttimeDetour = calcTtime( now, this.alternativeLinks ) ;
-		Logger.getLogger( this.getClass() ).warn( "ttimeOrig=" + ttimeThroughAccident + "; ttimeDetour=" + ttimeDetour );
+		Collection<MobsimAgent> agentsToReplan = WithinDayReRouteMobsimListener.getAgentsToReplan( (Netsim) event.getQueueSimulation(), replanningProba,
+				vehicleIndex, mobsimData, this.agentsToReplan );
+		if ( agentsToReplan.isEmpty() ) {
+			return ; // no travel time lookups at all on the (many) time steps without replanning
+		}
 
-		for (MobsimAgent ma : agentsToReplan) {
-			doReplanning(ma, ttimeThroughAccident, ttimeDetour);
+		double now = event.getSimulationTime() ;
+		for ( DetourSite site : sites ) {
+			if ( site.updateTtimes( travelTime, now, reevaluationInterval ) ) {
+				log.warn( "returnId=" + site.returnId + "; ttimeOrig=" + site.ttimes[0] + "; fastest route=" + site.getFastestRoute()
+						+ "; ttime=" + site.ttimes[site.getFastestRoute()] );
+			}
 		}
-	}
 
-	private double calcTtime(double now, List<Id<Link>> linkIds) {
-		double sum = 0. ;
-		for ( Id<Link> linkId : linkIds ) {
-			Link link = scenario.getNetwork().getLinks().get( linkId ) ;
-			sum += travelTime.getLinkTravelTime(link, now, null, null ) ;
+		for (MobsimAgent ma : agentsToReplan) {
+			DetourSite site = siteByDecisionLink.get( ma.getCurrentLinkId() ) ;
+			if ( site != null ) {
+				doReplanning(ma, site);
+			}
 		}
-		return sum;
 	}
 
-	private boolean doReplanning(MobsimAgent agent, double ttimeOrig, double ttimeDetour ) {
+	private boolean doReplanning(MobsimAgent agent, DetourSite site ) {
 
 		Plan plan = WithinDayAgentUtils.getModifiablePlan( agent ) ; 
 
@@ -175,22 +271,24 @@ class WithinDayBangBangMobsimListener implements MobsimBeforeSimStepListener {
 
 		final Leg leg = (Leg) plan.getPlanElements().get(planElementsIndex);
 		final NetworkRoute oldRoute = (NetworkRoute) leg.getRoute();
-		List<Id<Link>> oldLinkIds = new ArrayList<>( oldRoute.getLinkIds() ) ;
-		// the above forces a copy, which I need later
 
 		// method 2:
 //		if ( true ) {
 		if ( MatsimRandom.getRandom().nextDouble() < 0.2 ) {
-			if (ttimeDetour < ttimeOrig) {
+			final int fastest = site.getFastestRoute() ;
+			if ( fastest != 0 ) {
 				
 				final int idx = WithinDayAgentUtils.getCurrentRouteLinkIdIndex(agent);
 				
-				if (oldRoute.getLinkIds().contains(this.returnId)) {
-					List<Id<Link>> copy = new ArrayList<>(oldRoute.getLinkIds());
-					while (!copy.get(idx).equals(this.returnId)) {
-						copy.remove(idx);
-					}
-					copy.addAll(idx, this.alternativeLinks);
+				final List<Id<Link>> oldLinkIds = oldRoute.getLinkIds() ;
+				final int returnIdx = oldLinkIds.subList( idx, oldLinkIds.size() ).indexOf( site.returnId ) + idx ;
+				final List<Id<Link>> detour = site.routeLinkIds.get( fastest ) ;
+				// (replaces the old copy-and-deepEquals of the whole route: the route only changes if the replaced section differs)
+				if ( returnIdx >= idx && !oldLinkIds.subList( idx, returnIdx ).equals( detour ) ) {
+					List<Id<Link>> copy = new ArrayList<>( oldLinkIds.size() - (returnIdx - idx) + detour.size() );
+					copy.addAll( oldLinkIds.subList( 0, idx ) );
+					copy.addAll( detour );
+					copy.addAll( oldLinkIds.subList( returnIdx, oldLinkIds.size() ) );
 					final RouteFactories modeRouteFactory = this.scenario.getPopulation().getFactory().getRouteFactories();
 					NetworkRoute newRoute = modeRouteFactory.createRoute(NetworkRoute.class, oldRoute.getStartLinkId(), oldRoute.getEndLinkId());
 					
@@ -198,16 +296,13 @@ class WithinDayBangBangMobsimListener implements MobsimBeforeSimStepListener {
 					
 					newRoute.setLinkIds(oldRoute.getStartLinkId(), copy, oldRoute.getEndLinkId());
 					leg.setRoute(newRoute);
+
+					log.warn("modified route");
+					this.scenario.getPopulation().getPersons().get(agent.getId()).getAttributes().putAttribute("marker", true ) ;
 				}
 			}
 		}
 
-		ArrayList<Id<Link>> currentLinkIds = new ArrayList<>( ((NetworkRoute) leg.getRoute()).getLinkIds() ) ;
-		if ( !Arrays.deepEquals(oldLinkIds.toArray(), currentLinkIds.toArray()) ) {
-			log.warn("modified route");
-			this.scenario.getPopulation().getPersons().get(agent.getId()).getAttributes().putAttribute("marker", true ) ;
-		}
-
 		// ---
 
 		// finally reset the cached Values of the PersonAgent - they may have changed!
@@ -218,4 +313,3 @@ class WithinDayBangBangMobsimListener implements MobsimBeforeSimStepListener {
 	}
 
 }
-
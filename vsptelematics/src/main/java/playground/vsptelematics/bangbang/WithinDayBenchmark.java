@@ -0,0 +1,296 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * WithinDayBenchmark
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.bangbang;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import javax.inject.Singleton;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup.ActivityParams;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimListener;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.withinday.mobsim.MobsimDataProvider;
+import org.matsim.withinday.trafficmonitoring.WithinDayTravelTime;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+
+import playground.vsptelematics.bangbang.KNAccidentScenario.MyIterationCounter;
+import playground.vsptelematics.bangbang.KNAccidentScenario.RunType;
+import playground.vsptelematics.common.QSimBenchmarkProbe;
+import playground.vsptelematics.common.TelematicsConfigGroup;
+
+/**
+ * Timed QSim runs of the within-day strategies of {@link KNAccidentScenario} on a synthetic grid instead of the Berlin network.  The row
+ * in the middle of the grid is a corridor: origin link, decision link, accident link, return link, ... destination link; the detour around
+ * the accident link goes through the next row.  The decision, accident and return links carry the ids that the strategies expect.  On
+ * top of the corridor demand, there are random background trips on the grid.  The accident is scheduled as in the accident scenario
+ * (capacity down to 10% from 8:00 to 9:00).
+ * <p>
+ * The mobsim is measured by a {@link QSimBenchmarkProbe}; the strategy listener is wrapped by {@link QSimBenchmarkProbe#timed}, so the
+ * replanning latency per time step is reported as well.
+ * <p>
+ * Usage: <tt>WithinDayBenchmark [gridSize] [nCorridorPersons] [nBackgroundPersons] [nReplanningThreads] [nRepetitions] [outputDirectory]</tt>
+ */
+public final class WithinDayBenchmark {
+	private static final Logger log = Logger.getLogger( WithinDayBenchmark.class ) ;
+
+	static final Id<Link> decisionLinkId = Id.createLinkId( "decision" ) ;
+	/**
+	 * the link where detour and original route merge, as in {@link ManualDetour} and {@link WithinDayBangBangMobsimListener}
+	 */
+	static final Id<Link> returnLinkId = Id.createLinkId( "4706699_26662459_26662476" ) ;
+
+	private WithinDayBenchmark() {} // do not instantiate
+
+	public static void main( String[] args ) {
+		final int gridSize = args.length > 0 ? Integer.parseInt( args[0] ) : 30 ;
+		final int nCorridorPersons = args.length > 1 ? Integer.parseInt( args[1] ) : 3000 ;
+		final int nBackgroundPersons = args.length > 2 ? Integer.parseInt( args[2] ) : 20000 ;
+		final int nThreads = args.length > 3 ? Integer.parseInt( args[3] ) : 1 ;
+		final int nRepetitions = args.length > 4 ? Integer.parseInt( args[4] ) : 3 ;
+		final String outputDirectory = args.length > 5 ? args[5] : "./output/benchmark/withinday" ;
+		if ( gridSize < 6 ) {
+			throw new IllegalArgumentException( "grid size must be at least 6, but is " + gridSize ) ;
+		}
+
+		for ( int rep=0 ; rep<nRepetitions ; rep++ ) {
+			// first repetition is warm-up
+			for ( RunType runType : new RunType[] { RunType.base, RunType.manualDetour, RunType.bangbang, RunType.withinDayRerouting } ) {
+				QSimBenchmarkProbe probe = run( gridSize, nCorridorPersons, nBackgroundPersons, nThreads, runType, outputDirectory + "/" + runType ) ;
+				probe.report( "rep=" + rep + ( rep==0 ? " (warm-up)" : "" ) + "; grid=" + gridSize + "; persons=" + nCorridorPersons + "+"
+						+ nBackgroundPersons + "; threads=" + nThreads + "; strategy=" + runType ) ;
+			}
+		}
+	}
+
+	/**
+	 * Runs one strategy on the grid.  {@link KNAccidentScenario#replanningLinkIds}, which the strategies read, is set to the decision link
+	 * for the run and restored afterwards.
+	 */
+	static QSimBenchmarkProbe run( int gridSize, int nCorridorPersons, int nBackgroundPersons, int nThreads, final RunType runType,
+			String outputDirectory ) {
+		Config config = ConfigUtils.createConfig() ;
+		config.controler().setOutputDirectory( outputDirectory );
+		config.controler().setOverwriteFileSetting( OverwriteFileSetting.deleteDirectoryIfExists );
+		config.controler().setFirstIteration( 0 );
+		config.controler().setLastIteration( 0 );
+		config.controler().setCreateGraphs( false );
+		config.controler().setWriteEventsInterval( 0 );
+		config.controler().setWritePlansInterval( 0 );
+		config.controler().setDumpDataAtEnd( false );
+		config.network().setTimeVariantNetwork( true );
+		config.qsim().setStartTime( 6.*3600. );
+		config.qsim().setEndTime( 14.*3600. );
+		config.qsim().setStuckTime( 100. );
+		{
+			ActivityParams params = new ActivityParams( "h" ) ;
+			params.setTypicalDuration( 12.*3600. );
+			config.planCalcScore().addActivityParams( params );
+		}
+		{
+			ActivityParams params = new ActivityParams( "w" ) ;
+			params.setTypicalDuration( 8.*3600. );
+			config.planCalcScore().addActivityParams( params );
+		}
+		ConfigUtils.addOrGetModule( config, TelematicsConfigGroup.GROUPNAME, TelematicsConfigGroup.class ).setWithinDayReplanningThreads( nThreads );
+
+		final Scenario scenario = ScenarioUtils.createScenario( config ) ;
+		final int row = gridSize / 2 ;
+		createGrid( scenario.getNetwork(), gridSize, row ) ;
+		createPopulation( scenario, gridSize, row, nCorridorPersons, nBackgroundPersons ) ;
+		KNAccidentScenario.scheduleAccident( scenario );
+
+		final QSimBenchmarkProbe probe = new QSimBenchmarkProbe() ;
+		final Controler controler = new Controler( scenario ) ;
+		controler.addOverridingModule( new AbstractModule(){
+			@Override public void install() {
+				this.addEventHandlerBinding().toInstance( probe ) ;
+				this.addMobsimListenerBinding().toInstance( probe ) ;
+
+				// as in KNAccidentScenario:
+				bind( MobsimDataProvider.class ).in( Singleton.class ) ;
+				addMobsimListenerBinding().to( MobsimDataProvider.class ) ;
+				this.bind( MyIterationCounter.class ).in( Singleton.class ) ;
+				final MonitoredLinksVehicleIndex vehicleIndex = new MonitoredLinksVehicleIndex( scenario.getNetwork(),
+						Collections.singletonList( decisionLinkId ) ) ;
+				this.bind( MonitoredLinksVehicleIndex.class ).toInstance( vehicleIndex ) ;
+				this.addEventHandlerBinding().toInstance( vehicleIndex ) ;
+
+				if ( runType==RunType.bangbang || runType==RunType.withinDayRerouting ) {
+					Set<String> analyzedModes = new HashSet<>() ;
+					analyzedModes.add( TransportMode.car ) ;
+					final WithinDayTravelTime travelTime = new WithinDayTravelTime( scenario, analyzedModes ) ;
+					this.addEventHandlerBinding().toInstance( travelTime ) ;
+					this.addMobsimListenerBinding().toInstance( travelTime );
+					this.bind( TravelTime.class ).toInstance( travelTime );
+				}
+				switch( runType ) {
+					case base:
+						break;
+					case manualDetour:
+						this.addMobsimListenerBinding().toProvider( new TimedListenerProvider( ManualDetour.class, probe ) ) ;
+						break;
+					case bangbang:
+						this.addMobsimListenerBinding().toProvider( new TimedListenerProvider( WithinDayBangBangMobsimListener.class, probe ) ) ;
+						break;
+					case withinDayRerouting: {
+						WithinDayReRouteMobsimListener abc = new WithinDayReRouteMobsimListener() ;
+						abc.setReplanningProba( 1.0 );
+						this.bind( WithinDayReRouteMobsimListener.class ).toInstance( abc ) ;
+						this.addMobsimListenerBinding().toProvider( new TimedListenerProvider( WithinDayReRouteMobsimListener.class, probe ) ) ;
+						break; }
+					default:
+						throw new IllegalStateException( "Unexpected value: " + runType );
+				}
+			}
+		}) ;
+		final List<Id<Link>> savedReplanningLinkIds = new ArrayList<>( KNAccidentScenario.replanningLinkIds ) ;
+		KNAccidentScenario.replanningLinkIds.clear();
+		KNAccidentScenario.replanningLinkIds.add( decisionLinkId ) ;
+		try {
+			controler.run() ;
+		} finally {
+			KNAccidentScenario.replanningLinkIds.clear();
+			KNAccidentScenario.replanningLinkIds.addAll( savedReplanningLinkIds ) ;
+		}
+		return probe ;
+	}
+
+	/**
+	 * Gets the strategy listener from the injector and wraps it by {@link QSimBenchmarkProbe#timed}.
+	 */
+	private static final class TimedListenerProvider implements Provider<MobsimListener> {
+		@Inject private Injector injector ;
+		private final Class<? extends MobsimBeforeSimStepListener> type ;
+		private final QSimBenchmarkProbe probe ;
+
+		TimedListenerProvider( Class<? extends MobsimBeforeSimStepListener> type, QSimBenchmarkProbe probe ) {
+			this.type = type ;
+			this.probe = probe ;
+		}
+
+		@Override public MobsimListener get() {
+			return probe.timed( injector.getInstance( type ) ) ;
+		}
+	}
+
+	private static void createGrid( Network network, int gridSize, int row ) {
+		NetworkFactory nf = network.getFactory() ;
+		Node[][] nodes = new Node[gridSize][gridSize] ;
+		for ( int xx=0 ; xx<gridSize ; xx++ ) {
+			for ( int yy=0 ; yy<gridSize ; yy++ ) {
+				nodes[xx][yy] = nf.createNode( Id.createNodeId( xx + "_" + yy ), new Coord( 500.*xx, 500.*yy ) ) ;
+				network.addNode( nodes[xx][yy] );
+			}
+		}
+		for ( int xx=0 ; xx<gridSize ; xx++ ) {
+			for ( int yy=0 ; yy<gridSize ; yy++ ) {
+				if ( xx+1 < gridSize ) {
+					Id<Link> eastbound = Id.createLinkId( nodes[xx][yy].getId() + "-" + nodes[xx+1][yy].getId() ) ;
+					if ( yy==row && xx==1 ) {
+						eastbound = decisionLinkId ;
+					} else if ( yy==row && xx==2 ) {
+						eastbound = KNAccidentScenario.accidentLinkId ;
+					} else if ( yy==row && xx==3 ) {
+						eastbound = returnLinkId ;
+					}
+					addLink( network, eastbound, nodes[xx][yy], nodes[xx+1][yy] ) ;
+					addLink( network, Id.createLinkId( nodes[xx+1][yy].getId() + "-" + nodes[xx][yy].getId() ), nodes[xx+1][yy], nodes[xx][yy] ) ;
+				}
+				if ( yy+1 < gridSize ) {
+					addLink( network, Id.createLinkId( nodes[xx][yy].getId() + "-" + nodes[xx][yy+1].getId() ), nodes[xx][yy], nodes[xx][yy+1] ) ;
+					addLink( network, Id.createLinkId( nodes[xx][yy+1].getId() + "-" + nodes[xx][yy].getId() ), nodes[xx][yy+1], nodes[xx][yy] ) ;
+				}
+			}
+		}
+	}
+
+	private static void addLink( Network network, Id<Link> id, Node from, Node to ) {
+		Link link = network.getFactory().createLink( id, from, to ) ;
+		link.setLength( 500. );
+		link.setFreespeed( 50./3.6 );
+		link.setCapacity( 1800. );
+		link.setNumberOfLanes( 1. );
+		network.addLink( link );
+	}
+
+	/**
+	 * Corridor persons go from the first to the last link of the corridor row between 7:30 and 9:30; background persons between random
+	 * links between 7:00 and 10:00.  Routes are computed by the controler.
+	 */
+	private static void createPopulation( Scenario scenario, int gridSize, int row, int nCorridorPersons, int nBackgroundPersons ) {
+		Population population = scenario.getPopulation() ;
+		PopulationFactory pf = population.getFactory() ;
+		final Id<Link> originLinkId = Id.createLinkId( "0_" + row + "-1_" + row ) ;
+		final Id<Link> destinationLinkId = Id.createLinkId( (gridSize-2) + "_" + row + "-" + (gridSize-1) + "_" + row ) ;
+		for ( int ii=0 ; ii<nCorridorPersons ; ii++ ) {
+			addPerson( population, pf, "c" + ii, originLinkId, destinationLinkId, 7.5*3600. + ii * 2.*3600. / nCorridorPersons ) ;
+		}
+		final Link[] links = scenario.getNetwork().getLinks().values().toArray( new Link[0] ) ;
+		SplittableRandom random = new SplittableRandom( 4711 ) ;
+		for ( int ii=0 ; ii<nBackgroundPersons ; ii++ ) {
+			Id<Link> from = links[random.nextInt( links.length )].getId() ;
+			Id<Link> to = links[random.nextInt( links.length )].getId() ;
+			addPerson( population, pf, "b" + ii, from, to, 7.*3600. + random.nextDouble( 3.*3600. ) ) ;
+		}
+		log.info( "corridor persons=" + nCorridorPersons + "; background persons=" + nBackgroundPersons ) ;
+	}
+
+	private static void addPerson( Population population, PopulationFactory pf, String id, Id<Link> from, Id<Link> to, double departureTime ) {
+		Person person = pf.createPerson( Id.createPersonId( id ) ) ;
+		Plan plan = pf.createPlan() ;
+		Activity home = pf.createActivityFromLinkId( "h", from ) ;
+		home.setEndTime( departureTime );
+		plan.addActivity( home );
+		plan.addLeg( pf.createLeg( TransportMode.car ) );
+		plan.addActivity( pf.createActivityFromLinkId( "w", to ) );
+		person.addPlan( plan );
+		population.addPerson( person );
+	}
+
+}
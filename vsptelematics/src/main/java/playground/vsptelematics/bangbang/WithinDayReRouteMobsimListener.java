@@ -21,10 +21,15 @@
 package playground.vsptelematics.bangbang;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -32,34 +37,43 @@ import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.TransportMode;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.mobsim.framework.MobsimAgent;
-import org.matsim.core.mobsim.framework.MobsimDriverAgent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
 import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
 import org.matsim.core.mobsim.qsim.agents.WithinDayAgentUtils;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.Netsim;
-import org.matsim.core.mobsim.qsim.interfaces.NetsimLink;
 import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
 import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
+import org.matsim.withinday.mobsim.MobsimDataProvider;
 import org.matsim.withinday.utils.EditRoutes;
 
 import com.google.inject.Inject;
 
 import playground.vsptelematics.bangbang.KNAccidentScenario.MyIterationCounter;
+import playground.vsptelematics.common.TelematicsConfigGroup;
 
 /**
+ * Reroutes the agents on the monitored links.  The routes are computed by {@link TelematicsConfigGroup#getWithinDayReplanningThreads()}
+ * threads, each with its own path calculator, and then written back to the agents on the mobsim thread, in the order in which the agents
+ * were selected.  The threads are started on the first replanning step of a mobsim and stopped when the mobsim ends; the path calculators
+ * are kept across iterations.
+ * 
  * @author nagel
  *
  */
-class WithinDayReRouteMobsimListener implements MobsimBeforeSimStepListener {
+class WithinDayReRouteMobsimListener implements MobsimBeforeSimStepListener, MobsimBeforeCleanupListener {
 	
 	static class Config {
 	
@@ -72,10 +86,38 @@ class WithinDayReRouteMobsimListener implements MobsimBeforeSimStepListener {
 	@Inject private TravelTime travelTime;
 	@Inject private Map<String, TravelDisutilityFactory> travelDisutilityFactories;
 	@Inject private MyIterationCounter iterationCounter;
+	@Inject private MonitoredLinksVehicleIndex vehicleIndex;
+	@Inject private MobsimDataProvider mobsimData;
+	
+	private final List<MobsimAgent> agentsToReplan = new ArrayList<>() ;
 	
 	private boolean init = true ;
 	
-	private EditRoutes editRoutes ;
+	/**
+	 * one per replanning thread, since neither the path calculators nor (e.g. randomizing) travel disutilities are thread-safe
+	 */
+	private EditRoutes[] editRoutes ;
+	private ExecutorService pool ;
+	private final List<Replanning> replannings = new ArrayList<>() ;
+
+	/**
+	 * State of one agent's replanning: read from the agent and written back on the mobsim thread; only the routing of <tt>copy</tt>
+	 * happens on the replanning threads.
+	 */
+	private static final class Replanning {
+		final MobsimAgent agent ;
+		final Person person ;
+		final Leg leg ;
+		final Leg copy ;
+		final int currentLinkIndex ;
+		Replanning( MobsimAgent agent, Person person, Leg leg, Leg copy, int currentLinkIndex ) {
+			this.agent = agent ;
+			this.person = person ;
+			this.leg = leg ;
+			this.copy = copy ;
+			this.currentLinkIndex = currentLinkIndex ;
+		}
+	}
 	
 	private double lastReplanningIteration = Double.POSITIVE_INFINITY ;
 	void setLastReplanningIteration(double lastReplanningIteration) {
@@ -96,44 +138,89 @@ class WithinDayReRouteMobsimListener implements MobsimBeforeSimStepListener {
 		
 		if ( init ){
 			init= false ;
-			TravelDisutility travelDisutility = travelDisutilityFactories.get(TransportMode.car).createTravelDisutility( travelTime ) ;
-			LeastCostPathCalculator pathAlgo = pathAlgoFactory.createPathCalculator(scenario.getNetwork(), travelDisutility, travelTime) ;
+			TelematicsConfigGroup telematicsConfigGroup = ConfigUtils.addOrGetModule( scenario.getConfig(), TelematicsConfigGroup.GROUPNAME,
+					TelematicsConfigGroup.class ) ;
+			final int nThreads = Math.max( 1, telematicsConfigGroup.getWithinDayReplanningThreads() ) ;
 			PopulationFactory pf = scenario.getPopulation().getFactory() ;
-			this.editRoutes = new EditRoutes( scenario.getNetwork(), pathAlgo, pf ) ;
+			this.editRoutes = new EditRoutes[nThreads] ;
+			for ( int ii = 0 ; ii < nThreads ; ii++ ) {
+				TravelDisutility travelDisutility = travelDisutilityFactories.get(TransportMode.car).createTravelDisutility( travelTime ) ;
+				LeastCostPathCalculator pathAlgo = pathAlgoFactory.createPathCalculator(scenario.getNetwork(), travelDisutility, travelTime) ;
+				this.editRoutes[ii] = new EditRoutes( scenario.getNetwork(), pathAlgo, pf ) ;
+			}
+			log.info( "within-day rerouting with " + nThreads + " thread(s)" );
+		}
+		if ( this.editRoutes.length > 1 && this.pool == null ) {
+			final AtomicInteger threadIndex = new AtomicInteger( 0 ) ;
+			this.pool = Executors.newFixedThreadPool( this.editRoutes.length, runnable -> {
+				Thread thread = new Thread( runnable, "WithinDayReRoute-" + threadIndex.getAndIncrement() ) ;
+				thread.setDaemon( true );
+				return thread ;
+			} ) ;
 		}
 		
-		Collection<MobsimAgent> agentsToReplan = getAgentsToReplan( (Netsim) event.getQueueSimulation(), replanningProba);
+		Collection<MobsimAgent> agentsToReplan = getAgentsToReplan( (Netsim) event.getQueueSimulation(), replanningProba, vehicleIndex,
+				mobsimData, this.agentsToReplan );
+		if ( agentsToReplan.isEmpty() ) {
+			return ;
+		}
 		
+		final double now = event.getSimulationTime() ;
+		replannings.clear();
 		for (MobsimAgent ma : agentsToReplan) {
-			doReplanning(ma, (Netsim) event.getQueueSimulation());
+			Replanning replanning = prepareReplanning(ma);
+			if ( replanning != null ) {
+				replannings.add( replanning ) ;
+			}
+		}
+		computeRoutes( now ) ;
+		// apply in the order of the agents, independent of which thread computed which route:
+		for ( Replanning replanning : replannings ) {
+			applyReplanning( replanning ) ;
 		}
 	}
 	
+	@Override
+	public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e) {
+		if ( pool != null ) {
+			pool.shutdown();
+			pool = null ;
+		}
+	}
+
 	private static int cnt2 = 0 ;
 
-	static List<MobsimAgent> getAgentsToReplan(Netsim mobsim, double replanningProba) {
+	/**
+	 * Collects the agents on the monitored links of <tt>vehicleIndex</tt> into <tt>set</tt> (which is cleared first), every 10 sec
+	 * between 8am and 10am, each with probability <tt>replanningProba</tt>.
+	 * <p>
+	 * Compared to scanning the links in the mobsim, the candidates are visited in the order of {@link MonitoredLinksVehicleIndex}, not in
+	 * the queue order of the links, so with <tt>replanningProba</tt> &lt; 1 the random draws fall on different agents.  Agents whose
+	 * vehicle is still in the waiting list of a monitored link are no candidates.
+	 */
+	static List<MobsimAgent> getAgentsToReplan(Netsim mobsim, double replanningProba, MonitoredLinksVehicleIndex vehicleIndex,
+			MobsimDataProvider mobsimData, List<MobsimAgent> set) {
 
-		List<MobsimAgent> set = new ArrayList<>();
+		set.clear();
 
 		final double now = mobsim.getSimTimer().getTimeOfDay();
 		if ( now < 8.*3600. || now > 10.*3600. || Math.floor(now) % 10 != 0 ) {
 			return set;
 		}
 
-		// find agents that are on the "interesting" links:
-		for ( Id<Link> linkId : KNAccidentScenario.replanningLinkIds ) {
-			NetsimLink link = mobsim.getNetsimNetwork().getNetsimLink( linkId ) ;
-			for (MobsimVehicle vehicle : link.getAllNonParkedVehicles()) {
-				MobsimDriverAgent agent=vehicle.getDriver();
-				if ( KNAccidentScenario.replanningLinkIds.contains( agent.getCurrentLinkId() ) ) {
-					//					System.out.println("found agent");
-					if ( cnt2==0 ) {
-						log.warn("only replanning with proba=" + replanningProba + "!" );
-						cnt2++ ;
-					}
-					if ( MatsimRandom.getRandom().nextDouble() < replanningProba) {
-						set.add(agent);
-					}
+		// find agents that are on the "interesting" links; the index only contains vehicles that are on them:
+		for ( int slot = 0 ; slot < vehicleIndex.getNumberOfMonitoredLinks() ; slot++ ) {
+			for ( int ii = 0 ; ii < vehicleIndex.getNumberOfVehiclesOnLink( slot ) ; ii++ ) {
+				MobsimVehicle vehicle = mobsimData.getVehicle( vehicleIndex.getVehicleOnLink( slot, ii ) ) ;
+				if ( vehicle == null || vehicle.getDriver() == null ) {
+					continue ;
+				}
+				if ( cnt2==0 ) {
+					log.warn("only replanning with proba=" + replanningProba + "!" );
+					cnt2++ ;
+				}
+				if ( MatsimRandom.getRandom().nextDouble() < replanningProba) {
+					set.add(vehicle.getDriver());
 				}
 			}
 		}
@@ -144,44 +231,79 @@ class WithinDayReRouteMobsimListener implements MobsimBeforeSimStepListener {
 	
 	private static int cnt = 0 ;
 
-	private boolean doReplanning(MobsimAgent agent, Netsim netsim ) {
-		double now = netsim.getSimTimer().getTimeOfDay() ;
-
-		Plan plan = WithinDayAgentUtils.getModifiablePlan( agent ) ; 
-		
+	/**
+	 * Reads everything that is needed from the agent, and copies the leg that the replanning threads may modify.
+	 * 
+	 * @return null if the agent cannot be replanned
+	 */
+	private Replanning prepareReplanning(MobsimAgent agent) {
 		if ( !WithinDayAgentUtils.isOnReplannableCarLeg(agent) ) {
-			return false ;
+			return null ;
 		}
 
+		Plan plan = WithinDayAgentUtils.getModifiablePlan( agent ) ; 
+		
 		final Integer planElementsIndex = WithinDayAgentUtils.getCurrentPlanElementIndex(agent);
 
-		// ---
-
 		final Leg leg = (Leg) plan.getPlanElements().get(planElementsIndex);
 		
-		// for vis:
-		List<Id<Link>> oldLinkIds = new ArrayList<>( ((NetworkRoute) leg.getRoute()).getLinkIds() ) ; // forces a copy, which I need later
+		final Leg copy = scenario.getPopulation().getFactory().createLeg( leg.getMode() ) ;
+		copy.setRoute( leg.getRoute().clone() );
+
+		return new Replanning( agent, plan.getPerson(), leg, copy, WithinDayAgentUtils.getCurrentRouteLinkIdIndex(agent) ) ;
+	}
+
+	/**
+	 * Routes all copies; with more than one thread, the threads take the next unrouted copy until none is left.
+	 */
+	private void computeRoutes( final double now ) {
+		if ( pool == null ) {
+			for ( Replanning replanning : replannings ) {
+				computeRoute( editRoutes[0], replanning, now ) ;
+			}
+			return ;
+		}
+		final AtomicInteger next = new AtomicInteger( 0 ) ;
+		List<Callable<Void>> tasks = new ArrayList<>() ;
+		for ( final EditRoutes threadEditRoutes : editRoutes ) {
+			tasks.add( () -> {
+				for ( int ii = next.getAndIncrement() ; ii < replannings.size() ; ii = next.getAndIncrement() ) {
+					computeRoute( threadEditRoutes, replannings.get( ii ), now ) ;
+				}
+				return null ;
+			} ) ;
+		}
+		try {
+			for ( Future<Void> future : pool.invokeAll( tasks ) ) {
+				future.get() ;
+			}
+		} catch ( InterruptedException | ExecutionException e ) {
+			throw new RuntimeException( e ) ;
+		}
+	}
+
+	private static void computeRoute( EditRoutes editRoutes, Replanning replanning, double now ) {
+		editRoutes.replanCurrentLegRoute( replanning.copy, replanning.person, replanning.currentLinkIndex, now ) ;
+	}
+
+	private void applyReplanning( Replanning replanning ) {
+		final NetworkRoute oldRoute = (NetworkRoute) replanning.leg.getRoute() ;
+		final NetworkRoute newRoute = (NetworkRoute) replanning.copy.getRoute() ;
 
-		// "real" action:
-		final int currentLinkIndex = WithinDayAgentUtils.getCurrentRouteLinkIdIndex(agent);
-		editRoutes.replanCurrentLegRoute(leg, plan.getPerson(), currentLinkIndex, now ) ;
-		
 		// for vis:
-		ArrayList<Id<Link>> currentLinkIds = new ArrayList<>( ((NetworkRoute) leg.getRoute()).getLinkIds() ) ;
-		if ( !Arrays.deepEquals(oldLinkIds.toArray(), currentLinkIds.toArray()) ) {
+		if ( !oldRoute.getLinkIds().equals( newRoute.getLinkIds() ) ) {
 			if ( cnt < 10 ) {
 				log.warn("modified route");
 				cnt++ ;
 			}
-			this.scenario.getPopulation().getPersons().get(agent.getId()).getAttributes().putAttribute("marker", true ) ;
+			this.scenario.getPopulation().getPersons().get(replanning.agent.getId()).getAttributes().putAttribute("marker", true ) ;
 		}
 
-		// ---
+		// "real" action:
+		oldRoute.setLinkIds( newRoute.getStartLinkId(), newRoute.getLinkIds(), newRoute.getEndLinkId() );
 
 		// finally reset the cached Values of the PersonAgent - they may have changed!
-		WithinDayAgentUtils.resetCaches(agent);
-
-		return true;
+		WithinDayAgentUtils.resetCaches(replanning.agent);
 	}
 
 }
@@ -0,0 +1,266 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AbstractRouteTTObserver
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.common;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonDepartureEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.population.routes.NetworkRoute;
+
+/**
+ * Travel times of the trips on a fixed set of alternative routes.  The routes are declared as link sequences and resolved once to link
+ * indices; a trip belongs to a route as soon as it enters a link that is on this route only.  All per-person and per-vehicle state is kept
+ * in arrays indexed by {@link Id#index()}, the statistics per route are running sums, so handling an event does not allocate.
+ * <p>
+ * Subclasses call {@link #computeStatistics(Network)} after the mobsim and read the results with the getters.  The route of the last trip
+ * of every person is available by {@link #getRouteOfPerson(Id)}.
+ */
+public abstract class AbstractRouteTTObserver implements PersonDepartureEventHandler, PersonArrivalEventHandler, LinkEnterEventHandler,
+		VehicleEntersTrafficEventHandler, VehicleLeavesTrafficEventHandler {
+
+	public static final int NO_ROUTE = -1;
+
+	/**
+	 * The two routes of the exercise network: 2-4-6 and 3-5-6.
+	 */
+	public static final List<List<Id<Link>>> TWO_ROUTES = Collections.unmodifiableList(Arrays.asList(
+			Arrays.asList(Id.create("2", Link.class), Id.create("4", Link.class), Id.create("6", Link.class)),
+			Arrays.asList(Id.create("3", Link.class), Id.create("5", Link.class), Id.create("6", Link.class))));
+
+	private final int[][] linksOfRoute;
+	/**
+	 * route by link index; {@link #NO_ROUTE} for links that are on no or on several routes
+	 */
+	private final int[] routeOfLink;
+
+	private double[] departureTimeOfPerson = new double[0];
+	private int[] routeOfTrip = new int[0];
+	private int[] routeOfPerson = new int[0];
+	private double[] travelTimeOfPerson = new double[0];
+	private int[] driverOfVehicle = new int[0];
+
+	private final int[] tripsOnRoute;
+	private final double[] travelTimeSumOnRoute;
+	private final double[] averageTravelTimeOnRoute;
+
+	protected AbstractRouteTTObserver(List<List<Id<Link>>> routes) {
+		this.linksOfRoute = new int[routes.size()][];
+		int maxLinkIndex = -1;
+		for (int r = 0; r < routes.size(); r++) {
+			List<Id<Link>> linkIds = routes.get(r);
+			this.linksOfRoute[r] = new int[linkIds.size()];
+			for (int i = 0; i < linkIds.size(); i++) {
+				this.linksOfRoute[r][i] = linkIds.get(i).index();
+				maxLinkIndex = Math.max(maxLinkIndex, this.linksOfRoute[r][i]);
+			}
+		}
+		this.routeOfLink = new int[maxLinkIndex + 1];
+		Arrays.fill(this.routeOfLink, NO_ROUTE);
+		final int shared = -2;
+		for (int r = 0; r < this.linksOfRoute.length; r++) {
+			for (int linkIndex : this.linksOfRoute[r]) {
+				int current = this.routeOfLink[linkIndex];
+				this.routeOfLink[linkIndex] = (current == NO_ROUTE || current == r) ? r : shared;
+			}
+		}
+		for (int i = 0; i < this.routeOfLink.length; i++) {
+			if (this.routeOfLink[i] == shared) {
+				this.routeOfLink[i] = NO_ROUTE;
+			}
+		}
+		this.tripsOnRoute = new int[routes.size()];
+		this.travelTimeSumOnRoute = new double[routes.size()];
+		this.averageTravelTimeOnRoute = new double[routes.size()];
+	}
+
+	@Override
+	public void reset(int iteration) {
+		ensurePersonCapacity(Id.getNumberOfIds(Person.class) - 1);
+		Arrays.fill(this.departureTimeOfPerson, Double.NaN);
+		Arrays.fill(this.routeOfTrip, NO_ROUTE);
+		Arrays.fill(this.routeOfPerson, NO_ROUTE);
+		Arrays.fill(this.travelTimeOfPerson, Double.NaN);
+		Arrays.fill(this.driverOfVehicle, -1);
+		Arrays.fill(this.tripsOnRoute, 0);
+		Arrays.fill(this.travelTimeSumOnRoute, 0.);
+	}
+
+	private void ensurePersonCapacity(int personIndex) {
+		if (personIndex < this.departureTimeOfPerson.length) {
+			return;
+		}
+		final int oldLength = this.departureTimeOfPerson.length;
+		final int newLength = Math.max(personIndex + 1, 2 * oldLength);
+		this.departureTimeOfPerson = Arrays.copyOf(this.departureTimeOfPerson, newLength);
+		this.routeOfTrip = Arrays.copyOf(this.routeOfTrip, newLength);
+		this.routeOfPerson = Arrays.copyOf(this.routeOfPerson, newLength);
+		this.travelTimeOfPerson = Arrays.copyOf(this.travelTimeOfPerson, newLength);
+		Arrays.fill(this.departureTimeOfPerson, oldLength, newLength, Double.NaN);
+		Arrays.fill(this.routeOfTrip, oldLength, newLength, NO_ROUTE);
+		Arrays.fill(this.routeOfPerson, oldLength, newLength, NO_ROUTE);
+		Arrays.fill(this.travelTimeOfPerson, oldLength, newLength, Double.NaN);
+	}
+
+	@Override
+	public void handleEvent(PersonDepartureEvent event) {
+		final int p = event.getPersonId().index();
+		ensurePersonCapacity(p);
+		this.departureTimeOfPerson[p] = event.getTime();
+		this.routeOfTrip[p] = NO_ROUTE;
+	}
+
+	@Override
+	public void handleEvent(VehicleEntersTrafficEvent event) {
+		final int v = event.getVehicleId().index();
+		if (v >= this.driverOfVehicle.length) {
+			final int oldLength = this.driverOfVehicle.length;
+			this.driverOfVehicle = Arrays.copyOf(this.driverOfVehicle, Math.max(v + 1, 2 * oldLength));
+			Arrays.fill(this.driverOfVehicle, oldLength, this.driverOfVehicle.length, -1);
+		}
+		this.driverOfVehicle[v] = event.getPersonId().index();
+	}
+
+	@Override
+	public void handleEvent(VehicleLeavesTrafficEvent event) {
+		this.driverOfVehicle[event.getVehicleId().index()] = -1;
+	}
+
+	@Override
+	public void handleEvent(LinkEnterEvent event) {
+		final int l = event.getLinkId().index();
+		if (l >= this.routeOfLink.length || this.routeOfLink[l] == NO_ROUTE) {
+			return;
+		}
+		final int v = event.getVehicleId().index();
+		final int p = v < this.driverOfVehicle.length ? this.driverOfVehicle[v] : -1;
+		if (p >= 0) {
+			this.routeOfTrip[p] = this.routeOfLink[l];
+		}
+	}
+
+	@Override
+	public void handleEvent(PersonArrivalEvent event) {
+		final int p = event.getPersonId().index();
+		if (p >= this.departureTimeOfPerson.length || Double.isNaN(this.departureTimeOfPerson[p])) {
+			throw new RuntimeException("Agent departure time not found!");
+		}
+		final double tt = event.getTime() - this.departureTimeOfPerson[p];
+		this.travelTimeOfPerson[p] = tt;
+		final int route = this.routeOfTrip[p];
+		if (route != NO_ROUTE) {
+			this.routeOfPerson[p] = route;
+			this.tripsOnRoute[route]++;
+			this.travelTimeSumOnRoute[route] += tt;
+		}
+	}
+
+	/**
+	 * Computes the average travel times per route; routes without trips get the free speed travel time of their links.
+	 */
+	protected void computeStatistics(Network network) {
+		for (int r = 0; r < this.linksOfRoute.length; r++) {
+			if (this.tripsOnRoute[r] > 0) {
+				this.averageTravelTimeOnRoute[r] = this.travelTimeSumOnRoute[r] / this.tripsOnRoute[r];
+			}
+			else {
+				double tt = 0.;
+				for (int linkIndex : this.linksOfRoute[r]) {
+					Link link = network.getLinks().get(Id.get(linkIndex, Link.class));
+					tt += link.getLength() / link.getFreespeed();
+				}
+				this.averageTravelTimeOnRoute[r] = tt;
+			}
+		}
+	}
+
+	public final int getNumberOfRoutes() {
+		return this.linksOfRoute.length;
+	}
+
+	public final int getNumberOfTrips(int route) {
+		return this.tripsOnRoute[route];
+	}
+
+	public final double getTravelTimeSum(int route) {
+		return this.travelTimeSumOnRoute[route];
+	}
+
+	/**
+	 * @return the value of the last {@link #computeStatistics(Network)}
+	 */
+	public final double getAverageTravelTime(int route) {
+		return this.averageTravelTimeOnRoute[route];
+	}
+
+	/**
+	 * @return the route of the last trip of the person in the current iteration, {@link #NO_ROUTE} if it was on none of the routes
+	 */
+	public final int getRouteOfPerson(Id<Person> personId) {
+		final int p = personId.index();
+		return p < this.routeOfPerson.length ? this.routeOfPerson[p] : NO_ROUTE;
+	}
+
+	/**
+	 * @return the travel time of the last trip of the person in the current iteration, NaN if the person did not arrive
+	 */
+	public final double getTravelTimeOfPerson(Id<Person> personId) {
+		return getTravelTimeOfPerson(personId.index());
+	}
+
+	protected final double getTravelTimeOfPerson(int personIndex) {
+		return personIndex < this.travelTimeOfPerson.length ? this.travelTimeOfPerson[personIndex] : Double.NaN;
+	}
+
+	/**
+	 * @return an upper bound of the person indices seen so far
+	 */
+	protected final int getPersonIndexBound() {
+		return this.travelTimeOfPerson.length;
+	}
+
+	/**
+	 * @return the route the first link of the network route that is on one route only belongs to, {@link #NO_ROUTE} if there is none
+	 */
+	public final int getRoute(NetworkRoute route) {
+		for (Id<Link> linkId : route.getLinkIds()) {
+			final int l = linkId.index();
+			if (l < this.routeOfLink.length && this.routeOfLink[l] != NO_ROUTE) {
+				return this.routeOfLink[l];
+			}
+		}
+		return NO_ROUTE;
+	}
+
+}
@@ -19,6 +19,7 @@
  * *********************************************************************** */
 package playground.vsptelematics.common;
 
+import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigGroup;
@@ -29,29 +30,47 @@ import org.matsim.core.network.NetworkChangeEvent;
 import org.matsim.core.network.NetworkUtils;
 
 import javax.inject.Inject;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Sets the network change events of the incidents of every iteration, either from the incidents file or, if none is given and
+ * {@link TelematicsConfigGroup#getRandomIncidentsPerIteration()} is positive, from seeded random incidents.
+ * <p>
+ * The network change events are replaced in every iteration, so that iterations without incidents run on a network without any.
+ */
 public class IncidentGenerator implements BeforeMobsimListener {
 
-	private Map<Integer, List<NetworkChangeEvent>> changeEvents;
+	private static final Logger log = Logger.getLogger(IncidentGenerator.class);
+
+	static final double RANDOM_EARLIEST_START = 6 * 3600.;
+	static final double RANDOM_LATEST_START = 20 * 3600.;
+	static final double RANDOM_MIN_DURATION = 15 * 60.;
+	static final double RANDOM_MAX_DURATION = 60 * 60.;
+	static final double RANDOM_MIN_CAPACITY_FACTOR = 0.1;
+	static final double RANDOM_MAX_CAPACITY_FACTOR = 0.5;
+
+	private final IncidentSchedule schedule;
 
 	@Inject
 	IncidentGenerator(Config config, Network network) {
-		IncidentsReader reader = new IncidentsReader(network);
 		TelematicsConfigGroup telematicsConfigGroup = ConfigUtils.addOrGetModule(config,
 				TelematicsConfigGroup.GROUPNAME, TelematicsConfigGroup.class);
-		changeEvents = reader.read(ConfigGroup.getInputFileURL(config.getContext(), telematicsConfigGroup.getIncidentsFile()).getFile());
+		if (telematicsConfigGroup.getIncidentsFile() == null && telematicsConfigGroup.getRandomIncidentsPerIteration() > 0.) {
+			schedule = IncidentSchedule.createRandom(network, telematicsConfigGroup.getRandomIncidentsSeed(),
+					config.controler().getFirstIteration(), config.controler().getLastIteration(),
+					telematicsConfigGroup.getRandomIncidentsPerIteration(), RANDOM_EARLIEST_START, RANDOM_LATEST_START,
+					RANDOM_MIN_DURATION, RANDOM_MAX_DURATION, RANDOM_MIN_CAPACITY_FACTOR, RANDOM_MAX_CAPACITY_FACTOR);
+		} else {
+			IncidentsReader reader = new IncidentsReader(network);
+			schedule = reader.read(ConfigGroup.getInputFileURL(config.getContext(), telematicsConfigGroup.getIncidentsFile()).getFile());
+		}
+		log.info("incident schedule with " + schedule.getNumberOfIncidents() + " incidents");
 	}
 
 	public void notifyBeforeMobsim(BeforeMobsimEvent event) {
-		List<NetworkChangeEvent> events = changeEvents.get(event.getIteration());
-		if (events != null) {
-            final List<NetworkChangeEvent> events1 = events;
-		NetworkUtils.setNetworkChangeEvents(((Network) event.getServices().getScenario().getNetwork()),events1);
-		} else
-			NetworkUtils.setNetworkChangeEvents(((Network) event.getServices().getScenario().getNetwork()),(List<NetworkChangeEvent>) new LinkedList<NetworkChangeEvent>());
+		Network network = event.getServices().getScenario().getNetwork();
+		List<NetworkChangeEvent> events = schedule.createNetworkChangeEvents(event.getIteration(), network);
+		NetworkUtils.setNetworkChangeEvents(network, events);
 	}
 
-}
\ No newline at end of file
+}
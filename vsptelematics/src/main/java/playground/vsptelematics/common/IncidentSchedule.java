@@ -0,0 +1,246 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IncidentSchedule
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.network.NetworkChangeEvent;
+import org.matsim.core.network.NetworkChangeEvent.ChangeType;
+import org.matsim.core.network.NetworkChangeEvent.ChangeValue;
+
+/**
+ * Incidents (reductions of the flow capacity of a link) per iteration, each with a start and an optional end time within the day.  The
+ * incidents are kept in primitive arrays sorted by iteration and start time, so the incidents of an iteration are a contiguous range
+ * that is found by binary search.
+ * <p>
+ * An incident multiplies the capacity of its link by its capacity factor from its start to its end time.  Overlapping incidents on the
+ * same link are combined: while several of them are active, their factors multiply, and when one of them ends the capacity goes back
+ * to the product of the factors of the remaining ones (or to the capacity of the link in the network, if none remains).
+ */
+public final class IncidentSchedule {
+
+	/**
+	 * end time of incidents that last until the end of the day
+	 */
+	public static final double NO_END = Double.POSITIVE_INFINITY;
+
+	private final int[] iteration;
+	private final Id<Link>[] linkIds;
+	private final double[] start;
+	private final double[] end;
+	private final double[] capacityFactor;
+
+	private IncidentSchedule(int[] iteration, Id<Link>[] linkIds, double[] start, double[] end, double[] capacityFactor) {
+		this.iteration = iteration;
+		this.linkIds = linkIds;
+		this.start = start;
+		this.end = end;
+		this.capacityFactor = capacityFactor;
+	}
+
+	public int getNumberOfIncidents() {
+		return this.iteration.length;
+	}
+
+	/**
+	 * @return the index of the first incident of the iteration, or of the first incident of a later iteration if there is none
+	 */
+	private int firstIndexOf(int it) {
+		int lo = 0;
+		int hi = this.iteration.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (this.iteration[mid] < it) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	public int getNumberOfIncidents(int it) {
+		return firstIndexOf(it + 1) - firstIndexOf(it);
+	}
+
+	/**
+	 * Creates the network change events of the iteration, in the order of their times: one per time at which an incident on a link
+	 * starts or ends, setting the flow capacity of the link to its capacity in the network times the factors of all incidents that are
+	 * active on the link from then on.
+	 */
+	public List<NetworkChangeEvent> createNetworkChangeEvents(int it, Network network) {
+		final int from = firstIndexOf(it);
+		final int to = firstIndexOf(it + 1);
+		List<NetworkChangeEvent> events = new ArrayList<>(2 * (to - from));
+		for (int i = from; i < to; i++) {
+			Link link = network.getLinks().get(this.linkIds[i]);
+			addChangeEvent(events, from, to, i, link, this.start[i], network);
+			if (this.end[i] != NO_END) {
+				addChangeEvent(events, from, to, i, link, this.end[i], network);
+			}
+		}
+		events.sort((e1, e2) -> Double.compare(e1.getStartTime(), e2.getStartTime()));
+		return events;
+	}
+
+	/**
+	 * Adds the change event of the link of incident <tt>i</tt> at <tt>time</tt>, unless an earlier incident in [<tt>from</tt>,
+	 * <tt>i</tt>) on the same link already starts or ends at the same time and thus has added it.
+	 */
+	private void addChangeEvent(List<NetworkChangeEvent> events, int from, int to, int i, Link link, double time, Network network) {
+		double factor = 1.;
+		for (int j = from; j < to; j++) {
+			if (!this.linkIds[j].equals(this.linkIds[i])) {
+				continue;
+			}
+			if (j < i && (this.start[j] == time || this.end[j] == time)) {
+				return; // same change, already added
+			}
+			if (this.start[j] <= time && time < this.end[j]) {
+				factor *= this.capacityFactor[j];
+			}
+		}
+		NetworkChangeEvent event = new NetworkChangeEvent(time);
+		event.addLink(link);
+		event.setFlowCapacityChange(new ChangeValue(ChangeType.ABSOLUTE_IN_SI_UNITS,
+				factor * link.getCapacity() / network.getCapacityPeriod()));
+		events.add(event);
+	}
+
+	/**
+	 * Random incidents: in every iteration of <tt>firstIteration</tt> to <tt>lastIteration</tt>, a Poisson distributed number of incidents
+	 * (mean <tt>incidentsPerIteration</tt>) on uniformly drawn links, with start time uniform in [<tt>earliestStart</tt>,
+	 * <tt>latestStart</tt>), duration uniform in [<tt>minDuration</tt>, <tt>maxDuration</tt>) and capacity factor uniform in
+	 * [<tt>minCapacityFactor</tt>, <tt>maxCapacityFactor</tt>).  The same seed gives the same incidents.
+	 */
+	public static IncidentSchedule createRandom(Network network, long seed, int firstIteration, int lastIteration,
+			double incidentsPerIteration, double earliestStart, double latestStart, double minDuration, double maxDuration,
+			double minCapacityFactor, double maxCapacityFactor) {
+		@SuppressWarnings("unchecked")
+		Id<Link>[] links = network.getLinks().keySet().toArray(new Id[0]);
+		// sort so that the result does not depend on the iteration order of the link map:
+		Arrays.sort(links, (l1, l2) -> l1.toString().compareTo(l2.toString()));
+		SplittableRandom random = new SplittableRandom(seed);
+		Builder builder = new Builder();
+		for (int it = firstIteration; it <= lastIteration; it++) {
+			final int n = drawPoisson(random, incidentsPerIteration);
+			for (int i = 0; i < n; i++) {
+				double startTime = earliestStart + random.nextDouble() * (latestStart - earliestStart);
+				double duration = minDuration + random.nextDouble() * (maxDuration - minDuration);
+				double factor = minCapacityFactor + random.nextDouble() * (maxCapacityFactor - minCapacityFactor);
+				builder.addIncident(it, links[random.nextInt(links.length)], startTime, startTime + duration, factor);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * mean above which the Poisson distribution is approximated by a normal distribution; below it, exp(-mean) is far from underflow
+	 */
+	static final double POISSON_NORMAL_APPROXIMATION_MEAN = 30.;
+
+	/**
+	 * Poisson distributed random number: multiplication of uniforms (Knuth) for small means, rounded normal approximation (mean and
+	 * variance <tt>mean</tt>) for large ones, where exp(-mean) would underflow.
+	 */
+	static int drawPoisson(SplittableRandom random, double mean) {
+		if (mean > POISSON_NORMAL_APPROXIMATION_MEAN) {
+			// Box-Muller, since SplittableRandom has no nextGaussian:
+			final double gaussian = Math.sqrt(-2. * Math.log(1. - random.nextDouble())) * Math.cos(2. * Math.PI * random.nextDouble());
+			return (int) Math.max(0L, Math.round(mean + Math.sqrt(mean) * gaussian));
+		}
+		final double limit = Math.exp(-mean);
+		int n = 0;
+		for (double p = random.nextDouble(); p > limit; p *= random.nextDouble()) {
+			n++;
+		}
+		return n;
+	}
+
+	public static final class Builder {
+		private int n = 0;
+		private int[] iteration = new int[16];
+		private Object[] linkIds = new Object[16];
+		private double[] start = new double[16];
+		private double[] end = new double[16];
+		private double[] capacityFactor = new double[16];
+
+		/**
+		 * @param end {@link IncidentSchedule#NO_END} if the incident lasts until the end of the day
+		 */
+		public Builder addIncident(int it, Id<Link> linkId, double start, double end, double capacityFactor) {
+			if (end <= start) {
+				throw new IllegalArgumentException("incident on link " + linkId + " in iteration " + it + " ends at " + end
+						+ ", before its start at " + start);
+			}
+			if (capacityFactor < 0.) {
+				throw new IllegalArgumentException("incident on link " + linkId + " has negative capacity factor " + capacityFactor);
+			}
+			if (this.n == this.iteration.length) {
+				final int newLength = 2 * this.n;
+				this.iteration = Arrays.copyOf(this.iteration, newLength);
+				this.linkIds = Arrays.copyOf(this.linkIds, newLength);
+				this.start = Arrays.copyOf(this.start, newLength);
+				this.end = Arrays.copyOf(this.end, newLength);
+				this.capacityFactor = Arrays.copyOf(this.capacityFactor, newLength);
+			}
+			this.iteration[this.n] = it;
+			this.linkIds[this.n] = linkId;
+			this.start[this.n] = start;
+			this.end[this.n] = end;
+			this.capacityFactor[this.n] = capacityFactor;
+			this.n++;
+			return this;
+		}
+
+		public IncidentSchedule build() {
+			Integer[] order = new Integer[this.n];
+			for (int i = 0; i < this.n; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (i1, i2) -> this.iteration[i1] != this.iteration[i2] ? Integer.compare(this.iteration[i1], this.iteration[i2])
+					: Double.compare(this.start[i1], this.start[i2]));
+			int[] sortedIteration = new int[this.n];
+			@SuppressWarnings("unchecked")
+			Id<Link>[] sortedLinkIds = new Id[this.n];
+			double[] sortedStart = new double[this.n];
+			double[] sortedEnd = new double[this.n];
+			double[] sortedCapacityFactor = new double[this.n];
+			for (int i = 0; i < this.n; i++) {
+				final int j = order[i];
+				sortedIteration[i] = this.iteration[j];
+				@SuppressWarnings("unchecked")
+				Id<Link> linkId = (Id<Link>) this.linkIds[j];
+				sortedLinkIds[i] = linkId;
+				sortedStart[i] = this.start[j];
+				sortedEnd[i] = this.end[j];
+				sortedCapacityFactor[i] = this.capacityFactor[j];
+			}
+			return new IncidentSchedule(sortedIteration, sortedLinkIds, sortedStart, sortedEnd, sortedCapacityFactor);
+		}
+	}
+
+}
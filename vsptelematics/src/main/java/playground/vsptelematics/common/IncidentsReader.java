@@ -20,36 +20,33 @@ package playground.vsptelematics.common;
  * *********************************************************************** */
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import java.io.UncheckedIOException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
-import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
-import org.matsim.core.network.NetworkChangeEvent;
-import org.matsim.core.network.NetworkChangeEvent.ChangeType;
-import org.matsim.core.network.NetworkChangeEvent.ChangeValue;
+import org.matsim.core.utils.misc.Time;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
 /**
+ * Reads incidents of the form <tt>&lt;incident link="..." iteration="..." capfactor="..." start="..." end="..." /&gt;</tt> into an
+ * {@link IncidentSchedule}.  <tt>start</tt> and <tt>end</tt> are optional times of day (seconds or hh:mm:ss); without them the incident
+ * lasts the whole day.
+ * 
  * @author illenberger
  *
  */
 public class IncidentsReader extends DefaultHandler {
 	
-	private static final Logger logger = Logger.getLogger(IncidentsReader.class);
-
 	private static final String INCIDENT_TAG = "incident";
 	
 	private static final String LINK_PARAM = "link";
@@ -58,7 +55,11 @@ public class IncidentsReader extends DefaultHandler {
 	
 	private static final String CAPFACTOR_PARAM = "capfactor";
 	
-	private Map<Integer, List<NetworkChangeEvent>> changeEvents;
+	private static final String START_PARAM = "start";
+	
+	private static final String END_PARAM = "end";
+	
+	private IncidentSchedule.Builder builder;
 	
 	private Network network;
 	
@@ -66,75 +67,80 @@ public class IncidentsReader extends DefaultHandler {
 		this.network = network;
 	}
 	
-	public Map<Integer, List<NetworkChangeEvent>> read(String filename) {
+	public IncidentSchedule read(String filename) {
 		if(!new File(filename).exists()) {
-			logger.warn("The file " + filename + " does not exists.");
-			System.exit(-1);
+			throw new UncheckedIOException(new FileNotFoundException("The file " + filename + " does not exist."));
 		}
-		changeEvents = new HashMap<Integer, List<NetworkChangeEvent>>();
+		builder = new IncidentSchedule.Builder();
 		
 		SAXParserFactory factory = SAXParserFactory.newInstance();
 		factory.setValidating(false);
 		factory.setNamespaceAware(false);
-		SAXParser parser;
 		try {
-			parser = factory.newSAXParser();
+			SAXParser parser = factory.newSAXParser();
 			XMLReader reader = parser.getXMLReader();
 			reader.setContentHandler(this);
 			reader.parse(filename);
-		} catch (ParserConfigurationException e) {
-			e.printStackTrace();
+		} catch (ParserConfigurationException | SAXException e) {
+			throw new RuntimeException("Could not read incidents from " + filename, e);
 		} catch (IOException e) {
-			e.printStackTrace();
-		} catch (SAXException e) {
-			e.printStackTrace();
+			throw new UncheckedIOException(e);
 		}
 		
-		return changeEvents;
+		return builder.build();
 	}
 	
 	@Override
 	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
 		if(INCIDENT_TAG.equalsIgnoreCase(qName)) {
-			NetworkChangeEvent event =  new NetworkChangeEvent(0.0);
 			/*
 			 * link id
 			 */
-			String val = attributes.getValue(LINK_PARAM);
-			if(val == null) {
-				logger.warn("No link paramter specified.");
-				System.exit(-1);
-			} else {
-				event.addLink(network.getLinks().get(Id.create(val, Link.class)));
+			Id<Link> linkId = Id.create(getRequired(attributes, LINK_PARAM), Link.class);
+			if(!network.getLinks().containsKey(linkId)) {
+				throw new SAXException("Link " + linkId + " of incident is not in the network.");
 			}
 			/*
 			 * capacity factor
 			 */
-			val = attributes.getValue(CAPFACTOR_PARAM);
-			if(val == null) {
-				logger.info("No capacity factor specified.");
-				System.exit(-1);
-			} else {
-				event.setFlowCapacityChange(new ChangeValue(ChangeType.FACTOR, Double.parseDouble(val)));
+			String val = getRequired(attributes, CAPFACTOR_PARAM);
+			double capFactor;
+			try {
+				capFactor = Double.parseDouble(val);
+			} catch (NumberFormatException e) {
+				throw new SAXException("Malformed " + CAPFACTOR_PARAM + " parameter of incident: " + val, e);
 			}
 			/*
 			 * iteration
 			 */
-			val = attributes.getValue(ITERATION_PARAM);
-			if(val == null) {
-				logger.warn("No iteration param specified.");
-				System.exit(-1);
-			} else {
-				int it = Integer.parseInt(val);
-				List<NetworkChangeEvent> events = changeEvents.get(it);
-				if(events == null) {
-					events = new LinkedList<NetworkChangeEvent>();
-					changeEvents.put(it, events);
-				}
-				
-				events.add(event);
+			int it;
+			val = getRequired(attributes, ITERATION_PARAM);
+			try {
+				it = Integer.parseInt(val);
+			} catch (NumberFormatException e) {
+				throw new SAXException("Malformed " + ITERATION_PARAM + " parameter of incident: " + val, e);
 			}
+			/*
+			 * time of day
+			 */
+			val = attributes.getValue(START_PARAM);
+			double start = val == null ? 0.0 : Time.parseTime(val);
+			val = attributes.getValue(END_PARAM);
+			double end = val == null ? IncidentSchedule.NO_END : Time.parseTime(val);
+			try {
+				builder.addIncident(it, linkId, start, end, capFactor);
+			} catch (IllegalArgumentException e) {
+				throw new SAXException(e.getMessage(), e);
+			}
+		}
+	}
+	
+	private static String getRequired(Attributes attributes, String param) throws SAXException {
+		String val = attributes.getValue(param);
+		if(val == null) {
+			throw new SAXException("No " + param + " parameter specified for incident.");
 		}
+		return val;
 	}
 
 }
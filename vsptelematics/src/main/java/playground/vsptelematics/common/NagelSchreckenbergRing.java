@@ -0,0 +1,292 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NagelSchreckenbergRing
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.common;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Batch kernel for the Nagel-Schreckenberg cellular automaton on one homogeneous lane, either a ring (periodic boundary) or a corridor
+ * (vehicles leave at the downstream end).  The state is kept per cell in primitive arrays: <tt>speed[cell]</tt> ({@link #EMPTY} if the
+ * cell is empty) and <tt>vehicle[cell]</tt>, an index the caller can use to find its own vehicle objects.
+ * <p>
+ * A time step consists of
+ * <ol>
+ * <li> pre-generating the dawdle decisions as random bit masks, one bit per cell, see {@link #fillDawdleMasks};
+ * <li> one backward sweep that computes the gap in front of every cell;
+ * <li> the accelerate/brake/dawdle update of all cells, either cell by cell ({@link Kernel#scalar}) or in blocks of 64 cells per mask word
+ * without data-dependent branches ({@link Kernel#blocked});
+ * <li> moving all vehicles into a second pair of arrays, which are then swapped.
+ * </ol>
+ * Both kernels consume the same random numbers and thus give identical trajectories.
+ * <p>
+ * With <tt>slowToStart</tt>, a stopped vehicle does not dawdle but starts with probability <tt>pDawdle</tt> (this is the rule of
+ * {@link org.matsim.core.mobsim.qsim.qnetsimengine.KNCALink}); otherwise all vehicles use the standard rule.
+ */
+public final class NagelSchreckenbergRing {
+	public static final byte EMPTY = -1 ;
+	public static final int NO_VEHICLE = -1 ;
+
+	/**
+	 * Resolution of the dawdle probability, in bits.  The probability is rounded to a multiple of 2^-16.
+	 */
+	private static final int PROBABILITY_BITS = 16 ;
+
+	public enum Kernel { scalar, blocked }
+
+	private final int nCells ;
+	private final int maxV ;
+	private final boolean periodic ;
+	private final boolean slowToStart ;
+	private final int pDawdleBits ;
+	private Kernel kernel = Kernel.blocked ;
+
+	private byte[] speed ;
+	private int[] vehicle ;
+	private byte[] nextSpeed ;
+	private int[] nextVehicle ;
+	private final int[] gap ;
+	private final long[] dawdleMasks ;
+
+	public NagelSchreckenbergRing( int nCells, int maxV, double pDawdle, boolean slowToStart, boolean periodic ) {
+		if ( maxV < 1 || maxV > Byte.MAX_VALUE ) {
+			throw new IllegalArgumentException( "maxV must be between 1 and " + Byte.MAX_VALUE + "; got " + maxV ) ;
+		}
+		if ( pDawdle < 0. || pDawdle > 1. ) {
+			throw new IllegalArgumentException( "pDawdle must be a probability; got " + pDawdle ) ;
+		}
+		this.nCells = nCells ;
+		this.maxV = maxV ;
+		this.periodic = periodic ;
+		this.slowToStart = slowToStart ;
+		this.pDawdleBits = (int) Math.round( pDawdle * (1 << PROBABILITY_BITS) ) ;
+
+		this.speed = new byte[nCells] ;
+		this.vehicle = new int[nCells] ;
+		this.nextSpeed = new byte[nCells] ;
+		this.nextVehicle = new int[nCells] ;
+		this.gap = new int[nCells] ;
+		this.dawdleMasks = new long[(nCells + 63) >>> 6] ;
+		Arrays.fill( speed, EMPTY );
+		Arrays.fill( vehicle, NO_VEHICLE );
+	}
+
+	public void setKernel( Kernel kernel ) {
+		this.kernel = kernel;
+	}
+
+	public int getNumberOfCells() {
+		return nCells ;
+	}
+
+	public void place( int cell, int vehicleIndex, int spd ) {
+		if ( speed[cell]!=EMPTY ) {
+			throw new IllegalStateException( "cell " + cell + " is already occupied" ) ;
+		}
+		speed[cell] = (byte) Math.min( spd, maxV ) ;
+		vehicle[cell] = vehicleIndex ;
+	}
+
+	public boolean isOccupied( int cell ) {
+		return speed[cell]!=EMPTY ;
+	}
+
+	/**
+	 * @return the speed in the cell, or {@link #EMPTY}
+	 */
+	public int getSpeed( int cell ) {
+		return speed[cell] ;
+	}
+
+	/**
+	 * @return the vehicle index in the cell, or {@link #NO_VEHICLE}
+	 */
+	public int getVehicle( int cell ) {
+		return vehicle[cell] ;
+	}
+
+	public void clear() {
+		Arrays.fill( speed, EMPTY );
+		Arrays.fill( vehicle, NO_VEHICLE );
+	}
+
+	/**
+	 * Hash over occupancy and speeds, e.g. to compare trajectories of different runs.
+	 */
+	public long stateChecksum() {
+		long hash = 17 ;
+		for ( int ii=0 ; ii<nCells ; ii++ ) {
+			hash = 31*hash + vehicle[ii] ;
+			hash = 31*hash + speed[ii] ;
+		}
+		return hash ;
+	}
+
+	/**
+	 * Advances the automaton by one time step.
+	 *
+	 * @return number of vehicles that left a corridor at the downstream end (always 0 on a ring)
+	 */
+	public int step( SplittableRandom random ) {
+		fillDawdleMasks( dawdleMasks, pDawdleBits, random ) ;
+		if ( !computeGaps() ) {
+			return 0 ;
+		}
+		switch ( kernel ) {
+			case scalar:
+				updateSpeedsScalar() ;
+				break;
+			case blocked:
+				updateSpeedsBlocked() ;
+				break;
+			default:
+				throw new IllegalStateException( "Unexpected value: " + kernel );
+		}
+		return move() ;
+	}
+
+	/**
+	 * Fills every word of <tt>masks</tt> with 64 independent bits that are 1 with probability <tt>pBits/2^16</tt>.  Going through the binary
+	 * expansion of the probability from the least significant bit upwards, a 1 ORs in a fresh random word and a 0 ANDs one in; this needs
+	 * at most 16 random longs per 64 cells instead of one random double per cell.
+	 */
+	static void fillDawdleMasks( long[] masks, int pBits, SplittableRandom random ) {
+		if ( pBits <= 0 ) {
+			Arrays.fill( masks, 0L );
+			return ;
+		}
+		if ( pBits >= 1 << PROBABILITY_BITS ) {
+			Arrays.fill( masks, -1L );
+			return ;
+		}
+		final int lowestBit = Integer.numberOfTrailingZeros( pBits ) ;
+		for ( int ww=0 ; ww<masks.length ; ww++ ) {
+			long acc = 0L ;
+			for ( int bb=lowestBit ; bb<PROBABILITY_BITS ; bb++ ) {
+				if ( ( pBits & (1 << bb) ) != 0 ) {
+					acc |= random.nextLong() ;
+				} else {
+					acc &= random.nextLong() ;
+				}
+			}
+			masks[ww] = acc ;
+		}
+	}
+
+	/**
+	 * Backward sweep that stores in <tt>gap[cell]</tt> the number of empty cells up to the next vehicle downstream.
+	 *
+	 * @return false if there are no vehicles
+	 */
+	private boolean computeGaps() {
+		int first = 0 ;
+		while ( first<nCells && speed[first]==EMPTY ) {
+			first++ ;
+		}
+		if ( first==nCells ) {
+			return false ;
+		}
+		// on a ring the first vehicle is the leader of the last one; in a corridor the road beyond the end is free:
+		int next = periodic ? first + nCells : nCells + maxV ;
+		for ( int ii=nCells-1 ; ii>=0 ; ii-- ) {
+			gap[ii] = next - ii - 1 ;
+			next = speed[ii]!=EMPTY ? ii : next ;
+		}
+		return true ;
+	}
+
+	/**
+	 * Reference implementation; one cell at a time, branching as in the textbook formulation.
+	 */
+	private void updateSpeedsScalar() {
+		for ( int ii=0 ; ii<nCells ; ii++ ) {
+			int spd = speed[ii] ;
+			if ( spd==EMPTY ) {
+				continue ;
+			}
+			boolean dawdle = ( (dawdleMasks[ii >>> 6] >>> ii) & 1L ) != 0 ;
+			int spdTmp = spd+1 ;
+			if ( spdTmp > gap[ii] ) {
+				spdTmp = gap[ii] ;
+			}
+			if ( spdTmp > maxV ) {
+				spdTmp = maxV ;
+			}
+			if ( slowToStart && spd==0 ) {
+				spd = ( spdTmp >= 1 && dawdle ) ? 1 : 0 ;
+			} else {
+				spd = spdTmp ;
+				if ( spd >= 1 && dawdle ) {
+					spd-- ;
+				}
+			}
+			speed[ii] = (byte) spd ;
+		}
+	}
+
+	/**
+	 * Same rules as {@link #updateSpeedsScalar()}, but one mask word at a time and with the rules written as min/shift/mask arithmetic, so that
+	 * the inner loop has no data-dependent branches and can be unrolled/vectorized by the JIT.
+	 */
+	private void updateSpeedsBlocked() {
+		final int stopped = slowToStart ? 1 : 0 ;
+		for ( int ww=0 ; ww<dawdleMasks.length ; ww++ ) {
+			final long mask = dawdleMasks[ww] ;
+			final int start = ww << 6 ;
+			final int end = Math.min( start + 64, nCells ) ;
+			for ( int ii=start ; ii<end ; ii++ ) {
+				final int spd = speed[ii] ;
+				final int d = (int) ( mask >>> (ii - start) ) & 1 ;
+				final int spdTmp = Math.min( Math.min( spd+1, gap[ii] ), maxV ) ; // 0 for empty cells
+				final int moving = (-spdTmp) >>> 31 ;
+				final int dawdled = spdTmp - (moving & d) ;
+				final int started = spdTmp & d ; // spdTmp is 0 or 1 for a stopped vehicle
+				final int isStopped = ( (spd-1) >>> 31 ) & ~( spd >>> 31 ) & stopped ;
+				final int newSpd = dawdled + ( (started - dawdled) & -isStopped ) ;
+				speed[ii] = (byte) ( newSpd | -( spd >>> 31 ) ) ; // empty cells stay EMPTY
+			}
+		}
+	}
+
+	private int move() {
+		Arrays.fill( nextSpeed, EMPTY );
+		Arrays.fill( nextVehicle, NO_VEHICLE );
+		int nLeft = 0 ;
+		for ( int ii=0 ; ii<nCells ; ii++ ) {
+			final int spd = speed[ii] ;
+			if ( spd!=EMPTY ) {
+				int jj = ii + spd ;
+				if ( jj>=nCells ) {
+					if ( !periodic ) {
+						nLeft++ ;
+						continue ;
+					}
+					jj -= nCells ;
+				}
+				nextSpeed[jj] = (byte) spd ;
+				nextVehicle[jj] = vehicle[ii] ;
+			}
+		}
+		byte[] tmpSpeed = speed ; speed = nextSpeed ; nextSpeed = tmpSpeed ;
+		int[] tmpVehicle = vehicle ; vehicle = nextVehicle ; nextVehicle = tmpVehicle ;
+		return nLeft ;
+	}
+
+}
@@ -0,0 +1,82 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NagelSchreckenbergRingBenchmark
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.common;
+
+import java.util.SplittableRandom;
+
+import org.apache.log4j.Logger;
+
+import playground.vsptelematics.common.NagelSchreckenbergRing.Kernel;
+
+/**
+ * Timed harness comparing the {@link Kernel#scalar} and {@link Kernel#blocked} kernels of {@link NagelSchreckenbergRing} for densities
+ * 0.05 to 0.5.  Both kernels are started from the same state with the same seed, so it also checks that they end in the same state.
+ * <p>
+ * Usage: <tt>NagelSchreckenbergRingBenchmark [nCells] [nSteps] [pDawdle]</tt>
+ */
+public final class NagelSchreckenbergRingBenchmark {
+	private static final Logger log = Logger.getLogger( NagelSchreckenbergRingBenchmark.class ) ;
+
+	private NagelSchreckenbergRingBenchmark() {} // do not instantiate
+
+	public static void main( String[] args ) {
+		final int nCells = args.length > 0 ? Integer.parseInt( args[0] ) : 100000 ;
+		final int nSteps = args.length > 1 ? Integer.parseInt( args[1] ) : 2000 ;
+		final double pDawdle = args.length > 2 ? Double.parseDouble( args[2] ) : 0.1 ;
+
+		// warm-up:
+		run( nCells, nSteps, 0.2, pDawdle, Kernel.scalar ) ;
+		run( nCells, nSteps, 0.2, pDawdle, Kernel.blocked ) ;
+
+		for ( int dd=1 ; dd<=10 ; dd++ ) {
+			final double density = 0.05 * dd ;
+			long[] scalar = run( nCells, nSteps, density, pDawdle, Kernel.scalar ) ;
+			long[] blocked = run( nCells, nSteps, density, pDawdle, Kernel.blocked ) ;
+			double scalarRate = (double) nCells * nSteps / ( scalar[0] * 1.e-9 ) ;
+			double blockedRate = (double) nCells * nSteps / ( blocked[0] * 1.e-9 ) ;
+			log.info( String.format( "density=%.2f; scalar: %.3e cell updates/s; blocked: %.3e cell updates/s; speedup=%.2f; same state: %b",
+					density, scalarRate, blockedRate, blockedRate/scalarRate, scalar[1]==blocked[1] ) ) ;
+		}
+	}
+
+	/**
+	 * @return { duration in ns, checksum of the final state }
+	 */
+	private static long[] run( int nCells, int nSteps, double density, double pDawdle, Kernel kernel ) {
+		NagelSchreckenbergRing ring = new NagelSchreckenbergRing( nCells, 5, pDawdle, false, true ) ;
+		ring.setKernel( kernel );
+		double sum = 0. ;
+		int cnt = 0 ;
+		for ( int ii=0 ; ii<nCells ; ii++ ) {
+			sum += density ;
+			if ( sum >= 1. ) {
+				sum-- ;
+				ring.place( ii, cnt++, 0 ) ;
+			}
+		}
+		SplittableRandom random = new SplittableRandom( 4711 ) ;
+		long start = System.nanoTime() ;
+		for ( int step=0 ; step<nSteps ; step++ ) {
+			ring.step( random ) ;
+		}
+		return new long[] { System.nanoTime() - start, ring.stateChecksum() } ;
+	}
+
+}
@@ -0,0 +1,171 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QSimBenchmarkProbe
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.common;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+
+/**
+ * Measurements for the QSim benchmarks of the telematics strategies: wall time of the mobsim (from initialization to cleanup), number of
+ * events, bytes allocated by all threads during the mobsim, and the time spent in a replanning listener wrapped by
+ * {@link #timed(MobsimBeforeSimStepListener)}.  Bind it as event handler and as mobsim listener.
+ * <p>
+ * The allocated bytes come from {@link com.sun.management.ThreadMXBean}; they are reported as -1 on JVMs that do not support this.
+ */
+public final class QSimBenchmarkProbe implements BasicEventHandler, MobsimInitializedListener, MobsimBeforeCleanupListener {
+	private static final Logger log = Logger.getLogger( QSimBenchmarkProbe.class ) ;
+
+	private long nEvents ;
+	private long mobsimStart ;
+	private long mobsimDuration ;
+	private long allocatedAtStart ;
+	private long allocatedBytes = -1 ;
+
+	private long nReplanningSteps ;
+	private long replanningDuration ;
+	private long maxReplanningDuration ;
+
+	@Override
+	public void reset( int iteration ) {
+		this.nEvents = 0 ;
+	}
+
+	@Override
+	public void handleEvent( Event event ) {
+		this.nEvents++ ;
+	}
+
+	@Override
+	public void notifyMobsimInitialized( @SuppressWarnings("rawtypes") MobsimInitializedEvent e ) {
+		this.nReplanningSteps = 0 ;
+		this.replanningDuration = 0 ;
+		this.maxReplanningDuration = 0 ;
+		this.allocatedAtStart = getAllocatedBytes() ;
+		this.mobsimStart = System.nanoTime() ;
+	}
+
+	@Override
+	public void notifyMobsimBeforeCleanup( @SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e ) {
+		this.mobsimDuration = System.nanoTime() - this.mobsimStart ;
+		final long allocated = getAllocatedBytes() ;
+		this.allocatedBytes = allocated < 0 || this.allocatedAtStart < 0 ? -1 : allocated - this.allocatedAtStart ;
+	}
+
+	/**
+	 * Sum over the live threads; allocations of threads that ended during the mobsim are missing, so this is a lower bound.
+	 */
+	private static long getAllocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean() ;
+		if ( !(bean instanceof com.sun.management.ThreadMXBean) ) {
+			return -1 ;
+		}
+		com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean ;
+		if ( !sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled() ) {
+			return -1 ;
+		}
+		long sum = 0 ;
+		for ( long allocated : sunBean.getThreadAllocatedBytes( bean.getAllThreadIds() ) ) {
+			if ( allocated > 0 ) {
+				sum += allocated ;
+			}
+		}
+		return sum ;
+	}
+
+	/**
+	 * @return a listener that forwards to <tt>delegate</tt> and adds the time spent there to the replanning statistics; the end of the
+	 * mobsim is forwarded as well if <tt>delegate</tt> listens to it
+	 */
+	public MobsimBeforeSimStepListener timed( final MobsimBeforeSimStepListener delegate ) {
+		return new TimedListener( delegate ) ;
+	}
+
+	private final class TimedListener implements MobsimBeforeSimStepListener, MobsimBeforeCleanupListener {
+		private final MobsimBeforeSimStepListener delegate ;
+
+		TimedListener( MobsimBeforeSimStepListener delegate ) {
+			this.delegate = delegate ;
+		}
+
+		@Override
+		public void notifyMobsimBeforeSimStep( @SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent e ) {
+			final long start = System.nanoTime() ;
+			delegate.notifyMobsimBeforeSimStep( e ) ;
+			final long duration = System.nanoTime() - start ;
+			nReplanningSteps++ ;
+			replanningDuration += duration ;
+			maxReplanningDuration = Math.max( maxReplanningDuration, duration ) ;
+		}
+
+		@Override
+		public void notifyMobsimBeforeCleanup( @SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e ) {
+			if ( delegate instanceof MobsimBeforeCleanupListener ) {
+				((MobsimBeforeCleanupListener) delegate).notifyMobsimBeforeCleanup( e ) ;
+			}
+		}
+	}
+
+	public long getNumberOfEvents() {
+		return this.nEvents ;
+	}
+
+	public double getMobsimSeconds() {
+		return this.mobsimDuration * 1.e-9 ;
+	}
+
+	public double getEventsPerSecond() {
+		return this.nEvents / Math.max( 1.e-9, getMobsimSeconds() ) ;
+	}
+
+	/**
+	 * @return bytes per second of mobsim wall time, -1 if not available
+	 */
+	public double getAllocationRate() {
+		return this.allocatedBytes < 0 ? -1 : this.allocatedBytes / Math.max( 1.e-9, getMobsimSeconds() ) ;
+	}
+
+	/**
+	 * @return average time in the timed listener per sim step, in ms
+	 */
+	public double getAverageReplanningMillis() {
+		return this.nReplanningSteps == 0 ? 0. : this.replanningDuration * 1.e-6 / this.nReplanningSteps ;
+	}
+
+	public double getMaxReplanningMillis() {
+		return this.maxReplanningDuration * 1.e-6 ;
+	}
+
+	public void report( String label ) {
+		log.info( String.format( "%s: mobsim %.2f s; %d events, %.3e events/s; allocation %.1f MB/s; replanning %.3f ms/step avg, %.3f ms max",
+				label, getMobsimSeconds(), this.nEvents, getEventsPerSecond(), getAllocationRate() / (1024. * 1024.),
+				getAverageReplanningMillis(), getMaxReplanningMillis() ) ) ;
+	}
+
+}
@@ -6,24 +6,42 @@ public class TelematicsConfigGroup extends ReflectiveConfigGroup {
 	
 	public static final String GROUPNAME = "telematics";
 	public static final String INCIDENTS_FILE = "incidentsFile";
+	public static final String RANDOM_INCIDENTS_PER_ITERATION = "randomIncidentsPerIteration";
+	public static final String RANDOM_INCIDENTS_SEED = "randomIncidentsSeed";
 	public static final String USE_HOMOGENEOUS_TRAVEL_TIMES = "useHomogeneousTravelTimes";
 	public static final String INFOTYPE = "infotype";
 	public static final String EQUIPMENT_RATE = "equipmentRate";
 	public static final String USE_PREDICTED_TRAVEL_TIMES = "usePredictedTravelTimes";
 	public static final String PREDICTED_TRAVEL_TIME_ROUTE1 = "predictedTravelTimeRoute1";
 	public static final String PREDICTED_TRAVEL_TIME_ROUTE2 = "predictedTravelTimeRoute2";
+	public static final String GUIDANCE_WINDOW_LENGTH = "guidanceWindowLength";
+	public static final String GUIDANCE_DECAY = "guidanceDecay";
+	public static final String GUIDANCE_ROUTE_SETS_FILE = "guidanceRouteSetsFile";
+	public static final String WITHIN_DAY_REPLANNING_THREADS = "withinDayReplanningThreads";
+	public static final String ZONE_OCCUPANCY_SAMPLING_INTERVAL = "zoneOccupancySamplingInterval";
+	public static final String PARKING_GUIDANCE_REFRESH_INTERVAL = "parkingGuidanceRefreshInterval";
+	public static final String BANG_BANG_REEVALUATION_INTERVAL = "bangBangReevaluationInterval";
 	
 	public enum Infotype{
-		estimated, reactive
+		estimated, reactive, routeSet
 	}
 
 	private String incidentsFile;
+	private double randomIncidentsPerIteration = 0.0;
+	private long randomIncidentsSeed = 4711L;
 	private Infotype infotype;
 	private double equipmentRate;
 	private boolean usePredictedTravelTimes = false;
 	private double predictedTravelTimeRoute1;
 	private double predictedTravelTimeRoute2;
 	private boolean useHomogeneousTravelTimes = false;
+	private int guidanceWindowLength = 30;
+	private double guidanceDecay = 1.0;
+	private String guidanceRouteSetsFile = null;
+	private int withinDayReplanningThreads = 1;
+	private double zoneOccupancySamplingInterval = 900.;
+	private double parkingGuidanceRefreshInterval = 60.;
+	private double bangBangReevaluationInterval = 0.;
 	
 	public TelematicsConfigGroup() {
 		super(GROUPNAME);
@@ -46,6 +64,29 @@ public class TelematicsConfigGroup extends ReflectiveConfigGroup {
 		this.incidentsFile = incidentsFile;
 	}
 
+	@StringGetter( RANDOM_INCIDENTS_PER_ITERATION )
+	public double getRandomIncidentsPerIteration() {
+		return this.randomIncidentsPerIteration;
+	}
+
+	/**
+	 * mean number of random incidents per iteration; only used if no incidents file is given
+	 */
+	@StringSetter( RANDOM_INCIDENTS_PER_ITERATION )
+	public void setRandomIncidentsPerIteration(final double randomIncidentsPerIteration) {
+		this.randomIncidentsPerIteration = randomIncidentsPerIteration;
+	}
+
+	@StringGetter( RANDOM_INCIDENTS_SEED )
+	public long getRandomIncidentsSeed() {
+		return this.randomIncidentsSeed;
+	}
+
+	@StringSetter( RANDOM_INCIDENTS_SEED )
+	public void setRandomIncidentsSeed(final long randomIncidentsSeed) {
+		this.randomIncidentsSeed = randomIncidentsSeed;
+	}
+
 	@StringGetter( USE_HOMOGENEOUS_TRAVEL_TIMES )
 	public boolean isUseHomogeneousTravelTimes() {
 		return this.useHomogeneousTravelTimes;
@@ -67,6 +108,7 @@ public class TelematicsConfigGroup extends ReflectiveConfigGroup {
 		// set the value for the supported actions
 		case estimated:
 		case reactive:
+		case routeSet:
 			this.infotype = infotype;
 			break;
 		// throw an exception if the value is not supported
@@ -116,4 +158,97 @@ public class TelematicsConfigGroup extends ReflectiveConfigGroup {
 	public void setPredictedTravelTimeRoute2(final double predictedTravelTimeRoute2) {
 		this.predictedTravelTimeRoute2 = predictedTravelTimeRoute2;
 	}
+
+	@StringGetter( GUIDANCE_WINDOW_LENGTH )
+	public int getGuidanceWindowLength() {
+		return this.guidanceWindowLength;
+	}
+
+	/**
+	 * number of time steps over which the reactive guidance averages the observed route travel times
+	 */
+	@StringSetter( GUIDANCE_WINDOW_LENGTH )
+	public void setGuidanceWindowLength(final int guidanceWindowLength) {
+		this.guidanceWindowLength = guidanceWindowLength;
+	}
+
+	@StringGetter( GUIDANCE_DECAY )
+	public double getGuidanceDecay() {
+		return this.guidanceDecay;
+	}
+
+	/**
+	 * weight (between 0 and 1) that older travel time observations keep per time step in the reactive guidance; 1.0 averages over all
+	 * observations of the iteration
+	 */
+	@StringSetter( GUIDANCE_DECAY )
+	public void setGuidanceDecay(final double guidanceDecay) {
+		this.guidanceDecay = guidanceDecay;
+	}
+
+	@StringGetter( GUIDANCE_ROUTE_SETS_FILE )
+	public String getGuidanceRouteSetsFile() {
+		return this.guidanceRouteSetsFile;
+	}
+
+	/**
+	 * alternative routes per decision link for infotype routeSet; if not set, the two routes of the ha2 network are used
+	 */
+	@StringSetter( GUIDANCE_ROUTE_SETS_FILE )
+	public void setGuidanceRouteSetsFile(final String guidanceRouteSetsFile) {
+		this.guidanceRouteSetsFile = guidanceRouteSetsFile;
+	}
+
+	@StringGetter( WITHIN_DAY_REPLANNING_THREADS )
+	public int getWithinDayReplanningThreads() {
+		return this.withinDayReplanningThreads;
+	}
+
+	/**
+	 * number of threads that compute the new routes in within-day rerouting; the mobsim waits until all routes of a time step are computed
+	 */
+	@StringSetter( WITHIN_DAY_REPLANNING_THREADS )
+	public void setWithinDayReplanningThreads(final int withinDayReplanningThreads) {
+		this.withinDayReplanningThreads = withinDayReplanningThreads;
+	}
+
+	@StringGetter( ZONE_OCCUPANCY_SAMPLING_INTERVAL )
+	public double getZoneOccupancySamplingInterval() {
+		return this.zoneOccupancySamplingInterval;
+	}
+
+	/**
+	 * time (in sec) between two samples of the parking zone occupancies in the parking search scenario
+	 */
+	@StringSetter( ZONE_OCCUPANCY_SAMPLING_INTERVAL )
+	public void setZoneOccupancySamplingInterval(final double zoneOccupancySamplingInterval) {
+		this.zoneOccupancySamplingInterval = zoneOccupancySamplingInterval;
+	}
+
+	@StringGetter( PARKING_GUIDANCE_REFRESH_INTERVAL )
+	public double getParkingGuidanceRefreshInterval() {
+		return this.parkingGuidanceRefreshInterval;
+	}
+
+	/**
+	 * time (in sec) between two updates of the free parking spaces that the parking guidance broadcasts to the equipped vehicles
+	 */
+	@StringSetter( PARKING_GUIDANCE_REFRESH_INTERVAL )
+	public void setParkingGuidanceRefreshInterval(final double parkingGuidanceRefreshInterval) {
+		this.parkingGuidanceRefreshInterval = parkingGuidanceRefreshInterval;
+	}
+
+	@StringGetter( BANG_BANG_REEVALUATION_INTERVAL )
+	public double getBangBangReevaluationInterval() {
+		return this.bangBangReevaluationInterval;
+	}
+
+	/**
+	 * minimal time (in sec) between two re-evaluations of the route travel times by the bang-bang control; with 0, the routes are
+	 * re-evaluated on every time step on which there is an agent to replan
+	 */
+	@StringSetter( BANG_BANG_REEVALUATION_INTERVAL )
+	public void setBangBangReevaluationInterval(final double bangBangReevaluationInterval) {
+		this.bangBangReevaluationInterval = bangBangReevaluationInterval;
+	}
 }
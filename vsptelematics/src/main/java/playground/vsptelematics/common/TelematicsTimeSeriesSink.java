@@ -0,0 +1,377 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TelematicsTimeSeriesSink
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.common;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Time series output that keeps file I/O off the simulation thread.  Records are rows of primitive values; {@link #add(double[])} copies
+ * them into a preallocated chunk, full chunks are handed to a background thread which encodes and writes them and then gives the chunk
+ * back.  Memory is bounded by <tt>nChunks * recordsPerChunk</tt> records; when all chunks are waiting to be written, {@link BackPressure}
+ * decides whether the caller waits or the record is dropped.
+ * <p>
+ * Formats:
+ * <ul>
+ * <li> {@link Format#text}: one line per record with a header line, columns separated by <tt>separator</tt>; gzipped if the file name ends
+ * with <tt>.gz</tt>.
+ * <li> {@link Format#binary}: {@link #BINARY_MAGIC}, the number of columns, name (UTF) and {@link ColumnType} ordinal (byte) per column,
+ * then per chunk the number of records followed by the values column by column (long for {@link ColumnType#integer}, double for
+ * {@link ColumnType#decimal}, UTF for {@link ColumnType#linkId}); gzipped if the file name ends with <tt>.gz</tt>.
+ * </ul>
+ */
+public final class TelematicsTimeSeriesSink implements Closeable {
+
+	private static final Logger log = Logger.getLogger(TelematicsTimeSeriesSink.class);
+
+	public static final int BINARY_MAGIC = 0x544c5453; // "TLTS"
+	public static final int DEFAULT_RECORDS_PER_CHUNK = 4096;
+	public static final int DEFAULT_NUMBER_OF_CHUNKS = 4;
+
+	public enum Format { text, binary }
+
+	public enum ColumnType {
+		/** written as <tt>long</tt>, in text and in binary */
+		integer,
+		decimal,
+		/** the value is {@link Id#index()} of a link id; written as the id */
+		linkId
+	}
+
+	public enum BackPressure { block, drop }
+
+	private static final class Chunk {
+		final double[] values;
+		int nRecords = 0;
+
+		Chunk(int size) {
+			this.values = new double[size];
+		}
+	}
+
+	private static final Chunk END = new Chunk(0);
+
+	private final String filename;
+	private final Format format;
+	private final String separator;
+	private final String[] columnNames;
+	private final ColumnType[] columnTypes;
+	private final int nColumns;
+	private final int recordsPerChunk;
+	private final BackPressure backPressure;
+
+	private final BlockingQueue<Chunk> freeChunks;
+	private final BlockingQueue<Chunk> fullChunks;
+	private final Thread worker;
+	private volatile Throwable failure = null;
+
+	// simulation thread only:
+	private Chunk current = null;
+	private long droppedRecords = 0;
+	private boolean closed = false;
+
+	/**
+	 * Tab-separated text with default buffer sizes; the caller waits when the buffers are full.
+	 */
+	public TelematicsTimeSeriesSink(String filename, String[] columnNames, ColumnType[] columnTypes) {
+		this(filename, Format.text, "\t", columnNames, columnTypes, DEFAULT_RECORDS_PER_CHUNK, DEFAULT_NUMBER_OF_CHUNKS, BackPressure.block);
+	}
+
+	public TelematicsTimeSeriesSink(String filename, Format format, String separator, String[] columnNames, ColumnType[] columnTypes,
+			int recordsPerChunk, int nChunks, BackPressure backPressure) {
+		if (columnNames.length != columnTypes.length) {
+			throw new IllegalArgumentException("got " + columnNames.length + " column names but " + columnTypes.length + " column types");
+		}
+		if (recordsPerChunk < 1 || nChunks < 1) {
+			throw new IllegalArgumentException("need at least one chunk of at least one record");
+		}
+		this.filename = filename;
+		this.format = format;
+		this.separator = separator;
+		this.columnNames = columnNames.clone();
+		this.columnTypes = columnTypes.clone();
+		this.nColumns = columnNames.length;
+		this.recordsPerChunk = recordsPerChunk;
+		this.backPressure = backPressure;
+		this.freeChunks = new ArrayBlockingQueue<>(nChunks);
+		this.fullChunks = new ArrayBlockingQueue<>(nChunks + 1); // + END
+		for (int i = 0; i < nChunks; i++) {
+			this.freeChunks.add(new Chunk(recordsPerChunk * this.nColumns));
+		}
+		this.worker = new Thread(this::writeChunks, "TelematicsTimeSeriesSink " + filename);
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/**
+	 * Copies one record; <tt>record</tt> may be reused by the caller right away.
+	 */
+	public void add(double[] record) {
+		if (record.length != this.nColumns) {
+			throw new IllegalArgumentException("record has " + record.length + " values but " + this.filename + " has " + this.nColumns + " columns");
+		}
+		if (this.closed) {
+			throw new IllegalStateException("sink for " + this.filename + " is already closed");
+		}
+		this.checkFailure();
+		if (this.current == null) {
+			this.current = this.freeChunks.poll();
+			if (this.current == null) {
+				switch (this.backPressure) {
+				case block:
+					this.current = this.takeUninterruptibly(this.freeChunks);
+					break;
+				case drop:
+					this.droppedRecords++;
+					return;
+				default:
+					throw new IllegalStateException("Unexpected value: " + this.backPressure);
+				}
+			}
+		}
+		System.arraycopy(record, 0, this.current.values, this.current.nRecords * this.nColumns, this.nColumns);
+		this.current.nRecords++;
+		if (this.current.nRecords == this.recordsPerChunk) {
+			this.handOver();
+		}
+	}
+
+	/**
+	 * Hands the records added so far to the background thread; does not wait for them to be written.
+	 */
+	public void flush() {
+		if (this.current != null && this.current.nRecords > 0) {
+			this.handOver();
+		}
+	}
+
+	/**
+	 * Writes all remaining records, waits for the background thread and closes the file.
+	 */
+	@Override
+	public void close() {
+		if (this.closed) {
+			return;
+		}
+		this.flush();
+		this.closed = true;
+		this.fullChunks.add(END);
+		boolean interrupted = false;
+		while (this.worker.isAlive()) {
+			try {
+				this.worker.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (this.droppedRecords > 0) {
+			log.warn("dropped " + this.droppedRecords + " records for " + this.filename + " because the writer could not keep up");
+		}
+		this.checkFailure();
+	}
+
+	public long getDroppedRecords() {
+		return this.droppedRecords;
+	}
+
+	private void handOver() {
+		// there are never more chunks than places in the queue, so this does not block:
+		this.fullChunks.add(this.current);
+		this.current = null;
+	}
+
+	private void checkFailure() {
+		Throwable t = this.failure;
+		if (t instanceof IOException) {
+			throw new UncheckedIOException("writing " + this.filename + " failed", (IOException) t);
+		} else if (t != null) {
+			throw new RuntimeException("writing " + this.filename + " failed", t);
+		}
+	}
+
+	private Chunk takeUninterruptibly(BlockingQueue<Chunk> queue) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return queue.take();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	// ---------- background thread ----------
+
+	private void writeChunks() {
+		Encoder encoder = null;
+		try {
+			encoder = this.format == Format.text ? new TextEncoder() : new BinaryEncoder();
+		} catch (Throwable t) {
+			this.failure = t;
+		}
+		Chunk chunk;
+		while ((chunk = this.takeUninterruptibly(this.fullChunks)) != END) {
+			if (this.failure == null) {
+				try {
+					encoder.write(chunk);
+				} catch (Throwable t) {
+					this.failure = t;
+				}
+			}
+			// after a failure, keep recycling chunks so that the simulation thread is never blocked forever:
+			chunk.nRecords = 0;
+			this.freeChunks.add(chunk);
+		}
+		if (encoder != null) {
+			try {
+				encoder.close();
+			} catch (Throwable t) {
+				if (this.failure == null) {
+					this.failure = t;
+				}
+			}
+		}
+	}
+
+	private interface Encoder {
+		void write(Chunk chunk) throws IOException;
+
+		void close() throws IOException;
+	}
+
+	private final class TextEncoder implements Encoder {
+		private final BufferedWriter writer = IOUtils.getBufferedWriter(filename);
+		private final StringBuilder line = new StringBuilder();
+
+		TextEncoder() throws IOException {
+			for (int c = 0; c < nColumns; c++) {
+				if (c > 0) {
+					this.writer.write(separator);
+				}
+				this.writer.write(columnNames[c]);
+			}
+			this.writer.newLine();
+		}
+
+		@Override
+		public void write(Chunk chunk) throws IOException {
+			int pos = 0;
+			for (int r = 0; r < chunk.nRecords; r++) {
+				this.line.setLength(0);
+				for (int c = 0; c < nColumns; c++) {
+					if (c > 0) {
+						this.line.append(separator);
+					}
+					double value = chunk.values[pos++];
+					switch (columnTypes[c]) {
+					case integer:
+						this.line.append((long) value);
+						break;
+					case decimal:
+						this.line.append(value);
+						break;
+					case linkId:
+						this.line.append(Id.get((int) value, Link.class));
+						break;
+					default:
+						throw new IllegalStateException("Unexpected value: " + columnTypes[c]);
+					}
+				}
+				this.writer.append(this.line);
+				this.writer.newLine();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.writer.close();
+		}
+	}
+
+	private final class BinaryEncoder implements Encoder {
+		private final DataOutputStream out;
+
+		BinaryEncoder() throws IOException {
+			OutputStream os = new FileOutputStream(filename);
+			if (filename.endsWith(".gz")) {
+				os = new GZIPOutputStream(os, 64 * 1024);
+			}
+			this.out = new DataOutputStream(new BufferedOutputStream(os, 64 * 1024));
+			this.out.writeInt(BINARY_MAGIC);
+			this.out.writeInt(nColumns);
+			for (int c = 0; c < nColumns; c++) {
+				this.out.writeUTF(columnNames[c]);
+				this.out.writeByte(columnTypes[c].ordinal());
+			}
+		}
+
+		@Override
+		public void write(Chunk chunk) throws IOException {
+			this.out.writeInt(chunk.nRecords);
+			for (int c = 0; c < nColumns; c++) {
+				for (int r = 0; r < chunk.nRecords; r++) {
+					double value = chunk.values[r * nColumns + c];
+					switch (columnTypes[c]) {
+					case integer:
+						this.out.writeLong((long) value);
+						break;
+					case decimal:
+						this.out.writeDouble(value);
+						break;
+					case linkId:
+						this.out.writeUTF(Id.get((int) value, Link.class).toString());
+						break;
+					default:
+						throw new IllegalStateException("Unexpected value: " + columnTypes[c]);
+					}
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.out.close();
+		}
+	}
+
+}
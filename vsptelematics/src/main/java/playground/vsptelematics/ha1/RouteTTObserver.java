@@ -19,44 +19,20 @@
  * *********************************************************************** */
 package playground.vsptelematics.ha1;
 
-import org.apache.commons.math.stat.StatUtils;
-import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.events.LinkEnterEvent;
-import org.matsim.api.core.v01.events.PersonArrivalEvent;
-import org.matsim.api.core.v01.events.PersonDepartureEvent;
-import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
-import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
-import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
-import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
-import org.matsim.api.core.v01.events.handler.PersonDepartureEventHandler;
-import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
-import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
-import org.matsim.api.core.v01.network.Link;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.AfterMobsimEvent;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.listener.AfterMobsimListener;
 import org.matsim.core.controler.listener.IterationEndsListener;
-import org.matsim.core.events.algorithms.Vehicle2DriverEventHandler;
 
-import playground.vsptelematics.common.ListUtils;
+import playground.vsptelematics.common.AbstractRouteTTObserver;
 
 import javax.inject.Inject;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.*;
 
-public class RouteTTObserver implements PersonDepartureEventHandler, PersonArrivalEventHandler,
-		LinkEnterEventHandler, IterationEndsListener, AfterMobsimListener, VehicleEntersTrafficEventHandler, VehicleLeavesTrafficEventHandler {
-
-	private Set<Id> route1;
-
-	private Set<Id> route2;
-
-	private Map<Id, Double> personTTs;
-
-	private Map<Id, Double> departureTimes;
+public class RouteTTObserver extends AbstractRouteTTObserver implements IterationEndsListener, AfterMobsimListener {
 
 	private BufferedWriter writer;
 
@@ -69,48 +45,15 @@ public class RouteTTObserver implements PersonDepartureEventHandler, PersonArriv
 	private double sumRoute2TTs;
 
 	private String filename;
-	
-	Vehicle2DriverEventHandler vehicle2driver = new Vehicle2DriverEventHandler();
 
 	@Inject
 	RouteTTObserver(OutputDirectoryHierarchy controlerIO, EventsManager eventsManager) {
+		super(TWO_ROUTES);
 		this.filename = controlerIO.getOutputFilename("routeTravelTimes.txt");
 		eventsManager.addHandler(this);
 		this.reset(0);
 	}
 
-	@Override
-	public void handleEvent(PersonDepartureEvent event) {
-		departureTimes.put(event.getPersonId(), event.getTime());
-	}
-
-	@Override
-	public void reset(int iteration) {
-		route1 = new HashSet<Id>();
-		route2 = new HashSet<Id>();
-		personTTs = new HashMap<Id, Double>();
-		departureTimes = new HashMap<Id, Double>();
-	}
-
-	@Override
-	public void handleEvent(PersonArrivalEvent event) {
-		double depTime = departureTimes.get(event.getPersonId());
-		if (depTime == 0)
-			throw new RuntimeException("Agent departure time not found!");
-
-		personTTs.put(event.getPersonId(), event.getTime() - depTime);
-	}
-
-	@Override
-	public void handleEvent(LinkEnterEvent event) {
-		if (event.getLinkId().toString().equals("4")) {
-			route1.add(vehicle2driver.getDriverOfVehicle(event.getVehicleId()));
-		}
-		else if (event.getLinkId().toString().equals("5")) {
-			route2.add(vehicle2driver.getDriverOfVehicle(event.getVehicleId()));
-		}
-	}
-
 	@Override
 	public void notifyIterationEnds(IterationEndsEvent event) {
 		try {
@@ -119,18 +62,18 @@ public class RouteTTObserver implements PersonDepartureEventHandler, PersonArriv
 			writer.newLine();
 			writer.write(String.valueOf(event.getIteration()));
 			writer.write("\t");
-			writer.write(String.valueOf(route1.size()));
+			writer.write(String.valueOf(getNumberOfTrips(0)));
 			writer.write("\t");
-			writer.write(String.valueOf(route2.size()));
+			writer.write(String.valueOf(getNumberOfTrips(1)));
 			writer.write("\t");
 
-			if (route1.isEmpty())
+			if (getNumberOfTrips(0) == 0)
 				writer.write("0");
 			else
 				writer.write(String.valueOf(avr_route1TTs));
 			writer.write("\t");
 
-			if (route2.isEmpty())
+			if (getNumberOfTrips(1) == 0)
 				writer.write("0");
 			else
 				writer.write(String.valueOf(avr_route2TTs));
@@ -151,57 +94,11 @@ public class RouteTTObserver implements PersonDepartureEventHandler, PersonArriv
 
 	@Override
 	public void notifyAfterMobsim(AfterMobsimEvent event) {
-		List<Double> route1TTs = new ArrayList<Double>();
-		List<Double> route2TTs = new ArrayList<Double>();
-
-		for (Id p : route1) {
-			route1TTs.add(personTTs.get(p));
-		}
-		for (Id p : route2) {
-			route2TTs.add(personTTs.get(p));
-		}
-		if (route1TTs.isEmpty()){
-			sumRoute1TTs = 0.0;
-		}
-		else {
-			sumRoute1TTs = StatUtils.sum(ListUtils.toArray(route1TTs));
-		}
-		if (route2TTs.isEmpty()){
-			sumRoute2TTs = 0.0;
-		}
-		else {
-			sumRoute2TTs = StatUtils.sum(ListUtils.toArray(route2TTs));
-		}
-
-		avr_route1TTs = StatUtils.mean(ListUtils.toArray(route1TTs));
-		avr_route2TTs = StatUtils.mean(ListUtils.toArray(route2TTs));
-
-		if (Double.isNaN(avr_route1TTs)) {
-            avr_route1TTs = getFreespeedTravelTime(event.getServices().getScenario().getNetwork().getLinks().get(Id.create("2", Link.class)));
-            avr_route1TTs += getFreespeedTravelTime(event.getServices().getScenario().getNetwork().getLinks().get(Id.create("4", Link.class)));
-            avr_route1TTs += getFreespeedTravelTime(event.getServices().getScenario().getNetwork().getLinks().get(Id.create("6", Link.class)));
-		}
-		if (Double.isNaN(avr_route2TTs)) {
-            avr_route2TTs = getFreespeedTravelTime(event.getServices().getScenario().getNetwork().getLinks().get(Id.create("3", Link.class)));
-            avr_route2TTs += getFreespeedTravelTime(event.getServices().getScenario().getNetwork().getLinks().get(Id.create("5", Link.class)));
-            avr_route2TTs += getFreespeedTravelTime(event.getServices().getScenario().getNetwork().getLinks().get(Id.create("6", Link.class)));
-		}
-	}
-
-	private double getFreespeedTravelTime(final Link link) {
-		return link.getLength() / link.getFreespeed();
-	}
-	
-	
-	@Override
-	public void handleEvent(VehicleEntersTrafficEvent event) {
-		vehicle2driver.handleEvent(event);
-	}
-
-
-	@Override
-	public void handleEvent(VehicleLeavesTrafficEvent event) {
-		vehicle2driver.handleEvent(event);
+		computeStatistics(event.getServices().getScenario().getNetwork());
+		sumRoute1TTs = getTravelTimeSum(0);
+		sumRoute2TTs = getTravelTimeSum(1);
+		avr_route1TTs = getAverageTravelTime(0);
+		avr_route2TTs = getAverageTravelTime(1);
 	}
 
 }
\ No newline at end of file
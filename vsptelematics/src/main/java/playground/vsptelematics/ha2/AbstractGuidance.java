@@ -23,17 +23,23 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 
+import playground.vsptelematics.common.TelematicsTimeSeriesSink;
+import playground.vsptelematics.common.TelematicsTimeSeriesSink.ColumnType;
+
 public abstract class AbstractGuidance implements Guidance {
 
+	protected Id<Link> id1 = Id.create("1", Link.class);
 	protected Id<Link> id2 = Id.create("2", Link.class);
 	protected Id<Link> id3 = Id.create("3", Link.class);
 	protected Id<Link> id4 = Id.create("4", Link.class);
 	protected Id<Link> id5 = Id.create("5", Link.class);
+	protected Id<Link> id6 = Id.create("6", Link.class);
 	protected double ttFs1;
 	protected double ttFs2;
 	protected Id<Link> guidance = id2;
 	protected Network network;
 	protected String outputFilename;
+	private final double[] record = new double[6];
 
 	public AbstractGuidance(Network network, String filename) {
 		this.network = network;
@@ -41,6 +47,48 @@ public abstract class AbstractGuidance implements Guidance {
 		this.outputFilename = filename;
 	}
 
+	/**
+	 * The two-route network: guidance on link 1, then 2-4-6 or 3-5-6.
+	 */
+	@Override
+	public Id<Link> chooseNextLinkId(Id<Link> currentLinkId, double time) {
+		Id<Link> nextLink = null;
+		if (currentLinkId.equals(id1)){
+			nextLink = this.getNextLink(time);
+		}
+		else if (currentLinkId.equals(id2)){
+			nextLink = id4;
+		}
+		else if (currentLinkId.equals(id3)){
+			nextLink = id5;
+		}
+		else if (currentLinkId.equals(id4) || currentLinkId.equals(id5)){
+			nextLink = id6;
+		}
+		return nextLink;
+	}
+
+	/**
+	 * Output of the two-route guidances, one record per time step: time, vehicles on route 1 and 2, travel times of route 1 and 2 and the
+	 * route guided to.
+	 */
+	protected TelematicsTimeSeriesSink createSink(String travelTimeName) {
+		return new TelematicsTimeSeriesSink(this.outputFilename,
+				new String[] { "time[s]", "veh_route_1", "veh_route_2", travelTimeName + "_tt_1[s]", travelTimeName + "_tt_2[s]", "guidance[route]" },
+				new ColumnType[] { ColumnType.decimal, ColumnType.integer, ColumnType.integer, ColumnType.decimal, ColumnType.decimal,
+						ColumnType.integer });
+	}
+
+	protected void addRecord(TelematicsTimeSeriesSink sink, double time, double vehOn1, double vehOn2, double tt1, double tt2, int route) {
+		this.record[0] = time;
+		this.record[1] = vehOn1;
+		this.record[2] = vehOn2;
+		this.record[3] = tt1;
+		this.record[4] = tt2;
+		this.record[5] = route;
+		sink.add(this.record);
+	}
+
 	private void calcFreespeedTTs() {
 		this.ttFs1 = 0.0;
 		ttFs1 += this.network.getLinks().get(id2).getFreespeed();
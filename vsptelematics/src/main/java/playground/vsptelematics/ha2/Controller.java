@@ -19,11 +19,13 @@
  * *********************************************************************** */
 package playground.vsptelematics.ha2;
 
+import org.matsim.api.core.v01.Scenario;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.controler.Controler;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.scenario.ScenarioUtils;
 
 import com.google.inject.Singleton;
 
@@ -36,11 +38,17 @@ import playground.vsptelematics.common.TelematicsConfigGroup;
  */
 public class Controller {
 	public static void run(Config config){
+		ConfigUtils.addOrGetModule(config,TelematicsConfigGroup.GROUPNAME, TelematicsConfigGroup.class);
+		run(ScenarioUtils.loadScenario(config));
+	}
+
+	public static void run(Scenario scenario){
+		Config config = scenario.getConfig();
 		config.controler().setOverwriteFileSetting(OutputDirectoryHierarchy.OverwriteFileSetting.overwriteExistingFiles);
 		config.controler().setCreateGraphs(false);
 		ConfigUtils.addOrGetModule(config,TelematicsConfigGroup.GROUPNAME, TelematicsConfigGroup.class);
 		
-		Controler c = new Controler(config);
+		Controler c = new Controler(scenario);
         c.addOverridingModule(new AbstractModule() {
 			@Override
 			public void install() {
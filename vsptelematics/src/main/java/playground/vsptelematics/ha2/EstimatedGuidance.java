@@ -19,8 +19,6 @@
  * *********************************************************************** */
 package playground.vsptelematics.ha2;
 
-import java.io.BufferedWriter;
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -31,11 +29,15 @@ import org.matsim.api.core.v01.events.LinkLeaveEvent;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
-import org.matsim.core.utils.io.IOUtils;
 import org.matsim.vehicles.Vehicle;
 
+import playground.vsptelematics.common.TelematicsTimeSeriesSink;
+
 
 /**
+ * Guides to the route with the lower predicted travel time, i.e. vehicles on the route divided by the capacity of its bottleneck.  The
+ * prediction may be smoothed with a {@link TravelTimeEstimator}; by default only the prediction of the current time step is used.
+ * 
  * @author dgrether
  *
  */
@@ -50,31 +52,32 @@ public class EstimatedGuidance extends AbstractGuidance implements Guidance {
 	private Link link5;
 	private Link link4;
 
-	private BufferedWriter writer;
+	private final TravelTimeEstimator ttRoute1;
+	private final TravelTimeEstimator ttRoute2;
+
+	private final TelematicsTimeSeriesSink sink;
 	
 	public EstimatedGuidance(Network network, String outfile) {
+		this(network, outfile, 1, 0.0);
+	}
+
+	/**
+	 * @param windowLength number of time steps the predictions are averaged over
+	 * @param decay weight of older predictions per time step, see {@link TravelTimeEstimator}
+	 */
+	public EstimatedGuidance(Network network, String outfile, int windowLength, double decay) {
 		super(network, outfile);
+		this.ttRoute1 = new TravelTimeEstimator(windowLength, decay, ttFs1);
+		this.ttRoute2 = new TravelTimeEstimator(windowLength, decay, ttFs2);
 		this.reset(0);
 		this.link4 = this.network.getLinks().get(id4);
 		this.link5 = this.network.getLinks().get(id5);
-		this.writer = IOUtils.getBufferedWriter(this.outputFilename);
-		String header = "time[s] \t veh_route_1 \t veh_route_2 \t predicted_tt_1[s] \t predicted_tt_2[s] \t guidance[route]";
-		try {
-			writer.append(header);
-			writer.newLine();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		this.sink = this.createSink("predicted");
 	}
 
 	@Override
 	public void notifyShutdown() {
-		try {
-			this.writer.flush();
-			this.writer.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		this.sink.close();
 	}
 
 	
@@ -86,6 +89,8 @@ public class EstimatedGuidance extends AbstractGuidance implements Guidance {
 	@Override
 	public void reset(int iteration) {
 		this.vehicleIdLinkEnterEventMap.clear();
+		this.ttRoute1.reset(ttFs1);
+		this.ttRoute2.reset(ttFs2);
 		this.vehOn1 = 0.0;
 		this.vehOn2 = 0.0;
 	}
@@ -119,41 +124,28 @@ public class EstimatedGuidance extends AbstractGuidance implements Guidance {
 	@Override
 	public void notifyMobsimAfterSimStep(MobsimAfterSimStepEvent e) {
 		double time = e.getSimulationTime();
-		double tt1, tt2 = 0.0;
 		if (this.vehOn1 > 0.0) {
-			tt1 = this.vehOn1 / (this.link4.getCapacity()/3600.0);
-		}
-		else {
-			tt1 = this.ttFs1;
+			this.ttRoute1.addTravelTime(this.vehOn1 / (this.link4.getCapacity()/3600.0));
 		}
-
-
 		if (this.vehOn2 > 0.0){
-			tt2 = this.vehOn2 / (this.link5.getCapacity()/3600.0);
-		}
-		else {
-			tt2 = this.ttFs2;
+			this.ttRoute2.addTravelTime(this.vehOn2 / (this.link5.getCapacity()/3600.0));
 		}
+		double tt1 = this.ttRoute1.advance(this.ttFs1);
+		double tt2 = this.ttRoute2.advance(this.ttFs2);
 
-		String line = time + "\t" + this.vehOn1 + "\t" + this.vehOn2 + "\t" + tt1 + "\t" + tt2 + "\t";
 //		log.error("tt1: "+tt1 + " tt2: " + tt2);
+		int route;
 		if (tt1 <= tt2){
 //			log.error("  guidance 1");
 			this.guidance = id2;
-			line = line.concat("1");
+			route = 1;
 		}
 		else {
 //			log.error("  guidance 2");
 			this.guidance = id3;
-			line = line.concat("2");
-		}
-		try {
-			this.writer.append(line);
-			this.writer.newLine();
-		} catch (IOException e1) {
-			e1.printStackTrace();
+			route = 2;
 		}
-
+		this.addRecord(this.sink, time, this.vehOn1, this.vehOn2, tt1, tt2, route);
 	}
 
 
@@ -34,6 +34,11 @@ public interface Guidance extends LinkEnterEventHandler, LinkLeaveEventHandler,
 
 	Id<Link> getNextLink(double time);
 
+	/**
+	 * @return the link a guided agent should take after <tt>currentLinkId</tt>, or <tt>null</tt> if the guidance does not know the link
+	 */
+	Id<Link> chooseNextLinkId(Id<Link> currentLinkId, double time);
+
 	void notifyShutdown();
 
 }
@@ -0,0 +1,181 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GuidanceBenchmark
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.ha2;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup.ActivityParams;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.scenario.ScenarioUtils;
+
+import com.google.inject.Singleton;
+
+import playground.vsptelematics.common.QSimBenchmarkProbe;
+import playground.vsptelematics.common.TelematicsConfigGroup;
+import playground.vsptelematics.common.TelematicsConfigGroup.Infotype;
+
+/**
+ * Timed QSim runs of the guidance strategies ({@link Infotype}) on a synthetic version of the two-route network (links 1, 2-4 or 3-5, 6).
+ * The capacities scale with the number of persons, so that the bottlenecks 4 and 5 are congested by the same amount for every size.
+ * Every strategy runs one iteration of its own controler; the mobsim is measured by a {@link QSimBenchmarkProbe}.
+ * <p>
+ * Usage: <tt>GuidanceBenchmark [nPersons] [equipmentRate] [nRepetitions] [outputDirectory]</tt>
+ */
+public final class GuidanceBenchmark {
+
+	private static final Logger log = Logger.getLogger(GuidanceBenchmark.class);
+
+	private GuidanceBenchmark() {} // do not instantiate
+
+	public static void main(String[] args) {
+		final int nPersons = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		final double equipmentRate = args.length > 1 ? Double.parseDouble(args[1]) : 0.5;
+		final int nRepetitions = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		final String outputDirectory = args.length > 3 ? args[3] : "./output/benchmark/guidance";
+
+		for (int rep = 0; rep < nRepetitions; rep++) {
+			// first repetition is warm-up
+			for (Infotype type : Infotype.values()) {
+				QSimBenchmarkProbe probe = run(nPersons, equipmentRate, type, outputDirectory + "/" + type);
+				probe.report("rep=" + rep + (rep == 0 ? " (warm-up)" : "") + "; persons=" + nPersons + "; guidance=" + type);
+			}
+		}
+	}
+
+	static QSimBenchmarkProbe run(int nPersons, double equipmentRate, Infotype type, String outputDirectory) {
+		Config config = createConfig(outputDirectory);
+		TelematicsConfigGroup tcg = ConfigUtils.addOrGetModule(config, TelematicsConfigGroup.GROUPNAME, TelematicsConfigGroup.class);
+		tcg.setInfotype(type);
+		tcg.setEquipmentRate(equipmentRate);
+
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		createNetwork(scenario.getNetwork(), nPersons);
+		createPopulation(scenario.getPopulation(), nPersons);
+
+		final QSimBenchmarkProbe probe = new QSimBenchmarkProbe();
+		Controler c = new Controler(scenario);
+		c.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				// as in Controller:
+				bind(GuidanceRouteTTObserver.class).in(Singleton.class);
+				bind(GuidanceMobsimFactory.class).in(Singleton.class);
+				bindMobsim().toProvider(GuidanceMobsimFactory.class);
+				addControlerListenerBinding().to(GuidanceRouteTTObserver.class);
+				addControlerListenerBinding().to(GuidanceMobsimFactory.class);
+				addEventHandlerBinding().to(GuidanceRouteTTObserver.class);
+
+				addEventHandlerBinding().toInstance(probe);
+				addMobsimListenerBinding().toInstance(probe);
+			}
+		});
+		c.run();
+		return probe;
+	}
+
+	private static Config createConfig(String outputDirectory) {
+		Config config = ConfigUtils.createConfig();
+		config.controler().setOutputDirectory(outputDirectory);
+		config.controler().setOverwriteFileSetting(OutputDirectoryHierarchy.OverwriteFileSetting.deleteDirectoryIfExists);
+		config.controler().setFirstIteration(0);
+		config.controler().setLastIteration(0);
+		config.controler().setCreateGraphs(false);
+		config.controler().setWriteEventsInterval(0);
+		config.controler().setWritePlansInterval(0);
+		config.controler().setDumpDataAtEnd(false);
+		config.qsim().setStartTime(6. * 3600.);
+		config.qsim().setEndTime(12. * 3600.);
+		ActivityParams home = new ActivityParams("h");
+		home.setTypicalDuration(12. * 3600.);
+		config.planCalcScore().addActivityParams(home);
+		ActivityParams work = new ActivityParams("w");
+		work.setTypicalDuration(8. * 3600.);
+		config.planCalcScore().addActivityParams(work);
+		return config;
+	}
+
+	/**
+	 * Link 1 to a diverge node, route 1 (2-4) slightly shorter than route 2 (3-5), both merge into link 6.  Bottleneck capacities (per
+	 * hour) are 40% and 35% of the number of persons, who all depart within one hour.
+	 */
+	private static void createNetwork(Network network, int nPersons) {
+		NetworkFactory nf = network.getFactory();
+		Node n1 = addNode(network, "1", 0., 0.);
+		Node n2 = addNode(network, "2", 1000., 0.);
+		Node n3 = addNode(network, "3", 2000., 500.);
+		Node n4 = addNode(network, "4", 2000., -500.);
+		Node n5 = addNode(network, "5", 3000., 0.);
+		Node n6 = addNode(network, "6", 4000., 0.);
+		final double capacity = 2. * nPersons;
+		addLink(network, nf, "1", n1, n2, 1000., capacity);
+		addLink(network, nf, "2", n2, n3, 1118., capacity);
+		addLink(network, nf, "3", n2, n4, 1300., capacity);
+		addLink(network, nf, "4", n3, n5, 1118., 0.40 * nPersons);
+		addLink(network, nf, "5", n4, n5, 1118., 0.35 * nPersons);
+		addLink(network, nf, "6", n5, n6, 1000., capacity);
+	}
+
+	private static Node addNode(Network network, String id, double x, double y) {
+		Node node = network.getFactory().createNode(Id.createNodeId(id), new Coord(x, y));
+		network.addNode(node);
+		return node;
+	}
+
+	private static void addLink(Network network, NetworkFactory nf, String id, Node from, Node to, double length, double capacity) {
+		Link link = nf.createLink(Id.createLinkId(id), from, to);
+		link.setLength(length);
+		link.setFreespeed(50. / 3.6);
+		link.setCapacity(Math.max(capacity, 1.));
+		link.setNumberOfLanes(1.);
+		network.addLink(link);
+	}
+
+	private static void createPopulation(Population population, int nPersons) {
+		PopulationFactory pf = population.getFactory();
+		for (int i = 0; i < nPersons; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", Id.createLinkId("1"));
+			home.setEndTime(7. * 3600. + i * 3600. / nPersons);
+			plan.addActivity(home);
+			plan.addLeg(pf.createLeg(TransportMode.car));
+			plan.addActivity(pf.createActivityFromLinkId("w", Id.createLinkId("6")));
+			person.addPlan(plan);
+			population.addPerson(person);
+		}
+	}
+
+}
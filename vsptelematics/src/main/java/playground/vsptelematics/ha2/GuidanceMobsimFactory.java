@@ -51,6 +51,9 @@ public class GuidanceMobsimFactory implements Provider<Mobsim>, ShutdownListener
 	private Guidance guidance = null;
 	private Infotype type;
 	private String outfile;
+	private int windowLength;
+	private double decay;
+	private String routeSetsFile;
 	private GuidanceRouteTTObserver ttObserver;
 	private Scenario scenario;
 	private EventsManager eventsManager;
@@ -60,20 +63,29 @@ public class GuidanceMobsimFactory implements Provider<Mobsim>, ShutdownListener
 		TelematicsConfigGroup tcg = ConfigUtils.addOrGetModule(scenario.getConfig(), TelematicsConfigGroup.GROUPNAME, TelematicsConfigGroup.class);
 		this.equipmentFraction = tcg.getEquipmentRate();
 		this.type = tcg.getInfotype();
+		this.windowLength = tcg.getGuidanceWindowLength();
+		this.decay = tcg.getGuidanceDecay();
+		this.routeSetsFile = tcg.getGuidanceRouteSetsFile();
 		this.outfile = outputDirectoryHierarchy.getOutputFilename("guidance.txt");
 		this.ttObserver = ttObserver;
 		this.scenario = scenario;
 		this.eventsManager = eventsManager;
+		this.initGuidance(scenario.getNetwork());
 	}
 	
 	private void initGuidance(Network network){
 		switch (type){
 		case reactive:
-			this.guidance = new ReactiveGuidance(network, outfile);
+			this.guidance = new ReactiveGuidance(network, outfile, windowLength, decay);
 			break;
 		case estimated:
 			this.guidance = new EstimatedGuidance(network, outfile);
 			break;
+		case routeSet:
+			GuidanceRouteSets routeSets = routeSetsFile == null ? GuidanceRouteSets.createTwoRouteSets()
+					: GuidanceRouteSets.readFile(routeSetsFile);
+			this.guidance = new RouteSetGuidance(network, routeSets, outfile, windowLength, decay);
+			break;
 		default:
 			throw new IllegalStateException("Guidance type " + type + " is not known!");
 		}
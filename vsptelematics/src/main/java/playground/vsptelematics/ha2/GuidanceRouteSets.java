@@ -0,0 +1,94 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GuidanceRouteSets
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+package playground.vsptelematics.ha2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Definition of the alternative routes at every decision point of a guidance, see {@link RouteSetGuidance}.  A route is the sequence of
+ * links an agent takes after leaving the decision link, up to and including the link where the alternatives merge again (or the destination
+ * link); its travel time is measured from entering its first link to entering its last link.
+ * <p>
+ * The file format is one route per line, <tt>decisionLinkId&lt;tab&gt;linkId linkId ...</tt>; empty lines and lines starting with
+ * <tt>#</tt> are ignored.
+ */
+public class GuidanceRouteSets {
+
+	private final Map<Id<Link>, List<List<Id<Link>>>> routesByDecisionLink = new LinkedHashMap<>();
+
+	public void addRoute(Id<Link> decisionLinkId, List<Id<Link>> linkIds) {
+		if (linkIds.isEmpty()) {
+			throw new IllegalArgumentException("route at decision link " + decisionLinkId + " has no links");
+		}
+		this.routesByDecisionLink.computeIfAbsent(decisionLinkId, k -> new ArrayList<>()).add(new ArrayList<>(linkIds));
+	}
+
+	public Map<Id<Link>, List<List<Id<Link>>>> getRoutesByDecisionLink() {
+		return Collections.unmodifiableMap(this.routesByDecisionLink);
+	}
+
+	/**
+	 * The two routes of the ha2 network: 1-2-4-6 and 1-3-5-6.
+	 */
+	public static GuidanceRouteSets createTwoRouteSets() {
+		GuidanceRouteSets routeSets = new GuidanceRouteSets();
+		Id<Link> id1 = Id.create("1", Link.class);
+		routeSets.addRoute(id1, Arrays.asList(Id.create("2", Link.class), Id.create("4", Link.class), Id.create("6", Link.class)));
+		routeSets.addRoute(id1, Arrays.asList(Id.create("3", Link.class), Id.create("5", Link.class), Id.create("6", Link.class)));
+		return routeSets;
+	}
+
+	public static GuidanceRouteSets readFile(String filename) {
+		GuidanceRouteSets routeSets = new GuidanceRouteSets();
+		try (BufferedReader reader = IOUtils.getBufferedReader(filename)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] parts = line.split("\t");
+				if (parts.length != 2) {
+					throw new IllegalArgumentException("cannot parse line \"" + line + "\" in " + filename);
+				}
+				List<Id<Link>> linkIds = new ArrayList<>();
+				for (String linkId : parts[1].trim().split("\\s+")) {
+					linkIds.add(Id.create(linkId, Link.class));
+				}
+				routeSets.addRoute(Id.create(parts[0].trim(), Link.class), linkIds);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return routeSets;
+	}
+
+}
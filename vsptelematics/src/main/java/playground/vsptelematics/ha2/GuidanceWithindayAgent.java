@@ -19,30 +19,39 @@
  * *********************************************************************** */
 package playground.vsptelematics.ha2;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.qsim.agents.PersonDriverAgentImpl;
+import org.matsim.core.mobsim.qsim.agents.WithinDayAgentUtils;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.Netsim;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.utils.misc.OptionalTime;
 import org.matsim.facilities.Facility;
 import org.matsim.vehicles.Vehicle;
 
 
 /**
+ * Driver agent that follows the {@link Guidance} wherever it knows the current link, and its planned route everywhere else (e.g. on the
+ * origin and destination links).  When the agent leaves its planned route because of the guidance, the rest of the route is replaced by
+ * the links the guidance leads along until they join the planned route again, so that the route of the delegate always contains the
+ * links the agent has actually taken.
+ *
  * @author dgrether
  *
  */
 public class GuidanceWithindayAgent implements MobsimDriverAgent {
 
-	private Id<Link> id1 = Id.create("1", Link.class);
-	private Id<Link> id2 = Id.create("2", Link.class);
-	private Id<Link> id3 = Id.create("3", Link.class);
-	private Id<Link> id4 = Id.create("4", Link.class);
-	private Id<Link> id5 = Id.create("5", Link.class);
-	private Id<Link> id6 = Id.create("6", Link.class);
 	private Guidance guidance;
 	private Netsim simulation;
 	
@@ -51,27 +60,21 @@ public class GuidanceWithindayAgent implements MobsimDriverAgent {
 	protected GuidanceWithindayAgent(Person p, Netsim simulation, Guidance guidance) {
 		this.simulation = simulation;
 		this.guidance = guidance;
-		this.delegate = new PersonDriverAgentImpl(p.getSelectedPlan(), simulation) ;
+		// the route is modified during the mobsim; work on a copy, so that the plan of the person remains as planned
+		Plan plan = PopulationUtils.createPlan(p);
+		PopulationUtils.copyFromTo(p.getSelectedPlan(), plan);
+		this.delegate = new PersonDriverAgentImpl(plan, simulation) ;
 	}
 
 	@Override
 	public Id<Link> chooseNextLinkId(){
 		double time = this.simulation.getSimTimer().getTimeOfDay();
-		Id<Link> currentLinkId  = this.getCurrentLinkId();
-		Id<Link> nextLink = null;
-		if (currentLinkId.equals(id1)){
-			nextLink = this.guidance.getNextLink(time);
-		}
-		else if (currentLinkId.equals(id2)){
-			nextLink = id4;
-		}
-		else if (currentLinkId.equals(id3)){
-			nextLink = id5;
-		}
-		else if (currentLinkId.equals(id4) || currentLinkId.equals(id5)){
-			nextLink = id6;
+		Id<Link> nextLinkId = this.guidance.chooseNextLinkId(this.getCurrentLinkId(), time);
+		if (nextLinkId == null) {
+			// the link is not part of the route sets of the guidance
+			nextLinkId = this.delegate.chooseNextLinkId();
 		}
-		return nextLink;
+		return nextLinkId;
 	}
 
 	public Id<Person> getId() {
@@ -91,9 +94,42 @@ public class GuidanceWithindayAgent implements MobsimDriverAgent {
 	}
 
 	public void notifyMoveOverNode(Id<Link> newLinkId) {
+		if (!newLinkId.equals(delegate.chooseNextLinkId())) {
+			this.replaceRemainingRoute(newLinkId);
+		}
 		delegate.notifyMoveOverNode(newLinkId);
 	}
 
+	/**
+	 * Replaces the links of the current route after the current link by <tt>newLinkId</tt>, the links the guidance leads along after it
+	 * and, from the first of these links that is on the remaining planned route, the remaining planned route.  If the guidance does not
+	 * lead back to the planned route, the route ends with the links of the guidance.
+	 */
+	private void replaceRemainingRoute(Id<Link> newLinkId) {
+		double time = this.simulation.getSimTimer().getTimeOfDay();
+		Leg leg = (Leg) WithinDayAgentUtils.getCurrentPlanElement(delegate);
+		NetworkRoute route = (NetworkRoute) leg.getRoute();
+		List<Id<Link>> oldLinkIds = route.getLinkIds();
+		int idx = WithinDayAgentUtils.getCurrentRouteLinkIdIndex(delegate);
+		List<Id<Link>> remainingLinkIds = oldLinkIds.subList(Math.min(idx, oldLinkIds.size()), oldLinkIds.size());
+
+		List<Id<Link>> newLinkIds = new ArrayList<>(oldLinkIds.subList(0, Math.min(idx, oldLinkIds.size())));
+		Set<Id<Link>> guidedLinkIds = new HashSet<>();
+		Id<Link> linkId = newLinkId;
+		while (linkId != null && !linkId.equals(route.getEndLinkId()) && guidedLinkIds.add(linkId)) {
+			int joinIndex = remainingLinkIds.indexOf(linkId);
+			if (joinIndex >= 0) {
+				newLinkIds.addAll(remainingLinkIds.subList(joinIndex, remainingLinkIds.size()));
+				break;
+			}
+			newLinkIds.add(linkId);
+			linkId = this.guidance.chooseNextLinkId(linkId, time);
+		}
+		route.setLinkIds(route.getStartLinkId(), newLinkIds, route.getEndLinkId());
+		// the delegate caches its next link
+		WithinDayAgentUtils.resetCaches(delegate);
+	}
+
 	public Id<Link> getDestinationLinkId() {
 		return delegate.getDestinationLinkId();
 	}
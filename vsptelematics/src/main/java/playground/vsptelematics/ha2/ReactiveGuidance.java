@@ -19,11 +19,7 @@
  * *********************************************************************** */
 package playground.vsptelematics.ha2;
 
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
@@ -37,9 +33,12 @@ import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.events.algorithms.Vehicle2DriverEventHandler;
 import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
-import org.matsim.core.utils.io.IOUtils;
+
+import playground.vsptelematics.common.TelematicsTimeSeriesSink;
 
 /**
+ * Guides to the route with the lower average of the observed travel times, see {@link TravelTimeEstimator}.
+ * 
  * @author dgrether
  * 
  */
@@ -47,53 +46,45 @@ public class ReactiveGuidance extends AbstractGuidance implements Guidance, Vehi
 
 	private static final Logger log = Logger.getLogger(ReactiveGuidance.class);
 
-	private double[] ttRoute1;
-	private double[] ttRoute2;
+	public static final int DEFAULT_WINDOW_LENGTH = 30;
+	public static final double DEFAULT_DECAY = 1.0;
+
+	private final TravelTimeEstimator ttRoute1;
+	private final TravelTimeEstimator ttRoute2;
 	private double vehOn1, vehOn2;
 
 	private Map<Id, LinkEnterEvent> personIdLinkEnterEventMap = new HashMap<Id, LinkEnterEvent>();
 
-	private List<Double> currentTravelTimesRoute1 = new ArrayList<Double>();
-	private List<Double> currentTravelTimesRoute2 = new ArrayList<Double>();
-
-	private BufferedWriter writer;
+	private final TelematicsTimeSeriesSink sink;
 	
 	Vehicle2DriverEventHandler vehicle2driver = new Vehicle2DriverEventHandler();
 
 	public ReactiveGuidance(Network network, String outfile) {
+		this(network, outfile, DEFAULT_WINDOW_LENGTH, DEFAULT_DECAY);
+	}
+
+	/**
+	 * @param windowLength number of time steps the travel times are averaged over
+	 * @param decay weight of older observations per time step, see {@link TravelTimeEstimator}
+	 */
+	public ReactiveGuidance(Network network, String outfile, int windowLength, double decay) {
 		super(network, outfile);
+		this.ttRoute1 = new TravelTimeEstimator(windowLength, decay, ttFs1);
+		this.ttRoute2 = new TravelTimeEstimator(windowLength, decay, ttFs2);
 		this.reset(0);
-		for (int i = 0; i < this.ttRoute1.length; i++) {
-			this.ttRoute1[i] = ttFs1;
-			this.ttRoute2[i] = ttFs2;
-		}
-		this.writer = IOUtils.getBufferedWriter(this.outputFilename);
-		String header = "time[s] \t veh_route_1 \t veh_route_2 \t avg_tt_1[s] \t avg_tt_2[s] \t guidance[route]";
-		try {
-			writer.append(header);
-			writer.newLine();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		this.sink = this.createSink("avg");
 	}
 	
 	@Override
 	public void notifyShutdown() {
-		try {
-			this.writer.flush();
-			this.writer.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		this.sink.close();
 	}
 
 	@Override
 	public void reset(int iteration){
 		this.personIdLinkEnterEventMap.clear();
-		ttRoute1 = new double[30]; 
-		ttRoute2 = new double[30];
-		this.currentTravelTimesRoute1.clear();
-		this.currentTravelTimesRoute2.clear();
+		this.ttRoute1.reset(ttFs1);
+		this.ttRoute2.reset(ttFs2);
 		this.vehOn1 = 0.0;
 		this.vehOn2 = 0.0;
 	}
@@ -115,12 +106,12 @@ public class ReactiveGuidance extends AbstractGuidance implements Guidance, Vehi
 		LinkEnterEvent enterEvent = null;
 		if (e.getLinkId().equals(id4)){
 			enterEvent = this.personIdLinkEnterEventMap.remove(vehicle2driver.getDriverOfVehicle(e.getVehicleId()));
-			this.currentTravelTimesRoute1.add(e.getTime() - enterEvent.getTime());
+			this.ttRoute1.addTravelTime(e.getTime() - enterEvent.getTime());
 			this.vehOn1--;
 		}
 		else if (e.getLinkId().equals(id5)){
 			enterEvent = this.personIdLinkEnterEventMap.remove(vehicle2driver.getDriverOfVehicle(e.getVehicleId()));
-			this.currentTravelTimesRoute2.add(e.getTime() - enterEvent.getTime());
+			this.ttRoute2.addTravelTime(e.getTime() - enterEvent.getTime());
 			this.vehOn2--;
 		}
 	}
@@ -133,65 +124,27 @@ public class ReactiveGuidance extends AbstractGuidance implements Guidance, Vehi
 	@Override
 	public void notifyMobsimAfterSimStep(MobsimAfterSimStepEvent e) {
 		double time = e.getSimulationTime();
-		int slot = (int) time % 30;
-		// Route 1
-		if (!this.currentTravelTimesRoute1.isEmpty()) {
-			double tt = 0.0;
-			for (Double t : this.currentTravelTimesRoute1)
-				tt += t;
-			tt = tt / this.currentTravelTimesRoute1.size();
-			ttRoute1[slot] = tt;
-		}
-		else {
-			ttRoute1[slot] = ttFs1;
-		}
-		double avgTT1 = this.getAvgTt(ttRoute1);
-
-		// Route 2
-		if (!this.currentTravelTimesRoute2.isEmpty()) {
-			double tt = 0.0;
-			for (Double t : this.currentTravelTimesRoute2)
-				tt += t;
-			tt = tt / this.currentTravelTimesRoute2.size();
-			ttRoute2[slot] = tt;
-		}
-		else {
-			ttRoute2[slot] = ttFs2;
-		}
-		double avgTT2 = this.getAvgTt(ttRoute2);
+		double avgTT1 = this.ttRoute1.advance(ttFs1);
+		double avgTT2 = this.ttRoute2.advance(ttFs2);
 		
 		//calc guidance
-//		log.error("current tt 1 : " + ttRoute1[slot] + " current tt 2 : " + ttRoute2[slot] + " at "
+//		log.error("current tt 1 : " + ttRoute1.getCurrentTravelTime() + " current tt 2 : " + ttRoute2.getCurrentTravelTime() + " at "
 //				+ Time.writeTime(time));
 //		log.error("avg tt 1 : " + avgTT1 + " avg tt 2 : " + avgTT2 + " at " + Time.writeTime(time));
-		String line = time + "\t" + this.vehOn1 + "\t" + this.vehOn2 + "\t" + avgTT1 + "\t" + avgTT2 + "\t";
+		int route;
 		if (avgTT1 <= avgTT2) {
 			this.guidance = id2;
 //			log.error("  guidance 1 ");
-			line = line.concat("1");
+			route = 1;
 		}
 		else {
 			this.guidance = id3;
 //			log.error("  guidance 2 ");
-			line = line.concat("2");
-		}
-		try {
-			this.writer.append(line);
-			this.writer.newLine();
-		} catch (IOException e1) {
-			e1.printStackTrace();
+			route = 2;
 		}
+		this.addRecord(this.sink, time, this.vehOn1, this.vehOn2, avgTT1, avgTT2, route);
 	}
 
-	private double getAvgTt(double[] tts) {
-		double ttavg = 0.0;
-		for (double t : tts) {
-			ttavg += t;
-		}
-		return ttavg / tts.length;
-	}
-
-
 	@Override
 	public void handleEvent(VehicleEntersTrafficEvent event) {
 		vehicle2driver.handleEvent(event);
@@ -0,0 +1,304 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RouteSetGuidance
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+package playground.vsptelematics.ha2;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+
+import playground.vsptelematics.common.TelematicsTimeSeriesSink;
+import playground.vsptelematics.common.TelematicsTimeSeriesSink.ColumnType;
+
+/**
+ * Reactive guidance for any number of decision points with any number of alternative routes each, see {@link GuidanceRouteSets}.
+ * <p>
+ * At construction, the route sets are compiled into int-indexed arrays over the links involved (decision point of a link, successor of a
+ * link on its route, route starting at a link, ...), so that neither {@link #chooseNextLinkId} nor the event handlers look anything up in
+ * {@link Id}-keyed maps.  Route travel times are measured from the link events of all vehicles and estimated per route with a
+ * {@link TravelTimeEstimator}; after every time step each decision point guides to its route with the lowest estimate.
+ */
+public class RouteSetGuidance implements Guidance, VehicleLeavesTrafficEventHandler {
+
+	private static final int NONE = -1;
+
+	// per link, indexed by Id.index() (links that are not part of a route set are out of range or NONE):
+	private final int[] localIndex;
+	// per link, indexed by local index:
+	private final Id<Link>[] linkIds;
+	private final int[] decisionOfLink;
+	private final int[] successorOfLink;
+	private final int[] routeStartingAtLink;
+	// per decision point d; its routes are firstRoute[d] to firstRoute[d+1]-1:
+	private final int[] firstRoute;
+	private final int[] bestRoute;
+	// per route:
+	private final int[] routeFirstLink;
+	private final int[] routeLastLink;
+	private final double[] freespeedTravelTime;
+	private final TravelTimeEstimator[] estimators;
+	// per vehicle, indexed by Id.index():
+	private int[] vehicleRoute = new int[0];
+	private double[] vehicleEnterTime = new double[0];
+
+	private final TelematicsTimeSeriesSink sink;
+	private final double[] record;
+
+	public RouteSetGuidance(Network network, GuidanceRouteSets routeSets, String outfile) {
+		this(network, routeSets, outfile, ReactiveGuidance.DEFAULT_WINDOW_LENGTH, ReactiveGuidance.DEFAULT_DECAY);
+	}
+
+	@SuppressWarnings("unchecked")
+	public RouteSetGuidance(Network network, GuidanceRouteSets routeSets, String outfile, int windowLength, double decay) {
+		Map<Id<Link>, List<List<Id<Link>>>> routesByDecisionLink = routeSets.getRoutesByDecisionLink();
+		if (routesByDecisionLink.isEmpty()) {
+			throw new IllegalArgumentException("no route sets given");
+		}
+
+		// local link indices; the map is only used here:
+		Map<Id<Link>, Integer> local = new HashMap<>();
+		int maxIndex = 0;
+		int nRoutes = 0;
+		for (Entry<Id<Link>, List<List<Id<Link>>>> e : routesByDecisionLink.entrySet()) {
+			maxIndex = Math.max(maxIndex, addLink(local, e.getKey()));
+			for (List<Id<Link>> route : e.getValue()) {
+				if (route.size() < 2) {
+					throw new IllegalArgumentException("route " + route + " at decision link " + e.getKey()
+							+ " needs at least a first and a last link to measure travel times");
+				}
+				for (Id<Link> linkId : route) {
+					maxIndex = Math.max(maxIndex, addLink(local, linkId));
+				}
+				nRoutes++;
+			}
+		}
+		this.localIndex = new int[maxIndex + 1];
+		Arrays.fill(this.localIndex, NONE);
+		this.linkIds = new Id[local.size()];
+		for (Entry<Id<Link>, Integer> e : local.entrySet()) {
+			this.localIndex[e.getKey().index()] = e.getValue();
+			this.linkIds[e.getValue()] = e.getKey();
+		}
+		this.decisionOfLink = newFilledArray(local.size());
+		this.successorOfLink = newFilledArray(local.size());
+		this.routeStartingAtLink = newFilledArray(local.size());
+
+		final int nDecisions = routesByDecisionLink.size();
+		this.firstRoute = new int[nDecisions + 1];
+		this.bestRoute = new int[nDecisions];
+		this.routeFirstLink = new int[nRoutes];
+		this.routeLastLink = new int[nRoutes];
+		this.freespeedTravelTime = new double[nRoutes];
+		this.estimators = new TravelTimeEstimator[nRoutes];
+
+		int d = 0;
+		int r = 0;
+		for (Entry<Id<Link>, List<List<Id<Link>>>> e : routesByDecisionLink.entrySet()) {
+			this.decisionOfLink[local.get(e.getKey())] = d;
+			this.firstRoute[d] = r;
+			for (List<Id<Link>> route : e.getValue()) {
+				int first = local.get(route.get(0));
+				int last = local.get(route.get(route.size() - 1));
+				if (this.routeStartingAtLink[first] != NONE) {
+					throw new IllegalArgumentException("link " + route.get(0) + " is the first link of more than one route");
+				}
+				this.routeStartingAtLink[first] = r;
+				this.routeFirstLink[r] = first;
+				this.routeLastLink[r] = last;
+				double tt = 0.0;
+				for (int i = 0; i < route.size() - 1; i++) {
+					this.setSuccessor(local.get(route.get(i)), local.get(route.get(i + 1)));
+					Link link = network.getLinks().get(route.get(i));
+					if (link == null) {
+						throw new IllegalArgumentException("link " + route.get(i) + " of route " + route + " is not in the network");
+					}
+					tt += link.getLength() / link.getFreespeed();
+				}
+				this.freespeedTravelTime[r] = tt;
+				this.estimators[r] = new TravelTimeEstimator(windowLength, decay, tt);
+				r++;
+			}
+			d++;
+		}
+		this.firstRoute[nDecisions] = r;
+		for (int l = 0; l < this.linkIds.length; l++) {
+			if (this.decisionOfLink[l] != NONE && this.successorOfLink[l] != NONE) {
+				throw new IllegalArgumentException("link " + this.linkIds[l] + " is a decision link but has a fixed successor on a route");
+			}
+		}
+		this.reset(0);
+
+		// one record per time step: time, estimate per route, guided link per decision point
+		final int nColumns = 1 + nRoutes + nDecisions;
+		String[] columnNames = new String[nColumns];
+		ColumnType[] columnTypes = new ColumnType[nColumns];
+		columnNames[0] = "time[s]";
+		columnTypes[0] = ColumnType.decimal;
+		for (r = 0; r < nRoutes; r++) {
+			columnNames[1 + r] = "avg_tt_" + this.linkIds[this.routeFirstLink[r]] + "[s]";
+			columnTypes[1 + r] = ColumnType.decimal;
+		}
+		d = 0;
+		for (Id<Link> decisionLinkId : routesByDecisionLink.keySet()) {
+			columnNames[1 + nRoutes + d] = "guidance_" + decisionLinkId + "[link]";
+			columnTypes[1 + nRoutes + d] = ColumnType.linkId;
+			d++;
+		}
+		this.record = new double[nColumns];
+		this.sink = new TelematicsTimeSeriesSink(outfile, columnNames, columnTypes);
+	}
+
+	private static int addLink(Map<Id<Link>, Integer> local, Id<Link> linkId) {
+		local.putIfAbsent(linkId, local.size());
+		return linkId.index();
+	}
+
+	private static int[] newFilledArray(int length) {
+		int[] array = new int[length];
+		Arrays.fill(array, NONE);
+		return array;
+	}
+
+	private void setSuccessor(int link, int successor) {
+		if (this.successorOfLink[link] != NONE && this.successorOfLink[link] != successor) {
+			throw new IllegalArgumentException("link " + this.linkIds[link] + " has two different successors in the route sets: "
+					+ this.linkIds[this.successorOfLink[link]] + " and " + this.linkIds[successor]);
+		}
+		this.successorOfLink[link] = successor;
+	}
+
+	private int getLocalIndex(Id<Link> linkId) {
+		int index = linkId.index();
+		return index < this.localIndex.length ? this.localIndex[index] : NONE;
+	}
+
+	private void ensureVehicleCapacity(int index) {
+		if (index >= this.vehicleRoute.length) {
+			int length = Math.max(index + 1, 2 * this.vehicleRoute.length);
+			int oldLength = this.vehicleRoute.length;
+			this.vehicleRoute = Arrays.copyOf(this.vehicleRoute, length);
+			Arrays.fill(this.vehicleRoute, oldLength, length, NONE);
+			this.vehicleEnterTime = Arrays.copyOf(this.vehicleEnterTime, length);
+		}
+	}
+
+	@Override
+	public Id<Link> chooseNextLinkId(Id<Link> currentLinkId, double time) {
+		int l = this.getLocalIndex(currentLinkId);
+		if (l == NONE) {
+			return null;
+		}
+		int d = this.decisionOfLink[l];
+		if (d != NONE) {
+			return this.linkIds[this.routeFirstLink[this.bestRoute[d]]];
+		}
+		int next = this.successorOfLink[l];
+		return next == NONE ? null : this.linkIds[next];
+	}
+
+	/**
+	 * @return the guidance at the first decision point
+	 */
+	@Override
+	public Id<Link> getNextLink(double time) {
+		return this.linkIds[this.routeFirstLink[this.bestRoute[0]]];
+	}
+
+	@Override
+	public void handleEvent(LinkEnterEvent e) {
+		int l = this.getLocalIndex(e.getLinkId());
+		if (l == NONE) {
+			return;
+		}
+		int v = e.getVehicleId().index();
+		this.ensureVehicleCapacity(v);
+		int r = this.vehicleRoute[v];
+		if (r != NONE && this.routeLastLink[r] == l) {
+			this.estimators[r].addTravelTime(e.getTime() - this.vehicleEnterTime[v]);
+			this.vehicleRoute[v] = NONE;
+		}
+		r = this.routeStartingAtLink[l];
+		if (r != NONE) {
+			this.vehicleRoute[v] = r;
+			this.vehicleEnterTime[v] = e.getTime();
+		}
+	}
+
+	@Override
+	public void handleEvent(LinkLeaveEvent e) {
+	}
+
+	@Override
+	public void handleEvent(VehicleLeavesTrafficEvent e) {
+		int v = e.getVehicleId().index();
+		if (v < this.vehicleRoute.length) {
+			this.vehicleRoute[v] = NONE; // arrived within a route, e.g. at its merge link
+		}
+	}
+
+	@Override
+	public void notifyMobsimAfterSimStep(MobsimAfterSimStepEvent e) {
+		this.record[0] = e.getSimulationTime();
+		for (int d = 0; d < this.bestRoute.length; d++) {
+			int best = this.firstRoute[d];
+			double bestTT = Double.POSITIVE_INFINITY;
+			for (int r = this.firstRoute[d]; r < this.firstRoute[d + 1]; r++) {
+				double tt = this.estimators[r].advance(this.freespeedTravelTime[r]);
+				if (tt < bestTT) {
+					bestTT = tt;
+					best = r;
+				}
+				this.record[1 + r] = tt;
+			}
+			this.bestRoute[d] = best;
+		}
+		final int offset = 1 + this.estimators.length;
+		for (int d = 0; d < this.bestRoute.length; d++) {
+			this.record[offset + d] = this.linkIds[this.routeFirstLink[this.bestRoute[d]]].index();
+		}
+		this.sink.add(this.record);
+	}
+
+	@Override
+	public void reset(int iteration) {
+		for (int r = 0; r < this.estimators.length; r++) {
+			this.estimators[r].reset(this.freespeedTravelTime[r]);
+		}
+		for (int d = 0; d < this.bestRoute.length; d++) {
+			this.bestRoute[d] = this.firstRoute[d];
+		}
+		Arrays.fill(this.vehicleRoute, NONE);
+	}
+
+	@Override
+	public void notifyShutdown() {
+		this.sink.close();
+	}
+
+}
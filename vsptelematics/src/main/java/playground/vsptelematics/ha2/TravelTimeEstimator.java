@@ -0,0 +1,110 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeEstimator
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+package playground.vsptelematics.ha2;
+
+/**
+ * Travel time estimate for one route, updated in constant time per time step regardless of how many vehicles have finished the route.
+ * <p>
+ * Observed travel times are accumulated in a running mean.  In every time step ({@link #advance(double)}) the current mean is pushed into
+ * a ring buffer of <tt>windowLength</tt> slots, and the estimate is the average over the buffer, maintained as a running sum.  After
+ * every time step the weight of all observations so far is multiplied by <tt>decay</tt>: with a decay of 1.0 the running mean is over all
+ * observations (the original behaviour of {@link ReactiveGuidance}), with a decay of 0.0 only the observations of the last time step count.
+ */
+public class TravelTimeEstimator {
+
+	private final double[] window;
+	private final double decay;
+	private int pos = 0;
+	private double windowSum = 0.0;
+	private double weightedSum = 0.0;
+	private double weight = 0.0;
+	private double currentTravelTime;
+
+	public TravelTimeEstimator(int windowLength, double decay, double initialTravelTime) {
+		if (windowLength < 1) {
+			throw new IllegalArgumentException("window length must be at least 1 but is " + windowLength);
+		}
+		if (decay < 0.0 || decay > 1.0) {
+			throw new IllegalArgumentException("decay must be between 0 and 1 but is " + decay);
+		}
+		this.window = new double[windowLength];
+		this.decay = decay;
+		this.reset(initialTravelTime);
+	}
+
+	public void reset(double initialTravelTime) {
+		for (int i = 0; i < this.window.length; i++) {
+			this.window[i] = initialTravelTime;
+		}
+		this.windowSum = initialTravelTime * this.window.length;
+		this.currentTravelTime = initialTravelTime;
+		this.pos = 0;
+		this.weightedSum = 0.0;
+		this.weight = 0.0;
+	}
+
+	public void addTravelTime(double travelTime) {
+		this.weightedSum += travelTime;
+		this.weight += 1.0;
+	}
+
+	/**
+	 * Closes the current time step.
+	 * 
+	 * @param travelTimeWithoutData used as the travel time of this time step if nothing has been observed yet, e.g. the free speed travel time
+	 * @return the new estimate, see {@link #getEstimate()}
+	 */
+	public double advance(double travelTimeWithoutData) {
+		this.currentTravelTime = this.weight > 0.0 ? this.weightedSum / this.weight : travelTimeWithoutData;
+		this.windowSum += this.currentTravelTime - this.window[this.pos];
+		this.window[this.pos] = this.currentTravelTime;
+		this.pos++;
+		if (this.pos == this.window.length) {
+			this.pos = 0;
+			// re-sum once per round so that rounding errors of the running sum do not accumulate over the day:
+			double sum = 0.0;
+			for (double tt : this.window) {
+				sum += tt;
+			}
+			this.windowSum = sum;
+		}
+		this.weightedSum *= this.decay;
+		this.weight *= this.decay;
+		return this.getEstimate();
+	}
+
+	/**
+	 * @return the average of the last <tt>windowLength</tt> time steps
+	 */
+	public double getEstimate() {
+		return this.windowSum / this.window.length;
+	}
+
+	/**
+	 * @return the travel time of the last completed time step
+	 */
+	public double getCurrentTravelTime() {
+		return this.currentTravelTime;
+	}
+
+	public int getWindowLength() {
+		return this.window.length;
+	}
+
+}
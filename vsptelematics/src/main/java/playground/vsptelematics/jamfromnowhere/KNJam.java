@@ -25,15 +25,25 @@ import java.awt.Frame;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.awt.image.WritableRaster;
+import java.util.SplittableRandom;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.vehicles.Vehicle;
 
+import playground.vsptelematics.common.NagelSchreckenbergRing;
+
 /**
  * @author nagel
  *
  */
 class KNJam {
+	enum Dynamics { carObjects, cellKernel }
+	/**
+	 * {@link Dynamics#carObjects} is the original implementation; {@link Dynamics#cellKernel} runs the same rules on
+	 * {@link NagelSchreckenbergRing} and only copies positions/speeds back into the cars for the output.
+	 */
+	static Dynamics dynamics = Dynamics.carObjects ;
+
 	private double density = 0.2 ;
 	private final int LEN = 1000 ;
 
@@ -54,6 +64,9 @@ class KNJam {
 
 	private final Canvas canvas ;
 
+	private final NagelSchreckenbergRing ring = new NagelSchreckenbergRing( LEN, 5, 0.5, false, true ) ;
+	private final SplittableRandom random = new SplittableRandom( 4711 ) ;
+
 	@SuppressWarnings("serial")
 	KNJam() {
 		for ( int cc = 0 ; cc<cars.length-1 ; cc++ ) {
@@ -63,6 +76,7 @@ class KNJam {
 			car.oldVel = 0. ;
 			car.id = Id.create( cc, Vehicle.class ) ;
 			cars[cc] = car ;
+			ring.place( (int) car.pos, cc, 0 ) ;
 		}
 
 		canvas = new Canvas(){
@@ -82,36 +96,15 @@ class KNJam {
 
 	void run() {
 		for ( long time=0 ; time<1000 ; time++ ) {
-			for ( int cc = 0 ; cc<cars.length-1 ; cc++ ) {
-				cars[cc].oldVel = cars[cc].vel ;
-			}
-			cars[ cars.length-1 ] = cars[0] ;
-
-			for ( int cc=0 ; cc<cars.length-1 ; cc++ ) {
-				cars[cc].vel ++ ;
-
-				if ( cars[cc].vel > 5 ) {
-					cars[cc].vel = 5 ;
-				}
-
-				double gap = cars[cc+1].pos - cars[cc].pos - 1 ;
-				if ( gap < 0. ) {
-					gap += LEN ;
-				}
-
-				if ( gap < cars[cc].vel ) {
-					cars[cc].vel = gap ;
-				}
-
-				if ( cars[cc].vel >=1 && Math.random() < 0.5 ) {
-					cars[cc].vel -- ;
-				}
-			}
-			for ( int cc=0 ; cc<cars.length-1 ; cc++ ) {
-				cars[cc].pos += cars[cc].vel ;
-				if ( cars[cc].pos > LEN ) {
-					cars[cc].pos -= LEN ;
-				}
+			switch ( dynamics ) {
+				case carObjects:
+					updateCarObjects() ;
+					break;
+				case cellKernel:
+					updateCellKernel() ;
+					break;
+				default:
+					throw new IllegalStateException( "Unexpected value: " + dynamics );
 			}
 
 			{
@@ -172,10 +165,61 @@ class KNJam {
 		}
 	}
 
+	private void updateCarObjects() {
+		for ( int cc = 0 ; cc<cars.length-1 ; cc++ ) {
+			cars[cc].oldVel = cars[cc].vel ;
+		}
+		cars[ cars.length-1 ] = cars[0] ;
+
+		for ( int cc=0 ; cc<cars.length-1 ; cc++ ) {
+			cars[cc].vel ++ ;
+
+			if ( cars[cc].vel > 5 ) {
+				cars[cc].vel = 5 ;
+			}
+
+			double gap = cars[cc+1].pos - cars[cc].pos - 1 ;
+			if ( gap < 0. ) {
+				gap += LEN ;
+			}
+
+			if ( gap < cars[cc].vel ) {
+				cars[cc].vel = gap ;
+			}
+
+			if ( cars[cc].vel >=1 && Math.random() < 0.5 ) {
+				cars[cc].vel -- ;
+			}
+		}
+		for ( int cc=0 ; cc<cars.length-1 ; cc++ ) {
+			cars[cc].pos += cars[cc].vel ;
+			if ( cars[cc].pos > LEN ) {
+				cars[cc].pos -= LEN ;
+			}
+		}
+	}
+
+	private void updateCellKernel() {
+		for ( int cc = 0 ; cc<cars.length-1 ; cc++ ) {
+			cars[cc].oldVel = cars[cc].vel ;
+		}
+		ring.step( random ) ;
+		for ( int ii=0 ; ii<LEN ; ii++ ) {
+			if ( ring.isOccupied( ii ) ) {
+				Car car = cars[ ring.getVehicle( ii ) ] ;
+				car.pos = ii ;
+				car.vel = ring.getSpeed( ii ) ;
+			}
+		}
+	}
+
 	/**
 	 * @param args
 	 */
 	public static void main(String[] args) {
+		if ( args.length > 0 ) {
+			dynamics = Dynamics.valueOf( args[0] ) ;
+		}
 		new KNJam().run() ;
 	}
 
@@ -0,0 +1,138 @@
+/* *********************************************************************** *
+ * project: org.matsim.*												   *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.jamfromnowhere;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import playground.vsptelematics.common.NagelSchreckenbergRing;
+
+/**
+ * Headless version of {@link KNJam} for parameter sweeps: runs the ring for every combination of density and dawdle probability, in
+ * parallel, and streams each space-time diagram row by row to a file (see {@link PngRowWriter} and {@link RasterRowWriter}).  Nothing is
+ * printed per time step, and the car colors are computed once per run.
+ * <p>
+ * Every run gets its own random stream, split off a root stream in a fixed order, so the output does not depend on the number of threads.
+ * <p>
+ * Usage: <tt>KNJamBatch outputDir [png|raster] [nCells] [nSteps] [densities] [pDawdles] [nThreads]</tt>, where densities and pDawdles are
+ * comma-separated lists.
+ */
+final class KNJamBatch {
+	private static final Logger log = Logger.getLogger( KNJamBatch.class ) ;
+
+	enum OutputFormat { png, raster }
+
+	private static final int MAX_V = 5 ;
+	private static final int BACKGROUND = 0xffffff ;
+
+	private KNJamBatch() {} // do not instantiate
+
+	public static void main( String[] args ) {
+		if ( args.length < 1 ) {
+			throw new IllegalArgumentException( "usage: KNJamBatch outputDir [png|raster] [nCells] [nSteps] [densities] [pDawdles] [nThreads]" ) ;
+		}
+		final String outputDir = args[0] ;
+		final OutputFormat format = args.length > 1 ? OutputFormat.valueOf( args[1] ) : OutputFormat.png ;
+		final int nCells = args.length > 2 ? Integer.parseInt( args[2] ) : 1000 ;
+		final int nSteps = args.length > 3 ? Integer.parseInt( args[3] ) : 1000 ;
+		final double[] densities = parseList( args.length > 4 ? args[4] : "0.1,0.15,0.2,0.25,0.3" ) ;
+		final double[] pDawdles = parseList( args.length > 5 ? args[5] : "0.1,0.25,0.5" ) ;
+		final int nThreads = args.length > 6 ? Integer.parseInt( args[6] ) : Runtime.getRuntime().availableProcessors() ;
+
+		new File( outputDir ).mkdirs() ;
+
+		SplittableRandom root = new SplittableRandom( 4711 ) ;
+		List<Callable<String>> runs = new ArrayList<>() ;
+		for ( double density : densities ) {
+			for ( double pDawdle : pDawdles ) {
+				final SplittableRandom random = root.split() ;
+				final String filename = outputDir + "/knjam_d" + density + "_p" + pDawdle + "." + ( format==OutputFormat.png ? "png" : "bin" ) ;
+				runs.add( () -> {
+					run( nCells, nSteps, density, pDawdle, random, format, filename ) ;
+					return filename ;
+				} ) ;
+			}
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool( nThreads ) ;
+		try {
+			for ( Future<String> future : pool.invokeAll( runs ) ) {
+				log.info( "wrote " + future.get() ) ;
+			}
+		} catch ( InterruptedException | ExecutionException e ) {
+			throw new RuntimeException( e ) ;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	static void run( int nCells, int nSteps, double density, double pDawdle, SplittableRandom random, OutputFormat format, String filename )
+			throws IOException {
+		// same rules as in KNJam: no slow-to-start, cars start standing and evenly spaced
+		NagelSchreckenbergRing ring = new NagelSchreckenbergRing( nCells, MAX_V, pDawdle, false, true ) ;
+		final int nCars = (int) ( nCells * density ) ;
+		for ( int cc=0 ; cc<nCars ; cc++ ) {
+			ring.place( (int) ( cc/density ), cc, 0 ) ;
+		}
+
+		final int[] carColors = new int[nCars] ;
+		for ( int cc=0 ; cc<nCars ; cc++ ) {
+			carColors[cc] = Color.HSBtoRGB( cc/10.f, 1.f, 1.f ) & 0xffffff ;
+		}
+
+		try ( SpaceTimeRowWriter writer = createWriter( format, filename, nCells, nSteps ) ) {
+			for ( int time=0 ; time<nSteps ; time++ ) {
+				ring.step( random ) ;
+				writer.writeRow( ring, carColors );
+			}
+		}
+	}
+
+	private static SpaceTimeRowWriter createWriter( OutputFormat format, String filename, int width, int height ) throws IOException {
+		switch ( format ) {
+			case png:
+				return new PngRowWriter( filename, width, height, BACKGROUND ) ;
+			case raster:
+				return new RasterRowWriter( filename, width, height ) ;
+			default:
+				throw new IllegalStateException( "Unexpected value: " + format );
+		}
+	}
+
+	private static double[] parseList( String str ) {
+		String[] parts = str.split( "," ) ;
+		double[] result = new double[parts.length] ;
+		for ( int ii=0 ; ii<parts.length ; ii++ ) {
+			result[ii] = Double.parseDouble( parts[ii].trim() ) ;
+		}
+		return result ;
+	}
+
+}
@@ -0,0 +1,157 @@
+/* *********************************************************************** *
+ * project: org.matsim.*												   *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.jamfromnowhere;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import playground.vsptelematics.common.NagelSchreckenbergRing;
+
+/**
+ * Writes the space-time diagram as an RGB PNG, one pixel per cell and time step.  The PNG is encoded by hand (the format is simple enough)
+ * because {@link javax.imageio.ImageIO} needs the complete image in memory; here, every row is deflated as soon as it arrives and the
+ * compressed data is written out in IDAT chunks of {@link #CHUNK_SIZE} bytes.
+ */
+final class PngRowWriter implements SpaceTimeRowWriter {
+	private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' } ;
+	private static final int CHUNK_SIZE = 64*1024 ;
+
+	private final int width ;
+	private final int height ;
+	private final int background ;
+	private final DataOutputStream out ;
+	private final Deflater deflater = new Deflater( Deflater.BEST_SPEED ) ;
+	private final DeflaterOutputStream idat ;
+	private final byte[] row ;
+	private int rowsWritten = 0 ;
+
+	PngRowWriter( String filename, int width, int height, int background ) throws IOException {
+		this.width = width ;
+		this.height = height ;
+		this.background = background ;
+		this.row = new byte[1 + 3*width] ; // filter type byte (0 = none) plus RGB
+		this.out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( filename ) ) ) ;
+		out.write( SIGNATURE );
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream() ;
+		DataOutputStream hdr = new DataOutputStream( header ) ;
+		hdr.writeInt( width );
+		hdr.writeInt( height );
+		hdr.writeByte( 8 ); // bit depth
+		hdr.writeByte( 2 ); // color type: RGB
+		hdr.writeByte( 0 ); // compression
+		hdr.writeByte( 0 ); // filter
+		hdr.writeByte( 0 ); // interlace
+		writeChunk( out, "IHDR", header.toByteArray(), header.size() );
+
+		this.idat = new DeflaterOutputStream( new IdatOutputStream(), deflater, CHUNK_SIZE ) ;
+	}
+
+	@Override public void writeRow( NagelSchreckenbergRing ring, int[] carColors ) throws IOException {
+		if ( rowsWritten==height ) {
+			throw new IllegalStateException( "image has only " + height + " rows" ) ;
+		}
+		int pos = 1 ;
+		for ( int ii=0 ; ii<width ; ii++ ) {
+			final int rgb = ring.isOccupied( ii ) ? carColors[ring.getVehicle( ii )] : background ;
+			row[pos++] = (byte) (rgb >>> 16) ;
+			row[pos++] = (byte) (rgb >>> 8) ;
+			row[pos++] = (byte) rgb ;
+		}
+		idat.write( row );
+		rowsWritten++ ;
+	}
+
+	/**
+	 * Always releases the deflater and the file, also when the run failed half-way; an image with missing rows is reported afterwards.
+	 */
+	@Override public void close() throws IOException {
+		try {
+			if ( rowsWritten==height ) {
+				idat.close(); // flushes the deflater and writes the last IDAT chunk, but does not close out
+				writeChunk( out, "IEND", new byte[0], 0 );
+			}
+		} finally {
+			deflater.end();
+			out.close();
+		}
+		if ( rowsWritten!=height ) {
+			throw new IllegalStateException( "wrote " + rowsWritten + " rows but announced " + height + "; the image is incomplete" ) ;
+		}
+	}
+
+	private static void writeChunk( DataOutputStream out, String type, byte[] data, int len ) throws IOException {
+		byte[] typeBytes = type.getBytes( StandardCharsets.US_ASCII ) ;
+		CRC32 crc = new CRC32() ;
+		crc.update( typeBytes );
+		crc.update( data, 0, len );
+		out.writeInt( len );
+		out.write( typeBytes );
+		out.write( data, 0, len );
+		out.writeInt( (int) crc.getValue() );
+	}
+
+	/**
+	 * Collects compressed bytes and emits them as IDAT chunks.
+	 */
+	private final class IdatOutputStream extends OutputStream {
+		private final byte[] buf = new byte[CHUNK_SIZE] ;
+		private int len = 0 ;
+
+		@Override public void write( int b ) throws IOException {
+			if ( len==buf.length ) {
+				flushChunk() ;
+			}
+			buf[len++] = (byte) b ;
+		}
+
+		@Override public void write( byte[] b, int off, int n ) throws IOException {
+			while ( n > 0 ) {
+				if ( len==buf.length ) {
+					flushChunk() ;
+				}
+				int cnt = Math.min( n, buf.length - len ) ;
+				System.arraycopy( b, off, buf, len, cnt );
+				len += cnt ;
+				off += cnt ;
+				n -= cnt ;
+			}
+		}
+
+		@Override public void close() throws IOException {
+			if ( len > 0 ) {
+				flushChunk() ;
+			}
+		}
+
+		private void flushChunk() throws IOException {
+			writeChunk( out, "IDAT", buf, len );
+			len = 0 ;
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+/* *********************************************************************** *
+ * project: org.matsim.*												   *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.jamfromnowhere;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import playground.vsptelematics.common.NagelSchreckenbergRing;
+
+/**
+ * Writes the space-time diagram as a compact binary raster: the magic number {@link #MAGIC}, width and height (big-endian ints), then one
+ * byte per cell and time step, row by row, holding the speed of the vehicle in the cell or {@link NagelSchreckenbergRing#EMPTY}.  This is
+ * one third of an uncompressed RGB image and keeps the speeds for later analysis.
+ */
+final class RasterRowWriter implements SpaceTimeRowWriter {
+	static final int MAGIC = 0x4b4e4a52 ; // "KNJR"
+
+	private final int width ;
+	private final int height ;
+	private final DataOutputStream out ;
+	private final byte[] row ;
+	private int rowsWritten = 0 ;
+
+	RasterRowWriter( String filename, int width, int height ) throws IOException {
+		this.width = width ;
+		this.height = height ;
+		this.row = new byte[width] ;
+		this.out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( filename ), 64*1024 ) ) ;
+		out.writeInt( MAGIC );
+		out.writeInt( width );
+		out.writeInt( height );
+	}
+
+	@Override public void writeRow( NagelSchreckenbergRing ring, int[] carColors ) throws IOException {
+		if ( rowsWritten==height ) {
+			throw new IllegalStateException( "raster has only " + height + " rows" ) ;
+		}
+		for ( int ii=0 ; ii<width ; ii++ ) {
+			row[ii] = (byte) ring.getSpeed( ii ) ;
+		}
+		out.write( row );
+		rowsWritten++ ;
+	}
+
+	@Override public void close() throws IOException {
+		out.close();
+		if ( rowsWritten!=height ) {
+			throw new IllegalStateException( "wrote " + rowsWritten + " rows but announced " + height + "; the file is incomplete" ) ;
+		}
+	}
+
+}
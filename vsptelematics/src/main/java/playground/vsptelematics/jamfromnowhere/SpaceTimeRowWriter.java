@@ -0,0 +1,37 @@
+/* *********************************************************************** *
+ * project: org.matsim.*												   *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.jamfromnowhere;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import playground.vsptelematics.common.NagelSchreckenbergRing;
+
+/**
+ * Receives the space-time diagram of a {@link NagelSchreckenbergRing} one time step (=row) at a time, so that the diagram never has to be
+ * kept in memory as a whole.
+ */
+interface SpaceTimeRowWriter extends Closeable {
+
+	/**
+	 * @param carColors RGB color per vehicle index of the ring
+	 */
+	void writeRow( NagelSchreckenbergRing ring, int[] carColors ) throws IOException ;
+
+}
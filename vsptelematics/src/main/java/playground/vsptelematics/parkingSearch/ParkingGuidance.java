@@ -0,0 +1,186 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParkingGuidance.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package playground.vsptelematics.parkingSearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.core.utils.collections.QuadTree;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Telematic parking guidance: every <tt>refreshInterval</tt> seconds, the free parking spaces per link are read from the
+ * {@link ZoneParkingManager} and published as a new {@link ParkingGuidanceSnapshot}.  Equipped vehicles ask for the nearest link with free
+ * spaces in the latest snapshot, see {@link #getNearestLinkWithFreeSpace(Id)}.
+ * <p>
+ * For every link, the {@link #N_CANDIDATES} nearest parking links (by euclidean distance) are computed when the link is queried first,
+ * and cached by link index; afterwards a query only walks through this list and does not allocate.  The first query looks at the parking
+ * links in a disk around the link, from a {@link QuadTree} built at construction, and doubles the radius until the disk holds enough
+ * of them, so it does not go through all parking links.
+ */
+final class ParkingGuidance implements MobsimInitializedListener, MobsimBeforeSimStepListener {
+
+	static final int N_CANDIDATES = 32;
+
+	private final Network network;
+	private final ZoneParkingManager parkingManager;
+	private final double refreshInterval;
+	private final double equipmentRate;
+
+	private final int linkArrayLength;
+	private final QuadTree<Link> parkingLinkTree;
+	private final double initialSearchRadius;
+	private final AtomicReferenceArray<int[]> candidatesByLinkIndex;
+
+	private volatile ParkingGuidanceSnapshot snapshot;
+	private double nextRefreshTime = Double.NEGATIVE_INFINITY;
+
+	ParkingGuidance(Network network, ZoneParkingManager parkingManager, double refreshInterval, double equipmentRate) {
+		this.network = network;
+		this.parkingManager = parkingManager;
+		this.refreshInterval = refreshInterval;
+		this.equipmentRate = equipmentRate;
+
+		int maxLinkIndex = -1;
+		for(Link link : network.getLinks().values()){
+			maxLinkIndex = Math.max(maxLinkIndex, link.getId().index());
+		}
+		this.linkArrayLength = maxLinkIndex + 1;
+		this.candidatesByLinkIndex = new AtomicReferenceArray<>(this.linkArrayLength);
+
+		List<Link> links = new ArrayList<>();
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for(Id<Link> linkId : parkingManager.getParkingLinkIds()){
+			Link link = network.getLinks().get(linkId);
+			if(link != null){
+				links.add(link);
+				minX = Math.min(minX, link.getCoord().getX());
+				minY = Math.min(minY, link.getCoord().getY());
+				maxX = Math.max(maxX, link.getCoord().getX());
+				maxY = Math.max(maxY, link.getCoord().getY());
+			}
+		}
+		if(links.isEmpty()){
+			minX = minY = maxX = maxY = 0.;
+		}
+		this.parkingLinkTree = new QuadTree<>(minX - 1., minY - 1., maxX + 1., maxY + 1.);
+		for(Link link : links){
+			this.parkingLinkTree.put(link.getCoord().getX(), link.getCoord().getY(), link);
+		}
+		// radius of a disk that holds about N_CANDIDATES parking links if they are spread evenly:
+		final double area = (maxX - minX + 2.) * (maxY - minY + 2.);
+		this.initialSearchRadius = Math.max(1., Math.sqrt(area * N_CANDIDATES / (Math.PI * Math.max(1, links.size()))));
+		this.snapshot = new ParkingGuidanceSnapshot(Double.NEGATIVE_INFINITY, new int[this.linkArrayLength]);
+	}
+
+	/**
+	 * Whether the vehicle has a guidance device; decided by a hash of the vehicle id, so it is the same in every iteration and independent
+	 * of the order in which vehicles ask.
+	 */
+	boolean isEquipped(Id<Vehicle> vehicleId) {
+		long hash = vehicleId.toString().hashCode() * 0x9E3779B97F4A7C15L;
+		hash ^= hash >>> 32;
+		return ((hash >>> 11) * 0x1.0p-53) < this.equipmentRate;
+	}
+
+	ParkingGuidanceSnapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	/**
+	 * @return the nearest link (among the {@link #N_CANDIDATES} nearest parking links) with free spaces in the latest snapshot, or null if
+	 * there is none
+	 */
+	Id<Link> getNearestLinkWithFreeSpace(Id<Link> currentLinkId) {
+		final ParkingGuidanceSnapshot current = this.snapshot;
+		for(int linkIndex : getCandidates(currentLinkId)){
+			if(current.getFreeSpaces(linkIndex) > 0){
+				return Id.get(linkIndex, Link.class);
+			}
+		}
+		return null;
+	}
+
+	private int[] getCandidates(Id<Link> linkId) {
+		final int linkIndex = linkId.index();
+		int[] candidates = this.candidatesByLinkIndex.get(linkIndex);
+		if(candidates == null){
+			// may be computed twice by concurrent agents, but the result is the same:
+			candidates = computeCandidates(this.network.getLinks().get(linkId).getCoord());
+			this.candidatesByLinkIndex.set(linkIndex, candidates);
+		}
+		return candidates;
+	}
+
+	/**
+	 * Once the disk holds at least {@link #N_CANDIDATES} parking links, the nearest ones are all in it.
+	 */
+	private int[] computeCandidates(final Coord coord) {
+		final int nCandidates = Math.min(N_CANDIDATES, this.parkingLinkTree.size());
+		Collection<Link> near = Collections.emptyList();
+		for(double radius = this.initialSearchRadius; near.size() < nCandidates; radius *= 2.){
+			near = this.parkingLinkTree.getDisk(coord.getX(), coord.getY(), radius);
+		}
+		Link[] sorted = near.toArray(new Link[near.size()]);
+		Arrays.sort(sorted, Comparator.comparingDouble(link -> CoordUtils.calcEuclideanDistance(coord, link.getCoord())));
+		int[] candidates = new int[nCandidates];
+		for(int i = 0; i < candidates.length; i++){
+			candidates[i] = sorted[i].getId().index();
+		}
+		return candidates;
+	}
+
+	@Override
+	public void notifyMobsimInitialized(@SuppressWarnings("rawtypes") MobsimInitializedEvent e) {
+		this.nextRefreshTime = Double.NEGATIVE_INFINITY;
+	}
+
+	@Override
+	public void notifyMobsimBeforeSimStep(@SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent e) {
+		final double time = e.getSimulationTime();
+		if(time < this.nextRefreshTime){
+			return;
+		}
+		this.nextRefreshTime = time + this.refreshInterval;
+		// copy-on-publish: agents keep reading the old snapshot until the new one is complete
+		int[] freeSpaces = new int[this.linkArrayLength];
+		this.parkingManager.fillFreeSpacesByLinkIndex(freeSpaces);
+		this.snapshot = new ParkingGuidanceSnapshot(time, freeSpaces);
+	}
+
+}
@@ -0,0 +1,192 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParkingGuidanceBenchmark
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.parkingSearch;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.SplittableRandom;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.parking.parkingsearch.ParkingUtils;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.facilities.ActivityFacilities;
+import org.matsim.facilities.ActivityFacilitiesFactory;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.facilities.ActivityOption;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Timed harness for the telematic parking guidance on a synthetic grid: cost of publishing a new {@link ParkingGuidanceSnapshot} (as on
+ * every refresh during the mobsim) and cost of {@link ParkingGuidance#getNearestLinkWithFreeSpace(Id)}, for the first query per link
+ * (which computes the candidates) and for later ones.  Every <tt>parkingLinkSpacing</tt>-th link gets a parking facility; all of them
+ * are in one zone, and the spaces are occupied up to <tt>occupancy</tt>.
+ * <p>
+ * This does not run a QSim: the parking search mobsim needs the dvrp and parking contrib setup of
+ * {@link TelematicsParkingSearchController}.
+ * <p>
+ * Usage: <tt>ParkingGuidanceBenchmark [gridSize] [parkingLinkSpacing] [occupancy] [nQueries] [nRepetitions]</tt>
+ */
+public final class ParkingGuidanceBenchmark {
+	private static final Logger log = Logger.getLogger(ParkingGuidanceBenchmark.class);
+
+	private static final int CAPACITY = 10;
+	private static final int N_REFRESHES = 1000;
+
+	private ParkingGuidanceBenchmark() {} // do not instantiate
+
+	public static void main(String[] args) {
+		final int gridSize = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		final int parkingLinkSpacing = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		final double occupancy = args.length > 2 ? Double.parseDouble(args[2]) : 0.95;
+		final int nQueries = args.length > 3 ? Integer.parseInt(args[3]) : 1000000;
+		final int nRepetitions = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		createGrid(scenario.getNetwork(), gridSize);
+		final Link[] links = scenario.getNetwork().getLinks().values().toArray(new Link[0]);
+		String zoneFile = createParking(scenario, links, parkingLinkSpacing);
+
+		for(int rep = 0; rep < nRepetitions; rep++){
+			// first repetition is warm-up
+			ZoneParkingManager parkingManager = new ZoneParkingManager(scenario, new String[] { zoneFile });
+			final int nParked = occupy(parkingManager, links, parkingLinkSpacing, occupancy);
+			ParkingGuidance guidance = new ParkingGuidance(scenario.getNetwork(), parkingManager, 60., 1.);
+
+			long start = System.nanoTime();
+			for(int i = 0; i < N_REFRESHES; i++){
+				guidance.notifyMobsimBeforeSimStep(new MobsimBeforeSimStepEvent<>(null, i * 60.));
+			}
+			long refreshDuration = System.nanoTime() - start;
+
+			SplittableRandom random = new SplittableRandom(42);
+			int nNotFound = 0;
+			start = System.nanoTime();
+			for(Link link : links){
+				if(guidance.getNearestLinkWithFreeSpace(link.getId()) == null){
+					nNotFound++;
+				}
+			}
+			long coldDuration = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for(int i = 0; i < nQueries; i++){
+				if(guidance.getNearestLinkWithFreeSpace(links[random.nextInt(links.length)].getId()) == null){
+					nNotFound++;
+				}
+			}
+			long warmDuration = System.nanoTime() - start;
+
+			log.info("rep=" + rep + (rep == 0 ? " (warm-up)" : "") + "; links=" + links.length + "; parked=" + nParked
+					+ String.format("; refresh %.1f us", refreshDuration * 1.e-3 / N_REFRESHES)
+					+ String.format("; first query per link %.1f us", coldDuration * 1.e-3 / links.length)
+					+ String.format("; later queries %.1f ns", (double) warmDuration / nQueries)
+					+ "; no free space found: " + nNotFound);
+		}
+	}
+
+	private static void createGrid(Network network, int gridSize) {
+		NetworkFactory nf = network.getFactory();
+		Node[][] nodes = new Node[gridSize][gridSize];
+		for(int x = 0; x < gridSize; x++){
+			for(int y = 0; y < gridSize; y++){
+				nodes[x][y] = nf.createNode(Id.createNodeId(x + "_" + y), new Coord(100. * x, 100. * y));
+				network.addNode(nodes[x][y]);
+			}
+		}
+		for(int x = 0; x < gridSize; x++){
+			for(int y = 0; y < gridSize; y++){
+				if(x + 1 < gridSize){
+					addLink(network, nodes[x][y], nodes[x + 1][y]);
+					addLink(network, nodes[x + 1][y], nodes[x][y]);
+				}
+				if(y + 1 < gridSize){
+					addLink(network, nodes[x][y], nodes[x][y + 1]);
+					addLink(network, nodes[x][y + 1], nodes[x][y]);
+				}
+			}
+		}
+	}
+
+	private static void addLink(Network network, Node from, Node to) {
+		Link link = network.getFactory().createLink(Id.createLinkId(from.getId() + "-" + to.getId()), from, to);
+		link.setLength(100.);
+		link.setFreespeed(30. / 3.6);
+		link.setCapacity(600.);
+		link.setNumberOfLanes(1.);
+		network.addLink(link);
+	}
+
+	/**
+	 * @return the zone file with all parking links
+	 */
+	private static String createParking(Scenario scenario, Link[] links, int parkingLinkSpacing) {
+		ActivityFacilities facilities = scenario.getActivityFacilities();
+		ActivityFacilitiesFactory factory = facilities.getFactory();
+		try {
+			File zoneFile = File.createTempFile("parkZone", ".txt");
+			zoneFile.deleteOnExit();
+			try(BufferedWriter writer = IOUtils.getBufferedWriter(zoneFile.getPath())){
+				for(int i = 0; i < links.length; i += parkingLinkSpacing){
+					ActivityFacility facility = factory.createActivityFacility(Id.create("p" + i, ActivityFacility.class),
+							links[i].getCoord(), links[i].getId());
+					ActivityOption option = factory.createActivityOption(ParkingUtils.PARKACTIVITYTYPE);
+					option.setCapacity(CAPACITY);
+					facility.addActivityOption(option);
+					facilities.addActivityFacility(facility);
+					writer.write(links[i].getId().toString());
+					writer.newLine();
+				}
+			}
+			return zoneFile.getPath();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the number of parked vehicles
+	 */
+	private static int occupy(ZoneParkingManager parkingManager, Link[] links, int parkingLinkSpacing, double occupancy) {
+		SplittableRandom random = new SplittableRandom(4711);
+		int nParked = 0;
+		for(int i = 0; i < links.length; i += parkingLinkSpacing){
+			for(int space = 0; space < CAPACITY; space++){
+				if(random.nextDouble() < occupancy
+						&& parkingManager.parkVehicleHere(Id.create("v" + nParked, Vehicle.class), links[i].getId(), 0.)){
+					nParked++;
+				}
+			}
+		}
+		return nParked;
+	}
+
+}
@@ -0,0 +1,55 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParkingGuidanceSnapshot.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package playground.vsptelematics.parkingSearch;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+/**
+ * Free parking spaces per link at one point in time, as broadcast to the equipped agents.  Immutable: {@link ParkingGuidance} publishes
+ * a new snapshot instead of modifying the current one, so agents can read it from any thread without locking or copying.
+ */
+final class ParkingGuidanceSnapshot {
+
+	private final double time;
+	private final int[] freeSpacesByLinkIndex;
+
+	/**
+	 * @param freeSpacesByLinkIndex is not copied; the caller must not modify it afterwards
+	 */
+	ParkingGuidanceSnapshot(double time, int[] freeSpacesByLinkIndex) {
+		this.time = time;
+		this.freeSpacesByLinkIndex = freeSpacesByLinkIndex;
+	}
+
+	double getTime() {
+		return this.time;
+	}
+
+	int getFreeSpaces(Id<Link> linkId) {
+		return getFreeSpaces(linkId.index());
+	}
+
+	int getFreeSpaces(int linkIndex) {
+		return linkIndex < this.freeSpacesByLinkIndex.length ? this.freeSpacesByLinkIndex[linkIndex] : 0;
+	}
+
+}
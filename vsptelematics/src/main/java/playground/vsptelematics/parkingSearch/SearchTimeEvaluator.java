@@ -2,97 +2,262 @@ package playground.vsptelematics.parkingSearch;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.PersonArrivalEvent;
 import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
 import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
 import org.matsim.api.core.v01.events.handler.PersonEntersVehicleEventHandler;
 import org.matsim.api.core.v01.network.Link;
-import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.parking.parkingsearch.events.StartParkingSearchEvent;
 import org.matsim.contrib.parking.parkingsearch.events.StartParkingSearchEventHandler;
 import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.events.IterationStartsEvent;
 import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.controler.listener.IterationStartsListener;
 import org.matsim.core.utils.io.IOUtils;
 import org.matsim.vehicles.Vehicle;
 
+import playground.vsptelematics.common.TelematicsTimeSeriesSink;
+import playground.vsptelematics.common.TelematicsTimeSeriesSink.BackPressure;
+import playground.vsptelematics.common.TelematicsTimeSeriesSink.ColumnType;
+import playground.vsptelematics.common.TelematicsTimeSeriesSink.Format;
+
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.text.DecimalFormat;
 import java.util.*;
 
 
 /**
  * a simpler version of ParkingSearchAndEgressTimeEvaluator in org.matsim.contrib.parking.parkingsearch.evaluation
+ * <p>
+ * Search times are aggregated into a histogram per (link, time slot) with primitive arrays; the row of a link is allocated at its first
+ * parking procedure.  The search time quantiles (parkingSearchTimeQuantiles.csv) are computed at iteration end from a histogram with
+ * {@link #QUANTILE_BIN_SIZE} second bins, so no individual parking procedure is kept in memory.  The individual procedures are written
+ * through a {@link TelematicsTimeSeriesSink} (parkingLinkTimeStamps.csv or .bin), or dropped, see {@link #setLinkTimeStampFormat}.
+ * <p>
+ * If a network is given, also the distance driven while searching is recorded; if a {@link ParkingGuidance} is given, search time and
+ * distance are additionally summed up separately for vehicles with and without guidance equipment (parkingGuidanceStats.csv).
  * @author tschlenther
  *
  */
- class SearchTimeEvaluator implements PersonArrivalEventHandler, StartParkingSearchEventHandler, PersonEntersVehicleEventHandler, IterationEndsListener {
+ class SearchTimeEvaluator implements PersonArrivalEventHandler, StartParkingSearchEventHandler, PersonEntersVehicleEventHandler, LinkEnterEventHandler, IterationStartsListener, IterationEndsListener {
+
+	private static final int NOT_EQUIPPED = 0;
+	private static final int EQUIPPED = 1;
+
+	private static final int NO_INDEX = -1;
+
+	static final double QUANTILE_BIN_SIZE = 1.;
+	/**
+	 * search times above this go into the last bin of the quantile histogram
+	 */
+	static final double QUANTILE_MAX_SEARCH_TIME = 4 * 3600.;
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
 
-	Map<Id<Person>,Double> searchTime = new HashMap<>();
-	Map<Id<Vehicle>,Id<Person>> drivers = new HashMap<>();
-	private Set<Id<Link>> monitoredLinks;
-	private List<String> linkTimeStamps = new ArrayList<>();
+	private static final String[] LINK_TIME_STAMP_COLUMNS = { "hour", "slotNr", "simTime", "linkID", "searchTime" };
+	private static final ColumnType[] LINK_TIME_STAMP_TYPES = { ColumnType.integer, ColumnType.integer, ColumnType.decimal, ColumnType.linkId, ColumnType.decimal };
+
+	// per person/vehicle index; NaN/NO_INDEX if not searching/not known:
+	private double[] searchStartOfPerson = new double[0];
+	private double[] searchDistanceOfPerson = new double[0];
+	private int[] searchVehicleOfPerson = new int[0];
+	private int[] driverOfVehicle = new int[0];
+
+	private final Network network;
+	private final ParkingGuidance guidance;
+	// per NOT_EQUIPPED/EQUIPPED:
+	private final double[] groupProcedures = new double[2];
+	private final double[] groupTime = new double[2];
+	private final double[] groupDistance = new double[2];
+	private final boolean[] monitoredLinks;
+
+	// parking procedures of the current iteration, written in the background; only open while the iteration runs
+	private Format linkTimeStampFormat = Format.text;
+	private TelematicsTimeSeriesSink linkTimeStamps = null;
+	private final double[] linkTimeStamp = new double[LINK_TIME_STAMP_COLUMNS.length];
 
 	//we count the parking procedures and the total spent parking time per slot
-	//number of slots = simulatedHours * nrOfSLotsPerHour
-	private double monitoredTimeStart;
-	private double monitoredTimeEnd;
-	private int nrOfSlotsPerHour = 12;
-	private double[] parkingProcedures = new double[(int) (monitoredTimeEnd - monitoredTimeStart)/3600*nrOfSlotsPerHour];
-	private double[] parkingTime = new double[(int) (monitoredTimeEnd - monitoredTimeStart)/3600*nrOfSlotsPerHour];
+	//number of slots = simulated time / slot length
+	private final double monitoredTimeStart;
+	private final double monitoredTimeEnd;
+	private final int nrOfSlotsPerHour = 12;
+	private final int nrOfSlots;
+	private final double[] parkingProcedures;
+	private final double[] parkingTime;
+	// per link index, allocated on first use:
+	private final int[][] proceduresPerLinkAndSlot;
+	private final double[][] timePerLinkAndSlot;
+	private final long[] searchTimeHistogram = new long[(int) (QUANTILE_MAX_SEARCH_TIME / QUANTILE_BIN_SIZE) + 1];
+	private double maxSearchTime;
 	
 	public SearchTimeEvaluator(Set<Id<Link>> monitoredLinks, double startTime, double endTime) {
-		this.monitoredLinks = monitoredLinks;
+		this(monitoredLinks, startTime, endTime, null, null);
+	}
+
+	/**
+	 * @param network may be null; then no search distances are recorded
+	 * @param guidance may be null; then all vehicles count as not equipped
+	 */
+	public SearchTimeEvaluator(Set<Id<Link>> monitoredLinks, double startTime, double endTime, Network network, ParkingGuidance guidance) {
+		this.network = network;
+		this.guidance = guidance;
+		int maxLinkIndex = -1;
+		for (Id<Link> linkId : monitoredLinks) {
+			maxLinkIndex = Math.max(maxLinkIndex, linkId.index());
+		}
+		this.monitoredLinks = new boolean[maxLinkIndex + 1];
+		for (Id<Link> linkId : monitoredLinks) {
+			this.monitoredLinks[linkId.index()] = true;
+		}
+		this.proceduresPerLinkAndSlot = new int[maxLinkIndex + 1][];
+		this.timePerLinkAndSlot = new double[maxLinkIndex + 1][];
 		this.monitoredTimeStart = startTime;
 		this.monitoredTimeEnd = endTime;
+		// (the arrival at monitoredTimeEnd goes into an extra slot)
+		this.nrOfSlots = (int) Math.floor((endTime - startTime) / getSlotLength()) + 1;
+		this.parkingProcedures = new double[this.nrOfSlots];
+		this.parkingTime = new double[this.nrOfSlots];
+	}
+
+	/**
+	 * @param format format of the file with one line per parking procedure; null to not write it
+	 */
+	void setLinkTimeStampFormat(Format format) {
+		this.linkTimeStampFormat = format;
+	}
+
+	private double getSlotLength() {
+		return 3600. / nrOfSlotsPerHour;
 	}
 	
 	@Override
 	public void reset(int iteration) {
-		this.searchTime.clear();;
-		this.drivers.clear();
-		this.linkTimeStamps.clear();
-		this.parkingProcedures = new double[(int) (monitoredTimeEnd - monitoredTimeStart)/3600*nrOfSlotsPerHour];
-		this.parkingTime = new double[(int) (monitoredTimeEnd - monitoredTimeStart)/3600*nrOfSlotsPerHour];
+		Arrays.fill(this.searchStartOfPerson, Double.NaN);
+		Arrays.fill(this.searchVehicleOfPerson, NO_INDEX);
+		Arrays.fill(this.driverOfVehicle, NO_INDEX);
+		Arrays.fill(this.groupProcedures, 0.);
+		Arrays.fill(this.groupTime, 0.);
+		Arrays.fill(this.groupDistance, 0.);
+		Arrays.fill(this.parkingProcedures, 0.);
+		Arrays.fill(this.parkingTime, 0.);
+		for (int link = 0; link < this.proceduresPerLinkAndSlot.length; link++) {
+			if (this.proceduresPerLinkAndSlot[link] != null) {
+				Arrays.fill(this.proceduresPerLinkAndSlot[link], 0);
+				Arrays.fill(this.timePerLinkAndSlot[link], 0.);
+			}
+		}
+		Arrays.fill(this.searchTimeHistogram, 0L);
+		this.maxSearchTime = 0.;
+	}
+
+	private void ensurePersonCapacity(int personIndex) {
+		if (personIndex >= this.searchStartOfPerson.length) {
+			int oldLength = this.searchStartOfPerson.length;
+			int newLength = Math.max(personIndex + 1, 2 * oldLength);
+			this.searchStartOfPerson = Arrays.copyOf(this.searchStartOfPerson, newLength);
+			this.searchDistanceOfPerson = Arrays.copyOf(this.searchDistanceOfPerson, newLength);
+			this.searchVehicleOfPerson = Arrays.copyOf(this.searchVehicleOfPerson, newLength);
+			Arrays.fill(this.searchStartOfPerson, oldLength, newLength, Double.NaN);
+			Arrays.fill(this.searchVehicleOfPerson, oldLength, newLength, NO_INDEX);
+		}
+	}
+
+	private int getDriver(Id<Vehicle> vehicleId) {
+		int vehicleIndex = vehicleId.index();
+		return vehicleIndex < this.driverOfVehicle.length ? this.driverOfVehicle[vehicleIndex] : NO_INDEX;
+	}
+
+	private boolean isSearching(int personIndex) {
+		return personIndex != NO_INDEX && personIndex < this.searchStartOfPerson.length
+				&& !Double.isNaN(this.searchStartOfPerson[personIndex]);
 	}
 
 	@Override
 	public void handleEvent(PersonEntersVehicleEvent event) {
 		//Assumes: Agent = driver, or at least the person that initiates a ride (i.e. a taxi passenger that lets his taxi search for parking or so...)
-				this.drivers.put(event.getVehicleId(), event.getPersonId());
+		int vehicleIndex = event.getVehicleId().index();
+		if (vehicleIndex >= this.driverOfVehicle.length) {
+			int oldLength = this.driverOfVehicle.length;
+			this.driverOfVehicle = Arrays.copyOf(this.driverOfVehicle, Math.max(vehicleIndex + 1, 2 * oldLength));
+			Arrays.fill(this.driverOfVehicle, oldLength, this.driverOfVehicle.length, NO_INDEX);
+		}
+		this.driverOfVehicle[vehicleIndex] = event.getPersonId().index();
 	}
 
 	@Override
 	public void handleEvent(StartParkingSearchEvent event) {
-		if (this.monitoredLinks.contains(event.getLinkId())){
-			Id<Person> pid = this.drivers.get(event.getVehicleId());
-			if (pid!=null){
-				this.searchTime.put(pid, event.getTime());	
+		int linkIndex = event.getLinkId().index();
+		if (linkIndex < this.monitoredLinks.length && this.monitoredLinks[linkIndex]){
+			int pid = getDriver(event.getVehicleId());
+			if (pid != NO_INDEX){
+				ensurePersonCapacity(pid);
+				this.searchStartOfPerson[pid] = event.getTime();
+				this.searchDistanceOfPerson[pid] = 0.;
+				this.searchVehicleOfPerson[pid] = event.getVehicleId().index();
 			}
 		}
 	}
 
+	@Override
+	public void handleEvent(LinkEnterEvent event) {
+		if (this.network == null) return;
+		int pid = getDriver(event.getVehicleId());
+		if (isSearching(pid)){
+			this.searchDistanceOfPerson[pid] += this.network.getLinks().get(event.getLinkId()).getLength();
+		}
+	}
+
 	@Override
 	public void handleEvent(PersonArrivalEvent event) {
-		DecimalFormat df = new DecimalFormat("##.##");
-		if (this.searchTime.containsKey(event.getPersonId())){
-			if (event.getLegMode().equals(TransportMode.car) &&
-                event.getTime() >=  monitoredTimeStart &&
-                event.getTime() <= monitoredTimeEnd){
-
-			    double parkingTime = event.getTime() - searchTime.remove(event.getPersonId());
-				int hour = (int) (event.getTime() / 3600);
-				int slot = (int) (event.getTime() - monitoredTimeStart) / (3600/nrOfSlotsPerHour);
-					this.parkingProcedures[slot]++;
-					this.parkingTime[slot]+=parkingTime;
-					String stamp = "" + hour  + ";" + slot + ";" + df.format(event.getTime()) + ";" + event.getLinkId() + ";"+ df.format(parkingTime);
-					this.linkTimeStamps.add(stamp);
+		final int pid = event.getPersonId().index();
+		if (!isSearching(pid)) {
+			return;
+		}
+		final double searchStart = this.searchStartOfPerson[pid];
+		this.searchStartOfPerson[pid] = Double.NaN;
+		if (event.getLegMode().equals(TransportMode.car) &&
+				event.getTime() >=  monitoredTimeStart &&
+				event.getTime() <= monitoredTimeEnd){
+
+			double parkingTime = event.getTime() - searchStart;
+			int hour = (int) (event.getTime() / 3600);
+			int slot = (int) ((event.getTime() - monitoredTimeStart) / getSlotLength());
+			this.parkingProcedures[slot]++;
+			this.parkingTime[slot]+=parkingTime;
+
+			int linkIndex = event.getLinkId().index();
+			if (linkIndex < this.proceduresPerLinkAndSlot.length) {
+				if (this.proceduresPerLinkAndSlot[linkIndex] == null) {
+					this.proceduresPerLinkAndSlot[linkIndex] = new int[this.nrOfSlots];
+					this.timePerLinkAndSlot[linkIndex] = new double[this.nrOfSlots];
 				}
+				this.proceduresPerLinkAndSlot[linkIndex][slot]++;
+				this.timePerLinkAndSlot[linkIndex][slot] += parkingTime;
 			}
-			else{
-				this.searchTime.remove(event.getPersonId());
-			}
 
+			int bin = (int) Math.min(parkingTime / QUANTILE_BIN_SIZE, this.searchTimeHistogram.length - 1);
+			this.searchTimeHistogram[Math.max(bin, 0)]++;
+			this.maxSearchTime = Math.max(this.maxSearchTime, parkingTime);
+
+			int vehicleIndex = this.searchVehicleOfPerson[pid];
+			int group = this.guidance != null && this.guidance.isEquipped(Id.get(vehicleIndex, Vehicle.class)) ? EQUIPPED : NOT_EQUIPPED;
+			this.groupProcedures[group]++;
+			this.groupTime[group] += parkingTime;
+			this.groupDistance[group] += this.searchDistanceOfPerson[pid];
+
+			if (this.linkTimeStamps != null) {
+				this.linkTimeStamp[0] = hour;
+				this.linkTimeStamp[1] = slot;
+				this.linkTimeStamp[2] = event.getTime();
+				this.linkTimeStamp[3] = linkIndex;
+				this.linkTimeStamp[4] = parkingTime;
+				this.linkTimeStamps.add(this.linkTimeStamp);
+			}
+		}
 	}
 
 	public void writeStats(String filename){
@@ -115,22 +280,109 @@ import java.util.*;
 		
 	}
 
-	public void writeLinkTimeStamps(String filename){
-		BufferedWriter bw = IOUtils.getBufferedWriter(filename);
-			try {
-				bw.write("hour;slotNr;simTime;linkID;searchTime");
-				for (String s: this.linkTimeStamps){
+	/**
+	 * one line per link and time slot with at least one parking procedure
+	 */
+	public void writeStatsPerLink(String filename){
+		DecimalFormat df = new DecimalFormat("##.##");
+		try (BufferedWriter bw = IOUtils.getBufferedWriter(filename)) {
+			bw.write("linkID;timeSlot;parkingCounts;averageSearchTime");
+			for (int link = 0; link < this.proceduresPerLinkAndSlot.length; link++) {
+				int[] procedures = this.proceduresPerLinkAndSlot[link];
+				if (procedures == null) {
+					continue;
+				}
+				String linkId = Id.get(link, Link.class).toString();
+				for (int slot = 0; slot < procedures.length; slot++) {
+					if (procedures[slot] == 0) {
+						continue;
+					}
 					bw.newLine();
-					bw.write(s);
+					bw.write(linkId);
+					bw.write(';');
+					bw.write(Integer.toString(slot));
+					bw.write(';');
+					bw.write(Integer.toString(procedures[slot]));
+					bw.write(';');
+					bw.write(df.format(this.timePerLinkAndSlot[link][slot] / procedures[slot]));
 				}
-				bw.flush();
-				bw.close();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}	
-			
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the search time below which the share <tt>q</tt> of the parking procedures lies, at the resolution of
+	 * {@link #QUANTILE_BIN_SIZE}; NaN if there were none
+	 */
+	double getSearchTimeQuantile(double q) {
+		long total = 0;
+		for (long count : this.searchTimeHistogram) {
+			total += count;
+		}
+		if (total == 0) {
+			return Double.NaN;
+		}
+		long rank = (long) Math.ceil(q * total);
+		long cumulated = 0;
+		for (int bin = 0; bin < this.searchTimeHistogram.length; bin++) {
+			cumulated += this.searchTimeHistogram[bin];
+			if (cumulated >= Math.max(rank, 1)) {
+				// upper end of the bin, but not more than the longest search:
+				return Math.min((bin + 1) * QUANTILE_BIN_SIZE, this.maxSearchTime);
+			}
+		}
+		return this.maxSearchTime;
+	}
+
+	public void writeQuantiles(String filename){
+		DecimalFormat df = new DecimalFormat("##.##");
+		try (BufferedWriter bw = IOUtils.getBufferedWriter(filename)) {
+			bw.write("quantile;searchTime");
+			for (double q : QUANTILES) {
+				bw.newLine();
+				bw.write("p" + (int) Math.round(q * 100) + ";" + df.format(getSearchTimeQuantile(q)));
+			}
+			bw.newLine();
+			bw.write("max;" + df.format(this.maxSearchTime));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
+	}
+
+	/**
+	 * search time and distance of vehicles with and without guidance equipment
+	 */
+	public void writeGuidanceStats(String filename){
+	BufferedWriter bw = IOUtils.getBufferedWriter(filename);
+	DecimalFormat df = new DecimalFormat("##.##");	
+		try {
+			bw.write("group;parkingCounts;averageSearchTime;averageSearchDistance;searchVehicleKm");
+			for (int group = NOT_EQUIPPED; group <= EQUIPPED; group++){
+				bw.newLine();
+				double n = this.groupProcedures[group];
+				bw.write((group == EQUIPPED ? "equipped" : "notEquipped") + ";" + df.format(n) + ";"
+						+ df.format(n == 0 ? 0 : this.groupTime[group]/n) + ";" + df.format(n == 0 ? 0 : this.groupDistance[group]/n) + ";"
+						+ df.format(this.groupDistance[group]/1000.));
+			}
+			bw.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void notifyIterationStarts(IterationStartsEvent event) {
+		if (this.linkTimeStampFormat == null) {
+			return;
+		}
+		String iterationPath = event.getServices().getControlerIO().getIterationPath(event.getIteration());
+		String filename = iterationPath + (this.linkTimeStampFormat == Format.text ? "/parkingLinkTimeStamps.csv" : "/parkingLinkTimeStamps.bin");
+		this.linkTimeStamps = new TelematicsTimeSeriesSink(filename, this.linkTimeStampFormat, ";",
+				LINK_TIME_STAMP_COLUMNS, LINK_TIME_STAMP_TYPES, TelematicsTimeSeriesSink.DEFAULT_RECORDS_PER_CHUNK,
+				TelematicsTimeSeriesSink.DEFAULT_NUMBER_OF_CHUNKS, BackPressure.block);
+	}
 
 	/**
 	 * Notifies all observers of the Controler that a iteration is finished
@@ -141,6 +393,14 @@ import java.util.*;
 	public void notifyIterationEnds(IterationEndsEvent event) {
 		String iterationPath = event.getServices().getControlerIO().getIterationPath(event.getIteration());
 		writeStats(iterationPath + "/parkingStatsPerTimeSlot.csv");
-		writeLinkTimeStamps(iterationPath + "/parkingLinkTimeStamps.csv");
+		writeStatsPerLink(iterationPath + "/parkingStatsPerLinkAndTimeSlot.csv");
+		writeQuantiles(iterationPath + "/parkingSearchTimeQuantiles.csv");
+		if (this.guidance != null) {
+			writeGuidanceStats(iterationPath + "/parkingGuidanceStats.csv");
+		}
+		if (this.linkTimeStamps != null) {
+			this.linkTimeStamps.close();
+			this.linkTimeStamps = null;
+		}
 	}
 }
@@ -0,0 +1,98 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TelematicParkingAgentFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package playground.vsptelematics.parkingSearch;
+
+import javax.inject.Inject;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dynagent.DynAgent;
+import org.matsim.contrib.parking.parkingsearch.DynAgent.agentLogic.ParkingAgentLogic;
+import org.matsim.contrib.parking.parkingsearch.ParkingSearchStrategy;
+import org.matsim.contrib.parking.parkingsearch.manager.ParkingSearchManager;
+import org.matsim.contrib.parking.parkingsearch.manager.WalkLegFactory;
+import org.matsim.contrib.parking.parkingsearch.manager.vehicleteleportationlogic.VehicleTeleportationLogic;
+import org.matsim.contrib.parking.parkingsearch.routing.ParkingRouter;
+import org.matsim.contrib.parking.parkingsearch.search.ParkingSearchLogic;
+import org.matsim.contrib.parking.parkingsearch.search.RandomParkingSearchLogic;
+import org.matsim.contrib.parking.parkingsearch.sim.ParkingAgentFactory;
+import org.matsim.contrib.parking.parkingsearch.sim.ParkingSearchConfigGroup;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.agents.AgentFactory;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+
+/**
+ * Creates the parking agents like the contrib's {@link ParkingAgentFactory}, but gives every agent a {@link TelematicParkingSearchLogic}
+ * around the random search, so that the equipped vehicles follow the {@link ParkingGuidance}.
+ * <p>
+ * Only {@link ParkingSearchStrategy#Random} can be wrapped: the contrib's legs for the other strategies need their concrete search logic.
+ */
+final class TelematicParkingAgentFactory implements AgentFactory {
+
+	@Inject private WalkLegFactory walkLegFactory;
+	@Inject private ParkingRouter parkingRouter;
+	@Inject private ParkingSearchManager parkingManager;
+	@Inject private EventsManager events;
+	@Inject private Network network;
+	@Inject private VehicleTeleportationLogic teleportationLogic;
+	@Inject private ParkingGuidance guidance;
+	@Inject private LeastCostPathCalculatorFactory pathAlgoFactory;
+
+	private final QSim qsim;
+	private final ParkingSearchConfigGroup psConfigGroup;
+
+	@Inject
+	TelematicParkingAgentFactory(QSim qsim) {
+		this.qsim = qsim;
+		this.psConfigGroup = ConfigUtils.addOrGetModule(qsim.getScenario().getConfig(), ParkingSearchConfigGroup.class);
+		checkSearchStrategy(this.psConfigGroup);
+	}
+
+	static void checkSearchStrategy(ParkingSearchConfigGroup psConfigGroup) {
+		if (psConfigGroup.getParkingSearchStrategy() != ParkingSearchStrategy.Random) {
+			throw new IllegalStateException("telematic parking guidance works on top of the " + ParkingSearchStrategy.Random
+					+ " parking search strategy only; got " + psConfigGroup.getParkingSearchStrategy());
+		}
+	}
+
+	@Override
+	public MobsimAgent createMobsimAgentFromPerson(Person p) {
+		// one path calculator per agent, since the agents may be simulated concurrently
+		FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(-1.0, 0.0, 0.0);
+		ParkingSearchLogic parkingLogic = new TelematicParkingSearchLogic(this.network, this.guidance,
+				this.pathAlgoFactory.createPathCalculator(this.network, freespeed, freespeed), new RandomParkingSearchLogic(this.network));
+		ParkingAgentLogic agentLogic = new ParkingAgentLogic(p.getSelectedPlan(), this.parkingManager, this.walkLegFactory,
+				this.parkingRouter, this.events, parkingLogic, this.qsim.getSimTimer(), this.teleportationLogic, this.psConfigGroup);
+		Id<Link> startLinkId = ((Activity) p.getSelectedPlan().getPlanElements().get(0)).getLinkId();
+		if (startLinkId == null) {
+			throw new NullPointerException("no start link found for person " + p.getId());
+		}
+		return new DynAgent(p.getId(), startLinkId, this.events, agentLogic);
+	}
+
+}
@@ -0,0 +1,109 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TelematicParkingSearchLogic.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package playground.vsptelematics.parkingSearch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.parking.parkingsearch.search.ParkingSearchLogic;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Search logic of the "telematic parking guidance" mode: equipped vehicles drive towards the nearest link with free spaces in the latest
+ * {@link ParkingGuidanceSnapshot}, along the least cost path to that link.  The path is kept as long as the target does not change and
+ * the vehicle follows it.  Vehicles without equipment, and equipped vehicles if no free link is known or the link can not be reached, use
+ * the <tt>delegate</tt> logic.
+ */
+final class TelematicParkingSearchLogic implements ParkingSearchLogic {
+
+	private final Network network;
+	private final ParkingGuidance guidance;
+	private final LeastCostPathCalculator router;
+	private final ParkingSearchLogic delegate;
+
+	private Id<Link> pathTargetLinkId = null;
+	private List<Link> path = null;
+	private int pathIndex = 0;
+
+	/**
+	 * @param router is only used by this logic, i.e. by one agent, since the path calculators are not thread-safe
+	 */
+	TelematicParkingSearchLogic(Network network, ParkingGuidance guidance, LeastCostPathCalculator router, ParkingSearchLogic delegate) {
+		this.network = network;
+		this.guidance = guidance;
+		this.router = router;
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Id<Link> getNextLink(Id<Link> currentLinkId, Id<Vehicle> vehicleId, String mode) {
+		if(!this.guidance.isEquipped(vehicleId)){
+			return this.delegate.getNextLink(currentLinkId, vehicleId, mode);
+		}
+		Id<Link> targetLinkId = this.guidance.getNearestLinkWithFreeSpace(currentLinkId);
+		if(targetLinkId == null){
+			return this.delegate.getNextLink(currentLinkId, vehicleId, mode);
+		}
+		Link current = this.network.getLinks().get(currentLinkId);
+		if(!targetLinkId.equals(this.pathTargetLinkId) || !isOnPath(current)){
+			Link target = this.network.getLinks().get(targetLinkId);
+			this.path = calcPath(this.router, current, target);
+			this.pathTargetLinkId = targetLinkId;
+			this.pathIndex = 0;
+		}
+		if(this.path == null){
+			// target not reachable
+			return this.delegate.getNextLink(currentLinkId, vehicleId, mode);
+		}
+		return this.path.get(this.pathIndex++).getId();
+	}
+
+	private boolean isOnPath(Link current) {
+		return this.path != null && this.pathIndex < this.path.size() && this.path.get(this.pathIndex).getFromNode() == current.getToNode();
+	}
+
+	/**
+	 * @return the links from the end of <tt>current</tt> up to and including <tt>target</tt>, null if there is no path
+	 */
+	static List<Link> calcPath(LeastCostPathCalculator router, Link current, Link target) {
+		Path p = router.calcLeastCostPath(current.getToNode(), target.getFromNode(), 0., null, null);
+		if(p == null){
+			return null;
+		}
+		List<Link> links = new ArrayList<>(p.links.size() + 1);
+		links.addAll(p.links);
+		links.add(target);
+		return links;
+	}
+
+	@Override
+	public void reset() {
+		this.pathTargetLinkId = null;
+		this.path = null;
+		this.delegate.reset();
+	}
+
+}
@@ -41,10 +41,8 @@ import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeModule;
 import org.matsim.contrib.parking.parkingsearch.evaluation.ParkingListener;
 import org.matsim.contrib.parking.parkingsearch.evaluation.ParkingSearchEvaluator;
 import org.matsim.contrib.parking.parkingsearch.evaluation.ParkingSlotVisualiser;
-import org.matsim.contrib.parking.parkingsearch.evaluation.ZoneParkingOccupationListener;
 import org.matsim.contrib.parking.parkingsearch.manager.ParkingSearchManager;
 import org.matsim.contrib.parking.parkingsearch.manager.WalkLegFactory;
-import org.matsim.contrib.parking.parkingsearch.manager.ZoneParkingManager;
 import org.matsim.contrib.parking.parkingsearch.manager.vehicleteleportationlogic.NoVehicleTeleportationLogic;
 import org.matsim.contrib.parking.parkingsearch.manager.vehicleteleportationlogic.VehicleTeleportationLogic;
 import org.matsim.contrib.parking.parkingsearch.routing.ParkingRouter;
@@ -60,7 +58,9 @@ import org.matsim.core.controler.Controler;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.listener.IterationEndsListener;
 import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.qsim.AbstractQSimModule;
 import org.matsim.core.mobsim.qsim.PopulationModule;
+import org.matsim.core.mobsim.qsim.agents.AgentFactory;
 import org.matsim.core.mobsim.qsim.components.QSimComponentsConfig;
 import org.matsim.core.mobsim.qsim.components.StandardQSimComponentConfigurator;
 import org.matsim.core.router.AStarEuclideanFactory;
@@ -69,6 +69,8 @@ import org.matsim.core.scenario.ScenarioUtils;
 
 import com.google.inject.name.Names;
 
+import playground.vsptelematics.common.TelematicsConfigGroup;
+
 
 public class TelematicsParkingSearchController {
 
@@ -168,6 +170,9 @@ public class TelematicsParkingSearchController {
                 controler.getConfig().addModule(new DvrpConfigGroup());
             }
 
+            TelematicsConfigGroup telematicsConfigGroup = ConfigUtils.addOrGetModule(controler.getConfig(), TelematicsConfigGroup.GROUPNAME,
+                    TelematicsConfigGroup.class);
+
             controler.addOverridingModule(new DvrpTravelTimeModule());
             controler.addOverridingModule(new AbstractModule() {
                 @Override
@@ -190,14 +195,25 @@ public class TelematicsParkingSearchController {
                     bind(ParkingRouter.class).to(WithinDayParkingRouter.class);
 
                     //parking manager
-                    bind(ParkingSearchManager.class).toInstance(new ZoneParkingManager(scenario, pathToZones));
+                    ZoneParkingManager parkingManager = new ZoneParkingManager(scenario, pathToZones);
+                    bind(ParkingSearchManager.class).toInstance(parkingManager);
+
+                    //telematic parking guidance for the equipped share of the vehicles
+                    ParkingGuidance guidance = null;
+                    if (telematicsConfigGroup.getEquipmentRate() > 0.) {
+                        guidance = new ParkingGuidance(scenario.getNetwork(), parkingManager,
+                                telematicsConfigGroup.getParkingGuidanceRefreshInterval(), telematicsConfigGroup.getEquipmentRate());
+                        bind(ParkingGuidance.class).toInstance(guidance);
+                        addMobsimListenerBinding().toInstance(guidance);
+                    }
 
                     addControlerListenerBinding().to(ParkingListener.class);
 
                     //analysis
-//                    addMobsimListenerBinding().to(TelematicsZoneOccupationListener.class).asEagerSingleton();
-                    addMobsimListenerBinding().to(ZoneParkingOccupationListener.class).asEagerSingleton();
-                    SearchTimeEvaluator parkingEvaluator = new SearchTimeEvaluator(scenario.getNetwork().getLinks().keySet(), startOfEvaluatedTime, endOfEvaluatedTime);
+                    bind(TelematicsZoneOccupationListener.class).asEagerSingleton();
+                    addMobsimListenerBinding().to(TelematicsZoneOccupationListener.class);
+                    SearchTimeEvaluator parkingEvaluator = new SearchTimeEvaluator(scenario.getNetwork().getLinks().keySet(), startOfEvaluatedTime, endOfEvaluatedTime,
+                            scenario.getNetwork(), guidance);
                     addEventHandlerBinding().toInstance(parkingEvaluator);
 
                     ParkingSearchEvaluator walkEvaluator = new ParkingSearchEvaluator();
@@ -217,6 +233,17 @@ public class TelematicsParkingSearchController {
                 }
             });
 
+            if (telematicsConfigGroup.getEquipmentRate() > 0.) {
+                // equipped agents search with the guidance; replaces the agent factory of ParkingSearchPopulationModule
+                TelematicParkingAgentFactory.checkSearchStrategy(ConfigUtils.addOrGetModule(controler.getConfig(), ParkingSearchConfigGroup.class));
+                controler.addOverridingQSimModule(new AbstractQSimModule() {
+                    @Override
+                    protected void configureQSim() {
+                        bind(AgentFactory.class).to(TelematicParkingAgentFactory.class).asEagerSingleton();
+                    }
+                });
+            }
+
             controler.addOverridingModule(new AbstractModule() {
                 @Override
                 public void install() {
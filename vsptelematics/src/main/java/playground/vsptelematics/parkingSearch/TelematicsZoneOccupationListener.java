@@ -22,34 +22,51 @@ package playground.vsptelematics.parkingSearch;
 
 import com.google.inject.Inject;
 import org.apache.log4j.Logger;
-import org.matsim.contrib.parking.parkingsearch.evaluation.ParkingTuple;
-import org.matsim.contrib.parking.parkingsearch.evaluation.ZoneParkingOccupationListener;
 import org.matsim.contrib.parking.parkingsearch.manager.ParkingSearchManager;
-import org.matsim.contrib.parking.parkingsearch.manager.ZoneParkingManager;
 import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.controler.MatsimServices;
 import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
 import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
 import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
 import org.matsim.core.utils.io.IOUtils;
+import playground.vsptelematics.common.TelematicsConfigGroup;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.TreeSet;
 
-public class TelematicsZoneOccupationListener implements MobsimBeforeCleanupListener, MobsimAfterSimStepListener {
-
-    private final org.matsim.contrib.parking.parkingsearch.manager.ZoneParkingManager zoneManager;
-    private Logger log = Logger.getLogger(ZoneParkingOccupationListener.class);
-    private HashMap<String, TreeSet<ParkingTuple>> zoneOccupationPerTime;
-    private MatsimServices services;
+/**
+ * Samples the occupancy ratio of every zone of the {@link ZoneParkingManager} every
+ * {@link TelematicsConfigGroup#getZoneOccupancySamplingInterval()} seconds and streams the samples of an iteration to
+ * <tt>OccupationStats.csv</tt>, one line per sample, while the mobsim runs.  Memory does not depend on the number of samples.
+ * <p>
+ * The format is the one of the contrib's <tt>ZoneParkingOccupationListener</tt>: samples are taken at the positive multiples of the
+ * sampling interval, <tt>SlotNr</tt> is the sample time divided by the interval, and from the second iteration on, the first line (at
+ * time -1) repeats the occupancies at the end of the previous iteration.
+ */
+public class TelematicsZoneOccupationListener implements MobsimInitializedListener, MobsimAfterSimStepListener, MobsimBeforeCleanupListener {
+
+    private static final Logger log = Logger.getLogger(TelematicsZoneOccupationListener.class);
+
+    private final ZoneParkingManager zoneManager;
+    private final MatsimServices services;
     int iteration;
 
-    private TreeSet<Double> allMonitoredTimeStamps;
+    private final double samplingInterval;
+    private final double firstSampleTime;
+    /**
+     * occupancy ratios at the end of the previous iteration, or null in the first iteration
+     */
+    private double[] carryOver = null;
+    private final DecimalFormat df = new DecimalFormat("##.##");
+
+    private BufferedWriter writer = null;
+    private double nextSampleTime;
 
     /**
      *
@@ -59,176 +76,93 @@ public class TelematicsZoneOccupationListener implements MobsimBeforeCleanupList
         this.zoneManager = (ZoneParkingManager) manager;
         iteration = config.controler().getFirstIteration();
         this.services = services;
-        this.zoneOccupationPerTime = new HashMap<>();
-        for(String zone : zoneManager.getZones()){
-            this.zoneOccupationPerTime.put(zone, new TreeSet<>());
-        }
-        this.allMonitoredTimeStamps = new TreeSet<>();
-    }
 
-    @Override
-    public void notifyMobsimAfterSimStep(MobsimAfterSimStepEvent e) {
-        if( (e.getSimulationTime()%900)  == 0 && !(e.getSimulationTime() == 0)){
-
-            double	timeStamp = e.getSimulationTime();
-            if (!(this.allMonitoredTimeStamps.contains(timeStamp)) ) this.allMonitoredTimeStamps.add(timeStamp);
-
-            for(String zone : this.zoneOccupationPerTime.keySet()){
-                double occ = this.zoneManager.getOccupancyRatioOfZone(zone);
-                ParkingTuple tuple = new ParkingTuple(timeStamp, occ);
-                this.zoneOccupationPerTime.get(zone).add(tuple);
-            }
+        TelematicsConfigGroup telematicsConfigGroup = ConfigUtils.addOrGetModule(config, TelematicsConfigGroup.GROUPNAME,
+                TelematicsConfigGroup.class);
+        this.samplingInterval = telematicsConfigGroup.getZoneOccupancySamplingInterval();
+        if (this.samplingInterval <= 0.) {
+            throw new IllegalArgumentException("zone occupancy sampling interval must be positive; got " + this.samplingInterval);
         }
+        final double startTime = config.qsim().getStartTime().orElse(0.);
+        this.firstSampleTime = Math.max(1., Math.ceil(startTime / this.samplingInterval)) * this.samplingInterval;
     }
 
     @Override
-    public void notifyMobsimBeforeCleanup(MobsimBeforeCleanupEvent e) {
+    public void notifyMobsimInitialized(@SuppressWarnings("rawtypes") MobsimInitializedEvent e) {
         String fileName = services.getControlerIO().getIterationFilename(iteration, "OccupationStats.csv");
-        writeStatsVertical(fileName);
-        double lastOcc;
-        for(String zone : zoneManager.getZones()){
-            lastOcc = this.zoneManager.getOccupancyRatioOfZone(zone);
-//			lastOcc = this.zoneOccupationPerHour.get(zone)[this.zoneOccupationPerHour.get(zone).length-1];
-            TreeSet<ParkingTuple> tSet = new TreeSet<>();
-            tSet.add(new ParkingTuple(-1.0,lastOcc));
-            this.zoneOccupationPerTime.put(zone, tSet);
-            this.allMonitoredTimeStamps.clear();
-            this.allMonitoredTimeStamps.add(-1.0);
+        log.info("writing occupancy stats to " + fileName);
+        this.writer = IOUtils.getBufferedWriter(fileName);
+        this.nextSampleTime = this.firstSampleTime;
+        try {
+            writer.write(";;");
+            for (String zone : this.zoneManager.getZones()) {
+                writer.write(zone);
+                writer.write(';');
+            }
+            writer.newLine();
+            writer.write("TotalCapacity;;");
+            for (String zone : this.zoneManager.getZones()) {
+                writer.write(Double.toString(this.zoneManager.getTotalCapacityOfZone(zone)));
+                writer.write(';');
+            }
+            writer.newLine();
+            writer.write("SlotNr;SimTime;");
+            for (int zone = 0; zone < this.zoneManager.getNumberOfZones(); zone++) {
+                writer.write("OccRatio;");
+            }
+            if (this.carryOver != null) {
+                writeSample(-1.0, this.carryOver);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
-        iteration++;
     }
 
-    private void writeStats(String fileName) {
-        log.error("WRITING OCCUPANCY STATS TO " + fileName);
-
-        String head = "Zone;TotalCapacity;";
-        for(double d : this.allMonitoredTimeStamps){
-            head += "" + d +";";
+    @Override
+    public void notifyMobsimAfterSimStep(@SuppressWarnings("rawtypes") MobsimAfterSimStepEvent e) {
+        final double time = e.getSimulationTime();
+        if (time < this.nextSampleTime) {
+            return;
         }
-
-        BufferedWriter bw = IOUtils.getBufferedWriter(fileName);
+        this.nextSampleTime += this.samplingInterval * Math.floor((time - this.nextSampleTime) / this.samplingInterval + 1.);
         try {
-            bw.write(head);
-            for (String zone : this.zoneOccupationPerTime.keySet()){
-                bw.newLine();
-                String line = zone + ";" + this.zoneManager.getTotalCapacityOfZone(zone) + ";";
-
-                TreeSet<ParkingTuple> currentSet = this.zoneOccupationPerTime.get(zone);
-                TreeSet<Double> timeSet = new TreeSet<Double>();
-                timeSet.addAll(allMonitoredTimeStamps);
-                double oldOcc = -5.0;
-
-                int zoneSize = currentSet.size();
-                int timeSize = timeSet.size();
-
-                for(int i = 0; i < zoneSize; i++){
-                    ParkingTuple ff = currentSet.pollFirst();
-                    for(int zz = 0; zz < timeSize; zz ++ ){
-                        double time = timeSet.pollFirst();
-                        if(time < ff.getTime()){
-                            line += "" + oldOcc +";";
-                        }
-                        else if( time == ff.getTime()){
-                            line += "" + ff.getOccupancy() + ";";
-                            break;
-                        }
-                        else{
-                            String timeString = "This is what the TreeSet looks like:\n" + timeSet.toString() + "\n This is what the original looks like:\n" + this.allMonitoredTimeStamps.toString();
-                            throw new RuntimeException("timestamp of zone " + zone + " wasn't recorded.\n timeStamp of zone = " + ff.getTime() + "\t header column: " + time
-                                    + "\n\n" + timeString + "\n This is that the file looks like:\n" + head + "\n" + line);
-                        }
-                        oldOcc = ff.getOccupancy();
-                    }
-                }
-                bw.write(line);
-            }
-            bw.flush();
-            bw.close();
-        } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+            writeSample(time, null);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
-
-        log.error("FINISHED WRITING OCCUPANCY STATS");
     }
 
-    private void writeStatsVertical(String fileName) {
-        log.error("WRITING OCCUPANCY STATS TO " + fileName);
-
-        String head = ";;";
-        String capacityLine = "TotalCapacity;;";
-        String subheader = "SlotNr;SimTime;";
-
-        ArrayList<double[]> zoneColumns = new ArrayList<double[]>();
-        int numberOfSlots = this.allMonitoredTimeStamps.size();
-        double[] slotTimes = new double[numberOfSlots];
-        int[] slotNumbers = new int[numberOfSlots];
-        TreeSet<Double> timeSet = new TreeSet<>();
-        timeSet.addAll(allMonitoredTimeStamps);
-
-        for (int timeSlot = 0; timeSlot < numberOfSlots; timeSlot ++ ){
-            double tt = timeSet.pollFirst();
-            slotTimes[timeSlot] = tt;
-            slotNumbers[timeSlot] = (int) (tt/900);
+    /**
+     * @param ratios the occupancy ratios to write, or null for the current ones of the zone manager
+     */
+    private void writeSample(double time, double[] ratios) throws IOException {
+        writer.newLine();
+        writer.write(Integer.toString((int) (time / this.samplingInterval)));
+        writer.write(';');
+        writer.write(df.format(time));
+        writer.write(';');
+        for (int zone = 0; zone < this.zoneManager.getNumberOfZones(); zone++) {
+            writer.write(df.format(ratios == null ? this.zoneManager.getOccupancyRatioOfZone(zone) : ratios[zone]));
+            writer.write(';');
         }
+    }
 
-        for(String zone : this.zoneManager.getZones()){
-            head += zone +";";
-            capacityLine += this.zoneManager.getTotalCapacityOfZone(zone) + ";";
-            subheader += "OccRatio;";
-
-
-            double[] ratios = new double[numberOfSlots];
-
-            TreeSet<ParkingTuple> ratioSet = this.zoneOccupationPerTime.get(zone);
-
-            double oldRatio = 0.0;
-            for(int i = 0; i < numberOfSlots; i++){
-
-                ParkingTuple tuple = ratioSet.pollFirst();
-                if(slotTimes[i] == tuple.getTime()){
-                    ratios[i] = tuple.getOccupancy();
-                    oldRatio = tuple.getOccupancy();
-                }
-                else if(slotTimes[i] < tuple.getTime()){
-                    ratios[i] = oldRatio;
-                }
-                else{
-                    throw new RuntimeException("timeSlot number is higher than recorded time. timeSlot: " + slotTimes[i] + "\t time: " + tuple.getTime());
-                }
-            }
-
-            zoneColumns.add(ratios);
+    @Override
+    public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e) {
+        if (this.carryOver == null) {
+            this.carryOver = new double[this.zoneManager.getNumberOfZones()];
+        }
+        for (int zone = 0; zone < this.carryOver.length; zone++) {
+            this.carryOver[zone] = this.zoneManager.getOccupancyRatioOfZone(zone);
         }
-
-        BufferedWriter bw = IOUtils.getBufferedWriter(fileName);
         try {
-            bw.write(head);
-            bw.newLine();
-            bw.write(capacityLine);
-            bw.newLine();
-            bw.write(subheader);
-
-            DecimalFormat df = new DecimalFormat("##.##");
-
-            for(int z = 0; z < numberOfSlots; z++){
-                bw.newLine();
-
-                String line = "" + slotNumbers[z] + ";" + df.format(slotTimes[z]) + ";";
-                for(int p = 0; p < this.zoneManager.getZones().size(); p++){
-                    line += "" + df.format(zoneColumns.get(p)[z]) + ";";
-                }
-
-                bw.write(line);
-
-            }		bw.flush();
-            bw.close();
-        } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+            this.writer.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            this.writer = null;
         }
-
-        log.error("FINISHED WRITING OCCUPANCY STATS");
+        iteration++;
     }
 
 }
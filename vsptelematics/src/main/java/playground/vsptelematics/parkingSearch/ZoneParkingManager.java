@@ -3,10 +3,14 @@
  */
 package playground.vsptelematics.parkingSearch;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
@@ -22,19 +26,33 @@ import org.matsim.vehicles.Vehicle;
 import com.google.inject.Inject;
 
 /**
+ * Parking manager that additionally keeps the number of parked vehicles per zone.  A zone is a set of links, read from a text file;
+ * a link may belong to several zones.
+ * <p>
+ * The zones of every link are precomputed by link index, and the occupancies are kept in an {@link AtomicIntegerArray}, so that a
+ * park/unpark touches only the zones of its link, and {@link #getOccupancyRatioOfZone} can be read by monitoring listeners without
+ * locking.
+ * 
  * @author tschlenther
  */
 public class ZoneParkingManager extends FacilityBasedParkingManager {
 
-	private final HashMap<String, HashSet<Id<Link>>> linksOfZone;
-	private final HashMap<String, Double> totalCapOfZone;
-	private final HashMap<String, Double> occupationOfZone;
+	private static final int[] NO_ZONES = new int[0];
+
+	private final Map<String, HashSet<Id<Link>>> linksOfZone;
+	private final Map<String, Integer> indexOfZone;
+	private final String[] zoneNames;
+	private final double[] totalCapOfZone;
+	private final AtomicIntegerArray occupationOfZone;
+	
+	/**
+	 * zone indices of every link, by link index
+	 */
+	private final int[][] zonesOfLink;
 
 	private final static String mierendorffLinks = "C:/Users/Work/Bachelor Arbeit/input/GridNet/Zonen/Zielzone.txt";
 	private final static String klausenerLinks = "C:/Users/Work/Bachelor Arbeit/input/GridNet/Zonen/Homezone.txt";
 
-	private List<String> zones;
-
 	/**
 	 * @param scenario
 	 */
@@ -42,17 +60,39 @@ public class ZoneParkingManager extends FacilityBasedParkingManager {
 	public ZoneParkingManager(Scenario scenario, String[] pathToZoneTxtFiles) {
 		super(scenario);
 		
-		this.linksOfZone = new HashMap<String,HashSet<Id<Link>>>();
-		this.totalCapOfZone = new HashMap<String,Double>();
-		this.occupationOfZone = new HashMap<String,Double>();
+		this.linksOfZone = new LinkedHashMap<String,HashSet<Id<Link>>>();
 		
 		for(String zone: pathToZoneTxtFiles){
 			readZone(zone);
 		}
 		
+		final int nZones = this.linksOfZone.size();
+		this.indexOfZone = new HashMap<>();
+		this.zoneNames = new String[nZones];
+		this.totalCapOfZone = new double[nZones];
+		this.occupationOfZone = new AtomicIntegerArray(nZones);
+		
+		int maxLinkIndex = -1;
+		for(Link link : scenario.getNetwork().getLinks().values()){
+			maxLinkIndex = Math.max(maxLinkIndex, link.getId().index());
+		}
+		this.zonesOfLink = new int[maxLinkIndex + 1][];
+		Arrays.fill(this.zonesOfLink, NO_ZONES);
+		
+		int zoneIndex = 0;
 		for(String zone: this.linksOfZone.keySet()){
-			calculateTotalZoneParkCapacity(zone);
-			this.occupationOfZone.put(zone,0.0);
+			this.indexOfZone.put(zone, zoneIndex);
+			this.zoneNames[zoneIndex] = zone;
+			calculateTotalZoneParkCapacity(zoneIndex);
+			for(Id<Link> linkId : this.linksOfZone.get(zone)){
+				final int linkIndex = linkId.index();
+				if(linkIndex < this.zonesOfLink.length){
+					int[] zones = Arrays.copyOf(this.zonesOfLink[linkIndex], this.zonesOfLink[linkIndex].length + 1);
+					zones[zones.length - 1] = zoneIndex;
+					this.zonesOfLink[linkIndex] = zones;
+				}
+			}
+			zoneIndex++;
 		}
 	}
 
@@ -83,31 +123,34 @@ public class ZoneParkingManager extends FacilityBasedParkingManager {
         this.linksOfZone.put(zone, links);       
 	}
 	
-	private void calculateTotalZoneParkCapacity(String zoneName){
+	private void calculateTotalZoneParkCapacity(int zoneIndex){
 		double cap = 0.0;
-		for(Id<Link> link : this.linksOfZone.get(zoneName)){
+		for(Id<Link> link : this.linksOfZone.get(this.zoneNames[zoneIndex])){
 			cap += getNrOfAllParkingSpacesOnLink(link);
 		} 
-		this.totalCapOfZone.put(zoneName, cap);
+		this.totalCapOfZone[zoneIndex] = cap;
 	}
 
+	private int[] getZonesOfLink(Id<Link> linkId){
+		final int linkIndex = linkId.index();
+		return linkIndex < this.zonesOfLink.length ? this.zonesOfLink[linkIndex] : NO_ZONES;
+	}
 	
 	@Override
 	public boolean parkVehicleHere(Id<Vehicle> vehicleId, Id<Link> linkId, double time) {
 		if (parkVehicleAtLink(vehicleId, linkId, time)) {
-			for(String zone : this.linksOfZone.keySet()){
-				if(linksOfZone.get(zone).contains(linkId) && this.facilitiesPerLink.containsKey(linkId)){
-					double newOcc = this.occupationOfZone.get(zone) + 1;
-					if(this.totalCapOfZone.get(zone)<newOcc){
+			int[] zones = getZonesOfLink(linkId);
+			if(zones.length > 0 && this.facilitiesPerLink.containsKey(linkId)){
+				for(int zone : zones){
+					int newOcc = this.occupationOfZone.incrementAndGet(zone);
+					if(this.totalCapOfZone[zone]<newOcc){
 						String s = "FacilityID: " + this.parkingLocations.get(vehicleId);
 						String t = "Occupied: " + this.occupation.get(this.parkingLocations.get(vehicleId));
 						String u = "Capacity: " + this.parkingFacilities.get(this.parkingLocations.get(vehicleId)).getActivityOptions().get(ParkingUtils.PARKACTIVITYTYPE).getCapacity();
 						String v = "TotalCapacityOnLink: " + getNrOfAllParkingSpacesOnLink(linkId);
-						throw new RuntimeException("occupancy of zone " + zone + " is higher than 100%. Capacity= " + this.totalCapOfZone.get(zone) + "  occupancy=" + newOcc + "time = " + time
+						throw new RuntimeException("occupancy of zone " + this.zoneNames[zone] + " is higher than 100%. Capacity= " + this.totalCapOfZone[zone] + "  occupancy=" + newOcc + "time = " + time
 								+ "\n" + s + "\n" + t + "\n" + u + "\n" + v);
 					}
-					this.occupationOfZone.put(zone,newOcc);
-					return true;								// assumes: link is only part of exactly 1 zone
 				}
 			}
 			return true;
@@ -125,15 +168,9 @@ public class ZoneParkingManager extends FacilityBasedParkingManager {
 			this.occupation.get(fac).decrement();
 	
 			Id<Link> parkingLink = this.parkingFacilities.get(fac).getLinkId();
-			for(String zone : this.linksOfZone.keySet()){
-				if(linksOfZone.get(zone).contains(parkingLink)){
-					double newOcc = this.occupationOfZone.get(zone) - 1;
-					if(newOcc < 0 ){
-						//in iteration 0 agents can "leave parking spaces" (get into traffic), but the manager didn't record them to be parked  
-						newOcc = 0;
-					}
-					this.occupationOfZone.put(zone,newOcc);
-				}
+			for(int zone : getZonesOfLink(parkingLink)){
+				//in iteration 0 agents can "leave parking spaces" (get into traffic), but the manager didn't record them to be parked  
+				this.occupationOfZone.getAndUpdate(zone, occ -> occ > 0 ? occ - 1 : 0);
 			}
 				return true;
 		}
@@ -141,17 +178,59 @@ public class ZoneParkingManager extends FacilityBasedParkingManager {
 	
 	
 	public double getOccupancyRatioOfZone(String zone){
-		if(!(this.linksOfZone.keySet().contains(zone))) throw new RuntimeException("zone " + zone + " was not defined. thus, could'nt calculate occupancy ratio.");
+		Integer zoneIndex = this.indexOfZone.get(zone);
+		if(zoneIndex == null) throw new RuntimeException("zone " + zone + " was not defined. thus, could'nt calculate occupancy ratio.");
 
-		return (this.occupationOfZone.get(zone) / this.totalCapOfZone.get(zone));
+		return getOccupancyRatioOfZone(zoneIndex);
 	}
 	
+	/**
+	 * @param zoneIndex position of the zone in {@link #getZones()}
+	 */
+	public double getOccupancyRatioOfZone(int zoneIndex){
+		return this.occupationOfZone.get(zoneIndex) / this.totalCapOfZone[zoneIndex];
+	}
+	
+	public int getNumberOfZones(){
+		return this.zoneNames.length;
+	}
+	
+	/**
+	 * @return the zone names, in the order of the zone indices
+	 */
 	public Set<String> getZones(){
 		return this.linksOfZone.keySet();
 	}
 	
 	public double getTotalCapacityOfZone(String zone){
-		return this.totalCapOfZone.get(zone);
+		return this.totalCapOfZone[this.indexOfZone.get(zone)];
+	}
+
+	/**
+	 * @return the links with parking facilities
+	 */
+	public Set<Id<Link>> getParkingLinkIds(){
+		return Collections.unmodifiableSet(this.facilitiesPerLink.keySet());
+	}
+	
+	/**
+	 * Writes the number of free parking spaces of every link into <tt>freeSpaces</tt>, by link index.  Links without parking facilities
+	 * get 0.
+	 */
+	public void fillFreeSpacesByLinkIndex(int[] freeSpaces){
+		Arrays.fill(freeSpaces, 0);
+		for(Id<Link> linkId : this.facilitiesPerLink.keySet()){
+			final int linkIndex = linkId.index();
+			if(linkIndex >= freeSpaces.length){
+				continue;
+			}
+			double free = 0.;
+			for(Id<ActivityFacility> fac : this.facilitiesPerLink.get(linkId)){
+				free += this.parkingFacilities.get(fac).getActivityOptions().get(ParkingUtils.PARKACTIVITYTYPE).getCapacity()
+						- this.occupation.get(fac).doubleValue();
+			}
+			freeSpaces[linkIndex] = (int) Math.max(0., Math.min(free, Integer.MAX_VALUE));
+		}
 	}
 
 }
@@ -0,0 +1,237 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TollBehaviour
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2012 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.roadpricing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.roadpricing.RoadPricingScheme;
+import org.matsim.contrib.roadpricing.RoadPricingSchemeImpl.Cost;
+import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.core.population.routes.NetworkRoute;
+
+import playground.vsptelematics.common.TelematicsConfigGroup;
+
+/**
+ * Logit route choice between N alternative routes from <tt>startLinkId</tt> to <tt>endLinkId</tt>, before every mobsim: every person
+ * gets a value of time uniform in [0, {@link #MAX_VALUE_OF_TIME}) and chooses a route with probability proportional to
+ * <tt>exp({@link #LOGIT_SCALE} * (-vot * predictedTravelTime/3600 - toll))</tt>.
+ * <p>
+ * The population is split into chunks of {@link #CHUNK_SIZE} persons (in the order of the person ids) that are processed in parallel;
+ * every chunk has its own random number generator, seeded from the seed, the iteration and the chunk index, so the result does not
+ * depend on the number of threads.  The toll of a route is the sum of the tolls of its links at {@link #DECISION_TIME}, looked up once
+ * per route and iteration.  A route is only rewritten if the choice differs from the current route.
+ *
+ * @author dgrether
+ */
+final class TollBehaviour implements BeforeMobsimListener {
+
+	static final double LOGIT_SCALE = 2.0;
+	static final double MAX_VALUE_OF_TIME = 10.0;
+	static final int CHUNK_SIZE = 4096;
+	/**
+	 * time for which the tolls are looked up; the pricing experiments toll the evening peak
+	 */
+	static final double DECISION_TIME = 18.0 * 3600.0;
+
+	private static final int NO_ROUTE = -1;
+
+	private final Id<Link> startLinkId;
+	private final Id<Link> endLinkId;
+	private final List<List<Id<Link>>> routeLinkIds;
+	private final double[] predictedTravelTimes;
+	private final long seed;
+	private final int nThreads;
+
+	/**
+	 * route index by link index of the first link of the route
+	 */
+	private int[] routeOfFirstLink = new int[0];
+	/**
+	 * the persons of the current iteration, sorted by id
+	 */
+	private Person[] persons = new Person[0];
+
+	/**
+	 * @param routeLinkIds link ids of the alternatives without start and end link; the first links must differ
+	 * @param predictedTravelTimes in sec, one per alternative
+	 */
+	TollBehaviour(Id<Link> startLinkId, Id<Link> endLinkId, List<List<Id<Link>>> routeLinkIds, double[] predictedTravelTimes, long seed,
+			int nThreads) {
+		if (routeLinkIds.size() != predictedTravelTimes.length) {
+			throw new IllegalArgumentException(routeLinkIds.size() + " routes, but " + predictedTravelTimes.length + " predicted travel times");
+		}
+		this.startLinkId = startLinkId;
+		this.endLinkId = endLinkId;
+		this.predictedTravelTimes = predictedTravelTimes.clone();
+		this.seed = seed;
+		this.nThreads = Math.max(1, nThreads);
+		this.routeLinkIds = new ArrayList<>();
+		for (int r = 0; r < routeLinkIds.size(); r++) {
+			List<Id<Link>> linkIds = routeLinkIds.get(r);
+			this.routeLinkIds.add(Collections.unmodifiableList(new ArrayList<>(linkIds)));
+			final int firstLinkIndex = linkIds.get(0).index();
+			if (firstLinkIndex >= this.routeOfFirstLink.length) {
+				final int oldLength = this.routeOfFirstLink.length;
+				this.routeOfFirstLink = Arrays.copyOf(this.routeOfFirstLink, firstLinkIndex + 1);
+				Arrays.fill(this.routeOfFirstLink, oldLength, this.routeOfFirstLink.length, NO_ROUTE);
+			}
+			if (this.routeOfFirstLink[firstLinkIndex] != NO_ROUTE) {
+				throw new IllegalArgumentException("routes " + this.routeOfFirstLink[firstLinkIndex] + " and " + r + " both start with link "
+						+ linkIds.get(0));
+			}
+			this.routeOfFirstLink[firstLinkIndex] = r;
+		}
+	}
+
+	/**
+	 * The two routes 2-4 and 3-5 between links 1 and 6 of the exercise network, with the predicted travel times from the config.
+	 */
+	static TollBehaviour createForTwoRoutes(TelematicsConfigGroup telematicsConfigGroup, long seed, int nThreads) {
+		List<List<Id<Link>>> routes = new ArrayList<>();
+		routes.add(Arrays.asList(Id.create("2", Link.class), Id.create("4", Link.class)));
+		routes.add(Arrays.asList(Id.create("3", Link.class), Id.create("5", Link.class)));
+		double[] predictions = { telematicsConfigGroup.getPredictedTravelTimeRoute1(), telematicsConfigGroup.getPredictedTravelTimeRoute2() };
+		return new TollBehaviour(Id.create("1", Link.class), Id.create("6", Link.class), routes, predictions, seed, nThreads);
+	}
+
+	private double getToll(RoadPricingScheme scheme, int route, double time) {
+		double toll = 0.;
+		for (Id<Link> linkId : this.routeLinkIds.get(route)) {
+			Cost cost = scheme.getLinkCostInfo(linkId, time, null, null);
+			if (cost != null) {
+				toll += cost.amount;
+			}
+		}
+		return toll;
+	}
+
+	@Override
+	public void notifyBeforeMobsim(BeforeMobsimEvent event) {
+		RoadPricingScheme roadPricingScheme = (RoadPricingScheme) event.getServices().getScenario().getScenarioElement(RoadPricingScheme.ELEMENT_NAME);
+		final int nRoutes = this.routeLinkIds.size();
+		final double[] tolls = new double[nRoutes];
+		for (int r = 0; r < nRoutes; r++) {
+			tolls[r] = getToll(roadPricingScheme, r, DECISION_TIME);
+		}
+
+		// every iteration, since the population may have changed; sorted, so that every person is always in the same chunk:
+		this.persons = event.getServices().getScenario().getPopulation().getPersons().values().toArray(new Person[0]);
+		Arrays.sort(this.persons, (p1, p2) -> p1.getId().compareTo(p2.getId()));
+		final int nChunks = (this.persons.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		final int iteration = event.getIteration();
+		List<Callable<Void>> tasks = new ArrayList<>(nChunks);
+		for (int c = 0; c < nChunks; c++) {
+			final int chunk = c;
+			tasks.add(() -> {
+				chooseRoutes(chunk, iteration, tolls);
+				return null;
+			});
+		}
+		if (this.nThreads == 1) {
+			for (Callable<Void> task : tasks) {
+				try {
+					task.call();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+			return;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(this.nThreads);
+		try {
+			for (Future<Void> future : pool.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private void chooseRoutes(int chunk, int iteration, double[] tolls) {
+		SplittableRandom random = new SplittableRandom(this.seed ^ (iteration * 0x9E3779B97F4A7C15L) ^ (chunk * 0xC2B2AE3D27D4EB4FL));
+		final int from = chunk * CHUNK_SIZE;
+		final int to = Math.min(from + CHUNK_SIZE, this.persons.length);
+		final int nRoutes = tolls.length;
+		// utilities of all persons of the chunk, route by route, so that the inner loops are simple array loops:
+		final double[] vot = new double[to - from];
+		final double[] weights = new double[(to - from) * nRoutes];
+		for (int i = 0; i < vot.length; i++) {
+			vot[i] = random.nextDouble() * MAX_VALUE_OF_TIME;
+		}
+		for (int r = 0; r < nRoutes; r++) {
+			final double tt = this.predictedTravelTimes[r] / 3600.0;
+			final double toll = tolls[r];
+			for (int i = 0; i < vot.length; i++) {
+				weights[i * nRoutes + r] = LOGIT_SCALE * (-vot[i] * tt - toll);
+			}
+		}
+		for (int i = 0; i < vot.length; i++) {
+			final int offset = i * nRoutes;
+			// subtract the maximum so that exp does not underflow for all routes:
+			double max = Double.NEGATIVE_INFINITY;
+			for (int r = 0; r < nRoutes; r++) {
+				max = Math.max(max, weights[offset + r]);
+			}
+			double sum = 0.;
+			for (int r = 0; r < nRoutes; r++) {
+				weights[offset + r] = Math.exp(weights[offset + r] - max);
+				sum += weights[offset + r];
+			}
+			double draw = random.nextDouble() * sum;
+			int choice = nRoutes - 1;
+			for (int r = 0; r < nRoutes - 1; r++) {
+				draw -= weights[offset + r];
+				if (draw < 0.) {
+					choice = r;
+					break;
+				}
+			}
+			setRoute(this.persons[from + i], choice);
+		}
+	}
+
+	private void setRoute(Person person, int choice) {
+		Leg leg = (Leg) person.getPlans().get(0).getPlanElements().get(1);
+		NetworkRoute route = (NetworkRoute) leg.getRoute();
+		List<Id<Link>> linkIds = route.getLinkIds();
+		final int firstLinkIndex = linkIds.isEmpty() ? Integer.MAX_VALUE : linkIds.get(0).index();
+		final int current = firstLinkIndex < this.routeOfFirstLink.length ? this.routeOfFirstLink[firstLinkIndex] : NO_ROUTE;
+		if (current != choice) {
+			route.setLinkIds(this.startLinkId, this.routeLinkIds.get(choice), this.endLinkId);
+		}
+	}
+
+}
@@ -20,12 +20,10 @@
 package playground.vsptelematics.ub6;
 
 import org.apache.log4j.Logger;
-import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
-import org.matsim.api.core.v01.population.Route;
 import org.matsim.core.config.Config;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.listener.IterationEndsListener;
@@ -52,21 +50,15 @@ public class Scorer implements IterationEndsListener {
 	public void notifyIterationEnds(IterationEndsEvent event) {
 		double alpha = config.planCalcScore().getLearningRate();
 		for (Person person : population.getPersons().values()){
+			// the executed plan was on the route the observer saw the person on, only the other plans need to look at their links:
+			final int executedRoute = observer.getRouteOfPerson(person.getId());
 			for(Plan plan : person.getPlans()) {
-				double tt = 0;
-				Leg leg = (Leg) plan.getPlanElements().get(1);
-				Route route = leg.getRoute();
-				for (Id id : ((NetworkRoute) route).getLinkIds()) {
-					if (id.toString().equals("4")) {
-
-						tt = observer.avr_route1TTs;
-						break;
-					}
-					else if (id.toString().equals("5")) {
-						tt = observer.avr_route2TTs;
-						break;
-					}
+				int r = executedRoute;
+				if (r == RouteTTObserver.NO_ROUTE || plan != person.getSelectedPlan()) {
+					Leg leg = (Leg) plan.getPlanElements().get(1);
+					r = observer.getRoute((NetworkRoute) leg.getRoute());
 				}
+				double tt = r == RouteTTObserver.NO_ROUTE ? 0 : observer.getAverageTravelTime(r);
 				double score = --tt / 3600.0;
 //				log.error("score is : " + score);
 				Double oldScore = plan.getScore();
@@ -18,18 +18,24 @@
  * *********************************************************************** */
 package playground.vsptelematics.utils;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.internal.MatsimReader;
-import org.matsim.core.utils.io.tabularFileParser.TabularFileHandler;
-import org.matsim.core.utils.io.tabularFileParser.TabularFileParser;
-import org.matsim.core.utils.io.tabularFileParser.TabularFileParserConfig;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfoFactory;
 import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
@@ -37,101 +43,363 @@ import org.matsim.vis.snapshotwriters.SnapshotWriter;
 import org.matsim.vis.snapshotwriters.TransimsSnapshotWriter.Labels;
 
 /**
+ * Converts a TRANSIMS vehicle trajectory file (one header line with {@link Labels} names, then one row per vehicle and time step) into
+ * snapshots for the registered {@link SnapshotWriter}s, e.g. an OTFVis mvi writer.
+ * <p>
+ * The file is read through memory mapped windows of {@link #WINDOW_SIZE} bytes (by default) and tokenized in place; the column indices are resolved
+ * once from the header, numbers are parsed from the bytes directly.  Rows must be sorted by time.  Of every snapshot period, the first
+ * time step in the file is written as the snapshot at the beginning of the period; so only the positions of one time step are kept.
+ *
  * @author nagel
  *
  */
 public class TransimsTVeh2OTFVisMvi implements MatsimReader {
+	private static final Logger log = Logger.getLogger( TransimsTVeh2OTFVisMvi.class ) ;
+
+	static final int WINDOW_SIZE = 64 * 1024 * 1024 ;
+	private static final int NO_COLUMN = -1 ;
+	private static final long PROGRESS_ROWS = 10 * 1000 * 1000 ;
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15,
+			1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 } ;
+
 	private double skipUntil = 0.0;
 	private final List<SnapshotWriter> snapshotWriters = new ArrayList<>();
 	private double snapshotPeriod = 1 ;
-	private int lastSnapshotIndex = -1 ;
-	Collection<AgentSnapshotInfo> positions = new ArrayList<>();
-	
+	private byte separator = '\t' ;
+	private final int windowSize ;
+
+	private final List<AgentSnapshotInfo> positions = new ArrayList<>();
+	private final AgentSnapshotInfoFactory factory = new AgentSnapshotInfoFactory( new SnapshotLinkWidthCalculator() ) ;
+
+	// state of the current file:
+	private int timeColumn, vehicleColumn, eastingColumn, northingColumn, velocityColumn, elevationColumn, azimuthColumn ;
+	private int nColumns ;
+	private int[] fieldStart = new int[16] ;
+	private int[] fieldEnd = new int[16] ;
+	private boolean headerRead ;
+	private int lastSnapshotIndex ;
+	private double collectedTime ;
+	private long nRows ;
+	/**
+	 * agent ids of numeric vehicle ids, by vehicle number; a map, since the numbers need not be dense
+	 */
+	private final Map<Integer, Id<Person>> agentIdOfNumber = new HashMap<>() ;
+
 	public TransimsTVeh2OTFVisMvi() {
-		throw new RuntimeException("this class seems to have all the necessary mechanics.  But I never tested it since I eventually "
-				+ "moved on to a different track. kai, may'15") ;
+		this( 1., WINDOW_SIZE ) ;
+	}
+
+	public TransimsTVeh2OTFVisMvi( double snapshotPeriod ) {
+		this( snapshotPeriod, WINDOW_SIZE ) ;
+	}
+
+	/**
+	 * @param windowSize bytes per memory mapped window; small windows are for testing lines across window boundaries
+	 */
+	TransimsTVeh2OTFVisMvi( double snapshotPeriod, int windowSize ) {
+		this.setSnapshotPeriod( snapshotPeriod ) ;
+		this.windowSize = windowSize ;
 	}
 
 	@Override
 	public void readFile(String filename) {
+		this.headerRead = false ;
+		this.lastSnapshotIndex = -1 ;
+		this.collectedTime = Double.NaN ;
+		this.nRows = 0 ;
+		this.positions.clear() ;
+		final long start = System.nanoTime() ;
 
-		TabularFileParser reader = new TabularFileParser() ;
-		// ---
-		TabularFileParserConfig config = new TabularFileParserConfig() ;
-		config.setFileName( filename );
-		// ---
-		TabularFileHandler handler = new TabularFileHandler(){
-			List<Labels> labels = new ArrayList<>() ;
-			SnapshotLinkWidthCalculator widthCalculator = new SnapshotLinkWidthCalculator() ;
-			AgentSnapshotInfoFactory factory = new AgentSnapshotInfoFactory(widthCalculator) ;
-			@Override
-			public void startRow(String[] row) {
-				List<String> strs = Arrays.asList( row ) ;
-				
-				if ( row[0].matches("[a-zA-Z]") ) {
-					for ( String str : strs ) {
-						labels.add( Labels.valueOf( str ) ) ;
-					}
-				} else {
-					double time = Double.parseDouble( strs.get( labels.indexOf( Labels.TIME ) ) ) ;
-					testForAndPossiblyDoSnapshot(time);
-					
-					double easting = Double.parseDouble( strs.get( labels.indexOf( Labels.EASTING ) ) ) ;
-					double northing = Double.parseDouble( strs.get( labels.indexOf( Labels.NORTHING ) ) ) ;
-					double velocity = Double.parseDouble( strs.get( labels.indexOf( Labels.VELOCITY ) ) ) ;
-					Id<Person> agentId = Id.create( strs.get( labels.indexOf( Labels.VEHICLE) ), Person.class ) ;
-					double elevation = 0. ;
-					double azimuth = 0. ;
-					
-
-					AgentSnapshotInfo snapshotInfo = factory.createAgentSnapshotInfo(agentId, easting, northing, elevation, azimuth) ;
-					snapshotInfo.setColorValueBetweenZeroAndOne( velocity / (100./3.6) ); // assuming max_speed = 100km/h
-					
-					positions.add( snapshotInfo ) ;
-					
-					throw new RuntimeException("not implemented") ;
+		try ( FileChannel channel = FileChannel.open( Paths.get( filename ), StandardOpenOption.READ ) ) {
+			final long size = channel.size() ;
+			long windowStart = 0 ;
+			while ( windowStart < size ) {
+				final int windowLength = (int) Math.min( this.windowSize, size - windowStart ) ;
+				final boolean lastWindow = windowStart + windowLength == size ;
+				MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, windowStart, windowLength ) ;
+				int consumed = parseLines( buffer, windowLength, lastWindow ) ;
+				if ( consumed == 0 ) {
+					throw new RuntimeException( "line at byte " + windowStart + " is longer than " + this.windowSize + " bytes" ) ;
 				}
+				windowStart += consumed ;
 			}
-		} ;
-		// ---
-		reader.parse(config, handler);
-		
+		} catch ( IOException e ) {
+			throw new UncheckedIOException( e ) ;
+		}
+		// the last time step:
+		if ( !this.positions.isEmpty() ) {
+			doSnapshot( this.lastSnapshotIndex * this.snapshotPeriod ) ;
+		}
+
+		final double seconds = Math.max( 1e-9, (System.nanoTime() - start) / 1e9 ) ;
+		log.info( "read " + this.nRows + " rows in " + seconds + " s, i.e. " + (long) (this.nRows / seconds) + " rows per second" ) ;
 	}
 
-	@Override
-	public void readURL( URL url ){
-		throw new RuntimeException( "not implemented" );
+	/**
+	 * @return the number of bytes of complete lines in the buffer; the incomplete last line is read again with the next window unless
+	 * this is the last window
+	 */
+	private int parseLines( MappedByteBuffer buffer, int length, boolean lastWindow ) {
+		int lineStart = 0 ;
+		int nFields = 0 ;
+		int fieldBegin = 0 ;
+		for ( int i = 0 ; i < length ; i++ ) {
+			final byte b = buffer.get( i ) ;
+			if ( b == this.separator ) {
+				nFields = addField( nFields, fieldBegin, i ) ;
+				fieldBegin = i + 1 ;
+			} else if ( b == '\n' ) {
+				nFields = addField( nFields, fieldBegin, i ) ;
+				handleLine( buffer, nFields ) ;
+				nFields = 0 ;
+				lineStart = i + 1 ;
+				fieldBegin = lineStart ;
+			}
+		}
+		if ( lastWindow && lineStart < length ) {
+			nFields = addField( nFields, fieldBegin, length ) ;
+			handleLine( buffer, nFields ) ;
+			return length ;
+		}
+		return lineStart ;
+	}
+
+	private int addField( int nFields, int begin, int end ) {
+		if ( nFields == this.fieldStart.length ) {
+			this.fieldStart = Arrays.copyOf( this.fieldStart, 2 * nFields ) ;
+			this.fieldEnd = Arrays.copyOf( this.fieldEnd, 2 * nFields ) ;
+		}
+		this.fieldStart[nFields] = begin ;
+		this.fieldEnd[nFields] = end ;
+		return nFields + 1 ;
 	}
 
-	private void testForAndPossiblyDoSnapshot(final double time) {
-		int snapshotIndex = (int) (time / this.snapshotPeriod);
-		if (this.lastSnapshotIndex == -1) {
-			this.lastSnapshotIndex = snapshotIndex;
+	private void handleLine( MappedByteBuffer buffer, int nFields ) {
+		// windows line ends:
+		if ( nFields > 0 && this.fieldEnd[nFields - 1] > this.fieldStart[nFields - 1] && buffer.get( this.fieldEnd[nFields - 1] - 1 ) == '\r' ) {
+			this.fieldEnd[nFields - 1]-- ;
 		}
-		while (snapshotIndex > this.lastSnapshotIndex) {
-			this.lastSnapshotIndex++;
-			double snapshotTime = this.lastSnapshotIndex * this.snapshotPeriod;
-			doSnapshot(snapshotTime);
+		if ( nFields == 1 && this.fieldEnd[0] == this.fieldStart[0] ) {
+			return ; // empty line
 		}
+		if ( !this.headerRead ) {
+			readHeader( buffer, nFields ) ;
+			return ;
+		}
+		if ( nFields < this.nColumns ) {
+			throw new RuntimeException( "row " + this.nRows + " has " + nFields + " columns, the header has " + this.nColumns ) ;
+		}
+		this.nRows++ ;
+		if ( this.nRows % PROGRESS_ROWS == 0 ) {
+			log.info( "row " + this.nRows ) ;
+		}
+
+		final double time = parseDouble( buffer, this.timeColumn ) ;
+		if ( time != this.collectedTime ) {
+			if ( !this.positions.isEmpty() ) {
+				doSnapshot( this.lastSnapshotIndex * this.snapshotPeriod ) ;
+			}
+			final int snapshotIndex = (int) (time / this.snapshotPeriod) ;
+			if ( snapshotIndex == this.lastSnapshotIndex ) {
+				return ; // not the first time step of the period
+			}
+			this.lastSnapshotIndex = snapshotIndex ;
+			this.collectedTime = time ;
+		}
+		if ( time < this.skipUntil ) {
+			return ;
+		}
+
+		final double easting = parseDouble( buffer, this.eastingColumn ) ;
+		final double northing = parseDouble( buffer, this.northingColumn ) ;
+		final double velocity = parseDouble( buffer, this.velocityColumn ) ;
+		final double elevation = this.elevationColumn == NO_COLUMN ? 0. : parseDouble( buffer, this.elevationColumn ) ;
+		final double azimuth = this.azimuthColumn == NO_COLUMN ? 0. : parseDouble( buffer, this.azimuthColumn ) ;
+		Id<Person> agentId = getAgentId( buffer ) ;
+
+		AgentSnapshotInfo snapshotInfo = this.factory.createAgentSnapshotInfo( agentId, easting, northing, elevation, azimuth ) ;
+		snapshotInfo.setColorValueBetweenZeroAndOne( velocity / (100./3.6) ); // assuming max_speed = 100km/h
+		this.positions.add( snapshotInfo ) ;
 	}
 
+	private void readHeader( MappedByteBuffer buffer, int nFields ) {
+		this.timeColumn = this.vehicleColumn = this.eastingColumn = this.northingColumn = this.velocityColumn = NO_COLUMN ;
+		this.elevationColumn = this.azimuthColumn = NO_COLUMN ;
+		for ( int c = 0 ; c < nFields ; c++ ) {
+			String label = decode( buffer, c ).trim() ;
+			if ( label.equals( Labels.TIME.name() ) ) {
+				this.timeColumn = c ;
+			} else if ( label.equals( Labels.VEHICLE.name() ) ) {
+				this.vehicleColumn = c ;
+			} else if ( label.equals( Labels.EASTING.name() ) ) {
+				this.eastingColumn = c ;
+			} else if ( label.equals( Labels.NORTHING.name() ) ) {
+				this.northingColumn = c ;
+			} else if ( label.equals( Labels.VELOCITY.name() ) ) {
+				this.velocityColumn = c ;
+			} else if ( label.equals( Labels.ELEVATION.name() ) ) {
+				this.elevationColumn = c ;
+			} else if ( label.equals( Labels.AZIMUTH.name() ) ) {
+				this.azimuthColumn = c ;
+			}
+		}
+		if ( this.timeColumn == NO_COLUMN || this.vehicleColumn == NO_COLUMN || this.eastingColumn == NO_COLUMN
+				|| this.northingColumn == NO_COLUMN || this.velocityColumn == NO_COLUMN ) {
+			throw new RuntimeException( "header needs the columns " + Labels.TIME + ", " + Labels.VEHICLE + ", " + Labels.EASTING + ", "
+					+ Labels.NORTHING + " and " + Labels.VELOCITY + ", but is: " + decodeLine( buffer, nFields ) ) ;
+		}
+		this.nColumns = nFields ;
+		this.headerRead = true ;
+	}
+
+	private Id<Person> getAgentId( MappedByteBuffer buffer ) {
+		final int begin = this.fieldStart[this.vehicleColumn] ;
+		final int end = this.fieldEnd[this.vehicleColumn] ;
+		int number = 0 ;
+		// (no leading zeros, so that different ids never get the same number)
+		boolean numeric = end > begin && end - begin < 10 && ( end - begin == 1 || buffer.get( begin ) != '0' ) ;
+		for ( int i = begin ; numeric && i < end ; i++ ) {
+			final byte b = buffer.get( i ) ;
+			numeric = b >= '0' && b <= '9' ;
+			number = 10 * number + (b - '0') ;
+		}
+		if ( !numeric ) {
+			return Id.create( decode( buffer, this.vehicleColumn ), Person.class ) ;
+		}
+		Id<Person> agentId = this.agentIdOfNumber.get( number ) ;
+		if ( agentId == null ) {
+			agentId = Id.create( decode( buffer, this.vehicleColumn ), Person.class ) ;
+			this.agentIdOfNumber.put( number, agentId ) ;
+		}
+		return agentId ;
+	}
+
+	/**
+	 * Parses plain decimal numbers like <tt>-12.5</tt> or <tt>1.25e3</tt> without creating a String; anything else goes through
+	 * {@link Double#parseDouble(String)}.
+	 */
+	private double parseDouble( MappedByteBuffer buffer, int column ) {
+		int i = this.fieldStart[column] ;
+		int end = this.fieldEnd[column] ;
+		while ( i < end && buffer.get( i ) == ' ' ) {
+			i++ ;
+		}
+		while ( end > i && buffer.get( end - 1 ) == ' ' ) {
+			end-- ;
+		}
+		boolean negative = false ;
+		if ( i < end && (buffer.get( i ) == '-' || buffer.get( i ) == '+') ) {
+			negative = buffer.get( i ) == '-' ;
+			i++ ;
+		}
+		long mantissa = 0 ;
+		int nDigits = 0 ;
+		int decimals = 0 ;
+		boolean fraction = false ;
+		int exponent = 0 ;
+		for ( ; i < end ; i++ ) {
+			final byte b = buffer.get( i ) ;
+			if ( b >= '0' && b <= '9' ) {
+				mantissa = 10 * mantissa + (b - '0') ;
+				nDigits++ ;
+				if ( fraction ) {
+					decimals++ ;
+				}
+			} else if ( b == '.' && !fraction ) {
+				fraction = true ;
+			} else if ( (b == 'e' || b == 'E') && nDigits > 0 ) {
+				boolean negativeExponent = false ;
+				i++ ;
+				if ( i < end && (buffer.get( i ) == '-' || buffer.get( i ) == '+') ) {
+					negativeExponent = buffer.get( i ) == '-' ;
+					i++ ;
+				}
+				if ( i == end ) {
+					return Double.parseDouble( decode( buffer, column ) ) ;
+				}
+				for ( ; i < end ; i++ ) {
+					final byte e = buffer.get( i ) ;
+					if ( e < '0' || e > '9' || exponent > 1000 ) {
+						return Double.parseDouble( decode( buffer, column ) ) ;
+					}
+					exponent = 10 * exponent + (e - '0') ;
+				}
+				if ( negativeExponent ) {
+					exponent = -exponent ;
+				}
+			} else {
+				return Double.parseDouble( decode( buffer, column ) ) ;
+			}
+		}
+		if ( nDigits == 0 || nDigits > 18 ) {
+			return Double.parseDouble( decode( buffer, column ) ) ;
+		}
+		final int scale = exponent - decimals ;
+		double value ;
+		if ( scale == 0 ) {
+			value = mantissa ;
+		} else if ( scale > 0 && scale < POWERS_OF_TEN.length ) {
+			value = mantissa * POWERS_OF_TEN[scale] ;
+		} else if ( scale < 0 && -scale < POWERS_OF_TEN.length ) {
+			value = mantissa / POWERS_OF_TEN[-scale] ;
+		} else {
+			return Double.parseDouble( decode( buffer, column ) ) ;
+		}
+		return negative ? -value : value ;
+	}
+
+	private String decode( MappedByteBuffer buffer, int column ) {
+		final int begin = this.fieldStart[column] ;
+		byte[] bytes = new byte[this.fieldEnd[column] - begin] ;
+		for ( int i = 0 ; i < bytes.length ; i++ ) {
+			bytes[i] = buffer.get( begin + i ) ;
+		}
+		return new String( bytes, StandardCharsets.UTF_8 ) ;
+	}
+
+	private String decodeLine( MappedByteBuffer buffer, int nFields ) {
+		StringBuilder line = new StringBuilder() ;
+		for ( int c = 0 ; c < nFields ; c++ ) {
+			line.append( c == 0 ? "" : " " ).append( decode( buffer, c ) ) ;
+		}
+		return line.toString() ;
+	}
+
+	@Override
+	public void readURL( URL url ){
+		throw new RuntimeException( "not implemented; the file is memory mapped, use readFile(...)" );
+	}
 
-	
 	private void doSnapshot(final double time) {
 		if (time >= skipUntil) {
-			if (!this.snapshotWriters.isEmpty()) {
-				for (SnapshotWriter writer : this.snapshotWriters) {
-					writer.beginSnapshot(time);
-					for (AgentSnapshotInfo position : positions) {
-						writer.addAgent(position);
-					}
-					writer.endSnapshot();
+			for (SnapshotWriter writer : this.snapshotWriters) {
+				writer.beginSnapshot(time);
+				for (AgentSnapshotInfo position : positions) {
+					writer.addAgent(position);
 				}
+				writer.endSnapshot();
 			}
-			positions.clear(); 
 		}
+		positions.clear();
+	}
+
+
+	/**
+	 * @param snapshotPeriod in seconds; of every period, the first time step in the file is written
+	 */
+	public final void setSnapshotPeriod( final double snapshotPeriod ) {
+		if ( snapshotPeriod <= 0. ) {
+			throw new IllegalArgumentException( "snapshot period must be positive, but is " + snapshotPeriod ) ;
+		}
+		this.snapshotPeriod = snapshotPeriod ;
+	}
+
+	/**
+	 * @param separator column separator of the file, a tab by default
+	 */
+	public final void setSeparator( final char separator ) {
+		this.separator = (byte) separator ;
 	}
-	
 
 	/**
 	 *
@@ -0,0 +1,122 @@
+/* *********************************************************************** *
+ * project: org.matsim.*												   *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfoFactory;
+import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
+
+/**
+ * Checks that the cell arrays of {@link KNCAArrayLane} and its vehicle side table stay consistent.
+ */
+public class KNCAArrayLaneTest {
+
+	private static final int N_CELLS = 200 ;
+
+	@Test
+	public void testVehiclesAreConservedOnTheRing() {
+		Link link = createLink() ;
+		KNCAArrayLane lane = new KNCAArrayLane( link, 0.3, new AgentSnapshotInfoFactory( new SnapshotLinkWidthCalculator() ), new SplittableRandom( 4711 ) ) ;
+		Assert.assertEquals( N_CELLS, lane.getNumberOfCells() );
+
+		Set<Id<Person>> initialDrivers = collectDrivers( lane ) ;
+		Assert.assertEquals( lane.getAllVehicles().size(), initialDrivers.size() );
+		Assert.assertTrue( "density 0.3 should place vehicles", initialDrivers.size() > 0 );
+
+		for ( int step=0 ; step<1000 ; step++ ) {
+			lane.doSimStep() ;
+		}
+
+		// every cell points to a distinct vehicle, and every vehicle is still in exactly one cell:
+		Assert.assertEquals( initialDrivers, collectDrivers( lane ) );
+		for ( MobsimVehicle veh : lane.getAllVehicles() ) {
+			Assert.assertSame( veh, lane.getVehicle( veh.getId() ) );
+			Assert.assertTrue( initialDrivers.contains( veh.getDriver().getId() ) );
+		}
+	}
+
+	@Test
+	public void testSameRandomStreamGivesSameTrajectory() {
+		Link link = createLink() ;
+		KNCAArrayLane lane1 = new KNCAArrayLane( link, 0.3, null, KNCALink.createLinkRandom( 4711, link.getId(), 3 ) ) ;
+		KNCAArrayLane lane2 = new KNCAArrayLane( link, 0.3, null, KNCALink.createLinkRandom( 4711, link.getId(), 3 ) ) ;
+		for ( int step=0 ; step<500 ; step++ ) {
+			lane1.doSimStep() ;
+			lane2.doSimStep() ;
+			Assert.assertEquals( "step " + step, lane1.stateChecksum(), lane2.stateChecksum() );
+		}
+	}
+
+	@Test
+	public void testClearVehicles() {
+		Link link = createLink() ;
+		KNCAArrayLane lane = new KNCAArrayLane( link, 0.3, new AgentSnapshotInfoFactory( new SnapshotLinkWidthCalculator() ), new SplittableRandom( 4711 ) ) ;
+		Id<Vehicle> someVehicle = lane.getAllVehicles().iterator().next().getId() ;
+
+		lane.clearVehicles();
+
+		Assert.assertTrue( lane.getAllVehicles().isEmpty() );
+		Assert.assertNull( lane.getVehicle( someVehicle ) );
+		Assert.assertTrue( collectDrivers( lane ).isEmpty() );
+		lane.doSimStep() ;
+		Assert.assertTrue( collectDrivers( lane ).isEmpty() );
+	}
+
+	private static Set<Id<Person>> collectDrivers( KNCAArrayLane lane ) {
+		List<AgentSnapshotInfo> positions = new ArrayList<>() ;
+		lane.getVisData().addAgentSnapshotInfo( positions, 0. ) ;
+		Set<Id<Person>> drivers = new HashSet<>() ;
+		for ( AgentSnapshotInfo info : positions ) {
+			Assert.assertTrue( "vehicle of " + info.getId() + " is in more than one cell", drivers.add( info.getId() ) );
+		}
+		return drivers ;
+	}
+
+	private static Link createLink() {
+		Network net = NetworkUtils.createNetwork() ;
+		NetworkFactory nf = net.getFactory() ;
+		Node node1 = nf.createNode( Id.createNodeId( 1 ), new Coord( 0., 0. ) ) ;
+		Node node2 = nf.createNode( Id.createNodeId( 2 ), new Coord( N_CELLS*KNCAArrayLane.CELL_LENGTH, 0. ) ) ;
+		net.addNode( node1 );
+		net.addNode( node2 );
+		Link link = nf.createLink( Id.createLinkId( "1-2" ), node1, node2 ) ;
+		link.setLength( N_CELLS*KNCAArrayLane.CELL_LENGTH );
+		net.addLink( link );
+		return link ;
+	}
+
+}
@@ -0,0 +1,146 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MonitoredLinksVehicleIndexTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package playground.vsptelematics.bangbang;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class MonitoredLinksVehicleIndexTest {
+
+	private final Id<Link> linkA = Id.createLinkId( "indexTestA" ) ;
+	private final Id<Link> linkB = Id.createLinkId( "indexTestB" ) ;
+	private final Id<Link> linkC = Id.createLinkId( "indexTestC" ) ;
+
+	private MonitoredLinksVehicleIndex index ;
+
+	@Before
+	public void setUp() {
+		Network network = NetworkUtils.createNetwork() ;
+		NetworkFactory nf = network.getFactory() ;
+		Node[] nodes = new Node[4] ;
+		for ( int ii=0 ; ii<nodes.length ; ii++ ) {
+			nodes[ii] = nf.createNode( Id.createNodeId( "indexTest" + ii ), new Coord( 100.*ii, 0. ) ) ;
+			network.addNode( nodes[ii] );
+		}
+		network.addLink( nf.createLink( linkA, nodes[0], nodes[1] ) );
+		network.addLink( nf.createLink( linkB, nodes[1], nodes[2] ) );
+		network.addLink( nf.createLink( linkC, nodes[2], nodes[3] ) );
+		index = new MonitoredLinksVehicleIndex( network, Arrays.asList( linkB, linkC ) ) ;
+	}
+
+	@Test
+	public void testVehiclesFollowTheEvents() {
+		Assert.assertEquals( 2, index.getNumberOfMonitoredLinks() );
+		Id<Vehicle> v1 = Id.createVehicleId( "indexTest1" ) ;
+		Id<Vehicle> v2 = Id.createVehicleId( "indexTest2" ) ;
+		Id<Vehicle> v3 = Id.createVehicleId( "indexTest3" ) ;
+
+		// v1 departs on an unmonitored link and drives onto b:
+		enterTraffic( v1, linkA ) ;
+		assertVehicles( 0 );
+		assertVehicles( 1 );
+		index.handleEvent( new LinkLeaveEvent( 1., v1, linkA ) );
+		index.handleEvent( new LinkEnterEvent( 1., v1, linkB ) );
+		assertVehicles( 0, v1 );
+
+		// v2 and v3 depart on b:
+		enterTraffic( v2, linkB ) ;
+		enterTraffic( v3, linkB ) ;
+		assertVehicles( 0, v1, v2, v3 );
+
+		// v1 moves on to c; swap-remove must not lose v2 or v3:
+		index.handleEvent( new LinkLeaveEvent( 3., v1, linkB ) );
+		index.handleEvent( new LinkEnterEvent( 3., v1, linkC ) );
+		assertVehicles( 0, v2, v3 );
+		assertVehicles( 1, v1 );
+
+		// v3 arrives on b:
+		index.handleEvent( new VehicleLeavesTrafficEvent( 4., Id.createPersonId( v3.toString() ), linkB, v3, TransportMode.car, 1. ) );
+		assertVehicles( 0, v2 );
+		assertVehicles( 1, v1 );
+
+		index.reset( 1 );
+		assertVehicles( 0 );
+		assertVehicles( 1 );
+	}
+
+	@Test
+	public void testManyVehiclesOnOneLink() {
+		Set<Id<Vehicle>> expected = new HashSet<>() ;
+		for ( int ii=0 ; ii<100 ; ii++ ) {
+			Id<Vehicle> vehicleId = Id.createVehicleId( "indexTestMany" + ii ) ;
+			enterTraffic( vehicleId, linkB ) ;
+			expected.add( vehicleId ) ;
+		}
+		// remove every third vehicle:
+		for ( int ii=0 ; ii<100 ; ii+=3 ) {
+			Id<Vehicle> vehicleId = Id.createVehicleId( "indexTestMany" + ii ) ;
+			index.handleEvent( new LinkLeaveEvent( 5., vehicleId, linkB ) );
+			expected.remove( vehicleId ) ;
+		}
+		Assert.assertEquals( expected, vehiclesOnLink( 0 ) );
+		Assert.assertEquals( expected.size(), index.getNumberOfVehiclesOnLink( 0 ) );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownLinkIsRejected() {
+		new MonitoredLinksVehicleIndex( NetworkUtils.createNetwork(), Arrays.asList( linkB ) ) ;
+	}
+
+	private void enterTraffic( Id<Vehicle> vehicleId, Id<Link> linkId ) {
+		Id<Person> driverId = Id.createPersonId( vehicleId.toString() ) ;
+		index.handleEvent( new VehicleEntersTrafficEvent( 0., driverId, linkId, vehicleId, TransportMode.car, 1. ) );
+	}
+
+	@SafeVarargs
+	private final void assertVehicles( int slot, Id<Vehicle>... vehicleIds ) {
+		Assert.assertEquals( new HashSet<>( Arrays.asList( vehicleIds ) ), vehiclesOnLink( slot ) );
+		Assert.assertEquals( vehicleIds.length, index.getNumberOfVehiclesOnLink( slot ) );
+	}
+
+	private Set<Id<Vehicle>> vehiclesOnLink( int slot ) {
+		Set<Id<Vehicle>> vehicles = new HashSet<>() ;
+		for ( int ii=0 ; ii<index.getNumberOfVehiclesOnLink( slot ) ; ii++ ) {
+			Assert.assertTrue( vehicles.add( index.getVehicleOnLink( slot, ii ) ) );
+		}
+		return vehicles ;
+	}
+
+}
@@ -0,0 +1,170 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MyTravelTimeTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package playground.vsptelematics.bangbang;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.TravelTimeCalculator;
+import org.matsim.vehicles.Vehicle;
+
+public class MyTravelTimeTest {
+
+	private static final double BIN_SIZE = 900. ;
+	private static final double FREESPEED_TTIME = 1000. / 10. ;
+
+	private Scenario scenario ;
+	private Link link ;
+
+	@Before
+	public void setUp() {
+		Config config = ConfigUtils.createConfig() ;
+		config.travelTimeCalculator().setTraveltimeBinSize( BIN_SIZE );
+		scenario = ScenarioUtils.createScenario( config ) ;
+		Network network = scenario.getNetwork() ;
+		NetworkFactory nf = network.getFactory() ;
+		Node node1 = nf.createNode( Id.createNodeId( "ttTest1" ), new Coord( 0., 0. ) ) ;
+		Node node2 = nf.createNode( Id.createNodeId( "ttTest2" ), new Coord( 1000., 0. ) ) ;
+		network.addNode( node1 );
+		network.addNode( node2 );
+		link = nf.createLink( Id.createLinkId( "ttTest1-2" ), node1, node2 ) ;
+		link.setLength( 1000. );
+		link.setFreespeed( 10. );
+		network.addLink( link );
+	}
+
+	@Test
+	public void testAverageOfPreviousIteration() {
+		MyTravelTime travelTime = new MyTravelTime( scenario ) ;
+		traverse( travelTime, "ttTestA", 100., 160. ) ;
+		traverse( travelTime, "ttTestB", 200., 300. ) ;
+		// a vehicle that departs on the link did not traverse all of it:
+		Id<Vehicle> departing = Id.createVehicleId( "ttTestC" ) ;
+		travelTime.handleEvent( new VehicleEntersTrafficEvent( 150., Id.createPersonId( "ttTestC" ), link.getId(), departing, TransportMode.car, 1. ) );
+		travelTime.handleEvent( new LinkLeaveEvent( 900., departing, link.getId() ) );
+
+		// the current iteration is not visible before the reset:
+		Assert.assertEquals( FREESPEED_TTIME, travelTime.getLinkTravelTime( link, 100., null, null ), 1e-6 );
+
+		travelTime.reset( 1 );
+		Assert.assertEquals( 80., travelTime.getLinkTravelTime( link, 100., null, null ), 1e-4 );
+		Assert.assertEquals( 80., travelTime.getLinkTravelTime( link, BIN_SIZE - 1., null, null ), 1e-4 );
+		Assert.assertEquals( FREESPEED_TTIME, travelTime.getLinkTravelTime( link, BIN_SIZE, null, null ), 1e-6 );
+		// times after maxTime fall into the last bin:
+		Assert.assertEquals( FREESPEED_TTIME, travelTime.getLinkTravelTime( link, 100. * 3600., null, null ), 1e-6 );
+
+		// without smoothing, an iteration without data falls back to the free speed:
+		travelTime.reset( 2 );
+		Assert.assertEquals( FREESPEED_TTIME, travelTime.getLinkTravelTime( link, 100., null, null ), 1e-6 );
+	}
+
+	@Test
+	public void testSmoothing() {
+		MyTravelTime travelTime = new MyTravelTime( scenario, 0.5 ) ;
+		traverse( travelTime, "ttTestA", 100., 180. ) ;
+		travelTime.reset( 1 );
+		Assert.assertEquals( 80., travelTime.getLinkTravelTime( link, 100., null, null ), 1e-4 );
+
+		traverse( travelTime, "ttTestA", 100., 140. ) ;
+		travelTime.reset( 2 );
+		Assert.assertEquals( 0.5 * 40. + 0.5 * 80., travelTime.getLinkTravelTime( link, 100., null, null ), 1e-4 );
+
+		// iterations without data keep the smoothed value:
+		travelTime.reset( 3 );
+		Assert.assertEquals( 60., travelTime.getLinkTravelTime( link, 100., null, null ), 1e-4 );
+	}
+
+	@Test
+	public void testConsolidationAndModeFilterAsInTravelTimeCalculator() {
+		scenario.getConfig().travelTimeCalculator().setFilterModes( true );
+		scenario.getConfig().travelTimeCalculator().setAnalyzedModesAsString( TransportMode.car );
+		MyTravelTime travelTime = new MyTravelTime( scenario ) ;
+		TravelTimeCalculator calculator = new TravelTimeCalculator( scenario.getNetwork(), scenario.getConfig().travelTimeCalculator() ) ;
+		travelTime.reset( 0 );
+		calculator.reset( 0 );
+
+		// a congested car in the first bin, followed by two bins without data:
+		Id<Vehicle> car = Id.createVehicleId( "ttTestCar" ) ;
+		Id<Vehicle> bike = Id.createVehicleId( "ttTestBike" ) ;
+		VehicleEntersTrafficEvent carDeparts = new VehicleEntersTrafficEvent( 50., Id.createPersonId( "ttTestCar" ), link.getId(), car, TransportMode.car, 1. ) ;
+		LinkLeaveEvent carLeavesDepartureLink = new LinkLeaveEvent( 100., car, link.getId() ) ;
+		LinkEnterEvent carEnters = new LinkEnterEvent( 100., car, link.getId() ) ;
+		LinkLeaveEvent carLeaves = new LinkLeaveEvent( 1600., car, link.getId() ) ;
+		// a slow bike in a later bin, which is not an analyzed mode:
+		VehicleEntersTrafficEvent bikeDeparts = new VehicleEntersTrafficEvent( 3000., Id.createPersonId( "ttTestBike" ), link.getId(), bike, TransportMode.bike, 1. ) ;
+		LinkLeaveEvent bikeLeavesDepartureLink = new LinkLeaveEvent( 3100., bike, link.getId() ) ;
+		LinkEnterEvent bikeEnters = new LinkEnterEvent( 3100., bike, link.getId() ) ;
+		LinkLeaveEvent bikeLeaves = new LinkLeaveEvent( 3600., bike, link.getId() ) ;
+
+		travelTime.handleEvent( carDeparts );
+		travelTime.handleEvent( carLeavesDepartureLink );
+		travelTime.handleEvent( carEnters );
+		travelTime.handleEvent( carLeaves );
+		travelTime.handleEvent( bikeDeparts );
+		travelTime.handleEvent( bikeLeavesDepartureLink );
+		travelTime.handleEvent( bikeEnters );
+		travelTime.handleEvent( bikeLeaves );
+		calculator.handleEvent( carDeparts );
+		calculator.handleEvent( carLeavesDepartureLink );
+		calculator.handleEvent( carEnters );
+		calculator.handleEvent( carLeaves );
+		calculator.handleEvent( bikeDeparts );
+		calculator.handleEvent( bikeLeavesDepartureLink );
+		calculator.handleEvent( bikeEnters );
+		calculator.handleEvent( bikeLeaves );
+		travelTime.reset( 1 );
+
+		Assert.assertEquals( 1500., travelTime.getLinkTravelTime( link, 100., null, null ), 1e-4 );
+		Assert.assertEquals( 1500. - BIN_SIZE, travelTime.getLinkTravelTime( link, BIN_SIZE + 100., null, null ), 1e-4 );
+		Assert.assertEquals( FREESPEED_TTIME, travelTime.getLinkTravelTime( link, 2 * BIN_SIZE + 100., null, null ), 1e-6 );
+		Assert.assertEquals( FREESPEED_TTIME, travelTime.getLinkTravelTime( link, 3100., null, null ), 1e-6 );
+		for ( double time = 0. ; time < 6 * BIN_SIZE ; time += BIN_SIZE / 3. ) {
+			Assert.assertEquals( "time=" + time, calculator.getLinkTravelTimes().getLinkTravelTime( link, time, null, null ),
+					travelTime.getLinkTravelTime( link, time, null, null ), 1e-4 );
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSmoothing() {
+		new MyTravelTime( scenario, 0. ) ;
+	}
+
+	private void traverse( MyTravelTime travelTime, String vehicle, double enterTime, double leaveTime ) {
+		Id<Vehicle> vehicleId = Id.createVehicleId( vehicle ) ;
+		travelTime.handleEvent( new LinkEnterEvent( enterTime, vehicleId, link.getId() ) );
+		travelTime.handleEvent( new LinkLeaveEvent( leaveTime, vehicleId, link.getId() ) );
+	}
+
+}
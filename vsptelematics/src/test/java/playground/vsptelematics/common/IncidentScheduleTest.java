@@ -0,0 +1,104 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IncidentScheduleTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.common;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkChangeEvent;
+import org.matsim.core.network.NetworkChangeEvent.ChangeType;
+import org.matsim.core.network.NetworkUtils;
+
+public class IncidentScheduleTest {
+
+	@Test
+	public void testOverlappingIncidentsAreCombined() {
+		Network network = createNetwork();
+		Id<Link> linkId = Id.createLinkId("incTest1-2");
+		IncidentSchedule schedule = new IncidentSchedule.Builder()
+				.addIncident(3, linkId, 100., 300., 0.5)
+				.addIncident(3, linkId, 200., 400., 0.2)
+				.addIncident(3, linkId, 300., IncidentSchedule.NO_END, 0.8)
+				.build();
+		Assert.assertEquals(3, schedule.getNumberOfIncidents(3));
+		Assert.assertEquals(0, schedule.getNumberOfIncidents(2));
+		Assert.assertTrue(schedule.createNetworkChangeEvents(2, network).isEmpty());
+
+		List<NetworkChangeEvent> events = schedule.createNetworkChangeEvents(3, network);
+		// one event per distinct start or end time, with the product of the active factors (capacity 3600/h = 1/s):
+		double[] times = { 100., 200., 300., 400. };
+		double[] capacities = { 0.5, 0.5 * 0.2, 0.2 * 0.8, 0.8 };
+		Assert.assertEquals(times.length, events.size());
+		for (int i = 0; i < times.length; i++) {
+			NetworkChangeEvent event = events.get(i);
+			Assert.assertEquals(times[i], event.getStartTime(), 0.);
+			Assert.assertEquals(ChangeType.ABSOLUTE_IN_SI_UNITS, event.getFlowCapacityChange().getType());
+			Assert.assertEquals(capacities[i], event.getFlowCapacityChange().getValue(), 1e-9);
+		}
+	}
+
+	@Test
+	public void testPoissonWithLargeMean() {
+		SplittableRandom random = new SplittableRandom(4711L);
+		final double mean = 1000.;
+		final int draws = 2000;
+		double sum = 0.;
+		for (int i = 0; i < draws; i++) {
+			int n = IncidentSchedule.drawPoisson(random, mean);
+			Assert.assertTrue(n >= 0);
+			sum += n;
+		}
+		// exp(-1000) underflows; the multiplication of uniforms would return (almost) 0 here:
+		Assert.assertEquals(mean, sum / draws, 5.);
+	}
+
+	@Test
+	public void testRandomIsReproducible() {
+		Network network = createNetwork();
+		IncidentSchedule schedule1 = IncidentSchedule.createRandom(network, 42L, 0, 9, 3., 0., 3600., 60., 600., 0.1, 0.5);
+		IncidentSchedule schedule2 = IncidentSchedule.createRandom(network, 42L, 0, 9, 3., 0., 3600., 60., 600., 0.1, 0.5);
+		Assert.assertEquals(schedule1.getNumberOfIncidents(), schedule2.getNumberOfIncidents());
+		for (int it = 0; it <= 9; it++) {
+			Assert.assertEquals(schedule1.getNumberOfIncidents(it), schedule2.getNumberOfIncidents(it));
+		}
+	}
+
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory nf = network.getFactory();
+		Node node1 = nf.createNode(Id.createNodeId("incTest1"), new Coord(0., 0.));
+		Node node2 = nf.createNode(Id.createNodeId("incTest2"), new Coord(1000., 0.));
+		network.addNode(node1);
+		network.addNode(node2);
+		Link link = nf.createLink(Id.createLinkId("incTest1-2"), node1, node2);
+		link.setCapacity(3600.);
+		network.addLink(link);
+		return network;
+	}
+
+}
@@ -0,0 +1,125 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TelematicsTimeSeriesSinkTest
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+import playground.vsptelematics.common.TelematicsTimeSeriesSink.BackPressure;
+import playground.vsptelematics.common.TelematicsTimeSeriesSink.ColumnType;
+import playground.vsptelematics.common.TelematicsTimeSeriesSink.Format;
+
+public class TelematicsTimeSeriesSinkTest {
+
+	private static final String[] NAMES = { "time", "link", "tt" };
+	private static final ColumnType[] TYPES = { ColumnType.integer, ColumnType.linkId, ColumnType.decimal };
+	private static final int N_RECORDS = 25;
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testTextOutputWithMoreRecordsThanChunks() throws IOException {
+		String filename = utils.getOutputDirectory() + "series.txt.gz";
+		Id<Link> linkId = Id.createLinkId("sinkTestLink");
+		// three records per chunk and two chunks: the caller has to wait for the writer several times
+		try (TelematicsTimeSeriesSink sink = new TelematicsTimeSeriesSink(filename, Format.text, ";", NAMES, TYPES, 3, 2, BackPressure.block)) {
+			double[] record = new double[3];
+			for (int i = 0; i < N_RECORDS; i++) {
+				record[0] = 3 * 1e9 + i; // does not fit into an int
+				record[1] = linkId.index();
+				record[2] = i + 0.5;
+				sink.add(record);
+			}
+			Assert.assertEquals(0, sink.getDroppedRecords());
+		}
+
+		try (BufferedReader reader = IOUtils.getBufferedReader(filename)) {
+			Assert.assertEquals("time;link;tt", reader.readLine());
+			for (int i = 0; i < N_RECORDS; i++) {
+				Assert.assertEquals((3000000000L + i) + ";sinkTestLink;" + (i + 0.5), reader.readLine());
+			}
+			Assert.assertNull(reader.readLine());
+		}
+	}
+
+	@Test
+	public void testBinaryOutput() throws IOException {
+		String filename = utils.getOutputDirectory() + "series.bin";
+		Id<Link> linkId = Id.createLinkId("sinkTestLink");
+		try (TelematicsTimeSeriesSink sink = new TelematicsTimeSeriesSink(filename, Format.binary, null, NAMES, TYPES, 4, 2, BackPressure.block)) {
+			for (int i = 0; i < N_RECORDS; i++) {
+				sink.add(new double[] { 3 * 1e9 + i, linkId.index(), i + 0.5 });
+			}
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+			Assert.assertEquals(TelematicsTimeSeriesSink.BINARY_MAGIC, in.readInt());
+			Assert.assertEquals(NAMES.length, in.readInt());
+			for (int c = 0; c < NAMES.length; c++) {
+				Assert.assertEquals(NAMES[c], in.readUTF());
+				Assert.assertEquals(TYPES[c].ordinal(), in.readByte());
+			}
+			int record = 0;
+			while (record < N_RECORDS) {
+				int nRecords = in.readInt();
+				Assert.assertTrue(nRecords > 0 && nRecords <= 4);
+				for (int r = 0; r < nRecords; r++) {
+					Assert.assertEquals(3000000000L + record + r, in.readLong());
+				}
+				for (int r = 0; r < nRecords; r++) {
+					Assert.assertEquals("sinkTestLink", in.readUTF());
+				}
+				for (int r = 0; r < nRecords; r++) {
+					Assert.assertEquals(record + r + 0.5, in.readDouble(), 0.0);
+				}
+				record += nRecords;
+			}
+			Assert.assertEquals(N_RECORDS, record);
+			Assert.assertEquals(-1, in.read());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRecordOfWrongLengthIsRejected() {
+		try (TelematicsTimeSeriesSink sink = new TelematicsTimeSeriesSink(utils.getOutputDirectory() + "short.txt", NAMES, TYPES)) {
+			sink.add(new double[] { 1., 2. });
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAddAfterClose() {
+		TelematicsTimeSeriesSink sink = new TelematicsTimeSeriesSink(utils.getOutputDirectory() + "closed.txt", NAMES, TYPES);
+		sink.close();
+		sink.add(new double[] { 1., 2., 3. });
+	}
+
+}
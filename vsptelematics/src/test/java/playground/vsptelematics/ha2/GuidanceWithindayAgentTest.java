@@ -0,0 +1,160 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * GuidanceWithindayAgentTest
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.ha2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonStuckEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup.ActivityParams;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+import playground.vsptelematics.common.TelematicsConfigGroup;
+import playground.vsptelematics.common.TelematicsConfigGroup.Infotype;
+
+/**
+ * Runs a guided agent on the two-route network with an origin link 0 and a destination link 7, which are not part of the route sets.
+ */
+public class GuidanceWithindayAgentTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testGuidedAgentLeavesAndReachesLinksOutsideOfRouteSets() {
+		Config config = ConfigUtils.createConfig();
+		config.controler().setOutputDirectory(utils.getOutputDirectory());
+		config.controler().setLastIteration(0);
+		config.qsim().setEndTime(3600.);
+		ActivityParams params = new ActivityParams("h");
+		params.setTypicalDuration(12 * 3600.);
+		config.planCalcScore().addActivityParams(params);
+		TelematicsConfigGroup tcg = ConfigUtils.addOrGetModule(config, TelematicsConfigGroup.GROUPNAME, TelematicsConfigGroup.class);
+		tcg.setInfotype(Infotype.routeSet);
+		tcg.setEquipmentRate(1.0);
+
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		createNetwork(scenario.getNetwork());
+		// planned on the slow route 3-5, guided to the fast route 2-4:
+		Person person = createPerson(scenario.getPopulation(), linkIds("1", "3", "5", "6"));
+		scenario.getPopulation().addPerson(person);
+
+		Controller.run(scenario);
+
+		List<Id<Link>> enteredLinkIds = new ArrayList<>();
+		List<Id<Link>> arrivalLinkIds = new ArrayList<>();
+		List<PersonStuckEvent> stuckEvents = new ArrayList<>();
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler((LinkEnterEventHandler) e -> enteredLinkIds.add(e.getLinkId()));
+		events.addHandler((PersonArrivalEventHandler) e -> arrivalLinkIds.add(e.getLinkId()));
+		events.addHandler((PersonStuckEventHandler) stuckEvents::add);
+		new MatsimEventsReader(events).readFile(utils.getOutputDirectory() + "output_events.xml.gz");
+
+		Assert.assertTrue("the agent should not abort", stuckEvents.isEmpty());
+		Assert.assertEquals(linkIds("1", "2", "4", "6", "7"), enteredLinkIds);
+		Assert.assertEquals(linkIds("7"), arrivalLinkIds);
+		// the route is modified on a copy of the plan:
+		Leg leg = (Leg) person.getSelectedPlan().getPlanElements().get(1);
+		Assert.assertEquals(linkIds("1", "3", "5", "6"), ((NetworkRoute) leg.getRoute()).getLinkIds());
+	}
+
+	/**
+	 * 0 - 1 - 2 - 4 - 6 - 7 and 1 - 3 - 5 - 6, where 2 and 4 are twice as fast as 3 and 5.
+	 */
+	private static void createNetwork(Network network) {
+		NetworkFactory nf = network.getFactory();
+		Node[] nodes = new Node[8];
+		double[][] coords = { { 0, 0 }, { 1000, 0 }, { 2000, 0 }, { 3000, 1000 }, { 3000, -1000 }, { 4000, 0 }, { 5000, 0 }, { 6000, 0 } };
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = nf.createNode(Id.createNodeId(i), new Coord(coords[i][0], coords[i][1]));
+			network.addNode(nodes[i]);
+		}
+		addLink(network, "0", nodes[0], nodes[1], 10.);
+		addLink(network, "1", nodes[1], nodes[2], 10.);
+		addLink(network, "2", nodes[2], nodes[3], 20.);
+		addLink(network, "3", nodes[2], nodes[4], 10.);
+		addLink(network, "4", nodes[3], nodes[5], 20.);
+		addLink(network, "5", nodes[4], nodes[5], 10.);
+		addLink(network, "6", nodes[5], nodes[6], 10.);
+		addLink(network, "7", nodes[6], nodes[7], 10.);
+	}
+
+	private static void addLink(Network network, String id, Node from, Node to, double freespeed) {
+		Link link = network.getFactory().createLink(Id.createLinkId(id), from, to);
+		link.setLength(1000.);
+		link.setFreespeed(freespeed);
+		link.setCapacity(3600.);
+		link.setNumberOfLanes(1.);
+		network.addLink(link);
+	}
+
+	private static Person createPerson(Population population, List<Id<Link>> routeLinkIds) {
+		Person person = population.getFactory().createPerson(Id.createPersonId("guided"));
+		Plan plan = population.getFactory().createPlan();
+		person.addPlan(plan);
+		Activity home = population.getFactory().createActivityFromLinkId("h", Id.createLinkId("0"));
+		home.setEndTime(60.);
+		plan.addActivity(home);
+		Leg leg = population.getFactory().createLeg(TransportMode.car);
+		leg.setRoute(RouteUtils.createLinkNetworkRouteImpl(Id.createLinkId("0"), routeLinkIds, Id.createLinkId("7")));
+		plan.addLeg(leg);
+		plan.addActivity(population.getFactory().createActivityFromLinkId("h", Id.createLinkId("7")));
+		return person;
+	}
+
+	private static List<Id<Link>> linkIds(String... ids) {
+		List<Id<Link>> linkIds = new ArrayList<>();
+		for (String id : Arrays.asList(ids)) {
+			linkIds.add(Id.createLinkId(id));
+		}
+		return linkIds;
+	}
+
+}
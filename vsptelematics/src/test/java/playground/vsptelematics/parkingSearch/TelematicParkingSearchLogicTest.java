@@ -0,0 +1,122 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TelematicParkingSearchLogicTest
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.parkingSearch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.DijkstraFactory;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+
+/**
+ * Tests the path of {@link TelematicParkingSearchLogic} on a network where always taking the out-link whose end is closest to the target
+ * does not reach it.
+ */
+public class TelematicParkingSearchLogicTest {
+
+	private Network network;
+	private LeastCostPathCalculator router;
+
+	/**
+	 * <pre>
+	 *               n3 ---------> n4 --target--> n5 <-- n6
+	 *               ^
+	 *               |
+	 * n0 --start--> n1 <--> n2
+	 * </pre>
+	 * n2 is a dead end, and n6 can not be reached since it has no in-links.
+	 * From n1, the dead end n2 is closer to n4 than n3; greedily choosing the closest out-link end would go back and forth between n1 and
+	 * n2 forever.
+	 */
+	@Before
+	public void setUp() {
+		network = NetworkUtils.createNetwork();
+		Node n0 = addNode("n0", -100, 0);
+		Node n1 = addNode("n1", 0, 0);
+		Node n2 = addNode("n2", 90, 0);
+		Node n3 = addNode("n3", 0, 500);
+		Node n4 = addNode("n4", 100, 0);
+		Node n5 = addNode("n5", 200, 0);
+		Node n6 = addNode("n6", 300, 0);
+		addLink("start", n0, n1);
+		addLink("n1_n2", n1, n2);
+		addLink("n2_n1", n2, n1);
+		addLink("n1_n3", n1, n3);
+		addLink("n3_n4", n3, n4);
+		addLink("target", n4, n5);
+		addLink("n6_n5", n6, n5);
+		FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(-1.0, 0.0, 0.0);
+		router = new DijkstraFactory().createPathCalculator(network, freespeed, freespeed);
+	}
+
+	@Test
+	public void testPathAroundDeadEnd() {
+		Link start = network.getLinks().get(Id.createLinkId("start"));
+		Link target = network.getLinks().get(Id.createLinkId("target"));
+		Assert.assertEquals(linkIds("n1_n3", "n3_n4", "target"), ids(TelematicParkingSearchLogic.calcPath(router, start, target)));
+
+		// from within the dead end:
+		Link deadEnd = network.getLinks().get(Id.createLinkId("n1_n2"));
+		Assert.assertEquals(linkIds("n2_n1", "n1_n3", "n3_n4", "target"), ids(TelematicParkingSearchLogic.calcPath(router, deadEnd, target)));
+	}
+
+	@Test
+	public void testUnreachableTarget() {
+		Link start = network.getLinks().get(Id.createLinkId("start"));
+		Link oneWay = network.getLinks().get(Id.createLinkId("n6_n5"));
+		Assert.assertNull(TelematicParkingSearchLogic.calcPath(router, start, oneWay));
+	}
+
+	private Node addNode(String id, double x, double y) {
+		return NetworkUtils.createAndAddNode(network, Id.createNodeId(id), new Coord(x, y));
+	}
+
+	private void addLink(String id, Node from, Node to) {
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(id), from, to, NetworkUtils.getEuclideanDistance(from.getCoord(), to.getCoord()),
+				10., 1800., 1.);
+	}
+
+	private static List<Id<Link>> ids(List<Link> links) {
+		List<Id<Link>> ids = new ArrayList<>();
+		for (Link link : links) {
+			ids.add(link.getId());
+		}
+		return ids;
+	}
+
+	private static List<Id<Link>> linkIds(String... ids) {
+		List<Id<Link>> linkIds = new ArrayList<>();
+		for (String id : ids) {
+			linkIds.add(Id.createLinkId(id));
+		}
+		return linkIds;
+	}
+
+}
@@ -0,0 +1,107 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransimsTVeh2OTFVisMviTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2026 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package playground.vsptelematics.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
+import org.matsim.vis.snapshotwriters.SnapshotWriter;
+
+public class TransimsTVeh2OTFVisMviTest {
+
+	// columns in another order than written by the TransimsSnapshotWriter, with an unknown column and a windows line end:
+	private static final String FIXTURE = "VEHICLE\tNORTHING\tTIME\tLINK\tVELOCITY\tEASTING\n"
+			+ "1\t200\t3\tx\t10\t100\n"
+			+ "2\t210.5\t3\tx\t10\t110\r\n"
+			+ "1\t200\t7\tx\t10\t105\n"
+			+ "1\t200\t12\tx\t10\t120\n"
+			+ "car-a\t-1.5e2\t12\tx\t10\t0.25\n"
+			+ "2\t210\t25\tx\t10\t130" ;
+
+	private static final List<String> EXPECTED = Arrays.asList(
+			// of every period, the first time step is written, with the time stamp of the beginning of the period:
+			"0.0", "1@100.0/200.0", "2@110.0/210.5",
+			"10.0", "1@120.0/200.0", "car-a@0.25/-150.0",
+			"20.0", "2@130.0/210.0" ) ;
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testReorderedHeaderAndPeriodStart() throws IOException {
+		Assert.assertEquals( EXPECTED, read( writeFixture(), TransimsTVeh2OTFVisMvi.WINDOW_SIZE ) );
+	}
+
+	@Test
+	public void testLinesAcrossWindowBoundaries() throws IOException {
+		final String filename = writeFixture() ;
+		// the header is the longest line; from there on, every window size puts some line across a window boundary:
+		final int longestLine = FIXTURE.indexOf( '\n' ) + 1 ;
+		for ( int windowSize = longestLine ; windowSize <= FIXTURE.length() ; windowSize++ ) {
+			Assert.assertEquals( "window size " + windowSize, EXPECTED, read( filename, windowSize ) );
+		}
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testLineLongerThanWindow() throws IOException {
+		read( writeFixture(), FIXTURE.indexOf( '\n' ) ) ;
+	}
+
+	private String writeFixture() throws IOException {
+		final String filename = utils.getOutputDirectory() + "T.veh.txt" ;
+		Files.write( Paths.get( filename ), FIXTURE.getBytes( StandardCharsets.UTF_8 ) ) ;
+		return filename ;
+	}
+
+	private static List<String> read( String filename, int windowSize ) {
+		final List<String> snapshots = new ArrayList<>() ;
+		TransimsTVeh2OTFVisMvi reader = new TransimsTVeh2OTFVisMvi( 10., windowSize ) ;
+		reader.addSnapshotWriter( new SnapshotWriter() {
+			@Override
+			public void beginSnapshot( double time ) {
+				snapshots.add( Double.toString( time ) ) ;
+			}
+			@Override
+			public void endSnapshot() {
+			}
+			@Override
+			public void addAgent( AgentSnapshotInfo position ) {
+				snapshots.add( position.getId() + "@" + position.getEasting() + "/" + position.getNorthing() ) ;
+			}
+			@Override
+			public void finish() {
+			}
+		} ) ;
+		reader.readFile( filename ) ;
+		reader.finish() ;
+		return snapshots ;
+	}
+
+}